@@ -14,7 +14,9 @@ import type {
 	WorkflowNode,
 	WorkflowPort,
 	WorkflowOutput,
-	WorkflowAnnotation
+	WorkflowAnnotation,
+	WorkflowDelta,
+	WorkflowSnapshot
 } from '@/types/workflow';
 import {
 	WorkflowPortStatus,
@@ -31,6 +33,19 @@ import dagre from 'dagre';
  * A wrapper class around the workflow data struture to make it easier
  * to deal with CURD operations
  * */
+// Applies a JSON merge patch (RFC 7386) in place
+const mergePatch = (target: any, patch: any) => {
+	Object.entries(patch).forEach(([key, value]) => {
+		if (value === null) {
+			delete target[key];
+		} else if (_.isPlainObject(value) && _.isPlainObject(target[key])) {
+			mergePatch(target[key], value);
+		} else {
+			target[key] = value;
+		}
+	});
+};
+
 export class WorkflowWrapper {
 	private wf: Workflow;
 
@@ -130,6 +145,52 @@ export class WorkflowWrapper {
 		[...updatedEdgeMap.values()].forEach((edge) => this.wf.edges.push(edge));
 	}
 
+	/**
+	 * Applies a change sent by the server, the caller is responsible for applying them in order
+	 * */
+	applyDelta(delta: WorkflowDelta) {
+		if (delta.workflowId !== this.wf.id) {
+			throw new Error(`Workflow failed, inconsistent ids delta=${delta.workflowId} self=${this.wf.id}`);
+		}
+		if (delta.workflow) {
+			mergePatch(this.wf, delta.workflow);
+		}
+
+		const nodes = this.wf.nodes;
+		Object.entries(delta.nodes).forEach(([nodeId, patch]) => {
+			const node = nodes.find((n) => n.id === nodeId);
+			if (node) {
+				mergePatch(node, patch);
+			} else {
+				nodes.push(patch);
+			}
+		});
+		const patchPorts = (ports: { [nodeId: string]: { [portId: string]: any } }, key: 'inputs' | 'outputs') => {
+			Object.entries(ports).forEach(([nodeId, portPatches]) => {
+				const node = nodes.find((n) => n.id === nodeId);
+				Object.entries(portPatches).forEach(([portId, patch]) => {
+					const port = node?.[key].find((p) => p.id === portId);
+					if (port) mergePatch(port, patch);
+				});
+			});
+		};
+		patchPorts(delta.inputs, 'inputs');
+		patchPorts(delta.outputs, 'outputs');
+
+		const edges = this.wf.edges;
+		Object.entries(delta.edges).forEach(([edgeId, patch]) => {
+			const edge = edges.find((e) => e.id === edgeId);
+			if (edge) {
+				mergePatch(edge, patch);
+			} else {
+				edges.push(patch);
+			}
+		});
+
+		_.remove(nodes, (n) => delta.removedNodes.includes(n.id));
+		_.remove(edges, (e) => delta.removedEdges.includes(e.id));
+	}
+
 	getId() {
 		return this.wf.id;
 	}
@@ -654,6 +715,24 @@ export const getWorkflow = async (id: string, projectId?: string) => {
 	return response?.data ?? null;
 };
 
+// Get workflow with the version of the last change it includes, to apply the changes after it
+export const getWorkflowSnapshot = async (id: string, projectId?: string): Promise<WorkflowSnapshot | null> => {
+	const response = await API.get(`/workflows/${id}/snapshot`, { params: { 'project-id': projectId } });
+	return response?.data ?? null;
+};
+
+// Identifies the subscriptions of this tab, so that unsubscribing leaves those of the other tabs of the user
+const subscriberId = uuidv4();
+
+// Receive the changes to a workflow, the subscription expires unless it is renewed every few minutes
+export const subscribeToWorkflow = async (id: string) => {
+	await API.put(`/workflows/${id}/subscription`, null, { params: { 'subscriber-id': subscriberId } });
+};
+
+export const unsubscribeFromWorkflow = async (id: string) => {
+	await API.delete(`/workflows/${id}/subscription`, { params: { 'subscriber-id': subscriberId } });
+};
+
 // FIXME: These follow functions overlap with WorkflowWrapper, will need to be sorted out. Jan 2025
 export const newOperator = (
 	workflowId: string,
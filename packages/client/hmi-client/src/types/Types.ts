@@ -684,6 +684,7 @@ export interface TaskResponse {
     script: string;
     status: TaskStatus;
     output: any;
+    outputRef: string;
     userId: string;
     projectId: string;
     additionalProperties: any;
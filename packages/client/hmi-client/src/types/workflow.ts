@@ -179,6 +179,31 @@ export interface Workflow {
 	scenario?: any;
 }
 
+/**
+ * A change to a workflow. Every patch is a JSON merge patch (RFC 7386): a field set to null is removed, an object is
+ * merged and any other value is replaced. A client at baseVersion applies it to get to version, any other client
+ * has missed a change and loads a new snapshot.
+ */
+export interface WorkflowDelta {
+	workflowId: string;
+	projectId?: string;
+	version: number;
+	baseVersion: number;
+
+	workflow?: any;
+	nodes: { [nodeId: string]: any };
+	inputs: { [nodeId: string]: { [portId: string]: any } };
+	outputs: { [nodeId: string]: { [portId: string]: any } };
+	edges: { [edgeId: string]: any };
+	removedNodes: string[];
+	removedEdges: string[];
+}
+
+export interface WorkflowSnapshot {
+	version: number;
+	workflow: Workflow;
+}
+
 export interface Size {
 	width: number;
 	height: number;
@@ -0,0 +1,135 @@
+package software.uncharted.terarium.hmiserver.aspects;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import software.uncharted.terarium.hmiserver.annotations.HasProjectAccess;
+import software.uncharted.terarium.hmiserver.models.User;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.service.CurrentUserService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectService;
+
+/**
+ * Measures the overhead of {@link HasProjectAccessAspect} on a call, for the default expression and for an expression
+ * on an object argument.
+ *
+ * <p>{@code parsePerCall} resolves the project id as the aspect did before its expressions were cached, parsing the
+ * expression into a new context on every call. {@code resolver} resolves it with the {@link ProjectIdResolver} of the
+ * method. {@code aspect} is the whole check, with the project and the permission already known to the services and a
+ * request that already made the check once; the join point is a mock, so it includes the cost of the mock.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HasProjectAccessAspectBenchmark {
+
+	public static class Target {
+
+		@HasProjectAccess
+		public void byId(final String projectId) {}
+
+		@HasProjectAccess("#project.getId()")
+		public void byProject(final Project project) {}
+	}
+
+	@Param({ "byId", "byProject" })
+	private String methodName;
+
+	private final SpelExpressionParser expressionParser = new SpelExpressionParser();
+	private final UUID projectId = UUID.randomUUID();
+
+	private Method method;
+	private HasProjectAccess annotation;
+	private String[] parameterNames;
+	private Object[] args;
+	private ProjectIdResolver resolver;
+	private ProceedingJoinPoint joinPoint;
+	private HasProjectAccessAspect aspect;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		method = methodName.equals("byId")
+			? Target.class.getMethod("byId", String.class)
+			: Target.class.getMethod("byProject", Project.class);
+		annotation = method.getAnnotation(HasProjectAccess.class);
+		parameterNames = new String[] { method.getParameters()[0].getName() };
+		args = new Object[] {
+			methodName.equals("byId") ? projectId.toString() : new Project().setId(projectId)
+		};
+		resolver = new ProjectIdResolver(annotation.value(), parameterNames);
+
+		final MethodSignature signature = mock(MethodSignature.class);
+		when(signature.getMethod()).thenReturn(method);
+		when(signature.getParameterNames()).thenReturn(parameterNames);
+		joinPoint = mock(ProceedingJoinPoint.class);
+		when(joinPoint.getSignature()).thenReturn(signature);
+		when(joinPoint.getArgs()).thenReturn(args);
+		when(joinPoint.proceed()).thenReturn(null);
+
+		final ProjectService projectService = mock(ProjectService.class);
+		when(projectService.projectExists(projectId)).thenReturn(true);
+		when(projectService.hasPermissionAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(true));
+		final CurrentUserService currentUserService = mock(CurrentUserService.class);
+		final User user = new User();
+		user.setId("user-id");
+		when(currentUserService.get()).thenReturn(user);
+
+		aspect = new HasProjectAccessAspect(projectService, currentUserService, mock(ApplicationContext.class));
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Benchmark
+	public Object parsePerCall() {
+		final StandardEvaluationContext context = new StandardEvaluationContext();
+		for (int i = 0; i < parameterNames.length; i++) {
+			context.setVariable(parameterNames[i], args[i]);
+		}
+		return expressionParser.parseExpression(annotation.value()).getValue(context, Object.class).toString();
+	}
+
+	@Benchmark
+	public String resolver() {
+		return resolver.resolve(args);
+	}
+
+	@Benchmark
+	public Object aspect() throws Throwable {
+		return aspect.methodHasProjectAccess(joinPoint, annotation);
+	}
+}
@@ -0,0 +1,63 @@
+package software.uncharted.terarium.hmiserver.models.task;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest.TaskType;
+
+/**
+ * Measures hashing the input of a task request, with {@link TaskRequestDigest} and with the original implementation,
+ * which builds the whole {@code "<type>-<script>-<base64(input)>"} string before hashing it.
+ *
+ * <p>The memory allocated by each, which is what the streaming digest saves, is reported per operation as
+ * {@code gc.alloc.rate.norm} by the gc profiler: the original allocates several copies of the input, the streaming
+ * digest only a small encoding buffer.
+ *
+ * <p>Run with {@code ./gradlew jmh}, adding {@code -prof gc} to the JMH arguments to see the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskRequestDigestBenchmark {
+
+	// the size of the input, in megabytes
+	@Param({ "1", "50" })
+	private int megabytes;
+
+	private byte[] input;
+
+	@Setup
+	public void setup() {
+		input = new byte[megabytes * 1024 * 1024];
+		new Random(megabytes).nextBytes(input);
+	}
+
+	@Benchmark
+	public String legacy() throws Exception {
+		final String encodedInput = Base64.getEncoder().encodeToString(input);
+		final String strHash = String.format("%s-%s-%s", TaskType.OCR_EXTRACTION, "ocr", encodedInput);
+		final MessageDigest md = MessageDigest.getInstance("SHA-256");
+		return Base64.getEncoder().encodeToString(md.digest(strHash.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Benchmark
+	public String streaming() {
+		return TaskRequestDigest.sha256(TaskType.OCR_EXTRACTION, "ocr", input);
+	}
+}
@@ -0,0 +1,163 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.Core.ObjectReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.models.User;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Contributor;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.service.UserService;
+import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
+import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacPermissionRelationship;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacProject;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacUser;
+
+/**
+ * Measures the latency of populating the project list of a user who can see many projects, with every SpiceDB and
+ * Postgres request taking a fixed time.
+ *
+ * <p>{@code perProject} makes the requests the project list made before it was batched: a permission check, a public
+ * check, a contributor read and an author query for each project. {@code batched} is {@link ProjectListService}.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectListServiceBenchmark {
+
+	private static final String USER_ID = "user-id";
+
+	@Param({ "1000", "5000" })
+	private int projectCount;
+
+	// the time of every request to SpiceDB or Postgres
+	@Param({ "1" })
+	private long requestMillis;
+
+	private ReBACService reBACService;
+	private ProjectPermissionsService projectPermissionsService;
+	private UserService userService;
+	private ProjectListService projectListService;
+	private List<Project> projects;
+
+	private <T> Answer<T> after(final Answer<T> answer) {
+		return inv -> {
+			Thread.sleep(requestMillis);
+			return answer.answer(inv);
+		};
+	}
+
+	private <T> Answer<CompletableFuture<T>> later(final T value) {
+		final Executor delayed = CompletableFuture.delayedExecutor(requestMillis, TimeUnit.MILLISECONDS);
+		return inv -> CompletableFuture.supplyAsync(() -> value, delayed);
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		ReBACService.PUBLIC_GROUP_ID = "public-group-id";
+
+		projects = new ArrayList<>();
+		final List<UUID> projectIds = new ArrayList<>();
+		final List<RebacPermissionRelationship> created = new ArrayList<>();
+		for (int i = 0; i < projectCount; i++) {
+			final Project project = (Project) new Project().setName("project-" + i).setId(UUID.randomUUID());
+			project.setUserId("author-" + (i % 50));
+			projects.add(project);
+			projectIds.add(project.getId());
+			if (i % 10 == 0) {
+				created.add(
+					new RebacPermissionRelationship(
+						ObjectReference.newBuilder().setObjectType("user").setObjectId(USER_ID).build(),
+						"creator",
+						ObjectReference.newBuilder().setObjectType("project").setObjectId(project.getId().toString()).build()
+					)
+				);
+			}
+		}
+
+		reBACService = mock(ReBACService.class);
+		when(reBACService.isMemberOf(any(), any())).then(after(inv -> false));
+		when(reBACService.can(any(), any(), any())).then(after(inv -> true));
+		when(reBACService.isCreator(any(), any())).then(after(inv -> false));
+		when(reBACService.isMemberOfAsync(any(), any())).then(later(false));
+		when(reBACService.canAsync(any(), any(), any())).then(later(true));
+		when(reBACService.isCreatorAsync(any(), any())).then(later(false));
+		when(reBACService.getRelationships(any())).then(after(inv -> List.of()));
+		when(reBACService.getSubjectRelationships(any(), any())).then(after(inv -> created));
+		when(reBACService.lookupResources(any(), any(), any())).then(after(inv -> projectIds));
+
+		projectPermissionsService = mock(ProjectPermissionsService.class);
+		when(projectPermissionsService.getContributors(any(RebacProject.class))).then(
+			after(inv -> List.of(new Contributor("Author", USER_ID, Schema.Relationship.CREATOR)))
+		);
+
+		userService = mock(UserService.class);
+		when(userService.getById(anyString())).then(after(inv -> new User().setId(inv.getArgument(0)).setName("Author")));
+		when(userService.getByIds(anyCollection())).then(
+			after(inv -> List.of(new User().setId("author-0").setName("Author")))
+		);
+
+		projectListService = new ProjectListService(reBACService, projectPermissionsService, userService);
+		ReflectionTestUtils.setField(projectListService, "THREADS", 16);
+		ReflectionTestUtils.invokeMethod(projectListService, "init");
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		ReflectionTestUtils.invokeMethod(projectListService, "shutdown");
+	}
+
+	@Benchmark
+	public List<Project> perProject() throws Exception {
+		final RebacUser rebacUser = new RebacUser(USER_ID, reBACService);
+		for (final Project project : projects) {
+			final RebacProject rebacProject = new RebacProject(project.getId(), reBACService);
+			project.setUserPermission(rebacUser.getPermissionFor(rebacProject));
+			project.setPublicProject(rebacProject.isPublic());
+			final List<Contributor> contributors = projectPermissionsService.getContributors(rebacProject);
+			if (project.getMetadata() == null) {
+				project.setMetadata(new HashMap<>());
+			}
+			project.getMetadata().put("contributor-count", Integer.toString(contributors.size()));
+			project.setUserName(userService.getById(project.getUserId()).getName());
+		}
+		return projects;
+	}
+
+	@Benchmark
+	public List<Project> batched() throws Exception {
+		projectListService.populateProjects(new RebacUser(USER_ID, reBACService), projects);
+		return projects;
+	}
+}
@@ -0,0 +1,140 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNodeRecord;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowEdgeRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowNodeRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowRepository;
+
+/**
+ * Measures the CPU spent preparing the write of a change to the state of one node of a workflow, for workflows of
+ * different sizes where each node has a state of about 2KB.
+ *
+ * <p>{@code wholeDocument} serializes all the nodes and edges, as was written to the json columns of the workflow on
+ * every change. {@code singleElement} is {@link WorkflowElementService#save} of the node that changed, which compares
+ * and serializes that node only; the repositories are mocks, so it includes the cost of the mocks but not of the
+ * database. The number of bytes written by each is the size of what they serialize.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkflowEditBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	private int nodeCount;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private Workflow workflow;
+	private WorkflowNode edited;
+	private Set<UUID> editedIds;
+	private WorkflowElementService workflowElementService;
+	private int edit = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		final UUID workflowId = UUID.randomUUID();
+		final List<WorkflowNode> nodes = new ArrayList<>();
+		final List<WorkflowEdge> edges = new ArrayList<>();
+		for (int i = 0; i < nodeCount; i++) {
+			final ObjectNode state = objectMapper.createObjectNode();
+			final ArrayNode values = state.putArray("values");
+			for (int j = 0; j < 100; j++) {
+				values.addObject().put("name", "parameter-" + j).put("value", Math.random());
+			}
+			final WorkflowNode node = new WorkflowNode()
+				.setId(UUID.randomUUID())
+				.setWorkflowId(workflowId)
+				.setDisplayName("node-" + i)
+				.setVersion(1L)
+				.setIsDeleted(false)
+				.setState(state);
+			if (!nodes.isEmpty()) {
+				edges.add(
+					new WorkflowEdge()
+						.setId(UUID.randomUUID())
+						.setWorkflowId(workflowId)
+						.setSource(nodes.get(nodes.size() - 1).getId())
+						.setTarget(node.getId())
+						.setVersion(1L)
+						.setIsDeleted(false)
+				);
+			}
+			nodes.add(node);
+		}
+		workflow = (Workflow) new Workflow().setNodes(nodes).setEdges(edges).setId(workflowId);
+		edited = nodes.get(nodeCount / 2);
+		editedIds = Set.of(edited.getId());
+
+		final WorkflowNodeRecord record = new WorkflowNodeRecord();
+		record
+			.setWorkflowId(workflowId)
+			.setElementId(edited.getId())
+			.setSortOrder(nodeCount / 2)
+			.setVersion(edited.getVersion())
+			.setIsDeleted(false)
+			.setContent(objectMapper.valueToTree(edited));
+		final WorkflowNodeRecordRepository nodeRepository = mock(WorkflowNodeRecordRepository.class);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(
+			List.of(record)
+		);
+		workflowElementService = new WorkflowElementService(
+			objectMapper,
+			mock(WorkflowRepository.class),
+			nodeRepository,
+			mock(WorkflowEdgeRecordRepository.class)
+		);
+	}
+
+	private void editState() {
+		((ObjectNode) edited.getState()).put("edit", edit++);
+	}
+
+	@Benchmark
+	public int wholeDocument() throws Exception {
+		editState();
+		edited.setVersion(edited.getVersion() + 1L);
+		return (
+			objectMapper.writeValueAsBytes(workflow.getNodes()).length +
+			objectMapper.writeValueAsBytes(workflow.getEdges()).length
+		);
+	}
+
+	@Benchmark
+	public boolean singleElement() {
+		editState();
+		return workflowElementService.save(workflow, editedIds, Set.of());
+	}
+}
@@ -0,0 +1,154 @@
+package software.uncharted.terarium.hmiserver.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.uncharted.terarium.hmiserver.models.dataservice.model.Model;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
+import software.uncharted.terarium.hmiserver.utils.AssetDependencyUtil.AssetDependencyMap;
+
+/**
+ * Measures finding and swapping the project asset ids referenced by a model and a workflow, as is done for every asset
+ * when a project is cloned, exported or imported.
+ *
+ * <p>The payloads are the SIR model and workflow from the test resources, grown to the size of a large project: the
+ * model with extra parameters and the workflow with extra copies of its nodes and edges, all with their own ids.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetDependencyUtilBenchmark {
+
+	// the number of parameters of the model, and a tenth of the number of nodes of the workflow
+	@Param({ "100", "2000" })
+	private int size;
+
+	private static final Pattern QUOTED_UUID = Pattern.compile(
+		"\"([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})\""
+	);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private Model model;
+	private Workflow workflow;
+	private Set<UUID> projectAssetIds;
+	private Map<UUID, UUID> newIds;
+	private AssetDependencyMap modelDependencies;
+	private AssetDependencyMap workflowDependencies;
+
+	@Setup
+	public void setup() throws IOException {
+		// the ids of the other assets of the project, some of which the model and workflow refer to
+		projectAssetIds = new HashSet<>();
+		newIds = new HashMap<>();
+		for (int i = 0; i < 200; i++) {
+			final UUID id = UUID.randomUUID();
+			projectAssetIds.add(id);
+			newIds.put(id, UUID.randomUUID());
+		}
+		final UUID[] referenced = projectAssetIds.stream().limit(10).toArray(UUID[]::new);
+
+		final ObjectNode modelJson = (ObjectNode) readResource("knowledge/sir.json");
+		final ArrayNode parameters = (ArrayNode) modelJson.at("/semantics/ode/parameters");
+		final ObjectNode parameter = (ObjectNode) parameters.get(0);
+		for (int i = 0; i < size; i++) {
+			final ObjectNode copy = parameter.deepCopy();
+			copy.put("id", "param_" + i);
+			copy.put("name", "Parameter " + i);
+			copy.put("description", "Derived from dataset " + referenced[i % referenced.length]);
+			copy.put("source", referenced[i % referenced.length].toString());
+			parameters.add(copy);
+		}
+		model = objectMapper.treeToValue(modelJson, Model.class);
+
+		final ObjectNode workflowJson = (ObjectNode) readResource("workflow/workflow1.json");
+		final ArrayNode nodes = (ArrayNode) workflowJson.get("nodes");
+		final ArrayNode edges = (ArrayNode) workflowJson.get("edges");
+		final ArrayNode originalNodes = nodes.deepCopy();
+		final ArrayNode originalEdges = edges.deepCopy();
+		for (int i = 0; i < size / 10; i++) {
+			// each copy has ids of its own, other than the assets it refers to
+			String copy = objectMapper.writeValueAsString(
+				objectMapper.createArrayNode().add(originalNodes).add(originalEdges)
+			);
+			for (final String id : originalIds(copy)) {
+				copy = copy.replace(id, UUID.randomUUID().toString());
+			}
+			final ArrayNode copied = (ArrayNode) objectMapper.readTree(copy);
+			for (int j = 0; j < copied.get(0).size(); j++) {
+				((ObjectNode) copied.get(0).get(j).get("state")).put(
+						"modelId",
+						referenced[(i + j) % referenced.length].toString()
+					);
+			}
+			nodes.addAll((ArrayNode) copied.get(0));
+			edges.addAll((ArrayNode) copied.get(1));
+		}
+		workflow = objectMapper.treeToValue(workflowJson, Workflow.class);
+
+		modelDependencies = AssetDependencyUtil.getAssetDependencies(projectAssetIds, model);
+		workflowDependencies = AssetDependencyUtil.getAssetDependencies(projectAssetIds, workflow);
+	}
+
+	private JsonNode readResource(final String name) throws IOException {
+		try (final InputStream stream = getClass().getClassLoader().getResourceAsStream(name)) {
+			return objectMapper.readTree(stream);
+		}
+	}
+
+	private static Set<String> originalIds(final String json) {
+		final Set<String> ids = new HashSet<>();
+		final Matcher matcher = QUOTED_UUID.matcher(json);
+		while (matcher.find()) {
+			ids.add(matcher.group(1));
+		}
+		return ids;
+	}
+
+	@Benchmark
+	public AssetDependencyMap getModelDependencies() {
+		return AssetDependencyUtil.getAssetDependencies(projectAssetIds, model);
+	}
+
+	@Benchmark
+	public Model swapModelDependencies() {
+		return AssetDependencyUtil.swapAssetDependencies(model, newIds, modelDependencies);
+	}
+
+	@Benchmark
+	public AssetDependencyMap getWorkflowDependencies() {
+		return AssetDependencyUtil.getAssetDependencies(projectAssetIds, workflow);
+	}
+
+	@Benchmark
+	public Workflow swapWorkflowDependencies() {
+		return AssetDependencyUtil.swapAssetDependencies(workflow, newIds, workflowDependencies);
+	}
+}
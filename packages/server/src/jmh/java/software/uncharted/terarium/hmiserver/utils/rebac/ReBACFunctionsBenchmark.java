@@ -0,0 +1,103 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import com.authzed.api.v1.PermissionService.Consistency;
+import com.authzed.grpcutil.BearerToken;
+import io.grpc.ManagedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of making a number of permission checks for one request, as the project access aspect and the
+ * permission of a user for a project do, against a {@link FakeSpiceDB} that takes a fixed time to answer.
+ *
+ * <p>{@code sequential} makes the checks one after another with the blocking stub. {@code concurrent} makes them all
+ * at once with the async stub.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReBACFunctionsBenchmark {
+
+	private static final Consistency CONSISTENCY = Consistency.newBuilder().setFullyConsistent(true).build();
+	private static final SchemaObject USER = new SchemaObject(Schema.Type.USER, "user-id");
+
+	@Param({ "4", "32" })
+	private int checks;
+
+	// the time SpiceDB takes to answer each request
+	@Param({ "2" })
+	private long latencyMillis;
+
+	private FakeSpiceDB spiceDB;
+	private ManagedChannel channel;
+	private ReBACFunctions functions;
+	private final List<SchemaObject> projects = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		spiceDB = new FakeSpiceDB("ReBACFunctionsBenchmark").setLatencyMillis(latencyMillis).start();
+		channel = spiceDB.channel();
+		functions = new ReBACFunctions(channel, new BearerToken("key"), new ReBACCallLimiter(64), 5000);
+
+		projects.clear();
+		for (int i = 0; i < checks; i++) {
+			final SchemaObject project = new SchemaObject(Schema.Type.PROJECT, UUID.randomUUID().toString());
+			spiceDB.relate(USER, Schema.Relationship.READER, project);
+			projects.add(project);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		channel.shutdownNow();
+		spiceDB.close();
+	}
+
+	@Benchmark
+	public int sequential() throws Exception {
+		int granted = 0;
+		for (final SchemaObject project : projects) {
+			if (functions.checkPermission(USER, Schema.Permission.READ, project, CONSISTENCY)) {
+				granted++;
+			}
+		}
+		return granted;
+	}
+
+	@Benchmark
+	public int concurrent() {
+		final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+		for (final SchemaObject project : projects) {
+			results.add(functions.checkPermissionAsync(USER, Schema.Permission.READ, project, CONSISTENCY));
+		}
+
+		int granted = 0;
+		for (final CompletableFuture<Boolean> result : results) {
+			if (result.join()) {
+				granted++;
+			}
+		}
+		return granted;
+	}
+}
@@ -1,38 +1,86 @@
 package software.uncharted.terarium.hmiserver.aspects;
 
 import java.lang.reflect.Method;
-import java.util.Optional;
+import java.lang.reflect.Modifier;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.server.ResponseStatusException;
 import software.uncharted.terarium.hmiserver.annotations.HasProjectAccess;
 import software.uncharted.terarium.hmiserver.models.User;
-import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
 import software.uncharted.terarium.hmiserver.service.CurrentUserService;
 import software.uncharted.terarium.hmiserver.service.data.ProjectService;
+import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
+import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
 
 @Aspect
 @Component
 @Slf4j
 @RequiredArgsConstructor
-public class HasProjectAccessAspect {
+public class HasProjectAccessAspect implements SmartInitializingSingleton {
 
 	private final ProjectService projectService;
 	private final CurrentUserService currentUserService;
+	private final ApplicationContext applicationContext;
 
-	private static final ExpressionParser expressionParser = new SpelExpressionParser();
+	private static final String BASE_PACKAGE = "software.uncharted.terarium";
+	private static final String PERMISSION_ATTRIBUTE = HasProjectAccessAspect.class.getName() + ".permission:";
+
+	private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+	// The project id resolver of each checked method
+	private final Map<Method, ProjectIdResolver> resolvers = new ConcurrentHashMap<>();
+
+	/**
+	 * Resolve the SpEL expression of every checked method of the application at startup, rather than on its first call
+	 */
+	@Override
+	public void afterSingletonsInstantiated() {
+		for (final String beanName : applicationContext.getBeanDefinitionNames()) {
+			final Class<?> beanType = applicationContext.getType(beanName, false);
+			if (beanType == null || !beanType.getName().startsWith(BASE_PACKAGE)) {
+				continue;
+			}
+
+			final Class<?> type = ClassUtils.getUserClass(beanType);
+			final HasProjectAccess classAnnotation = type.getAnnotation(HasProjectAccess.class);
+			for (final Method method : type.getDeclaredMethods()) {
+				HasProjectAccess annotation = method.getAnnotation(HasProjectAccess.class);
+				if (annotation == null && classAnnotation != null && Modifier.isPublic(method.getModifiers())) {
+					annotation = classAnnotation;
+				}
+				final String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+				if (annotation == null || parameterNames == null) {
+					continue;
+				}
+
+				try {
+					resolvers.put(method, new ProjectIdResolver(annotation.value(), parameterNames));
+				} catch (final Exception e) {
+					// left to fail when the method is called
+					log.warn("Unable to parse expression: {} of {}", annotation.value(), method);
+				}
+			}
+		}
+		log.info("Resolved the project access expressions of {} methods", resolvers.size());
+	}
 
 	/**
 	 * This aspect will be called around all methods of classes that have the HasProjectAccess annotation.
@@ -76,36 +124,34 @@ public class HasProjectAccessAspect {
 	private Object hasProjectAccess(ProceedingJoinPoint joinPoint, HasProjectAccess annotation) throws Throwable {
 		// Use the spel string to get the id
 		String spel = annotation.value();
-		String projectId = null;
+		String projectId;
 		try {
-			StandardEvaluationContext context = new StandardEvaluationContext();
 			MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-			for (int i = 0; i < signature.getParameterNames().length; i++) {
-				context.setVariable(signature.getParameterNames()[i], joinPoint.getArgs()[i]);
-			}
-			Expression expression = expressionParser.parseExpression(spel);
-			final Object projectIdObj = expression.getValue(context, Object.class);
-			if (projectIdObj != null) {
-				projectId = projectIdObj.toString();
+			ProjectIdResolver resolver = resolvers.get(signature.getMethod());
+			if (resolver == null || !resolver.getSpel().equals(spel)) {
+				resolver = new ProjectIdResolver(spel, signature.getParameterNames());
+				resolvers.put(signature.getMethod(), resolver);
 			}
+			projectId = resolver.resolve(joinPoint.getArgs());
 		} catch (Exception e) {
 			log.error("Unable to parse expression: " + spel);
 			throw e;
 		}
 
-		if (projectId != null) {
-			// Get the project
-			final Optional<Project> project = projectService.getProject(UUID.fromString(projectId));
-			if (project.isEmpty()) {
-				throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unable to find project: " + projectId);
-			}
+		// Start checking access, which is only awaited once the project is found
+		final User user = currentUserService.get();
+		final CompletableFuture<Boolean> hasPermission = hasPermission(
+			projectId == null ? null : UUID.fromString(projectId),
+			user,
+			annotation.level()
+		);
+
+		if (projectId != null && !projectService.projectExists(UUID.fromString(projectId))) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unable to find project: " + projectId);
 		}
 
 		// Validate we have access
-		final User user = currentUserService.get();
-		if (
-			!projectService.hasPermission(projectId == null ? null : UUID.fromString(projectId), user, annotation.level())
-		) {
+		if (!ReBACService.await(hasPermission)) {
 			// This diverges from Pantera in that this null check is done after the permission check, as service users
 			// and admins may pass in null project IDs to bypass the permission check.
 			if (projectId == null) {
@@ -124,4 +170,30 @@ public class HasProjectAccessAspect {
 
 		return joinPoint.proceed();
 	}
+
+	/**
+	 * Check the permission once per request, as a request can call several checked methods for the same project
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<Boolean> hasPermission(
+		final UUID projectId,
+		final User user,
+		final Schema.Permission permission
+	) {
+		final RequestAttributes request = RequestContextHolder.getRequestAttributes();
+		if (request == null) {
+			return projectService.hasPermissionAsync(projectId, user, permission);
+		}
+
+		final String key = PERMISSION_ATTRIBUTE + projectId + ":" + user.getId() + ":" + permission;
+		CompletableFuture<Boolean> decision = (CompletableFuture<Boolean>) request.getAttribute(
+			key,
+			RequestAttributes.SCOPE_REQUEST
+		);
+		if (decision == null) {
+			decision = projectService.hasPermissionAsync(projectId, user, permission);
+			request.setAttribute(key, decision, RequestAttributes.SCOPE_REQUEST);
+		}
+		return decision;
+	}
 }
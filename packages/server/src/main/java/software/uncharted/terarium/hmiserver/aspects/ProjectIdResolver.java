@@ -0,0 +1,69 @@
+package software.uncharted.terarium.hmiserver.aspects;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import software.uncharted.terarium.hmiserver.annotations.HasProjectAccess;
+
+/**
+ * Resolves the project id of a call to a method checked by {@link HasProjectAccess}, from the SpEL expression of the
+ * annotation. It is created once per method: an expression that is just a parameter, such as the default
+ * {@code #projectId}, reads the argument directly, and any other expression is parsed once and compiled once it has
+ * been evaluated.
+ */
+class ProjectIdResolver {
+
+	private static final SpelExpressionParser expressionParser = new SpelExpressionParser(
+		new SpelParserConfiguration(SpelCompilerMode.MIXED, ProjectIdResolver.class.getClassLoader())
+	);
+
+	private static final Pattern PARAMETER = Pattern.compile("#(\\w+)");
+
+	private final String spel;
+	private final String[] parameterNames;
+
+	// the index of the parameter that the expression is, or -1 if it's more than a parameter
+	private final int parameterIndex;
+	private final Expression expression;
+
+	/**
+	 * @param spel           the expression of the annotation
+	 * @param parameterNames the parameter names of the method
+	 * @throws org.springframework.expression.ParseException if the expression is invalid
+	 */
+	ProjectIdResolver(final String spel, final String[] parameterNames) {
+		this.spel = spel;
+		this.parameterNames = parameterNames;
+
+		final Matcher parameter = PARAMETER.matcher(spel.trim());
+		parameterIndex = parameter.matches() ? Arrays.asList(parameterNames).indexOf(parameter.group(1)) : -1;
+		expression = parameterIndex >= 0 ? null : expressionParser.parseExpression(spel);
+	}
+
+	String getSpel() {
+		return spel;
+	}
+
+	/**
+	 * @param args the arguments of the call
+	 * @return the project id, or null if the expression evaluates to null
+	 */
+	String resolve(final Object[] args) {
+		final Object projectId;
+		if (parameterIndex >= 0) {
+			projectId = args[parameterIndex];
+		} else {
+			final StandardEvaluationContext context = new StandardEvaluationContext();
+			for (int i = 0; i < parameterNames.length; i++) {
+				context.setVariable(parameterNames[i], args[i]);
+			}
+			projectId = expression.getValue(context, Object.class);
+		}
+		return projectId == null ? null : projectId.toString();
+	}
+}
@@ -2,9 +2,12 @@ package software.uncharted.terarium.hmiserver.configuration;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -20,6 +23,12 @@ public class RabbitConfiguration {
 	@Value("${spring.rabbitmq.password}")
 	String password;
 
+	@Value("${terarium.rabbitmq.batch-size:50}")
+	Integer batchSize;
+
+	@Value("${terarium.rabbitmq.batch-receive-timeout-millis:10}")
+	Long batchReceiveTimeoutMillis;
+
 	@Bean
 	public RabbitAdmin rabbitAdmin() throws URISyntaxException {
 		URI rabbitAddress = new URI(rabbitAddresses);
@@ -30,4 +39,23 @@ public class RabbitConfiguration {
 		connectionFactory.setPassword(password);
 		return new RabbitAdmin(connectionFactory);
 	}
+
+	/**
+	 * A listener container factory for listeners that take a list of messages: the messages that are waiting, up to
+	 * the batch size, are delivered together instead of one at a time.
+	 */
+	@Bean
+	public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+		final SimpleRabbitListenerContainerFactoryConfigurer configurer,
+		final ConnectionFactory connectionFactory
+	) {
+		final SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+		configurer.configure(factory, connectionFactory);
+		factory.setBatchListener(true);
+		factory.setConsumerBatchEnabled(true);
+		factory.setBatchSize(batchSize);
+		// how long to wait for another message before delivering a batch that isn't full
+		factory.setReceiveTimeout(batchReceiveTimeoutMillis);
+		return factory;
+	}
 }
@@ -13,12 +13,9 @@ import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -43,6 +40,7 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import software.uncharted.terarium.hmiserver.annotations.HasProjectAccess;
 import software.uncharted.terarium.hmiserver.annotations.TSModel;
 import software.uncharted.terarium.hmiserver.annotations.TSOptional;
@@ -55,15 +53,18 @@ import software.uncharted.terarium.hmiserver.models.dataservice.project.Contribu
 import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
 import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectAsset;
 import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectExport;
+import software.uncharted.terarium.hmiserver.models.dataservice.simulation.ProgressState;
 import software.uncharted.terarium.hmiserver.models.permissions.PermissionRelationships;
 import software.uncharted.terarium.hmiserver.models.permissions.PermissionUser;
 import software.uncharted.terarium.hmiserver.security.Roles;
 import software.uncharted.terarium.hmiserver.service.ClientEventService;
 import software.uncharted.terarium.hmiserver.service.CurrentUserService;
+import software.uncharted.terarium.hmiserver.service.ProjectCloneService;
 import software.uncharted.terarium.hmiserver.service.TerariumAssetCloneService;
 import software.uncharted.terarium.hmiserver.service.UserService;
 import software.uncharted.terarium.hmiserver.service.data.ITerariumAssetService;
 import software.uncharted.terarium.hmiserver.service.data.ProjectAssetService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectListService;
 import software.uncharted.terarium.hmiserver.service.data.ProjectPermissionsService;
 import software.uncharted.terarium.hmiserver.service.data.ProjectSearchService;
 import software.uncharted.terarium.hmiserver.service.data.ProjectSearchService.ProjectSearchResponse;
@@ -95,9 +96,11 @@ public class ProjectController {
 	final ReBACService reBACService;
 	final TerariumAssetServices terariumAssetServices;
 	final TerariumAssetCloneService cloneService;
+	final ProjectCloneService projectCloneService;
 	final UserService userService;
 	final ObjectMapper objectMapper;
 	final ProjectPermissionsService projectPermissionsService;
+	final ProjectListService projectListService;
 	final ProjectSearchService projectSearchService;
 
 	final ClientEventService clientEventService;
@@ -189,61 +192,14 @@ public class ProjectController {
 		// Empty all the non-necessary information to speed up getting all the projects
 		projects.forEach(project -> project.setOverviewContent(null));
 
-		projects.forEach(project -> {
-			final RebacProject rebacProject = new RebacProject(project.getId(), reBACService);
-
-			// Set the user permission for the project. If we are unable to get the user
-			// permission, we remove the project.
-			try {
-				project.setUserPermission(rebacUser.getPermissionFor(rebacProject));
-			} catch (final Exception e) {
-				log.error(
-					"Failed to get user permissions from SpiceDB for project {}... Removing Project from list.",
-					project.getId(),
-					e
-				);
-				projects.remove(project);
-				return;
-			}
-
-			// Set the public status for the project. If we are unable to get the public
-			// status, we default to private.
-			try {
-				project.setPublicProject(rebacProject.isPublic());
-			} catch (final Exception e) {
-				log.error("Failed to get project {} public status from SpiceDB... Defaulting to private.", project.getId(), e);
-				project.setPublicProject(false);
-			}
-
-			// Set the contributors for the project. If we are unable to get the
-			// contributors, we default to an empty
-			// list.
-			final List<Contributor> contributors;
-			try {
-				contributors = projectPermissionsService.getContributors(rebacProject);
-				if (project.getMetadata() == null) {
-					project.setMetadata(new HashMap<>());
-				}
-				project
-					.getMetadata()
-					.put("contributor-count", Integer.toString(contributors == null ? 0 : contributors.size()));
-			} catch (final Exception e) {
-				log.error("Failed to get project contributors from SpiceDB for project {}", project.getId(), e);
-			}
-
-			// Set the author name for the project. If we are unable to get the author name,
-			// we don't set a value.
-			try {
-				if (project.getUserId() != null) {
-					final String authorName = userService.getById(project.getUserId()).getName();
-					if (authorName != null) {
-						project.setUserName(authorName);
-					}
-				}
-			} catch (final Exception e) {
-				log.error("Failed to get project author name from postgres db for project {}", project.getId(), e);
-			}
-		});
+		// Set the user permission, public status, contributor count and author name of every project at once. If we are
+		// unable to get the user permissions, none of the projects can be listed.
+		try {
+			projectListService.populateProjects(rebacUser, projects);
+		} catch (final Exception e) {
+			log.error("Failed to get user permissions from SpiceDB for projects", e);
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("rebac.service-unavailable"));
+		}
 
 		return ResponseEntity.ok(projects);
 	}
@@ -543,6 +499,8 @@ public class ProjectController {
 
 			final List<ProjectAsset> assets = projectAssetService.getProjectAssets(id);
 
+			// queue every asset before waiting so that they are embedded in batches
+			final List<Future<Void>> futures = new ArrayList<>();
 			for (final ProjectAsset projectAsset : assets) {
 				try {
 					final ITerariumAssetService<?> terariumAssetService = terariumAssetServices.getServiceByType(
@@ -553,12 +511,19 @@ public class ProjectController {
 
 					final Future<Void> future = projectSearchService.generateAndUpsertProjectAssetEmbeddings(id, asset.get());
 					if (future != null) {
-						future.get();
+						futures.add(future);
 					}
 				} catch (final Exception e) {
 					log.error("Error updating project asset in index, skipping", e);
 				}
 			}
+			for (final Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (final Exception e) {
+					log.error("Error updating project asset in index, skipping", e);
+				}
+			}
 
 			return ResponseEntity.ok(originalProject.get());
 		} catch (final Exception e) {
@@ -597,7 +562,6 @@ public class ProjectController {
 	@HasProjectAccess(value = "#id")
 	@Secured(Roles.USER)
 	public ResponseEntity<Project> copyProject(@PathVariable("id") final UUID id) {
-		final Future<Project> project;
 		final Project clonedProject;
 
 		final String userId = currentUserService.get().getId();
@@ -614,28 +578,16 @@ public class ProjectController {
 
 		try {
 			notificationInterface.sendMessage("Cloning the Project...");
-
-			project = executor.submit(() -> {
-				log.info("Staring Cloning Process...");
-				final ProjectExport export = cloneService.exportProject(id);
-				export.getProject().setName("Copying " + export.getProject().getName());
-				log.info("Cloning...");
-				final Project cloneProject = cloneService.importProject(userId, userName, export);
-				log.info("Cloned...");
-				return cloneProject;
-			});
+			final Optional<Project> project = projectCloneService.createProjectClone(id, userId, userName);
+			if (project.isEmpty()) {
+				notificationInterface.sendFinalMessage("Project not found", ProgressState.FAILED);
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, messages.get("projects.not-found"));
+			}
 			clonedProject = project.get();
-		} catch (final ExecutionException e) {
-			log.error("Execution Exception exporting project", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("postgres.service-unavailable"));
-		} catch (final CancellationException e) {
-			log.error("Cancelled exporting project", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("generic.io-error.write"));
-		} catch (final InterruptedException e) {
-			log.error("Interrupted exporting project", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("postgres.service-unavailable"));
+		} catch (final ResponseStatusException e) {
+			throw e;
 		} catch (final Exception e) {
-			log.error("Error exporting project", e);
+			log.error("Error cloning project", e);
 			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("postgres.service-unavailable"));
 		}
 
@@ -656,7 +608,10 @@ public class ProjectController {
 				messages.get("rebac.relationship-already-exists")
 			);
 		}
-		notificationInterface.sendFinalMessage("Cloning complete");
+
+		// the assets are cloned in the background, and their progress is sent to the notification group
+		projectCloneService.cloneProjectAssets(id, clonedProject, notificationInterface);
+
 		return ResponseEntity.status(HttpStatus.CREATED).body(clonedProject);
 	}
 
@@ -689,21 +644,29 @@ public class ProjectController {
 	@GetMapping("/export/{id}")
 	@HasProjectAccess(value = "#id")
 	@Secured(Roles.USER)
-	public ResponseEntity<byte[]> exportProject(@PathVariable("id") final UUID id) {
-		try {
-			final ProjectExport export = cloneService.exportProject(id);
+	public ResponseEntity<StreamingResponseBody> exportProject(@PathVariable("id") final UUID id) {
+		if (projectService.getProject(id).isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, messages.get("projects.not-found"));
+		}
+
+		// the archive is written to the response as it is built, so it is never held in memory
+		final StreamingResponseBody body = outputStream -> {
+			try {
+				cloneService.exportProject(id, outputStream);
+			} catch (final Exception e) {
+				// the response has already started, all that can be done is to abort it
+				log.error("Error exporting project", e);
+				throw new IOException("Error exporting project " + id, e);
+			}
+		};
 
-			final HttpHeaders headers = new HttpHeaders();
-			headers.setContentType(MediaType.parseMediaType("application/zip"));
-			final String filename = "project-" + id + ".zip";
-			headers.setContentDispositionFormData(filename, filename);
-			headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
+		final HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType("application/zip"));
+		final String filename = "project-" + id + ".zip";
+		headers.setContentDispositionFormData(filename, filename);
+		headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
 
-			return new ResponseEntity<>(export.getAsZipFile(), headers, HttpStatus.OK);
-		} catch (final Exception e) {
-			log.error("Error exporting project", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("postgres.service-unavailable"));
-		}
+		return new ResponseEntity<>(body, headers, HttpStatus.OK);
 	}
 
 	@Operation(summary = "Import a project")
@@ -743,22 +706,17 @@ public class ProjectController {
 			return ResponseEntity.badRequest().build();
 		}
 
-		final ProjectExport projectExport = new ProjectExport();
-		try {
-			projectExport.loadFromZipFile(input.getInputStream());
-		} catch (final Exception e) {
-			log.error("Error parsing project", e);
-			return ResponseEntity.badRequest().build();
-		}
-
 		final String userId = currentUserService.get().getId();
 		final String userName = userService.getById(userId).getName();
 
 		final Project project;
 		try {
 			log.info("Importing project");
-			project = cloneService.importProject(userId, userName, projectExport);
+			project = cloneService.importProject(userId, userName, input.getInputStream());
 			log.info("Project imported");
+		} catch (final IllegalArgumentException e) {
+			log.error("Error parsing project", e);
+			return ResponseEntity.badRequest().build();
 		} catch (final Exception e) {
 			log.error("Error importing project", e);
 			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("postgres.service-unavailable"));
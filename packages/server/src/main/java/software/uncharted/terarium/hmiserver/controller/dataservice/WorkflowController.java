@@ -9,7 +9,11 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,8 +32,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 import software.uncharted.terarium.hmiserver.annotations.HasProjectAccess;
-import software.uncharted.terarium.hmiserver.models.ClientEvent;
-import software.uncharted.terarium.hmiserver.models.ClientEventType;
 import software.uncharted.terarium.hmiserver.models.dataservice.ResponseDeleted;
 import software.uncharted.terarium.hmiserver.models.dataservice.workflow.InputPort;
 import software.uncharted.terarium.hmiserver.models.dataservice.workflow.OutputPort;
@@ -38,9 +40,11 @@ import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflo
 import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
 import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
 import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowPositions;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowSnapshot;
 import software.uncharted.terarium.hmiserver.security.Roles;
 import software.uncharted.terarium.hmiserver.service.ClientEventService;
 import software.uncharted.terarium.hmiserver.service.CurrentUserService;
+import software.uncharted.terarium.hmiserver.service.WorkflowEventService;
 import software.uncharted.terarium.hmiserver.service.data.WorkflowService;
 import software.uncharted.terarium.hmiserver.utils.Messages;
 import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
@@ -57,30 +61,34 @@ public class WorkflowController {
 
 	final ClientEventService clientEventService;
 
+	final WorkflowEventService workflowEventService;
+
 	final Messages messages;
 
-	private void broadCastWorkflowChange(Workflow workflow, UUID projectId) {
-		final String userId = currentUserService.get().getId();
-		final ClientEvent<Workflow> event = ClientEvent.<Workflow>builder()
-			.type(ClientEventType.WORKFLOW_UPDATE)
-			.data(workflow)
-			.userId(userId)
-			.build();
+	private void broadCastWorkflowChange(final JsonNode before, final Workflow workflow, final UUID projectId) {
+		try {
+			workflowEventService.publish(before, workflow, projectId, currentUserService.get().getId());
+		} catch (final Exception e) {
+			log.error("Unable to notify users of update to workflow", e);
+		}
+	}
+
+	private static <E> Set<UUID> ids(final List<E> elements, final Function<E, UUID> getId) {
+		return elements == null ? Set.of() : elements.stream().map(getId).collect(Collectors.toSet());
+	}
 
+	// before and after are captured with the same elements
+	private void broadCastWorkflowChange(final JsonNode before, final JsonNode after, final UUID projectId) {
 		try {
-			clientEventService.sendToAllUsers(event);
-			// https://github.com/DARPA-ASKEM/terarium/issues/6008
-			// final RebacProject rebacProject = new RebacProject(projectId, reBACService);
-			// if (rebacProject.isPublic()) {
-			// 	clientEventService.sendToAllUsers(event);
-			// } else {
-			// 	final List<String> userIds = projectPermissionsService
-			// 		.getReaders(rebacProject)
-			// 		.stream()
-			// 		.map(Contributor::getUserId)
-			// 		.toList();
-			// 	clientEventService.sendToUsers(event, userIds);
-			// }
+			workflowEventService.publish(before, after, projectId, currentUserService.get().getId());
+		} catch (final Exception e) {
+			log.error("Unable to notify users of update to workflow", e);
+		}
+	}
+
+	private void broadCastWorkflowPositionChange(final JsonNode before, final JsonNode after, final UUID projectId) {
+		try {
+			workflowEventService.publishCoalesced(before, after, projectId, currentUserService.get().getId());
 		} catch (final Exception e) {
 			log.error("Unable to notify users of update to workflow", e);
 		}
@@ -116,6 +124,78 @@ public class WorkflowController {
 		return workflow.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
+	@GetMapping("/{id}/snapshot")
+	@Secured(Roles.USER)
+	@Operation(summary = "Gets workflow by ID with the version of the last change event it includes")
+	@HasProjectAccess
+	@ApiResponses(
+		value = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Workflow found.",
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON_VALUE,
+					schema = @io.swagger.v3.oas.annotations.media.Schema(implementation = WorkflowSnapshot.class)
+				)
+			),
+			@ApiResponse(responseCode = "404", description = "There was no workflow found", content = @Content),
+			@ApiResponse(
+				responseCode = "500",
+				description = "There was an issue retrieving the workflow from the data store",
+				content = @Content
+			)
+		}
+	)
+	public ResponseEntity<WorkflowSnapshot> getWorkflowSnapshot(
+		@PathVariable("id") final UUID id,
+		@RequestParam(name = "project-id", required = false) final UUID projectId
+	) {
+		// Read the version first: a change made in between is in the workflow and in a later delta, which is harmless
+		final long version = workflowEventService.getVersion(id);
+		final Optional<Workflow> workflow = workflowService.getAsset(id);
+		return workflow
+			.map(w -> ResponseEntity.ok(new WorkflowSnapshot().setVersion(version).setWorkflow(w)))
+			.orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+	@PutMapping("/{id}/subscription")
+	@Secured(Roles.USER)
+	@Operation(summary = "Subscribe to the change events of a workflow, renewing the subscription if it exists")
+	@HasProjectAccess
+	@ApiResponses(
+		value = {
+			@ApiResponse(responseCode = "200", description = "Subscribed to the workflow", content = @Content),
+			@ApiResponse(responseCode = "500", description = "There was an issue subscribing", content = @Content)
+		}
+	)
+	public ResponseEntity<Void> subscribe(
+		@PathVariable("id") final UUID id,
+		@RequestParam(name = "subscriber-id", required = false) final UUID subscriberId,
+		@RequestParam(name = "project-id", required = false) final UUID projectId
+	) {
+		clientEventService.subscribe(id, currentUserService.get().getId(), subscriberId);
+		return ResponseEntity.ok().build();
+	}
+
+	@DeleteMapping("/{id}/subscription")
+	@Secured(Roles.USER)
+	@Operation(summary = "Unsubscribe from the change events of a workflow")
+	@HasProjectAccess
+	@ApiResponses(
+		value = {
+			@ApiResponse(responseCode = "200", description = "Unsubscribed from the workflow", content = @Content),
+			@ApiResponse(responseCode = "500", description = "There was an issue unsubscribing", content = @Content)
+		}
+	)
+	public ResponseEntity<Void> unsubscribe(
+		@PathVariable("id") final UUID id,
+		@RequestParam(name = "subscriber-id", required = false) final UUID subscriberId,
+		@RequestParam(name = "project-id", required = false) final UUID projectId
+	) {
+		clientEventService.unsubscribe(id, currentUserService.get().getId(), subscriberId);
+		return ResponseEntity.ok().build();
+	}
+
 	@PostMapping
 	@Secured(Roles.USER)
 	@Operation(summary = "Create a new workflow")
@@ -170,10 +250,16 @@ public class WorkflowController {
 		@RequestParam(name = "project-id", required = false) final UUID projectId
 	) {
 		workflow.setId(id);
+		// Only the elements sent can change, the delta is of those only
+		final Set<UUID> nodeIds = ids(workflow.getNodes(), WorkflowNode::getId);
+		final Set<UUID> edgeIds = ids(workflow.getEdges(), WorkflowEdge::getId);
+		final AtomicReference<JsonNode> before = new AtomicReference<>();
 		final Optional<Workflow> updated;
 
 		try {
-			updated = workflowService.updateAsset(workflow, projectId);
+			updated = workflowService.updateAsset(workflow, projectId, stored ->
+				before.set(workflowEventService.capture(stored, nodeIds, edgeIds))
+			);
 		} catch (final IOException e) {
 			log.error("Unable to update workflow", e);
 			throw new ResponseStatusException(
@@ -190,7 +276,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before.get(), workflowEventService.capture(updated.get(), nodeIds, edgeIds), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -217,7 +303,6 @@ public class WorkflowController {
 		@PathVariable("id") final UUID id,
 		@RequestParam(name = "project-id", required = false) final UUID projectId
 	) {
-		final ClientEvent<Void> event = ClientEvent.<Void>builder().type(ClientEventType.WORKFLOW_UPDATE).build();
 		try {
 			workflowService.deleteAsset(id, projectId);
 		} catch (final Exception e) {
@@ -229,23 +314,8 @@ public class WorkflowController {
 			);
 		}
 
-		try {
-			clientEventService.sendToAllUsers(event);
-			// https://github.com/DARPA-ASKEM/terarium/issues/6008
-			// if (rebacProject.isPublic()) {
-			// 	clientEventService.sendToAllUsers(event);
-			// } else {
-			// 	final List<String> userIds = projectPermissionsService
-			// 		.getReaders(rebacProject)
-			// 		.stream()
-			// 		.map(Contributor::getUserId)
-			// 		.toList();
-			// 	clientEventService.sendToUsers(event, userIds);
-			// }
-		} catch (final Exception e) {
-			log.error("Unable to notify users of deleted  workflow", e);
-			// No response status exception here because the workflow was deleted successfully, and it's just the update that's failed.
-		}
+		// No response status exception if this fails because the workflow was deleted successfully
+		workflowEventService.publishDelete(id, projectId, currentUserService.get().getId());
 
 		return ResponseEntity.ok(new ResponseDeleted("Workflow", id));
 	}
@@ -279,6 +349,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.selectOutput(workflow.get(), nodeId, outputId);
@@ -290,7 +361,7 @@ public class WorkflowController {
 				messages.get("postgres.service-unavailable")
 			);
 		}
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
@@ -323,10 +394,13 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final Set<UUID> nodeIds = payload.getNodes().keySet();
+		final Set<UUID> edgeIds = payload.getEdges().keySet();
+		final JsonNode before = workflowEventService.capture(workflow.get(), nodeIds, edgeIds);
 
 		try {
 			workflowService.updatePositions(workflow.get(), payload);
-			updated = workflowService.updateAsset(workflow.get(), projectId);
+			updated = workflowService.updateElements(workflow.get(), nodeIds, edgeIds);
 		} catch (final Exception e) {
 			log.error("Unable to update workflow", e);
 			throw new ResponseStatusException(
@@ -335,7 +409,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowPositionChange(before, workflowEventService.capture(updated.get(), nodeIds, edgeIds), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -367,10 +441,11 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get(), payload.keySet(), List.of());
 
 		try {
 			workflowService.updateNodeState(workflow.get(), payload);
-			updated = workflowService.updateAsset(workflow.get(), projectId);
+			updated = workflowService.updateElements(workflow.get(), payload.keySet(), List.of());
 		} catch (final Exception e) {
 			log.error("Unable to update workflow", e);
 			throw new ResponseStatusException(
@@ -379,7 +454,8 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		final JsonNode after = workflowEventService.capture(updated.get(), payload.keySet(), List.of());
+		broadCastWorkflowChange(before, after, projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -411,10 +487,11 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get(), payload.keySet(), List.of());
 
 		try {
 			workflowService.updateNodeStatus(workflow.get(), payload);
-			updated = workflowService.updateAsset(workflow.get(), projectId);
+			updated = workflowService.updateElements(workflow.get(), payload.keySet(), List.of());
 		} catch (final Exception e) {
 			log.error("Unable to update workflow", e);
 			throw new ResponseStatusException(
@@ -423,7 +500,8 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		final JsonNode after = workflowEventService.capture(updated.get(), payload.keySet(), List.of());
+		broadCastWorkflowChange(before, after, projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -463,6 +541,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.appendInput(workflow.get(), nodeId, payload);
@@ -475,7 +554,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -508,6 +587,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.appendOutput(workflow.get(), nodeId, payload.getOutput(), payload.getNodeState());
@@ -520,7 +600,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -552,6 +632,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.addNode(workflow.get(), node);
@@ -564,7 +645,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -596,6 +677,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.removeNodes(workflow.get(), nodes);
@@ -608,7 +690,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -640,6 +722,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.addEdge(workflow.get(), edge);
@@ -652,7 +735,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -684,6 +767,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.removeEdges(workflow.get(), edges);
@@ -696,7 +780,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -728,6 +812,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.branchWorkflow(workflow.get(), nodeId, projectId);
@@ -740,7 +825,7 @@ public class WorkflowController {
 			);
 		}
 
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -772,6 +857,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.addOrUpdateAnnotation(workflow.get(), annotation);
@@ -783,7 +869,7 @@ public class WorkflowController {
 				messages.get("workflow.update.annotation")
 			);
 		}
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 
@@ -815,6 +901,7 @@ public class WorkflowController {
 		if (workflow.isPresent() == false) {
 			return ResponseEntity.notFound().build();
 		}
+		final JsonNode before = workflowEventService.capture(workflow.get());
 
 		try {
 			workflowService.removeAnnotation(workflow.get(), annotationId);
@@ -826,7 +913,7 @@ public class WorkflowController {
 				messages.get("workflow.update.annotation")
 			);
 		}
-		broadCastWorkflowChange(updated.get(), projectId);
+		broadCastWorkflowChange(before, updated.get(), projectId);
 		return updated.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 	}
 }
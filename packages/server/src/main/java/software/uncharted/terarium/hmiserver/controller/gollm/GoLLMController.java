@@ -17,7 +17,9 @@ import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import javax.imageio.ImageIO;
 import lombok.Data;
@@ -134,7 +136,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createConfigureModelFromDocumentTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createConfigureModelFromDocumentTask(
 		@RequestParam(name = "model-id", required = true) final UUID modelId,
 		@RequestParam(name = "document-id", required = true) final UUID documentId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -196,28 +198,18 @@ public class GoLLMController {
 		props.setNodeId(nodeId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@Data
@@ -249,7 +241,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createConfigureModelFromDatasetTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createConfigureModelFromDatasetTask(
 		@RequestParam(name = "model-id", required = true) final UUID modelId,
 		@RequestParam(name = "dataset-id", required = true) final UUID datasetId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -329,28 +321,18 @@ public class GoLLMController {
 		props.setNodeId(nodeId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@GetMapping("/interventions-from-document")
@@ -375,7 +357,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createInterventionsFromDocumentTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createInterventionsFromDocumentTask(
 		@RequestParam(name = "model-id", required = true) final UUID modelId,
 		@RequestParam(name = "document-id", required = true) final UUID documentId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -436,28 +418,18 @@ public class GoLLMController {
 		props.setNodeId(nodeId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@GetMapping("/interventions-from-dataset")
@@ -482,7 +454,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createInterventionsFromDatasetTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createInterventionsFromDatasetTask(
 		@RequestParam(name = "model-id", required = true) final UUID modelId,
 		@RequestParam(name = "dataset-id", required = true) final UUID datasetId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -554,28 +526,18 @@ public class GoLLMController {
 		props.setNodeId(nodeId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@GetMapping("/compare-models")
@@ -600,7 +562,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createCompareModelsTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createCompareModelsTask(
 		@RequestParam(name = "model-ids", required = true) final List<UUID> modelIds,
 		@RequestParam(name = "goal", required = false) final String goal,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -651,28 +613,18 @@ public class GoLLMController {
 		props.setNodeId(nodeId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@PostMapping("/generate-summary")
@@ -701,7 +653,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createGenerateSummaryTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createGenerateSummaryTask(
 		@RequestParam(name = "mode", required = false, defaultValue = "SYNC") final TaskMode mode,
 		@RequestParam(name = "previousSummaryId", required = false) final UUID previousSummaryId,
 		@RequestParam(name = "project-id", required = false) final UUID projectId,
@@ -732,28 +684,18 @@ public class GoLLMController {
 		props.setPreviousSummaryId(previousSummaryId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.error("Timeout while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.error("Interrupted while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	/**
@@ -790,7 +732,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createEnrichModelMetadataTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createEnrichModelMetadataTask(
 		@RequestParam(name = "model-id", required = true) final UUID modelId,
 		@RequestParam(name = "document-id", required = false) final UUID documentId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -831,28 +773,18 @@ public class GoLLMController {
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.write"));
 		}
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed: {}", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@GetMapping("/enrich-dataset")
@@ -877,7 +809,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createEnrichDatasetTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createEnrichDatasetTask(
 		@RequestParam(name = "dataset-id", required = true) final UUID datasetId,
 		@RequestParam(name = "document-id", required = false) final UUID documentId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
@@ -914,28 +846,18 @@ public class GoLLMController {
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.write"));
 		}
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@Data
@@ -962,7 +884,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> equationsFromImageTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> equationsFromImageTask(
 		@RequestParam(name = "project-id", required = false) final UUID projectId,
 		@RequestParam(name = "mode", required = false, defaultValue = "ASYNC") final TaskMode mode,
 		@RequestBody final EquationsFromImageBody image
@@ -1013,28 +935,18 @@ public class GoLLMController {
 		props.setProjectId(projectId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@Data
@@ -1071,7 +983,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createGenerateResponseTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createGenerateResponseTask(
 		@RequestParam(name = "mode", required = false, defaultValue = "SYNC") final TaskMode mode,
 		@RequestParam(name = "project-id", required = false) final UUID projectId,
 		@RequestBody final ChartAnnotationRequestBody body
@@ -1100,27 +1012,18 @@ public class GoLLMController {
 
 		req.setProjectId(projectId);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.error("Timeout while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.error("Interrupted while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
-		return ResponseEntity.ok().body(resp);
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
 	}
 
 	@PutMapping("/{task-id}")
@@ -1173,7 +1076,7 @@ public class GoLLMController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<TaskResponse> createDocumentQuestionTask(
+	public CompletableFuture<ResponseEntity<TaskResponse>> createDocumentQuestionTask(
 		@RequestParam(name = "mode", required = false, defaultValue = "SYNC") final TaskMode mode,
 		@RequestParam(name = "project-id", required = false) final UUID projectId,
 		@RequestParam(name = "document-id", required = true) final UUID documentId,
@@ -1220,27 +1123,39 @@ public class GoLLMController {
 		props.setProjectId(projectId);
 		req.setAdditionalProperties(props);
 
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTask(mode, req);
-			if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
-		} catch (final TimeoutException e) {
-			log.error("Timeout while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
-		} catch (final InterruptedException e) {
-			log.error("Interrupted while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response: {}", e.getMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
-		}
+		return taskService
+			.runTaskNonBlocking(mode, req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (mode == TaskMode.SYNC && resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStderr());
+				}
+				return ResponseEntity.ok().body(resp);
+			});
+	}
 
-		return ResponseEntity.ok().body(resp);
+	/** Map the exception a task future completed with to the response returned to the client. */
+	private ResponseStatusException handleTaskException(final Throwable throwable) {
+		final Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+			? throwable.getCause()
+			: throwable;
+		if (e instanceof JsonProcessingException) {
+			log.error("Unable to serialize input", e);
+			return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.json-processing"));
+		} else if (e instanceof TimeoutException) {
+			log.warn("Timeout while waiting for task response", e);
+			return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.timeout"));
+		} else if (e instanceof InterruptedException) {
+			log.warn("Interrupted while waiting for task response", e);
+			return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.gollm.interrupted"));
+		} else if (e instanceof RejectedExecutionException) {
+			log.warn("Too many tasks queued", e);
+			return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.gollm.busy"));
+		}
+		log.error("Error while waiting for task response", e);
+		return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.gollm.execution-failure"));
 	}
 }
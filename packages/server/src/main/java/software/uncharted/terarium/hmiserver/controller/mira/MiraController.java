@@ -13,7 +13,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -132,7 +134,7 @@ public class MiraController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<JsonNode> compareModelsConcepts(
+	public CompletableFuture<ResponseEntity<JsonNode>> compareModelsConcepts(
 		@RequestBody final CompareModelsConceptsRequest request,
 		@RequestParam(name = "project-id", required = false) final UUID projectId
 	) {
@@ -181,36 +183,27 @@ public class MiraController {
 		}
 
 		// Send the task request
-		final TaskResponse taskResponse;
-		try {
-			taskResponse = taskService.runTaskSync(taskRequest);
-			if (taskResponse.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task Failed", taskResponse.getStderr());
-				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, taskResponse.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.mira.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.execution-failure"));
-		}
-
-		final JsonNode comparisonResult;
-		try {
-			comparisonResult = objectMapper.readValue(taskResponse.getOutput(), JsonNode.class);
-		} catch (final IOException e) {
-			log.error("Unable to deserialize output", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
-		}
-
-		return ResponseEntity.ok().body(comparisonResult);
+		return taskService
+			.runTaskSyncAsync(taskRequest)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(taskResponse -> {
+				if (taskResponse.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", taskResponse.getStderr());
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST, taskResponse.getStderr());
+				}
+
+				final JsonNode comparisonResult;
+				try {
+					comparisonResult = objectMapper.readValue(taskResponse.getOutput(), JsonNode.class);
+				} catch (final IOException e) {
+					log.error("Unable to deserialize output", e);
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
+				}
+
+				return ResponseEntity.ok().body(comparisonResult);
+			});
 	}
 
 	@PostMapping("/simplify")
@@ -229,7 +222,7 @@ public class MiraController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<JsonNode> simplifyAMR(@RequestBody final JsonNode model) {
+	public CompletableFuture<ResponseEntity<JsonNode>> simplifyAMR(@RequestBody final JsonNode model) {
 		final TaskRequest req = new TaskRequest();
 		req.setType(TaskType.MIRA);
 
@@ -244,35 +237,26 @@ public class MiraController {
 		req.setUserId(currentUserService.get().getId());
 
 		// send the request
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTaskSync(req);
-			if (resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task Failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.mira.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.execution-failure"));
-		}
-
-		final JsonNode result;
-		try {
-			result = objectMapper.readValue(resp.getOutput(), JsonNode.class);
-		} catch (final IOException e) {
-			log.error("Unable to deserialize output", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
-		}
-		return ResponseEntity.ok().body(result);
+		return taskService
+			.runTaskSyncAsync(req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
+				}
+
+				final JsonNode result;
+				try {
+					result = objectMapper.readValue(resp.getOutput(), JsonNode.class);
+				} catch (final IOException e) {
+					log.error("Unable to deserialize output", e);
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
+				}
+				return ResponseEntity.ok().body(result);
+			});
 	}
 
 	@PostMapping("/amr-to-mmt")
@@ -291,7 +275,7 @@ public class MiraController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<JsonNode> convertAMRtoMMT(@RequestBody final JsonNode model) {
+	public CompletableFuture<ResponseEntity<JsonNode>> convertAMRtoMMT(@RequestBody final JsonNode model) {
 		final TaskRequest req = new TaskRequest();
 		req.setType(TaskType.MIRA);
 
@@ -306,36 +290,27 @@ public class MiraController {
 		req.setUserId(currentUserService.get().getId());
 
 		// send the request
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTaskSync(req);
-			if (resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task Failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.mira.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.execution-failure"));
-		}
-
-		final JsonNode mmtInfo;
-		try {
-			mmtInfo = objectMapper.readValue(resp.getOutput(), JsonNode.class);
-		} catch (final IOException e) {
-			log.error("Unable to deserialize output", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
-		}
-
-		return ResponseEntity.ok().body(mmtInfo);
+		return taskService
+			.runTaskSyncAsync(req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
+				}
+
+				final JsonNode mmtInfo;
+				try {
+					mmtInfo = objectMapper.readValue(resp.getOutput(), JsonNode.class);
+				} catch (final IOException e) {
+					log.error("Unable to deserialize output", e);
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
+				}
+
+				return ResponseEntity.ok().body(mmtInfo);
+			});
 	}
 
 	@PostMapping("/model-to-latex")
@@ -354,7 +329,7 @@ public class MiraController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<JsonNode> generateModelLatex(@RequestBody final JsonNode model) {
+	public CompletableFuture<ResponseEntity<JsonNode>> generateModelLatex(@RequestBody final JsonNode model) {
 		// create request:
 		final TaskRequest req = new TaskRequest();
 		req.setType(TaskType.MIRA);
@@ -370,36 +345,27 @@ public class MiraController {
 		req.setUserId(currentUserService.get().getId());
 
 		// send the request
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTaskSync(req);
-			if (resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task Failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.mira.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.execution-failure"));
-		}
-
-		final JsonNode latexResponse;
-		try {
-			latexResponse = objectMapper.readValue(resp.getOutput(), JsonNode.class);
-		} catch (final IOException e) {
-			log.error("Unable to deserialize output", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
-		}
-
-		return ResponseEntity.ok().body(latexResponse);
+		return taskService
+			.runTaskSyncAsync(req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
+				}
+
+				final JsonNode latexResponse;
+				try {
+					latexResponse = objectMapper.readValue(resp.getOutput(), JsonNode.class);
+				} catch (final IOException e) {
+					log.error("Unable to deserialize output", e);
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
+				}
+
+				return ResponseEntity.ok().body(latexResponse);
+			});
 	}
 
 	@PostMapping("/convert-and-create-model")
@@ -419,7 +385,7 @@ public class MiraController {
 			@ApiResponse(responseCode = "500", description = "There was an issue dispatching the request", content = @Content)
 		}
 	)
-	public ResponseEntity<Model> convertAndCreateModel(
+	public CompletableFuture<ResponseEntity<Model>> convertAndCreateModel(
 		@RequestBody final ModelConversionRequest conversionRequest,
 		@RequestParam(name = "project-id", required = false) final UUID projectId
 	) {
@@ -477,42 +443,33 @@ public class MiraController {
 		}
 
 		// send the request
-		final TaskResponse resp;
-		try {
-			resp = taskService.runTaskSync(req);
-			if (resp.getStatus() != TaskStatus.SUCCESS) {
-				log.error("Task Failed", resp.getStderr());
-				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
-			}
-		} catch (final JsonProcessingException e) {
-			log.error("Unable to serialize input", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.json-processing"));
-		} catch (final TimeoutException e) {
-			log.warn("Timeout while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.timeout"));
-		} catch (final InterruptedException e) {
-			log.warn("Interrupted while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.mira.interrupted"));
-		} catch (final ExecutionException e) {
-			log.error("Error while waiting for task response", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.execution-failure"));
-		}
-
-		final Model model;
-		try {
-			model = objectMapper.readValue(resp.getOutput(), Model.class);
-			// create a default configuration
-			final ModelConfiguration modelConfiguration = ModelConfigurationService.modelConfigurationFromAMR(
-				model,
-				new ModelConfigurationUpdate()
-			);
-			modelConfigurationService.createAsset(modelConfiguration, projectId);
-		} catch (final IOException e) {
-			log.error("Unable to deserialize output", e);
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
-		}
-
-		return ResponseEntity.ok().body(model);
+		return taskService
+			.runTaskSyncAsync(req)
+			.exceptionally(e -> {
+				throw handleTaskException(e);
+			})
+			.thenApply(resp -> {
+				if (resp.getStatus() != TaskStatus.SUCCESS) {
+					log.error("Task failed: {}", resp.getStderr());
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST, resp.getStderr());
+				}
+
+				final Model model;
+				try {
+					model = objectMapper.readValue(resp.getOutput(), Model.class);
+					// create a default configuration
+					final ModelConfiguration modelConfiguration = ModelConfigurationService.modelConfigurationFromAMR(
+						model,
+						new ModelConfigurationUpdate()
+					);
+					modelConfigurationService.createAsset(modelConfiguration, projectId);
+				} catch (final IOException e) {
+					log.error("Unable to deserialize output", e);
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("generic.io-error.read"));
+				}
+
+				return ResponseEntity.ok().body(model);
+			});
 	}
 
 	@PutMapping("/{task-id}")
@@ -538,4 +495,26 @@ public class MiraController {
 		taskService.cancelTask(TaskType.MIRA, taskId);
 		return ResponseEntity.ok().build();
 	}
+
+	/** Map the exception a task future completed with to the response returned to the client. */
+	private ResponseStatusException handleTaskException(final Throwable throwable) {
+		final Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+			? throwable.getCause()
+			: throwable;
+		if (e instanceof JsonProcessingException) {
+			log.error("Unable to serialize input", e);
+			return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.json-processing"));
+		} else if (e instanceof TimeoutException) {
+			log.warn("Timeout while waiting for task response", e);
+			return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.timeout"));
+		} else if (e instanceof InterruptedException) {
+			log.warn("Interrupted while waiting for task response", e);
+			return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, messages.get("task.mira.interrupted"));
+		} else if (e instanceof RejectedExecutionException) {
+			log.warn("Too many tasks queued", e);
+			return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("task.mira.busy"));
+		}
+		log.error("Error while waiting for task response", e);
+		return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, messages.get("task.mira.execution-failure"));
+	}
 }
@@ -2,6 +2,7 @@ package software.uncharted.terarium.hmiserver.models.dataservice;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.nio.file.Path;
 import lombok.Data;
 import lombok.experimental.Accessors;
 import org.apache.http.entity.ContentType;
@@ -17,4 +18,12 @@ public class FileExport {
 
 	@JsonIgnore
 	byte[] bytes;
+
+	// The S3 key to read the contents from when they are streamed rather than held in bytes
+	@JsonIgnore
+	String key;
+
+	// A temporary file holding the contents when they are too large to hold in bytes
+	@JsonIgnore
+	Path path;
 }
@@ -2,7 +2,9 @@ package software.uncharted.terarium.hmiserver.models.dataservice.project;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -13,6 +15,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import lombok.Data;
@@ -27,85 +30,156 @@ import software.uncharted.terarium.hmiserver.utils.AssetDependencyUtil.AssetDepe
 @Accessors(chain = true)
 public class ProjectExport {
 
+	private static final String PROJECT_ENTRY = "project.json";
+
 	Project project;
 	List<AssetExport> assets = new ArrayList<>();
 
 	public static byte[] readZipEntry(final ZipInputStream zipInputStream) throws IOException {
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final byte[] buffer = new byte[1024];
-		int count;
-		while ((count = zipInputStream.read(buffer)) != -1) {
-			baos.write(buffer, 0, count);
-		}
-		return baos.toByteArray();
+		return zipInputStream.readAllBytes();
 	}
 
 	public void loadFromZipFile(final InputStream inputStream) throws IOException {
+		readZipFile(
+			inputStream,
+			new ZipFileVisitor() {
+				@Override
+				public void visitProject(final Project exportedProject) {
+					project = exportedProject;
+				}
+
+				@Override
+				public void visitAsset(final AssetExport asset) {
+					assets.add(asset);
+				}
+
+				@Override
+				public void visitFile(
+					final AssetExport asset,
+					final String filename,
+					final FileExport file,
+					final InputStream contents
+				) throws IOException {
+					file.setBytes(contents.readAllBytes());
+				}
+			}
+		);
+	}
+
+	/** Receives the entries of an export as they are read */
+	public interface ZipFileVisitor {
+		void visitProject(Project project) throws IOException;
+
+		void visitAsset(AssetExport asset) throws IOException;
+
+		/**
+		 * Called for each file of the last visited asset, in the order they are listed on the asset. The contents can
+		 * only be read until this returns.
+		 */
+		void visitFile(AssetExport asset, String filename, FileExport file, InputStream contents) throws IOException;
+	}
+
+	/**
+	 * Read an export one entry at a time, so that only the entry being read is held in memory.
+	 *
+	 * @throws IllegalArgumentException if the stream is not a valid export
+	 */
+	public static void readZipFile(final InputStream inputStream, final ZipFileVisitor visitor) throws IOException {
 		final ObjectMapper objectMapper = new ObjectMapper();
 
 		final ZipInputStream zipInputStream = new ZipInputStream(inputStream);
 
 		// get the project json
 		ZipEntry zipEntry = zipInputStream.getNextEntry();
-		if (zipEntry == null || !zipEntry.getName().equals("project.json")) {
+		if (zipEntry == null || !zipEntry.getName().equals(PROJECT_ENTRY)) {
 			throw new IllegalArgumentException("Invalid project export file");
 		}
 
-		project = objectMapper.readValue(readZipEntry(zipInputStream), Project.class);
-
-		// iterate on assets
-		while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-			// read the asset json
-			final AssetExport asset = objectMapper.readValue(readZipEntry(zipInputStream), AssetExport.class);
-
-			// read in the file payloads
-			for (final Map.Entry<String, FileExport> entry : asset.getFiles().entrySet()) {
-				zipEntry = zipInputStream.getNextEntry();
-				if (zipEntry == null) {
-					throw new IllegalArgumentException("Invalid project export file, expected a asset file payload");
+		try {
+			visitor.visitProject(objectMapper.readValue(readZipEntry(zipInputStream), Project.class));
+
+			// iterate on assets
+			while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+				// read the asset json
+				final AssetExport asset = objectMapper.readValue(readZipEntry(zipInputStream), AssetExport.class);
+				visitor.visitAsset(asset);
+
+				// read in the file payloads
+				for (final Map.Entry<String, FileExport> file : asset.getFiles().entrySet()) {
+					zipEntry = zipInputStream.getNextEntry();
+					if (zipEntry == null) {
+						throw new IllegalArgumentException("Invalid project export file, expected a asset file payload");
+					}
+					visitor.visitFile(asset, file.getKey(), file.getValue(), new EntryInputStream(zipInputStream));
 				}
-				final FileExport file = entry.getValue();
-				file.setBytes(readZipEntry(zipInputStream));
 			}
+		} catch (final JsonProcessingException | ZipException e) {
+			throw new IllegalArgumentException("Invalid project export file", e);
+		}
+	}
+
+	/** The contents of the current entry, which a visitor can't close out from under the archive */
+	private static class EntryInputStream extends FilterInputStream {
 
-			assets.add(asset);
+		EntryInputStream(final ZipInputStream zipInputStream) {
+			super(zipInputStream);
 		}
+
+		@Override
+		public void close() {}
 	}
 
 	public byte[] getAsZipFile() throws JsonProcessingException, IOException {
-		final ObjectMapper objectMapper = new ObjectMapper();
-
 		final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 		final ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream);
 
-		final byte[] projectBytes = objectMapper.writeValueAsBytes(project);
+		writeProject(zipOutputStream, project);
+		for (final AssetExport asset : assets) {
+			writeAsset(zipOutputStream, asset, file -> new ByteArrayInputStream(file.getBytes()));
+		}
+		zipOutputStream.finish();
+		zipOutputStream.close();
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	/** Opens the contents of an exported file */
+	@FunctionalInterface
+	public interface FileOpener {
+		InputStream open(FileExport file) throws IOException;
+	}
+
+	/** Write the project, which has to be the first entry of the export. */
+	public static void writeProject(final ZipOutputStream zipOutputStream, final Project project) throws IOException {
+		final ObjectMapper objectMapper = new ObjectMapper();
 
-		final ZipEntry zipEntry = new ZipEntry("project.json");
+		final ZipEntry zipEntry = new ZipEntry(PROJECT_ENTRY);
 		zipOutputStream.putNextEntry(zipEntry);
-		zipOutputStream.write(projectBytes);
+		zipOutputStream.write(objectMapper.writeValueAsBytes(project));
 		zipOutputStream.closeEntry();
+	}
 
-		for (final AssetExport asset : assets) {
-			final byte[] assetBytes = objectMapper.writeValueAsBytes(asset);
-
-			final ZipEntry assetEntry = new ZipEntry(asset.getAsset().getId() + ".json");
-			zipOutputStream.putNextEntry(assetEntry);
-			zipOutputStream.write(assetBytes);
-			zipOutputStream.closeEntry();
+	/**
+	 * Write the asset followed by the contents of each of its files, in the order they are listed on the asset. The
+	 * contents are copied from the opened stream a buffer at a time, so a file is never held in memory.
+	 */
+	public static void writeAsset(final ZipOutputStream zipOutputStream, final AssetExport asset, final FileOpener opener)
+		throws IOException {
+		final ObjectMapper objectMapper = new ObjectMapper();
 
-			for (final Map.Entry<String, FileExport> file : asset.getFiles().entrySet()) {
-				final byte[] fileBytes = file.getValue().getBytes();
+		final ZipEntry assetEntry = new ZipEntry(asset.getAsset().getId() + ".json");
+		zipOutputStream.putNextEntry(assetEntry);
+		zipOutputStream.write(objectMapper.writeValueAsBytes(asset));
+		zipOutputStream.closeEntry();
 
-				final ZipEntry fileEntry = new ZipEntry(asset.getAsset().getId() + "/" + file.getKey());
-				zipOutputStream.putNextEntry(fileEntry);
-				zipOutputStream.write(fileBytes);
-				zipOutputStream.closeEntry();
+		for (final Map.Entry<String, FileExport> file : asset.getFiles().entrySet()) {
+			final ZipEntry fileEntry = new ZipEntry(asset.getAsset().getId() + "/" + file.getKey());
+			zipOutputStream.putNextEntry(fileEntry);
+			try (final InputStream inputStream = opener.open(file.getValue())) {
+				inputStream.transferTo(zipOutputStream);
 			}
+			zipOutputStream.closeEntry();
 		}
-		zipOutputStream.finish();
-		zipOutputStream.close();
-
-		return byteArrayOutputStream.toByteArray();
 	}
 
 	@Override
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.hypersistence.utils.hibernate.type.json.JsonType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Transient;
 import java.io.Serial;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,12 +30,11 @@ public class Workflow extends TerariumAsset {
 	@Column(columnDefinition = "json")
 	private Transform transform;
 
-	@Type(JsonType.class)
-	@Column(columnDefinition = "json")
+	// stored as rows of their own, see WorkflowElementRecord
+	@Transient
 	private List<WorkflowNode> nodes;
 
-	@Type(JsonType.class)
-	@Column(columnDefinition = "json")
+	@Transient
 	private List<WorkflowEdge> edges;
 
 	@Type(JsonType.class)
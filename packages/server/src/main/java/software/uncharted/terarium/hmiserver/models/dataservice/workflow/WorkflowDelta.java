@@ -0,0 +1,51 @@
+package software.uncharted.terarium.hmiserver.models.dataservice.workflow;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * A change to a workflow, sent to the clients that have it open instead of the whole workflow.
+ *
+ * <p>Every patch is a JSON merge patch (RFC 7386) of the element it is keyed by: a field set to null is removed, an
+ * object is merged and any other value is replaced. A node or an edge that was added has all its fields. The ports of
+ * a node are patched by id, unless ports were added, removed or reordered, in which case the patch of the node has the
+ * whole list.
+ *
+ * <p>Deltas of a workflow are numbered. A client that has version {@code baseVersion} can apply the delta to get to
+ * {@code version}; any other client has missed a delta and should load a new snapshot of the workflow.
+ */
+@Data
+@Accessors(chain = true)
+public class WorkflowDelta implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = -3489417937208391626L;
+
+	private UUID workflowId;
+	private UUID projectId;
+
+	private long version;
+	private long baseVersion;
+
+	// patch of the fields of the workflow other than its nodes and edges
+	private JsonNode workflow;
+
+	private Map<UUID, JsonNode> nodes = new HashMap<>();
+
+	// node id to input or output port id to patch
+	private Map<UUID, Map<UUID, JsonNode>> inputs = new HashMap<>();
+	private Map<UUID, Map<UUID, JsonNode>> outputs = new HashMap<>();
+
+	private Map<UUID, JsonNode> edges = new HashMap<>();
+
+	private Set<UUID> removedNodes = new HashSet<>();
+	private Set<UUID> removedEdges = new HashSet<>();
+}
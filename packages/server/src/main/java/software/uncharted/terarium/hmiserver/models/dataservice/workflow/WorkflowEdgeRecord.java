@@ -0,0 +1,14 @@
+package software.uncharted.terarium.hmiserver.models.dataservice.workflow;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import java.io.Serial;
+
+/** An edge of a workflow, stored as a row of its own */
+@Entity
+@Table(name = "workflow_edge")
+public class WorkflowEdgeRecord extends WorkflowElementRecord {
+
+	@Serial
+	private static final long serialVersionUID = -7428877929325461757L;
+}
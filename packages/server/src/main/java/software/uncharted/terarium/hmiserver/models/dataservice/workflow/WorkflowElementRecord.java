@@ -0,0 +1,91 @@
+package software.uncharted.terarium.hmiserver.models.dataservice.workflow;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.hypersistence.utils.hibernate.type.json.JsonType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import java.io.Serial;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.hibernate.annotations.Type;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A node or an edge of a workflow, stored as a row of its own so that it can be read and written without the rest of
+ * the workflow. The content is the element as it is sent to the client; the version and deleted flag are copied out of
+ * it to be checked and queried, and the sort order keeps the elements in the order of the workflow.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@MappedSuperclass
+@IdClass(WorkflowElementRecord.Key.class)
+public abstract class WorkflowElementRecord implements Persistable<WorkflowElementRecord.Key>, Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 4530853287145962398L;
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Key implements Serializable {
+
+		@Serial
+		private static final long serialVersionUID = -2187434386462932514L;
+
+		private UUID workflowId;
+		private UUID elementId;
+	}
+
+	@Id
+	private UUID workflowId;
+
+	@Id
+	private UUID elementId;
+
+	private Integer sortOrder;
+
+	private Long version;
+
+	private Boolean isDeleted;
+
+	// when the element was marked for deletion, its row is removed by the compaction some time after
+	@Column(columnDefinition = "TIMESTAMP WITH TIME ZONE")
+	private Timestamp deletedOn;
+
+	@Type(JsonType.class)
+	@Column(columnDefinition = "json")
+	private JsonNode content;
+
+	// whether the row is yet to be inserted, so that saving it doesn't first look for it
+	@Transient
+	private boolean newRecord = true;
+
+	@Override
+	public Key getId() {
+		return new Key(workflowId, elementId);
+	}
+
+	@Override
+	public boolean isNew() {
+		return newRecord;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markNotNew() {
+		newRecord = false;
+	}
+}
@@ -0,0 +1,14 @@
+package software.uncharted.terarium.hmiserver.models.dataservice.workflow;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import java.io.Serial;
+
+/** A node of a workflow, stored as a row of its own */
+@Entity
+@Table(name = "workflow_node")
+public class WorkflowNodeRecord extends WorkflowElementRecord {
+
+	@Serial
+	private static final long serialVersionUID = 4949373720575292668L;
+}
@@ -0,0 +1,18 @@
+package software.uncharted.terarium.hmiserver.models.dataservice.workflow;
+
+import java.io.Serial;
+import java.io.Serializable;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/** A workflow and the version of the last delta that it includes. */
+@Data
+@Accessors(chain = true)
+public class WorkflowSnapshot implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 2412871526934837163L;
+
+	private long version;
+	private Workflow workflow;
+}
@@ -30,6 +30,14 @@ public class TaskFuture implements Serializable {
 		return future.get(timeout, unit);
 	}
 
+	/**
+	 * Returns a future that completes with the final response without blocking the caller. Completing or cancelling
+	 * the returned future does not affect the task.
+	 */
+	public CompletableFuture<TaskResponse> toCompletableFuture() {
+		return future.copy();
+	}
+
 	public void setLatest(final TaskResponse response) {
 		latestResponse = response;
 	}
@@ -4,14 +4,15 @@ import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.Base64;
 import java.util.UUID;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 
 @Accessors(chain = true)
@@ -63,13 +64,36 @@ public class TaskRequest implements Serializable {
 	// itself, but are passed through to every response.
 	protected Object additionalProperties;
 
+	// The SHA256 is requested several times per request (dispatch, every response
+	// and serialization), so it is computed once and cleared whenever one of the
+	// hashed properties changes.
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private transient String sha256;
+
+	public TaskRequest setType(final TaskType type) {
+		this.type = type;
+		sha256 = null;
+		return this;
+	}
+
+	public TaskRequest setScript(final String script) {
+		this.script = script;
+		sha256 = null;
+		return this;
+	}
+
 	public void setInput(final byte[] bytes) throws JsonProcessingException {
 		input = bytes;
+		sha256 = null;
 	}
 
 	public void setInput(final Object obj) throws JsonProcessingException {
 		final ObjectMapper mapper = new ObjectMapper();
 		input = mapper.writeValueAsBytes(obj);
+		sha256 = null;
 	}
 
 	public <T> T getAdditionalProperties(final Class<T> type) throws JsonProcessingException {
@@ -79,20 +103,11 @@ public class TaskRequest implements Serializable {
 
 	@JsonProperty("requestSHA256")
 	public String getSHA256() {
-		try {
-			// NOTE: do not include the task id in this hash, we want to determine if the
-			// body of the request is unique
-			final ObjectMapper objectMapper = new ObjectMapper();
-			// make sure the json serialization is deterministic
-			objectMapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
-
-			final String encodedInput = Base64.getEncoder().encodeToString(input);
-
-			final String strHash = String.format("%s-%s-%s", type, script, encodedInput);
-			final MessageDigest md = MessageDigest.getInstance("SHA-256");
-			return Base64.getEncoder().encodeToString(md.digest(strHash.getBytes(StandardCharsets.UTF_8)));
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
+		// NOTE: do not include the task id in this hash, we want to determine if the
+		// body of the request is unique
+		if (sha256 == null) {
+			sha256 = TaskRequestDigest.sha256(type, script, input);
 		}
+		return sha256;
 	}
 }
@@ -0,0 +1,59 @@
+package software.uncharted.terarium.hmiserver.models.task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest.TaskType;
+
+/**
+ * Computes the SHA-256 digest used to identify identical task requests.
+ *
+ * <p>The digest is the Base64 encoded SHA-256 of {@code "<type>-<script>-<base64(input)>"}. Rather than building
+ * that string in memory, the input is Base64 encoded in small chunks directly into the digest, so hashing a large
+ * input allocates a constant amount of memory regardless of its size.
+ */
+public final class TaskRequestDigest {
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	});
+
+	private TaskRequestDigest() {}
+
+	/**
+	 * Hashes the type, script and input of a task request.
+	 *
+	 * @param type The task type
+	 * @param script The task script
+	 * @param input The task input, may be null
+	 * @return The Base64 encoded SHA-256 digest of the request
+	 */
+	public static String sha256(final TaskType type, final String script, final byte[] input) {
+		final MessageDigest md = DIGEST.get();
+		md.reset();
+
+		md.update((type + "-" + script + "-").getBytes(StandardCharsets.UTF_8));
+
+		if (input != null && input.length > 0) {
+			// the encoder buffers and flushes the encoded bytes in small chunks
+			try (
+				final OutputStream out = Base64.getEncoder().wrap(new DigestOutputStream(OutputStream.nullOutputStream(), md))
+			) {
+				out.write(input);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return Base64.getEncoder().encodeToString(md.digest());
+	}
+}
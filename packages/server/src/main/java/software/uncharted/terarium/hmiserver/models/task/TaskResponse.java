@@ -19,6 +19,10 @@ public class TaskResponse implements Serializable {
 	private String script;
 	private TaskStatus status;
 	private byte[] output;
+
+	// Set instead of the output when the output is too large to send inline, it
+	// references the output in the task payload store.
+	private String outputRef;
 	protected String userId;
 
 	private UUID projectId;
@@ -26,8 +30,12 @@ public class TaskResponse implements Serializable {
 	// The value of this will be whatever it was set to on the TaskRequest.
 	private Object additionalProperties;
 
+	// Only the start and end of long stdout and stderr are sent by the taskrunner,
+	// these are the full sizes of them in bytes
 	private String stdout;
 	private String stderr;
+	private long stdoutBytes;
+	private long stderrBytes;
 	private String requestSHA256;
 	private String routingKey;
 	private boolean useCache = true;
@@ -17,6 +17,8 @@ public interface ProjectRepository extends PSCrudRepository<Project, UUID>, JpaS
 
 	Optional<Project> getByIdAndDeletedOnIsNull(final UUID id);
 
+	boolean existsByIdAndDeletedOnIsNull(final UUID id);
+
 	@Query(
 		"""
 			select
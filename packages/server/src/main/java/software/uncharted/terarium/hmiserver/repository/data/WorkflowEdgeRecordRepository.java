@@ -0,0 +1,7 @@
+package software.uncharted.terarium.hmiserver.repository.data;
+
+import org.springframework.stereotype.Repository;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdgeRecord;
+
+@Repository
+public interface WorkflowEdgeRecordRepository extends WorkflowElementRecordRepository<WorkflowEdgeRecord> {}
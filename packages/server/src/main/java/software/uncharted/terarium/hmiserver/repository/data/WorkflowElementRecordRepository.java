@@ -0,0 +1,57 @@
+package software.uncharted.terarium.hmiserver.repository.data;
+
+import jakarta.persistence.LockModeType;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.NoRepositoryBean;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowElementRecord;
+import software.uncharted.terarium.hmiserver.repository.PSCrudRepository;
+
+/** The queries shared by the rows of the nodes and of the edges of workflows */
+@NoRepositoryBean
+public interface WorkflowElementRecordRepository<T extends WorkflowElementRecord>
+	extends PSCrudRepository<T, WorkflowElementRecord.Key> {
+	List<T> findAllByWorkflowIdInOrderBySortOrder(Collection<UUID> workflowIds);
+
+	List<T> findAllByWorkflowId(UUID workflowId);
+
+	/**
+	 * Find elements of a workflow, locking them until the end of the transaction so that their versions can be checked
+	 * before they are written
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	List<T> findAllByWorkflowIdAndElementIdIn(UUID workflowId, Collection<UUID> elementIds);
+
+	/** Find elements that were marked for deletion before a time, the oldest first */
+	List<T> findAllByIsDeletedTrueAndDeletedOnBeforeOrderByDeletedOn(Timestamp deletedBefore, Pageable pageable);
+
+	/** Find when the oldest element that is marked for deletion was marked */
+	@Query("SELECT MIN(r.deletedOn) FROM #{#entityName} r WHERE r.isDeleted = true")
+	Optional<Timestamp> findOldestDeletedOn();
+
+	/**
+	 * Delete the row of an element marked for deletion, only if it is still as it was read, so that an element that was
+	 * restored or deleted again since is kept
+	 *
+	 * @return the number of rows deleted
+	 */
+	@Modifying
+	@Query(
+		"DELETE FROM #{#entityName} r WHERE r.workflowId = :workflowId AND r.elementId = :elementId " +
+		"AND r.version = :version AND r.isDeleted = true AND r.deletedOn = :deletedOn"
+	)
+	int deleteIfUnchanged(
+		@Param("workflowId") UUID workflowId,
+		@Param("elementId") UUID elementId,
+		@Param("version") Long version,
+		@Param("deletedOn") Timestamp deletedOn
+	);
+}
@@ -1,8 +1,9 @@
 package software.uncharted.terarium.hmiserver.repository.data;
 
-import java.util.List;
 import java.util.UUID;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
 import software.uncharted.terarium.hmiserver.repository.PSCrudSoftDeleteRepository;
@@ -10,24 +11,9 @@ import software.uncharted.terarium.hmiserver.repository.PSCrudSoftDeleteReposito
 @Repository
 public interface WorkflowRepository extends PSCrudSoftDeleteRepository<Workflow, UUID> {
 	/**
-	 * Find all workflows who have at least one edge or node marked for deletion
+	 * Mark a workflow as updated, for changes to its nodes and edges which are not stored in its own row
 	 */
-	@Query(
-		value = "SELECT w.* FROM Workflow w " +
-		" cross join json_array_elements(edges) as edgesData" +
-		" where edgesData->>'isDeleted' = 'true'",
-		nativeQuery = true
-	)
-	List<Workflow> findWorkflowsWithEdgesToBeDeleted();
-
-	/**
-	 * Find all workflows who have at least one edge or node marked for deletion
-	 */
-	@Query(
-		value = "SELECT w.* FROM Workflow w " +
-		" cross join json_array_elements(nodes) as nodesData" +
-		" where nodesData->>'isDeleted' = 'true'",
-		nativeQuery = true
-	)
-	List<Workflow> findWorkflowsWithNodesToBeDeleted();
+	@Modifying
+	@Query("UPDATE Workflow w SET w.updatedOn = CURRENT_TIMESTAMP WHERE w.id = :id")
+	void setUpdatedOnToNow(@Param("id") UUID id);
 }
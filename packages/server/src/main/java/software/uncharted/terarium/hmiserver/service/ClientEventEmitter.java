@@ -0,0 +1,274 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * An SSE connection of a user, with a bounded queue of the frames waiting to be written to it. Frames are written on
+ * an executor rather than the thread that queued them, so a slow connection only holds up its own frames. When the
+ * queue is full the oldest frame is dropped, or the connection is closed, depending on the overflow policy. A write
+ * that takes longer than the write timeout is interrupted and the connection closed, so that a client that stopped
+ * reading doesn't keep a thread of the executor.
+ */
+@Slf4j
+class ClientEventEmitter {
+
+	enum OverflowPolicy {
+		DROP_OLDEST,
+		DISCONNECT
+	}
+
+	/**
+	 * An event serialized once as an SSE frame, and shared by all the connections it is sent to
+	 *
+	 * @param data the bytes of the frame
+	 * @param createdAt the time the frame was created, in nanoseconds
+	 */
+	record Frame(byte[] data, long createdAt) {
+		private static final byte[] PREFIX = "data:".getBytes(StandardCharsets.UTF_8);
+		private static final byte[] SUFFIX = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+		/**
+		 * @param json the event, serialized as JSON on a single line
+		 * @return the frame of the event
+		 */
+		static Frame of(final byte[] json) {
+			final byte[] data = new byte[PREFIX.length + json.length + SUFFIX.length];
+			System.arraycopy(PREFIX, 0, data, 0, PREFIX.length);
+			System.arraycopy(json, 0, data, PREFIX.length, json.length);
+			System.arraycopy(SUFFIX, 0, data, PREFIX.length + json.length, SUFFIX.length);
+			return new Frame(data, System.nanoTime());
+		}
+	}
+
+	@Getter
+	private final String userId;
+
+	@Getter
+	private final SseEmitter emitter;
+
+	private final int capacity;
+	private final OverflowPolicy overflowPolicy;
+	private final Executor executor;
+	private final ScheduledExecutorService timeoutExecutor;
+	private final long writeTimeoutMillis;
+	private final Timer sendTimer;
+	private final Counter droppedCounter;
+	private final Counter slowDisconnectCounter;
+
+	private final Deque<Frame> queue = new ArrayDeque<>();
+	// whether a task is writing the queued frames, only one is at a time
+	private boolean draining = false;
+	private boolean closed = false;
+	// whether the emitter is to be completed once it is closed
+	private boolean completeOnClose = false;
+	// the thread writing to the connection, and the number of the write, to interrupt it if it takes too long
+	private Thread writer;
+	private long writes = 0;
+	private boolean timedOut = false;
+
+	ClientEventEmitter(
+		final String userId,
+		final SseEmitter emitter,
+		final int capacity,
+		final OverflowPolicy overflowPolicy,
+		final Executor executor,
+		final ScheduledExecutorService timeoutExecutor,
+		final long writeTimeoutMillis,
+		final Timer sendTimer,
+		final Counter droppedCounter,
+		final Counter slowDisconnectCounter
+	) {
+		this.userId = userId;
+		this.emitter = emitter;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.executor = executor;
+		this.timeoutExecutor = timeoutExecutor;
+		this.writeTimeoutMillis = writeTimeoutMillis;
+		this.sendTimer = sendTimer;
+		this.droppedCounter = droppedCounter;
+		this.slowDisconnectCounter = slowDisconnectCounter;
+	}
+
+	synchronized int getQueued() {
+		return queue.size();
+	}
+
+	synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/** @return whether there are no frames waiting to be written */
+	synchronized boolean isIdle() {
+		return !draining && queue.isEmpty();
+	}
+
+	/**
+	 * Queues a frame to be written to the connection
+	 *
+	 * @param frame the frame to write
+	 * @return false if the connection is closed, or was closed because its queue is full
+	 */
+	boolean offer(final Frame frame) {
+		synchronized (this) {
+			if (closed) {
+				return false;
+			}
+			if (queue.size() >= capacity) {
+				if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+					log.warn("Closing the connection of user {}, {} events are waiting to be sent", userId, queue.size());
+					slowDisconnectCounter.increment();
+					droppedCounter.increment(queue.size() + 1);
+					close(true);
+					return false;
+				}
+				queue.poll();
+				droppedCounter.increment();
+			}
+			queue.add(frame);
+			if (draining) {
+				return true;
+			}
+			draining = true;
+		}
+
+		try {
+			executor.execute(this::drain);
+		} catch (final Exception e) {
+			log.error("Unable to send events to user {}", userId, e);
+			synchronized (this) {
+				draining = false;
+			}
+			close(true);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the connection and drops the frames waiting to be written
+	 *
+	 * @param complete whether to complete the emitter, which is not needed if it already completed or failed
+	 */
+	void close(final boolean complete) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			completeOnClose = complete;
+			queue.clear();
+			if (draining) {
+				// completing waits for the current write, so it is left to the task doing it
+				return;
+			}
+		}
+		if (complete) {
+			complete();
+		}
+	}
+
+	private void complete() {
+		try {
+			emitter.complete();
+		} catch (final Exception e) {
+			log.debug("Error completing the connection of user {}", userId, e);
+		}
+	}
+
+	/**
+	 * Interrupts a write that took longer than the write timeout, if it is still in progress
+	 *
+	 * @param write the number of the write
+	 */
+	private synchronized void interrupt(final long write) {
+		if (writer != null && writes == write) {
+			timedOut = true;
+			writer.interrupt();
+		}
+	}
+
+	/** Writes the queued frames, all that are waiting at once with a single flush, until there are none left */
+	private void drain() {
+		while (true) {
+			final List<Frame> frames;
+			synchronized (this) {
+				if (closed || queue.isEmpty()) {
+					draining = false;
+					if (closed && completeOnClose) {
+						break;
+					}
+					return;
+				}
+				frames = new ArrayList<>(queue);
+				queue.clear();
+			}
+
+			final Set<ResponseBodyEmitter.DataWithMediaType> data = new LinkedHashSet<>();
+			for (final Frame frame : frames) {
+				data.add(new ResponseBodyEmitter.DataWithMediaType(frame.data(), MediaType.TEXT_EVENT_STREAM));
+			}
+			final long write;
+			synchronized (this) {
+				writer = Thread.currentThread();
+				write = ++writes;
+			}
+			final ScheduledFuture<?> timeout = timeoutExecutor.schedule(
+				() -> interrupt(write),
+				writeTimeoutMillis,
+				TimeUnit.MILLISECONDS
+			);
+			Exception error = null;
+			try {
+				emitter.send(data);
+			} catch (final Exception e) {
+				error = e;
+			}
+			timeout.cancel(false);
+			final boolean wasTimedOut;
+			synchronized (this) {
+				writer = null;
+				wasTimedOut = timedOut;
+			}
+
+			if (wasTimedOut) {
+				// clears the interrupt, which may have come after the write completed
+				Thread.interrupted();
+				log.warn("Closing the connection of user {}, a write took more than {} ms", userId, writeTimeoutMillis);
+				slowDisconnectCounter.increment();
+				droppedCounter.increment(frames.size());
+				close(true);
+				continue;
+			}
+			if (error != null) {
+				log.warn("Error sending events to user {}. User likely disconnected", userId);
+				droppedCounter.increment(frames.size());
+				close(false);
+				continue;
+			}
+
+			final long sentAt = System.nanoTime();
+			for (final Frame frame : frames) {
+				sendTimer.record(sentAt - frame.createdAt(), TimeUnit.NANOSECONDS);
+			}
+		}
+		complete();
+	}
+}
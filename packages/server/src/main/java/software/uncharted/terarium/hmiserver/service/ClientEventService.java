@@ -4,26 +4,45 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RSetCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -38,9 +57,30 @@ public class ClientEventService {
 
 	private final ObjectMapper mapper;
 	private final RabbitTemplate rabbitTemplate;
+	private final RedissonClient redissonClient;
+	private final ClientPresenceService clientPresenceService;
+	private final MeterRegistry meterRegistry;
 
-	private static final String CLIENT_USER_EVENT_EXCHANGE = "client-user-event-exchange";
+	private static final String CLIENT_INSTANCE_EVENT_EXCHANGE = "client-instance-event-exchange";
 	private static final String CLIENT_ALL_USERS_EVENT_EXCHANGE = "client-all-users-event-exchange";
+	private static final String SUBSCRIBERS_KEY_PREFIX = "client-event-subscribers:";
+	private static final String SUBSCRIBER_SEPARATOR = "/";
+
+	@Value("${terarium.client-event.subscription-ttl-minutes:5}")
+	private Long SUBSCRIPTION_TTL_MINUTES;
+
+	@Value("${terarium.client-event.sender-threads:16}")
+	private int SENDER_THREADS;
+
+	@Value("${terarium.client-event.queue-capacity:256}")
+	private int QUEUE_CAPACITY;
+
+	@Value("${terarium.client-event.overflow-policy:DISCONNECT}")
+	private ClientEventEmitter.OverflowPolicy OVERFLOW_POLICY;
+
+	// How long a write to a connection can take before the connection is closed, to release its sender thread
+	@Value("${terarium.client-event.write-timeout-millis:10000}")
+	private long WRITE_TIMEOUT_MILLIS;
 
 	final ClientEvent<Void> HEART_BEAT_EVENT = ClientEvent.<Void>builder()
 		.type(ClientEventType.HEARTBEAT)
@@ -51,17 +91,62 @@ public class ClientEventService {
 	 * Map of user id to the emitters for that user. Users can have multiple emitters if they have multiple tabs open or
 	 * multiple devices connected
 	 */
-	final Map<String, java.util.Queue<SseEmitter>> userIdToEmitters = new ConcurrentHashMap<>();
+	final Map<String, java.util.Queue<ClientEventEmitter>> userIdToEmitters = new ConcurrentHashMap<>();
+
+	// writes the events queued for each emitter, so that slow connections don't hold up the listeners
+	private ExecutorService senderExecutor;
+
+	// interrupts the writes that take longer than the write timeout
+	private ScheduledExecutorService writeTimeoutExecutor;
+
+	private Timer sendTimer;
+	private Counter droppedCounter;
+	private Counter slowDisconnectCounter;
+
+	@PostConstruct
+	void init() {
+		senderExecutor = Executors.newFixedThreadPool(SENDER_THREADS);
+		writeTimeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+
+		Gauge.builder("terarium.client-event.queued", this, ClientEventService::getQueued).register(meterRegistry);
+		Gauge.builder("terarium.client-event.connections", this, ClientEventService::getConnections).register(
+			meterRegistry
+		);
+		sendTimer = Timer.builder("terarium.client-event.send").register(meterRegistry);
+		droppedCounter = Counter.builder("terarium.client-event.dropped").register(meterRegistry);
+		slowDisconnectCounter = Counter.builder("terarium.client-event.slow-disconnects").register(meterRegistry);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		senderExecutor.shutdownNow();
+		writeTimeoutExecutor.shutdownNow();
+	}
+
+	/** @return the number of events waiting to be sent, over all the connections */
+	int getQueued() {
+		int queued = 0;
+		for (final java.util.Queue<ClientEventEmitter> emitters : userIdToEmitters.values()) {
+			for (final ClientEventEmitter emitter : emitters) {
+				queued += emitter.getQueued();
+			}
+		}
+		return queued;
+	}
+
+	int getConnections() {
+		return userIdToEmitters.values().stream().mapToInt(java.util.Queue::size).sum();
+	}
 
 	@Data
 	@Accessors(chain = true)
 	@NoArgsConstructor
-	public static class UserClientEvent<T> implements Serializable {
+	public static class UsersClientEvent<T> implements Serializable {
 
 		@Serial
 		private static final long serialVersionUID = -7617118669979761035L;
 
-		private String userId;
+		private List<String> userIds;
 		private ClientEvent<T> event;
 	}
 
@@ -72,25 +157,59 @@ public class ClientEventService {
 	 * @return the emitter to send messages to the user
 	 */
 	public SseEmitter connect(final User user) {
-		final java.util.Queue<SseEmitter> emitters = userIdToEmitters.getOrDefault(
-			user.getId(),
-			new ConcurrentLinkedQueue<>()
-		);
 		final SseEmitter emitter = new SseEmitter();
-		emitter.onError(e -> {
-			emitter.complete();
-			emitters.remove(emitter);
-			if (emitters.isEmpty()) {
-				userIdToEmitters.remove(user.getId());
-			}
-		});
 		try {
 			emitter.send(HEART_BEAT_EVENT);
 		} catch (final IOException e) {
 			log.error("Error sending init heartbeat", e);
 		}
-		emitters.add(emitter);
-		userIdToEmitters.put(user.getId(), emitters);
+		addEmitter(user.getId(), emitter);
+		return emitter;
+	}
+
+	/**
+	 * Adds an SSE connection of a user, to send the events of the user to
+	 *
+	 * @param userId the id of the user
+	 * @param sseEmitter the connection
+	 * @return the connection, with its queue of events to send
+	 */
+	ClientEventEmitter addEmitter(final String userId, final SseEmitter sseEmitter) {
+		final ClientEventEmitter emitter = new ClientEventEmitter(
+			userId,
+			sseEmitter,
+			QUEUE_CAPACITY,
+			OVERFLOW_POLICY,
+			senderExecutor,
+			writeTimeoutExecutor,
+			WRITE_TIMEOUT_MILLIS,
+			sendTimer,
+			droppedCounter,
+			slowDisconnectCounter
+		);
+		sseEmitter.onError(e -> {
+			emitter.close(true);
+			removeDisconnectedUsers();
+		});
+		sseEmitter.onTimeout(() -> emitter.close(true));
+		sseEmitter.onCompletion(() -> {
+			emitter.close(false);
+			removeDisconnectedUsers();
+		});
+
+		// added under the lock of the user's entry, so that the entry can't be removed as empty in between
+		userIdToEmitters.compute(userId, (id, emitters) -> {
+			final java.util.Queue<ClientEventEmitter> userEmitters = emitters != null
+				? emitters
+				: new ConcurrentLinkedQueue<>();
+			userEmitters.add(emitter);
+			return userEmitters;
+		});
+		try {
+			clientPresenceService.register(userId);
+		} catch (final Exception e) {
+			log.error("Error registering the presence of user {}", userId, e);
+		}
 		return emitter;
 	}
 
@@ -100,14 +219,16 @@ public class ClientEventService {
 	 * @param user the user to disconnect
 	 */
 	public void disconnect(final User user) {
-		final java.util.Queue<SseEmitter> userEmitters = userIdToEmitters.get(user.getId());
+		final java.util.Queue<ClientEventEmitter> userEmitters = userIdToEmitters.get(user.getId());
 		if (userEmitters != null) {
 			try {
-				userEmitters.forEach(SseEmitter::complete);
+				userEmitters.forEach(emitter -> emitter.close(true));
 			} catch (final Exception e) {
 				log.error("Error disconnecting user", e);
 			}
-			userIdToEmitters.remove(user.getId());
+			if (userIdToEmitters.remove(user.getId(), userEmitters)) {
+				unregisterPresence(user.getId());
+			}
 		}
 	}
 
@@ -134,18 +255,90 @@ public class ClientEventService {
 	 * @param <T> the type of the event
 	 */
 	public <T> void sendToUser(final ClientEvent<T> event, final String userId) {
+		sendToUsers(event, List.of(userId));
+	}
+
+	/**
+	 * Sends a message to users. It is sent once to each instance that the users are connected to, with the users
+	 * connected to it, and not at all to the others.
+	 *
+	 * @param event the event to send
+	 * @param userIds the ids of the users to send the message to
+	 * @param <T> the type of the event
+	 */
+	public <T> void sendToUsers(final ClientEvent<T> event, final Collection<String> userIds) {
 		try {
-			final String jsonStr = mapper.writeValueAsString(new UserClientEvent<T>().setEvent(event).setUserId(userId));
-			rabbitTemplate.convertAndSend(CLIENT_USER_EVENT_EXCHANGE, "", jsonStr);
+			for (final Map.Entry<String, List<String>> instance : clientPresenceService.getInstances(userIds).entrySet()) {
+				final String jsonStr = mapper.writeValueAsString(
+					new UsersClientEvent<T>().setEvent(event).setUserIds(instance.getValue())
+				);
+				rabbitTemplate.convertAndSend(CLIENT_INSTANCE_EVENT_EXCHANGE, instance.getKey(), jsonStr);
+			}
 		} catch (final JsonProcessingException e) {
-			log.error("Error sending all users message", e);
+			log.error("Error sending users message", e);
+		} catch (final Exception e) {
+			log.error("Error finding the instances users are connected to", e);
 		}
 	}
 
-	public <T> void sendToUsers(final ClientEvent<T> event, final Collection<String> userIds) {
-		for (final String userId : userIds) {
-			sendToUser(event, userId);
+	private RSetCache<String> getSubscribers(final UUID topicId) {
+		return redissonClient.getSetCache(SUBSCRIBERS_KEY_PREFIX + topicId, StringCodec.INSTANCE);
+	}
+
+	// A user subscribes once from each tab, so that a tab that unsubscribes leaves the subscriptions of the others
+	private static String toSubscriber(final String userId, final UUID subscriberId) {
+		return userId + SUBSCRIBER_SEPARATOR + (subscriberId == null ? "" : subscriberId);
+	}
+
+	private static String toUserId(final String subscriber) {
+		final int separator = subscriber.lastIndexOf(SUBSCRIBER_SEPARATOR);
+		return separator < 0 ? subscriber : subscriber.substring(0, separator);
+	}
+
+	/**
+	 * Subscribes a user to the events of a topic, such as a workflow, on whichever instance the user is connected to.
+	 * The subscription expires unless it is renewed within the configured TTL.
+	 *
+	 * @param topicId the id of the topic
+	 * @param userId the id of the user
+	 * @param subscriberId the id of what subscribes, such as a tab, among the subscriptions of the user
+	 */
+	public void subscribe(final UUID topicId, final String userId, final UUID subscriberId) {
+		getSubscribers(topicId).add(toSubscriber(userId, subscriberId), SUBSCRIPTION_TTL_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Unsubscribes a user from the events of a topic, for one of its subscriptions only. The user still receives the
+	 * events if it has other subscriptions to the topic.
+	 *
+	 * @param topicId the id of the topic
+	 * @param userId the id of the user
+	 * @param subscriberId the id of what subscribed
+	 */
+	public void unsubscribe(final UUID topicId, final String userId, final UUID subscriberId) {
+		getSubscribers(topicId).remove(toSubscriber(userId, subscriberId));
+	}
+
+	/**
+	 * Sends a message to the users subscribed to a topic, once to each user whatever the number of its subscriptions
+	 *
+	 * @param event the event to send
+	 * @param topicId the id of the topic
+	 * @param <T> the type of the event
+	 */
+	public <T> void sendToSubscribers(final ClientEvent<T> event, final UUID topicId) {
+		final Set<String> userIds;
+		try {
+			userIds = getSubscribers(topicId)
+				.readAll()
+				.stream()
+				.map(ClientEventService::toUserId)
+				.collect(Collectors.toSet());
+		} catch (final Exception e) {
+			log.error("Error finding the subscribers of {}", topicId, e);
+			return;
 		}
+		sendToUsers(event, userIds);
 	}
 
 	/**
@@ -169,64 +362,122 @@ public class ClientEventService {
 		if (messageJson == null) {
 			return;
 		}
-		// Send the message to each user connected and remove disconnected users
-		userIdToEmitters.forEach((userId, emitters) -> {
-			final Set<SseEmitter> emittersToRemove = ConcurrentHashMap.newKeySet();
-			for (final SseEmitter emitter : emitters) {
-				try {
-					emitter.send(messageJson);
-				} catch (final Exception e) {
-					log.warn("Error sending all users message to user {}. User likely disconnected", userId);
-					emittersToRemove.add(emitter);
-				}
-			}
-			emitters.removeAll(emittersToRemove);
-		});
+		final ClientEventEmitter.Frame frame = toFrame(messageJson);
+		if (frame == null) {
+			return;
+		}
+		userIdToEmitters.values().forEach(emitters -> emitters.forEach(emitter -> emitter.offer(frame)));
 
-		// Remove users with no emitters
-		userIdToEmitters.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+		removeDisconnectedUsers();
 	}
 
 	/**
-	 * Lisens for messages to send to a user and if we have the SSE connection, send it
+	 * Listens for messages to the users connected to this instance, which are routed to its own queue, and sends them
+	 * to their SSE connections. Each event is serialized once, for all the connections it is sent to.
 	 *
-	 * @param message the message to send
-	 * @param channel the channel to send the message on
-	 * @throws IOException if there was an error sending the message
+	 * @param messages the messages to send
 	 */
 	@RabbitListener(
 		bindings = @QueueBinding(
 			value = @Queue(
-				value = "#{T(java.util.UUID).randomUUID().toString().concat('-user-event-queue')}",
+				value = "#{@clientPresenceService.instanceId.concat('-client-instance-event-queue')}",
 				durable = "false",
 				autoDelete = "true"
 			),
-			exchange = @Exchange(value = CLIENT_USER_EVENT_EXCHANGE, type = "fanout")
-		)
+			exchange = @Exchange(value = CLIENT_INSTANCE_EVENT_EXCHANGE, type = "direct"),
+			key = "#{@clientPresenceService.instanceId}"
+		),
+		containerFactory = "batchRabbitListenerContainerFactory",
+		batch = "true"
 	)
-	void onSendToUserEvent(final Message message, final Channel channel) throws IOException {
-		final JsonNode messageJson = decodeMessage(message, JsonNode.class);
-		if (messageJson == null) {
-			return;
+	void onSendToUsersEvents(final List<Message> messages) {
+		// the events of each user, in the order they were sent
+		final Map<String, List<ClientEventEmitter.Frame>> eventsByUser = new LinkedHashMap<>();
+		for (final Message message : messages) {
+			final JsonNode messageJson = decodeMessage(message, JsonNode.class);
+			if (messageJson == null) {
+				continue;
+			}
+			final ClientEventEmitter.Frame frame = toFrame(messageJson.get("event"));
+			if (frame == null) {
+				continue;
+			}
+			for (final JsonNode userId : messageJson.path("userIds")) {
+				eventsByUser.computeIfAbsent(userId.asText(), id -> new ArrayList<>()).add(frame);
+			}
 		}
 
-		final String userId = messageJson.at("/userId").asText();
-		final java.util.Queue<SseEmitter> emitters = userIdToEmitters.get(userId);
-		if (emitters != null) {
-			final Set<SseEmitter> emittersToRemove = ConcurrentHashMap.newKeySet();
-			for (final SseEmitter emitter : emitters) {
-				try {
-					emitter.send(messageJson.at("/event"));
-				} catch (final Exception e) {
-					log.warn("Error sending user message to user {}. User likely disconnected", userId);
-					emittersToRemove.add(emitter);
+		eventsByUser.forEach(this::sendToEmitters);
+		removeDisconnectedUsers();
+	}
+
+	/**
+	 * Queues events to the emitters of a user connected to this instance, if any. The events queued together are
+	 * written to each emitter at once, with a single flush.
+	 *
+	 * @param userId the id of the user
+	 * @param frames the events to send
+	 */
+	private void sendToEmitters(final String userId, final List<ClientEventEmitter.Frame> frames) {
+		final java.util.Queue<ClientEventEmitter> emitters = userIdToEmitters.get(userId);
+		if (emitters == null) {
+			return;
+		}
+		for (final ClientEventEmitter emitter : emitters) {
+			for (final ClientEventEmitter.Frame frame : frames) {
+				if (!emitter.offer(frame)) {
+					break;
 				}
 			}
-			emitters.removeAll(emittersToRemove);
 		}
+	}
+
+	/**
+	 * Serializes an event as an SSE frame
+	 *
+	 * @param event the event
+	 * @return the frame, or null if the event can't be serialized
+	 */
+	private ClientEventEmitter.Frame toFrame(final Object event) {
+		try {
+			return ClientEventEmitter.Frame.of(mapper.writeValueAsBytes(event));
+		} catch (final JsonProcessingException e) {
+			log.error("Error serializing client event", e);
+			return null;
+		}
+	}
+
+	/** Removes the emitters that were closed, and the users with no emitters left and their presence on this instance */
+	private void removeDisconnectedUsers() {
+		final List<String> disconnected = new ArrayList<>();
+		for (final String userId : List.copyOf(userIdToEmitters.keySet())) {
+			// removed under the lock of the user's entry, so that an emitter added meanwhile is not dropped with it
+			userIdToEmitters.computeIfPresent(userId, (id, emitters) -> {
+				emitters.removeIf(ClientEventEmitter::isClosed);
+				if (!emitters.isEmpty()) {
+					return emitters;
+				}
+				disconnected.add(userId);
+				return null;
+			});
+		}
+		for (final String userId : disconnected) {
+			unregisterPresence(userId);
+		}
+	}
 
-		// Remove users with no emitters
-		userIdToEmitters.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+	/** Removes the presence of a user on this instance, unless the user connected again in the meantime */
+	private void unregisterPresence(final String userId) {
+		try {
+			clientPresenceService.unregister(userId);
+			// a connection added after the entry was removed may have registered before this unregister
+			final java.util.Queue<ClientEventEmitter> emitters = userIdToEmitters.get(userId);
+			if (emitters != null && !emitters.isEmpty()) {
+				clientPresenceService.register(userId);
+			}
+		} catch (final Exception e) {
+			log.error("Error removing the presence of user {}", userId, e);
+		}
 	}
 
 	/**
@@ -261,11 +512,33 @@ public class ClientEventService {
 	}
 
 	/**
-	 * Heartbeat to ensure that the clients are subscribed to the SSE service. If the client does not receive a
-	 * heartbeat within the configured interval, it will attempt to reconnect.
+	 * Sends a heartbeat to the connections of this instance that have no events waiting to be sent, and removes the
+	 * connections that were closed. The heartbeat of each instance is sent to its own connections only.
 	 */
 	@Scheduled(fixedDelay = 5000L)
 	public void sendHeartbeat() {
-		sendToAllUsers(HEART_BEAT_EVENT);
+		final ClientEventEmitter.Frame frame = toFrame(HEART_BEAT_EVENT);
+		if (frame != null) {
+			userIdToEmitters
+				.values()
+				.forEach(emitters ->
+					emitters.forEach(emitter -> {
+						if (emitter.isIdle()) {
+							emitter.offer(frame);
+						}
+					})
+				);
+		}
+		removeDisconnectedUsers();
+	}
+
+	/** Renews the presence of the users connected to this instance before it expires */
+	@Scheduled(fixedDelayString = "${terarium.client-event.presence-renew-millis:10000}")
+	public void renewPresence() {
+		try {
+			clientPresenceService.renew(userIdToEmitters.keySet());
+		} catch (final Exception e) {
+			log.error("Error renewing the presence of connected users", e);
+		}
 	}
 }
@@ -0,0 +1,114 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RSetCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records in Redis which instances of the hmi-server hold the SSE connections of each user, so that the events of a
+ * user are sent to those instances only. A user can be connected to several instances, with a tab open on each.
+ *
+ * <p>Each instance renews the presence of the users connected to it well within the TTL, so the presence of an
+ * instance that stopped without removing it expires on its own.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ClientPresenceService {
+
+	private static final String PRESENCE_KEY_PREFIX = "client-event-presence:";
+
+	/** The id of this instance, which is also the routing key of its client event queue */
+	@Getter
+	private final String instanceId = UUID.randomUUID().toString();
+
+	private final RedissonClient redissonClient;
+
+	@Value("${terarium.client-event.presence-ttl-seconds:30}")
+	private Long PRESENCE_TTL_SECONDS;
+
+	private RSetCache<String> getPresence(final String userId) {
+		return redissonClient.getSetCache(PRESENCE_KEY_PREFIX + userId, StringCodec.INSTANCE);
+	}
+
+	/**
+	 * Records that a user is connected to this instance
+	 *
+	 * @param userId the id of the user
+	 */
+	public void register(final String userId) {
+		getPresence(userId).add(instanceId, PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Records that a user is no longer connected to this instance
+	 *
+	 * @param userId the id of the user
+	 */
+	public void unregister(final String userId) {
+		getPresence(userId).remove(instanceId);
+	}
+
+	/**
+	 * Renews the presence of the users connected to this instance, in a single round trip
+	 *
+	 * @param userIds the ids of the users
+	 */
+	public void renew(final Collection<String> userIds) {
+		if (userIds.isEmpty()) {
+			return;
+		}
+		final RBatch batch = redissonClient.createBatch();
+		for (final String userId : userIds) {
+			batch
+				.<String>getSetCache(PRESENCE_KEY_PREFIX + userId, StringCodec.INSTANCE)
+				.addAsync(instanceId, PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
+		}
+		batch.execute();
+	}
+
+	/**
+	 * Finds the instances that the users are connected to, in a single round trip
+	 *
+	 * @param userIds the ids of the users
+	 * @return the ids of the users connected to each instance, by instance id
+	 */
+	public Map<String, List<String>> getInstances(final Collection<String> userIds) {
+		if (userIds.isEmpty()) {
+			return Map.of();
+		}
+		final RBatch batch = redissonClient.createBatch();
+		final Map<String, RFuture<Set<String>>> presences = new LinkedHashMap<>();
+		for (final String userId : userIds) {
+			presences.put(
+				userId,
+				batch.<String>getSetCache(PRESENCE_KEY_PREFIX + userId, StringCodec.INSTANCE).readAllAsync()
+			);
+		}
+		batch.execute();
+
+		final Map<String, List<String>> usersByInstance = new HashMap<>();
+		presences.forEach((userId, presence) -> {
+			for (final String instanceId : presence.toCompletableFuture().join()) {
+				usersByInstance.computeIfAbsent(instanceId, id -> new ArrayList<>()).add(userId);
+			}
+		});
+		return usersByInstance;
+	}
+}
@@ -0,0 +1,245 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.hmiserver.models.TerariumAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetType;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.simulation.ProgressState;
+import software.uncharted.terarium.hmiserver.service.data.ITerariumAssetService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectAssetService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectService;
+import software.uncharted.terarium.hmiserver.service.data.TerariumAssetServices;
+import software.uncharted.terarium.hmiserver.service.notification.NotificationGroupInstance;
+import software.uncharted.terarium.hmiserver.utils.AssetDependencyUtil;
+import software.uncharted.terarium.hmiserver.utils.AssetDependencyUtil.AssetDependencyMap;
+
+/**
+ * Clones a project within the server. Asset rows are read and inserted in batches and their files are copied by S3,
+ * so none of the contents of the project pass through the server.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProjectCloneService {
+
+	private final ProjectService projectService;
+	private final ProjectAssetService projectAssetService;
+	private final TerariumAssetServices terariumAssetServices;
+
+	// the number of clones that run at once, each with its own pool of copies
+	@Value("${terarium.project-clone.job-threads:2}")
+	private int JOB_THREADS;
+
+	@Value("${terarium.project-clone.copy-threads:16}")
+	private int COPY_THREADS;
+
+	// the number of assets read or inserted in one query
+	@Value("${terarium.project-clone.batch-size:100}")
+	private int BATCH_SIZE;
+
+	private ExecutorService jobExecutor;
+	private ExecutorService copyExecutor;
+
+	@PostConstruct
+	void init() {
+		jobExecutor = Executors.newFixedThreadPool(JOB_THREADS);
+		copyExecutor = Executors.newFixedThreadPool(COPY_THREADS);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		jobExecutor.shutdownNow();
+		copyExecutor.shutdownNow();
+	}
+
+	/** An asset read from the source project and the clone that will replace it */
+	private record AssetClone(AssetType type, TerariumAsset source, TerariumAsset copy) {}
+
+	/**
+	 * Create the empty project that a project will be cloned into, its assets are added by
+	 * {@link #cloneProjectAssets}.
+	 *
+	 * @param sourceProjectId the project to clone
+	 * @param userId the user id of the owner of the clone
+	 * @param userName the user name of the owner of the clone
+	 * @return the clone, or empty if the source project does not exist
+	 * @throws IOException if the clone can't be created
+	 */
+	public Optional<Project> createProjectClone(final UUID sourceProjectId, final String userId, final String userName)
+		throws IOException {
+		final Optional<Project> source = projectService.getProject(sourceProjectId);
+		if (source.isEmpty()) {
+			return Optional.empty();
+		}
+
+		final Project clone = source.get().clone();
+		clone.setName("Copying " + clone.getName());
+		clone.setUserId(userId);
+		clone.setUserName(userName);
+		clone.setCreatedOn(new Timestamp(System.currentTimeMillis()));
+		clone.setUpdatedOn(new Timestamp(System.currentTimeMillis()));
+		return Optional.of(projectService.createProject(clone));
+	}
+
+	/**
+	 * Clone the assets of a project into a project created by {@link #createProjectClone} in the background. Progress
+	 * is reported through the notification group, which is sent a final message when the clone completes or fails. A
+	 * failed clone is deleted, rather than left behind with only some of the assets of the source project.
+	 *
+	 * @param sourceProjectId the project to clone
+	 * @param project the project to clone the assets into
+	 * @param notificationInterface the notification group of the clone
+	 * @return the project, once all of its assets have been cloned
+	 */
+	public Future<Project> cloneProjectAssets(
+		final UUID sourceProjectId,
+		final Project project,
+		final NotificationGroupInstance<?> notificationInterface
+	) {
+		return jobExecutor.submit(() -> {
+			try {
+				cloneAssets(sourceProjectId, project, notificationInterface);
+				notificationInterface.sendFinalMessage("Cloning complete");
+				return project;
+			} catch (final Exception e) {
+				log.error("Error cloning project {} into {}", sourceProjectId, project.getId(), e);
+				try {
+					projectService.delete(project.getId());
+				} catch (final Exception ex) {
+					log.error("Failed to delete the partial clone {} of project {}", project.getId(), sourceProjectId, ex);
+				}
+				notificationInterface.sendFinalMessage("Cloning failed", ProgressState.ERROR);
+				throw e;
+			}
+		});
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void cloneAssets(
+		final UUID sourceProjectId,
+		final Project project,
+		final NotificationGroupInstance<?> notificationInterface
+	) throws IOException, InterruptedException {
+		final List<ProjectAsset> projectAssets = projectAssetService.getProjectAssets(sourceProjectId);
+
+		// assign the id of every clone up front, so that each asset can have its dependencies swapped as it is cloned
+		final Map<UUID, UUID> oldToNewIds = new HashMap<>();
+		final Map<AssetType, List<UUID>> idsByType = new LinkedHashMap<>();
+		for (final ProjectAsset projectAsset : projectAssets) {
+			oldToNewIds.put(projectAsset.getAssetId(), UUID.randomUUID());
+			idsByType.computeIfAbsent(projectAsset.getAssetType(), k -> new ArrayList<>()).add(projectAsset.getAssetId());
+		}
+
+		notificationInterface.sendProgress("Reading " + projectAssets.size() + " assets...", 0.0);
+
+		final List<AssetClone> clones = new ArrayList<>();
+		for (final Map.Entry<AssetType, List<UUID>> entry : idsByType.entrySet()) {
+			final ITerariumAssetService terariumAssetService = terariumAssetServices.getServiceByType(entry.getKey());
+			for (final List<UUID> batch : partition(entry.getValue())) {
+				final List<TerariumAsset> assets = terariumAssetService.getAssets(batch);
+				for (final TerariumAsset asset : assets) {
+					final AssetDependencyMap dependencies = AssetDependencyUtil.getAssetDependencies(
+						oldToNewIds.keySet(),
+						asset
+					);
+					final TerariumAsset clone = asset.clone();
+					clone.setId(oldToNewIds.get(asset.getId()));
+					clones.add(
+						new AssetClone(
+							entry.getKey(),
+							asset,
+							AssetDependencyUtil.swapAssetDependencies(clone, oldToNewIds, dependencies)
+						)
+					);
+				}
+				if (assets.size() < batch.size()) {
+					log.warn(
+						"{} {} assets on project {} no longer exist, omitting from clone",
+						batch.size() - assets.size(),
+						entry.getKey(),
+						sourceProjectId
+					);
+				}
+			}
+		}
+
+		// copy the files of every asset at once, they are copied by S3 so this is bound by its request latency
+		final CompletionService<AssetClone> copies = new ExecutorCompletionService<>(copyExecutor);
+		for (final AssetClone assetClone : clones) {
+			copies.submit(() -> {
+				final ITerariumAssetService terariumAssetService = terariumAssetServices.getServiceByType(assetClone.type());
+				terariumAssetService.copyAssetFiles(assetClone.copy(), assetClone.source());
+				return assetClone;
+			});
+		}
+
+		final Map<AssetType, List<TerariumAsset>> copiedByType = new LinkedHashMap<>();
+		for (int i = 1; i <= clones.size(); i++) {
+			try {
+				final AssetClone copied = copies.take().get();
+				copiedByType.computeIfAbsent(copied.type(), k -> new ArrayList<>()).add(copied.copy());
+			} catch (final ExecutionException e) {
+				log.warn("Failed to copy the files of an asset, omitting from clone", e.getCause());
+			}
+			if (i % BATCH_SIZE == 0 || i == clones.size()) {
+				// leave the last tenth of the progress for the inserts
+				notificationInterface.sendProgress(
+					"Copied files of " + i + " of " + clones.size() + " assets",
+					(0.9 * i) / clones.size()
+				);
+			}
+		}
+
+		for (final Map.Entry<AssetType, List<TerariumAsset>> entry : copiedByType.entrySet()) {
+			final AssetType assetType = entry.getKey();
+			final ITerariumAssetService terariumAssetService = terariumAssetServices.getServiceByType(assetType);
+			for (final List<TerariumAsset> batch : partition(entry.getValue())) {
+				List<TerariumAsset> created;
+				try {
+					created = terariumAssetService.createAssets(batch, project.getId());
+				} catch (final Exception e) {
+					// fall back to creating them one at a time, so that one bad asset doesn't fail the rest
+					log.warn("Failed to clone {} assets as a batch, cloning them individually", assetType, e);
+					created = new ArrayList<>();
+					for (final TerariumAsset asset : batch) {
+						try {
+							created.add(terariumAssetService.createAsset(asset, project.getId()));
+						} catch (final Exception ex) {
+							log.warn("Failed to clone asset {}, skipping", asset.getId(), ex);
+						}
+					}
+				}
+				projectAssetService.createProjectAssets(project, assetType, created);
+			}
+		}
+	}
+
+	private <T> List<List<T>> partition(final List<T> list) {
+		final List<List<T>> batches = new ArrayList<>();
+		for (int i = 0; i < list.size(); i += BATCH_SIZE) {
+			batches.add(new ArrayList<>(list.subList(i, Math.min(i + BATCH_SIZE, list.size()))));
+		}
+		return batches;
+	}
+}
@@ -1,10 +1,20 @@
 package software.uncharted.terarium.hmiserver.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -12,9 +22,17 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.Stack;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
+import java.util.zip.ZipOutputStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import software.uncharted.terarium.hmiserver.models.TerariumAsset;
@@ -47,6 +65,29 @@ public class TerariumAssetCloneService {
 	private final ModelConfigRepository modelConfigRepository;
 	private final InterventionRepository interventionRepository;
 
+	@Value("${terarium.project-import.upload-threads:8}")
+	private int UPLOAD_THREADS;
+
+	// the number of files that can be buffered or spilled waiting on an upload
+	@Value("${terarium.project-import.max-in-flight:16}")
+	private int MAX_IN_FLIGHT;
+
+	// files larger than this are spilled to a temporary file rather than held in memory
+	@Value("${terarium.project-import.spill-threshold-bytes:4194304}")
+	private int SPILL_THRESHOLD_BYTES;
+
+	private ExecutorService uploadExecutor;
+
+	@PostConstruct
+	void init() {
+		uploadExecutor = Executors.newFixedThreadPool(UPLOAD_THREADS);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		uploadExecutor.shutdownNow();
+	}
+
 	/**
 	 * Given a project and a target asset, discover any assets that the target asset
 	 * depends on, clone them, replace any
@@ -238,6 +279,307 @@ public class TerariumAssetCloneService {
 		return projectExport.clone();
 	}
 
+	/**
+	 * Given a project, write it and all of its assets as a zip archive in the same format as
+	 * {@link ProjectExport#getAsZipFile()}. Assets are read one at a time and their files are copied from S3 straight
+	 * into the archive, so memory use does not depend on the size of the project.
+	 *
+	 * @param projectId the project to export
+	 * @param outputStream the stream to write the archive to, it is not closed
+	 * @throws IOException if the export fails
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void exportProject(final UUID projectId, final OutputStream outputStream) throws IOException {
+		final Optional<Project> projectOptional = projectService.getProject(projectId);
+		if (projectOptional.isEmpty()) {
+			throw new RuntimeException("Project " + projectId + " not found");
+		}
+
+		final List<ProjectAsset> projectAssets = projectAssetService.getProjectAssets(projectId);
+
+		// assign the id of every clone up front, so that each asset can have its dependencies swapped as it is written
+		final Set<UUID> projectAssetIds = new HashSet<>();
+		final Map<UUID, UUID> oldToNewIds = new HashMap<>();
+		for (final ProjectAsset projectAsset : projectAssets) {
+			projectAssetIds.add(projectAsset.getAssetId());
+			oldToNewIds.put(projectAsset.getAssetId(), UUID.randomUUID());
+		}
+
+		final Project project = projectOptional.get().clone();
+		project.setUserId(null); // clear the user id
+		project.setUserName(null); // clear the user name
+
+		final ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+		ProjectExport.writeProject(zipOutputStream, project);
+
+		for (final ProjectAsset currentProjectAsset : projectAssets) {
+			final ITerariumAssetService terariumAssetService = terariumAssetServices.getServiceByType(
+				currentProjectAsset.getAssetType()
+			);
+
+			final Optional<TerariumAsset> currentAssetOptional = terariumAssetService.getAsset(
+				currentProjectAsset.getAssetId()
+			);
+
+			if (currentAssetOptional.isEmpty()) {
+				// asset is missing or deleted, skip
+				log.warn(
+					"Asset {} on project {} not longer exists, omitting from export",
+					currentProjectAsset.getAssetId(),
+					projectId
+				);
+				continue;
+			}
+
+			final TerariumAsset currentAsset = currentAssetOptional.get();
+
+			// clean up any duplicate filenames from legacy data
+			currentAsset.setFileNames(removeDuplicates(currentAsset.getFileNames()));
+
+			// the files are read from the original asset
+			final Map<String, FileExport> files = terariumAssetService.getAssetFileExports(currentAsset);
+
+			final AssetDependencyMap dependencies = AssetDependencyUtil.getAssetDependencies(projectAssetIds, currentAsset);
+			final TerariumAsset clonedAsset = currentAsset.clone();
+			clonedAsset.setId(oldToNewIds.get(currentAsset.getId()));
+
+			final AssetExport exportedAsset = new AssetExport();
+			exportedAsset.setType(currentProjectAsset.getAssetType());
+			exportedAsset.setAsset(AssetDependencyUtil.swapAssetDependencies(clonedAsset, oldToNewIds, dependencies));
+			exportedAsset.setFiles(files);
+
+			ProjectExport.writeAsset(zipOutputStream, exportedAsset, terariumAssetService::openFileExport);
+		}
+
+		zipOutputStream.finish();
+		zipOutputStream.flush();
+	}
+
+	/**
+	 * Import a project from a zip archive in the format of {@link ProjectExport#getAsZipFile()}, reading it as a
+	 * stream. Files are uploaded concurrently while the rest of the archive is read, small files from memory and large
+	 * ones from a temporary file, and the assets are then inserted in one batch per type.
+	 *
+	 * @param userId the user id to import the project as
+	 *               (this will be the owner of the project)
+	 * @param userName the user name to import the project as
+	 * @param inputStream the zip archive
+	 * @return the imported project
+	 * @throws IllegalArgumentException if the archive is not a valid export
+	 * @throws IOException if the import fails
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Project importProject(final String userId, final String userName, final InputStream inputStream)
+		throws IOException {
+		final ProjectUpload upload = new ProjectUpload();
+		final Project project;
+		try {
+			try {
+				ProjectExport.readZipFile(inputStream, upload);
+			} finally {
+				upload.awaitUploads();
+			}
+
+			final Project importedProject = upload.project;
+			importedProject.setUserId(userId);
+			importedProject.setUserName(userName);
+			importedProject.setCreatedOn(new Timestamp(System.currentTimeMillis()));
+			importedProject.setUpdatedOn(new Timestamp(System.currentTimeMillis()));
+
+			// create the project
+			project = projectService.createProject(importedProject);
+		} catch (final IOException | RuntimeException e) {
+			// nothing was imported, so nothing refers to the files that were uploaded
+			upload.deleteUploads();
+			throw e;
+		}
+
+		// give every asset a new id, so that an archive can be imported more than once
+		final Set<UUID> exportedIds = upload.oldToNewIds.keySet();
+		final Map<AssetType, List<TerariumAsset>> assetsByType = new LinkedHashMap<>();
+		for (final AssetExport assetExport : upload.assets) {
+			final TerariumAsset asset = assetExport.getAsset();
+			if (upload.failedUploads.contains(asset.getId())) {
+				log.warn("Failed to upload the files of asset {}, skipping", asset.getId());
+				upload.deleteUploads(List.of(upload.oldToNewIds.get(asset.getId())));
+				continue;
+			}
+
+			final AssetDependencyMap dependencies = AssetDependencyUtil.getAssetDependencies(exportedIds, asset);
+			final TerariumAsset clonedAsset = asset.clone();
+			clonedAsset.setId(upload.oldToNewIds.get(asset.getId()));
+
+			assetsByType
+				.computeIfAbsent(assetExport.getType(), k -> new ArrayList<>())
+				.add(AssetDependencyUtil.swapAssetDependencies(clonedAsset, upload.oldToNewIds, dependencies));
+		}
+
+		for (final Map.Entry<AssetType, List<TerariumAsset>> entry : assetsByType.entrySet()) {
+			final AssetType assetType = entry.getKey();
+			final ITerariumAssetService terariumAssetService = terariumAssetServices.getServiceByType(assetType);
+
+			List<TerariumAsset> created;
+			try {
+				created = terariumAssetService.createAssets(entry.getValue(), project.getId());
+			} catch (final Exception e) {
+				// fall back to creating them one at a time, so that one bad asset doesn't fail the rest
+				log.warn("Failed to import {} assets as a batch, importing them individually", assetType, e);
+				created = new ArrayList<>();
+				for (final TerariumAsset asset : entry.getValue()) {
+					try {
+						created.add((TerariumAsset) terariumAssetService.createAsset(asset, project.getId()));
+					} catch (final Exception ex) {
+						log.warn("Failed to import asset {}, skipping", asset.getId(), ex);
+						upload.deleteUploads(List.of(asset.getId()));
+					}
+				}
+			}
+
+			try {
+				projectAssetService.createProjectAssets(project, assetType, created);
+			} catch (final Exception e) {
+				log.warn("Failed to add {} assets to project {}", assetType, project.getId(), e);
+				upload.deleteUploads(created.stream().map(TerariumAsset::getId).toList());
+			}
+		}
+
+		return project;
+	}
+
+	/** A file of an imported asset that was uploaded, under the new id of the asset */
+	private record UploadedFile(ITerariumAssetService<?> service, UUID assetId, String filename, FileExport file) {}
+
+	/** Collects the project and assets of an archive, uploading each file as it is read */
+	private class ProjectUpload implements ProjectExport.ZipFileVisitor {
+
+		private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		private final Map<UUID, UUID> oldToNewIds = new HashMap<>();
+		private final List<AssetExport> assets = new ArrayList<>();
+		private final Map<UUID, List<Future<?>>> uploads = new HashMap<>();
+		private final Set<UUID> failedUploads = new HashSet<>();
+		// the files that were uploaded, by the new id of their asset
+		private final List<UploadedFile> uploadedFiles = Collections.synchronizedList(new ArrayList<>());
+		private final List<Path> spilledFiles = new ArrayList<>();
+		private Project project;
+
+		@Override
+		public void visitProject(final Project project) {
+			this.project = project;
+		}
+
+		@Override
+		public void visitAsset(final AssetExport asset) {
+			oldToNewIds.put(asset.getAsset().getId(), UUID.randomUUID());
+			assets.add(asset);
+		}
+
+		@Override
+		public void visitFile(
+			final AssetExport asset,
+			final String filename,
+			final FileExport file,
+			final InputStream contents
+		) throws IOException {
+			final UUID assetId = asset.getAsset().getId();
+
+			// bound the memory and disk held by files waiting to be uploaded
+			try {
+				inFlight.acquire();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while importing project");
+			}
+
+			try {
+				final byte[] head = contents.readNBytes(SPILL_THRESHOLD_BYTES + 1);
+				if (head.length <= SPILL_THRESHOLD_BYTES) {
+					file.setBytes(head);
+				} else {
+					final Path path = Files.createTempFile("terarium-import-", null);
+					spilledFiles.add(path);
+					try (final OutputStream outputStream = Files.newOutputStream(path)) {
+						outputStream.write(head);
+						contents.transferTo(outputStream);
+					}
+					file.setPath(path);
+				}
+			} catch (final IOException | RuntimeException e) {
+				inFlight.release();
+				throw e;
+			}
+
+			final ITerariumAssetService terariumAssetService = terariumAssetServices.getServiceByType(asset.getType());
+			final UUID newAssetId = oldToNewIds.get(assetId);
+			final Future<?> future;
+			try {
+				future = uploadExecutor.submit(() -> {
+					try {
+						final Integer status = terariumAssetService.uploadFile(newAssetId, filename, file);
+						uploadedFiles.add(new UploadedFile(terariumAssetService, newAssetId, filename, file));
+						return status;
+					} finally {
+						// release the contents as soon as they are uploaded
+						file.setBytes(null);
+						if (file.getPath() != null) {
+							Files.deleteIfExists(file.getPath());
+						}
+						inFlight.release();
+					}
+				});
+			} catch (final RejectedExecutionException e) {
+				// a spilled file is deleted once the uploads are awaited
+				file.setBytes(null);
+				inFlight.release();
+				throw e;
+			}
+			uploads.computeIfAbsent(assetId, k -> new ArrayList<>()).add(future);
+		}
+
+		/** Delete every file that was uploaded */
+		void deleteUploads() {
+			deleteUploads(oldToNewIds.values());
+		}
+
+		/** Delete the files that were uploaded for the given assets, by their new id */
+		void deleteUploads(final Collection<UUID> assetIds) {
+			final Set<UUID> ids = new HashSet<>(assetIds);
+			for (final UploadedFile uploaded : List.copyOf(uploadedFiles)) {
+				if (!ids.contains(uploaded.assetId())) {
+					continue;
+				}
+				try {
+					uploaded.service().deleteFile(uploaded.assetId(), uploaded.filename(), uploaded.file());
+					uploadedFiles.remove(uploaded);
+				} catch (final Exception e) {
+					log.warn("Failed to delete file {} of asset {}", uploaded.filename(), uploaded.assetId(), e);
+				}
+			}
+		}
+
+		/** Wait for every upload to finish, recording the assets with a failed upload */
+		void awaitUploads() throws IOException {
+			try {
+				for (final Map.Entry<UUID, List<Future<?>>> entry : uploads.entrySet()) {
+					for (final Future<?> future : entry.getValue()) {
+						try {
+							future.get();
+						} catch (final ExecutionException e) {
+							log.warn("Failed to upload a file of asset {}", entry.getKey(), e.getCause());
+							failedUploads.add(entry.getKey());
+						}
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while importing project");
+			} finally {
+				for (final Path path : spilledFiles) {
+					Files.deleteIfExists(path);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Given a ProjectExport object, import the project and all related assets.
 	 *
@@ -1,6 +1,8 @@
 package software.uncharted.terarium.hmiserver.service;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -26,6 +28,11 @@ public class UserService {
 		return user;
 	}
 
+	/** Gets the users with the given ids in one query, users that don't exist are omitted */
+	public List<User> getByIds(final Collection<String> ids) {
+		return userRepository.findAllById(ids);
+	}
+
 	public static User createUser(final User user) {
 		final long now = Instant.now().toEpochMilli();
 		// using milliseconds causes User.isDirty() to be true for every single call the user makes, which in turn
@@ -0,0 +1,439 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.hmiserver.models.ClientEvent;
+import software.uncharted.terarium.hmiserver.models.ClientEventType;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowDelta;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
+import software.uncharted.terarium.hmiserver.utils.JsonUtil;
+
+/**
+ * Notifies the clients that have a workflow open of the changes made to it, as {@link WorkflowDelta}s sent to the
+ * subscribers of the workflow.
+ *
+ * <p>Deltas are numbered by a counter per workflow in Redis, so that every instance numbers them in the same sequence.
+ * Deltas of position updates are held back for the coalescing interval and merged, so that dragging nodes sends a few
+ * deltas a second instead of one per update; any other delta of the workflow sends them first.
+ *
+ * <p>The counter of a workflow expires once no delta was sent for the TTL. It then starts again from the current time,
+ * above the versions it gave before, with a base version of 0: a client that still holds an earlier version sees a
+ * gap, and loads the workflow again.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class WorkflowEventService {
+
+	private static final String VERSION_KEY_PREFIX = "workflow-version:";
+	private static final List<String> ELEMENTS = List.of("nodes", "edges");
+	private static final List<String> PORTS = List.of("inputs", "outputs");
+
+	// increments the counter of a workflow, or starts it again at ARGV[1], and returns the version and base version
+	static final String NEXT_VERSION_SCRIPT =
+		"local version = redis.call('incr', KEYS[1]) " +
+		"local base = version - 1 " +
+		"if version == 1 then redis.call('set', KEYS[1], ARGV[1]) version = ARGV[1] base = 0 end " +
+		"redis.call('pexpire', KEYS[1], ARGV[2]) " +
+		"return {tostring(version), tostring(base)}";
+
+	@Value("${terarium.workflow-events.version-ttl-hours:24}")
+	private long VERSION_TTL_HOURS;
+
+	private final ObjectMapper objectMapper;
+	private final ClientEventService clientEventService;
+	private final RedissonClient redissonClient;
+
+	private record PendingDelta(WorkflowDelta delta, String userId) {}
+
+	@JsonIgnoreProperties({ "nodes", "edges" })
+	private abstract static class WithoutElements {}
+
+	// writes the fields of a workflow without its nodes and edges
+	private ObjectMapper fieldsMapper;
+
+	// deltas of position updates waiting to be sent, by workflow id
+	private final Map<UUID, PendingDelta> pending = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	void init() {
+		fieldsMapper = objectMapper.copy().addMixIn(Workflow.class, WithoutElements.class);
+	}
+
+	private RAtomicLong getVersionCounter(final UUID workflowId) {
+		return redissonClient.getAtomicLong(VERSION_KEY_PREFIX + workflowId);
+	}
+
+	/**
+	 * Captures the state of a workflow before it is changed, to compute the delta of the change from
+	 *
+	 * @param workflow the workflow
+	 * @return the state of the workflow
+	 */
+	public JsonNode capture(final Workflow workflow) {
+		return objectMapper.valueToTree(workflow);
+	}
+
+	/**
+	 * Captures the fields of a workflow and some of its elements only, for changes that are made to those elements. The
+	 * delta between two such states has the changes to those elements only, the others are neither sent nor removed.
+	 *
+	 * @param workflow the workflow
+	 * @param nodeIds the ids of the nodes to capture
+	 * @param edgeIds the ids of the edges to capture
+	 * @return the state of the workflow, with those elements only
+	 */
+	public JsonNode capture(final Workflow workflow, final Collection<UUID> nodeIds, final Collection<UUID> edgeIds) {
+		final ObjectNode state = fieldsMapper.valueToTree(workflow);
+		final ArrayNode nodes = state.putArray("nodes");
+		if (!nodeIds.isEmpty() && workflow.getNodes() != null) {
+			for (final WorkflowNode node : workflow.getNodes()) {
+				if (nodeIds.contains(node.getId())) {
+					nodes.add(objectMapper.<JsonNode>valueToTree(node));
+				}
+			}
+		}
+		final ArrayNode edges = state.putArray("edges");
+		if (!edgeIds.isEmpty() && workflow.getEdges() != null) {
+			for (final WorkflowEdge edge : workflow.getEdges()) {
+				if (edgeIds.contains(edge.getId())) {
+					edges.add(objectMapper.<JsonNode>valueToTree(edge));
+				}
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * @param workflowId the id of the workflow
+	 * @return the version of the last delta of the workflow
+	 */
+	public long getVersion(final UUID workflowId) {
+		return getVersionCounter(workflowId).get();
+	}
+
+	/**
+	 * Sends the delta of a change to the subscribers of the workflow, after any deltas of the workflow that are held
+	 * back
+	 *
+	 * @param before the state of the workflow before the change
+	 * @param after the workflow after the change
+	 * @param projectId the id of the project of the workflow
+	 * @param userId the id of the user who made the change
+	 */
+	public void publish(final JsonNode before, final Workflow after, final UUID projectId, final String userId) {
+		publish(before, capture(after), projectId, userId);
+	}
+
+	/**
+	 * Sends the delta between two captured states of a workflow to its subscribers, after any deltas of the workflow
+	 * that are held back
+	 *
+	 * @param before the state of the workflow before the change
+	 * @param after the state of the workflow after the change, captured the same way
+	 * @param projectId the id of the project of the workflow
+	 * @param userId the id of the user who made the change
+	 */
+	public void publish(final JsonNode before, final JsonNode after, final UUID projectId, final String userId) {
+		final WorkflowDelta delta = diff(before, after).setProjectId(projectId);
+		flush(delta.getWorkflowId());
+		if (!isEmpty(delta)) {
+			send(delta, userId);
+		}
+	}
+
+	/**
+	 * Holds back the delta of a change for the coalescing interval, merged with the other deltas of the workflow held
+	 * back
+	 *
+	 * @param before the state of the workflow before the change
+	 * @param after the state of the workflow after the change, captured the same way
+	 * @param projectId the id of the project of the workflow
+	 * @param userId the id of the user who made the change
+	 */
+	public void publishCoalesced(final JsonNode before, final JsonNode after, final UUID projectId, final String userId) {
+		final WorkflowDelta delta = diff(before, after).setProjectId(projectId);
+		if (isEmpty(delta)) {
+			return;
+		}
+		pending.merge(delta.getWorkflowId(), new PendingDelta(delta, userId), (earlier, later) ->
+			new PendingDelta(merge(earlier.delta(), later.delta()), later.userId())
+		);
+	}
+
+	/**
+	 * Notifies the subscribers of a workflow that it was deleted
+	 *
+	 * @param workflowId the id of the workflow
+	 * @param projectId the id of the project of the workflow
+	 * @param userId the id of the user who deleted it
+	 */
+	public void publishDelete(final UUID workflowId, final UUID projectId, final String userId) {
+		pending.remove(workflowId);
+		try {
+			final ClientEvent<UUID> event = ClientEvent.<UUID>builder()
+				.type(ClientEventType.WORKFLOW_DELETE)
+				.projectId(projectId)
+				.userId(userId)
+				.data(workflowId)
+				.build();
+			clientEventService.sendToSubscribers(event, workflowId);
+			getVersionCounter(workflowId).delete();
+		} catch (final Exception e) {
+			log.error("Unable to notify users of deleted workflow", e);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${terarium.workflow-events.coalesce-millis:100}")
+	public void flushPending() {
+		for (final UUID workflowId : pending.keySet()) {
+			flush(workflowId);
+		}
+	}
+
+	private void flush(final UUID workflowId) {
+		final PendingDelta held = pending.remove(workflowId);
+		if (held != null) {
+			send(held.delta(), held.userId());
+		}
+	}
+
+	private void send(final WorkflowDelta delta, final String userId) {
+		try {
+			final List<String> versions = redissonClient
+				.getScript(StringCodec.INSTANCE)
+				.eval(
+					VERSION_KEY_PREFIX + delta.getWorkflowId(),
+					RScript.Mode.READ_WRITE,
+					NEXT_VERSION_SCRIPT,
+					RScript.ReturnType.MULTI,
+					List.of(VERSION_KEY_PREFIX + delta.getWorkflowId()),
+					Long.toString(System.currentTimeMillis()),
+					Long.toString(TimeUnit.HOURS.toMillis(VERSION_TTL_HOURS))
+				);
+			delta.setVersion(Long.parseLong(versions.get(0))).setBaseVersion(Long.parseLong(versions.get(1)));
+
+			final ClientEvent<WorkflowDelta> event = ClientEvent.<WorkflowDelta>builder()
+				.type(ClientEventType.WORKFLOW_UPDATE)
+				.projectId(delta.getProjectId())
+				.userId(userId)
+				.data(delta)
+				.build();
+			clientEventService.sendToSubscribers(event, delta.getWorkflowId());
+		} catch (final Exception e) {
+			log.error("Unable to notify users of update to workflow", e);
+		}
+	}
+
+	/**
+	 * Computes the delta between two states of a workflow, without its version
+	 *
+	 * @param before the state of the workflow before the change, or null if it is new
+	 * @param after the state of the workflow after the change
+	 * @return the delta
+	 */
+	static WorkflowDelta diff(final JsonNode before, final JsonNode after) {
+		final WorkflowDelta delta = new WorkflowDelta().setWorkflowId(UUID.fromString(after.get("id").asText()));
+		delta.setWorkflow(JsonUtil.diff(without(before, ELEMENTS), without(after, ELEMENTS)));
+
+		final Map<UUID, JsonNode> beforeNodes = byId(before == null ? null : before.get("nodes"));
+		for (final JsonNode node : after.path("nodes")) {
+			final UUID id = getId(node);
+			if (id == null) continue;
+
+			final JsonNode beforeNode = beforeNodes.remove(id);
+			if (beforeNode == null) {
+				delta.getNodes().put(id, node);
+				continue;
+			}
+
+			final ObjectNode beforeFields = without(beforeNode, PORTS);
+			final ObjectNode afterFields = without(node, PORTS);
+			for (final String ports : PORTS) {
+				final Map<UUID, JsonNode> portPatches = diffPorts(beforeNode.get(ports), node.get(ports));
+				if (portPatches == null) {
+					// the ports changed, the list is replaced whole
+					if (beforeNode.has(ports)) beforeFields.set(ports, beforeNode.get(ports));
+					if (node.has(ports)) afterFields.set(ports, node.get(ports));
+				} else if (!portPatches.isEmpty()) {
+					(ports.equals("inputs") ? delta.getInputs() : delta.getOutputs()).put(id, portPatches);
+				}
+			}
+
+			final JsonNode patch = JsonUtil.diff(beforeFields, afterFields);
+			if (patch != null) {
+				delta.getNodes().put(id, patch);
+			}
+		}
+		delta.getRemovedNodes().addAll(beforeNodes.keySet());
+
+		final Map<UUID, JsonNode> beforeEdges = byId(before == null ? null : before.get("edges"));
+		for (final JsonNode edge : after.path("edges")) {
+			final UUID id = getId(edge);
+			if (id == null) continue;
+
+			final JsonNode patch = JsonUtil.diff(beforeEdges.remove(id), edge);
+			if (patch != null) {
+				delta.getEdges().put(id, patch);
+			}
+		}
+		delta.getRemovedEdges().addAll(beforeEdges.keySet());
+
+		return delta;
+	}
+
+	/**
+	 * Merges a delta into the delta that came before it, so that applying the result is the same as applying both
+	 *
+	 * @param earlier the earlier delta, which is updated
+	 * @param later the later delta
+	 * @return the earlier delta
+	 */
+	static WorkflowDelta merge(final WorkflowDelta earlier, final WorkflowDelta later) {
+		if (later.getProjectId() != null) {
+			earlier.setProjectId(later.getProjectId());
+		}
+		earlier.setWorkflow(mergePatches(earlier.getWorkflow(), later.getWorkflow()));
+
+		later
+			.getNodes()
+			.forEach((id, patch) -> {
+				earlier.getRemovedNodes().remove(id);
+				// the ports patched by id earlier are in the list that replaces them
+				if (patch.has("inputs")) earlier.getInputs().remove(id);
+				if (patch.has("outputs")) earlier.getOutputs().remove(id);
+				earlier.getNodes().put(id, mergePatches(earlier.getNodes().get(id), patch));
+			});
+		mergePortPatches(earlier.getInputs(), later.getInputs());
+		mergePortPatches(earlier.getOutputs(), later.getOutputs());
+		later
+			.getEdges()
+			.forEach((id, patch) -> {
+				earlier.getRemovedEdges().remove(id);
+				earlier.getEdges().put(id, mergePatches(earlier.getEdges().get(id), patch));
+			});
+
+		for (final UUID id : later.getRemovedNodes()) {
+			earlier.getNodes().remove(id);
+			earlier.getInputs().remove(id);
+			earlier.getOutputs().remove(id);
+			earlier.getRemovedNodes().add(id);
+		}
+		for (final UUID id : later.getRemovedEdges()) {
+			earlier.getEdges().remove(id);
+			earlier.getRemovedEdges().add(id);
+		}
+		return earlier;
+	}
+
+	static boolean isEmpty(final WorkflowDelta delta) {
+		return (
+			delta.getWorkflow() == null &&
+			delta.getNodes().isEmpty() &&
+			delta.getInputs().isEmpty() &&
+			delta.getOutputs().isEmpty() &&
+			delta.getEdges().isEmpty() &&
+			delta.getRemovedNodes().isEmpty() &&
+			delta.getRemovedEdges().isEmpty()
+		);
+	}
+
+	/**
+	 * @return the patches of the ports by id, or null if the ports are not the same ports in the same order
+	 */
+	private static Map<UUID, JsonNode> diffPorts(final JsonNode before, final JsonNode after) {
+		if (before == null || after == null || !before.isArray() || !after.isArray()) {
+			return before == null && after == null ? Map.of() : null;
+		}
+
+		final List<UUID> beforeIds = new ArrayList<>();
+		before.forEach(port -> beforeIds.add(getId(port)));
+		final List<UUID> afterIds = new ArrayList<>();
+		after.forEach(port -> afterIds.add(getId(port)));
+		if (!beforeIds.equals(afterIds) || beforeIds.contains(null)) {
+			return null;
+		}
+
+		final Map<UUID, JsonNode> patches = new HashMap<>();
+		for (int i = 0; i < after.size(); i++) {
+			final JsonNode patch = JsonUtil.diff(before.get(i), after.get(i));
+			if (patch != null) {
+				patches.put(afterIds.get(i), patch);
+			}
+		}
+		return patches;
+	}
+
+	private static void mergePortPatches(
+		final Map<UUID, Map<UUID, JsonNode>> earlier,
+		final Map<UUID, Map<UUID, JsonNode>> later
+	) {
+		later.forEach((nodeId, patches) -> {
+			final Map<UUID, JsonNode> nodePatches = earlier.computeIfAbsent(nodeId, id -> new HashMap<>());
+			patches.forEach((portId, patch) -> nodePatches.put(portId, mergePatches(nodePatches.get(portId), patch)));
+		});
+	}
+
+	private static JsonNode mergePatches(final JsonNode earlier, final JsonNode later) {
+		if (earlier == null || later == null) {
+			return later == null ? earlier : later;
+		}
+		if (earlier.isObject() && later.isObject()) {
+			JsonUtil.recursiveSetAll((ObjectNode) earlier, later);
+			return earlier;
+		}
+		return later;
+	}
+
+	private static ObjectNode without(final JsonNode node, final List<String> fieldNames) {
+		final ObjectNode copy = JsonNodeFactory.instance.objectNode();
+		if (node != null && node.isObject()) {
+			copy.setAll((ObjectNode) node);
+			copy.remove(fieldNames);
+		}
+		return copy;
+	}
+
+	private static Map<UUID, JsonNode> byId(final JsonNode elements) {
+		final Map<UUID, JsonNode> byId = new LinkedHashMap<>();
+		if (elements != null) {
+			for (final JsonNode element : elements) {
+				final UUID id = getId(element);
+				if (id != null) {
+					byId.put(id, element);
+				}
+			}
+		}
+		return byId;
+	}
+
+	private static UUID getId(final JsonNode element) {
+		final JsonNode id = element.get("id");
+		return id == null || id.isNull() ? null : UUID.fromString(id.asText());
+	}
+}
@@ -64,6 +64,10 @@ public class DatasetService extends TerariumAssetService<Dataset, DatasetReposit
 	@Observed(name = "function_profile")
 	public List<Dataset> createAssets(final List<Dataset> assets, final UUID projectId) throws IOException {
 		for (final Dataset asset : assets) {
+			// If the columns are already set, don't add them again (happens when copying a dataset to another project).
+			if (asset.getColumns() == null || asset.getColumns().isEmpty()) {
+				extractColumns(asset);
+			}
 			verifyColumnRelationship(asset);
 		}
 		return super.createAssets(assets, projectId);
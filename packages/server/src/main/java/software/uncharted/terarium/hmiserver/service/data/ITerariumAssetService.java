@@ -1,6 +1,7 @@
 package software.uncharted.terarium.hmiserver.service.data;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -12,6 +13,9 @@ import software.uncharted.terarium.hmiserver.models.dataservice.FileExport;
 public interface ITerariumAssetService<T extends TerariumAsset> {
 	Optional<T> getAsset(final UUID id) throws IOException;
 
+	/** The assets that exist and are not deleted out of the given ids, in no particular order. */
+	List<T> getAssets(final List<UUID> ids) throws IOException;
+
 	List<T> getPublicNotTemporaryAssets(final Integer page, final Integer pageSize) throws IOException;
 
 	Optional<T> deleteAsset(final UUID id, final UUID projectId) throws IOException;
@@ -26,6 +30,12 @@ public interface ITerariumAssetService<T extends TerariumAsset> {
 
 	Map<String, FileExport> exportAssetFiles(final UUID assetId) throws IOException;
 
+	/** The files of the asset as they are exported, with the key to read each from rather than its contents. */
+	Map<String, FileExport> getAssetFileExports(final T asset) throws IOException;
+
+	/** Open the contents of an exported file for reading, the caller closes the stream. */
+	InputStream openFileExport(final FileExport fileExport) throws IOException;
+
 	public Integer uploadFile(
 		final UUID assetId,
 		final String filename,
@@ -34,4 +44,7 @@ public interface ITerariumAssetService<T extends TerariumAsset> {
 	) throws IOException;
 
 	public Integer uploadFile(final UUID assetId, final String filename, final FileExport fileExport) throws IOException;
+
+	/** Delete a file that was uploaded with {@link #uploadFile(UUID, String, FileExport)}. */
+	void deleteFile(final UUID assetId, final String filename, final FileExport fileExport) throws IOException;
 }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.micrometer.observation.annotation.Observed;
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
@@ -58,6 +59,19 @@ public class ModelService extends TerariumAssetService<Model, ModelRepository> {
 	@Override
 	@Observed(name = "function_profile")
 	public Model createAsset(final Model asset, final UUID projectId) throws IOException {
+		prepareNewModel(asset);
+		return super.createAsset(asset, projectId);
+	}
+
+	@Override
+	@Observed(name = "function_profile")
+	public List<Model> createAssets(final List<Model> assets, final UUID projectId) throws IOException {
+		assets.forEach(this::prepareNewModel);
+		return super.createAssets(assets, projectId);
+	}
+
+	/** Fill in the defaults a model needs before it is first persisted */
+	private void prepareNewModel(final Model asset) {
 		// Make sure that the model framework is set to lowercase
 		if (asset.getHeader() != null && asset.getHeader().getSchemaName() != null) asset
 			.getHeader()
@@ -99,7 +113,6 @@ public class ModelService extends TerariumAssetService<Model, ModelRepository> {
 			final ObjectNode timeNode = objectMapper.createObjectNode().put("id", id).set("units", unitsNode);
 			asset.getSemantics().getOde().setTime(timeNode);
 		}
-		return super.createAsset(asset, projectId);
 	}
 
 	@Override
@@ -42,7 +42,7 @@ public class NotebookSessionService extends TerariumAssetService<NotebookSession
 	@Override
 	@Observed(name = "function_profile")
 	public void copyAssetFiles(final NotebookSession newAsset, final NotebookSession oldAsset) throws IOException {
-		throw new UnsupportedOperationException("Unimplemented");
+		// Notebook sessions have no files to copy
 	}
 
 	@Override
@@ -55,4 +55,9 @@ public class NotebookSessionService extends TerariumAssetService<NotebookSession
 	public Integer uploadFile(final UUID assetId, final String filename, final FileExport fileExport) throws IOException {
 		throw new UnsupportedOperationException("Unimplemented");
 	}
+
+	@Override
+	public void deleteFile(final UUID assetId, final String filename, final FileExport fileExport) throws IOException {
+		throw new UnsupportedOperationException("Unimplemented");
+	}
 }
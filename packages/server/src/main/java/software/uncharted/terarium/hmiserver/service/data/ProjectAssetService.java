@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotNull;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -90,6 +91,39 @@ public class ProjectAssetService {
 		return Optional.of(projectAsset);
 	}
 
+	/** Add assets of the same type to a project with a single batch of inserts */
+	@Observed(name = "function_profile")
+	public List<ProjectAsset> createProjectAssets(
+		final Project project,
+		final AssetType assetType,
+		final List<? extends TerariumAsset> assets
+	) {
+		final List<ProjectAsset> projectAssets = new ArrayList<>();
+		for (final TerariumAsset asset : assets) {
+			final ProjectAsset projectAsset = new ProjectAsset();
+			projectAsset.setProject(project);
+			projectAsset.setAssetId(asset.getId());
+			projectAsset.setAssetType(assetType);
+			projectAsset.setAssetName(asset.getName());
+			projectAssets.add(projectAsset);
+		}
+
+		final List<ProjectAsset> created = projectAssetRepository.saveAll(projectAssets);
+
+		project.getProjectAssets().addAll(created);
+
+		// update the asset embeddings in the project document
+		for (final TerariumAsset asset : assets) {
+			try {
+				projectSearchService.generateAndUpsertProjectAssetEmbeddings(project.getId(), asset);
+			} catch (final Exception e) {
+				log.error("Error generating embeddings for project asset", e);
+			}
+		}
+
+		return created;
+	}
+
 	@Observed(name = "function_profile")
 	private Optional<ProjectAsset> updateProjectAsset(final ProjectAsset projectAsset) {
 		if (!projectAssetRepository.existsById(projectAsset.getId())) {
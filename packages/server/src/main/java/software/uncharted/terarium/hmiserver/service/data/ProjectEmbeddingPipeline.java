@@ -0,0 +1,555 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.hmiserver.configuration.ElasticsearchConfiguration;
+import software.uncharted.terarium.hmiserver.models.TerariumAsset;
+import software.uncharted.terarium.hmiserver.models.TerariumAssetEmbeddingType;
+import software.uncharted.terarium.hmiserver.models.TerariumAssetEmbeddings;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetType;
+import software.uncharted.terarium.hmiserver.service.data.ProjectSearchService.ProjectAssetEmbedding;
+import software.uncharted.terarium.hmiserver.service.elasticsearch.ElasticsearchService;
+import software.uncharted.terarium.hmiserver.service.elasticsearch.ElasticsearchService.ScriptedUpdate;
+import software.uncharted.terarium.hmiserver.service.gollm.EmbeddingService;
+
+/**
+ * Generates the embeddings of project assets in the background and writes them to the project documents.
+ *
+ * Asset changes are queued in redis, keyed by project and asset so that repeated saves of an asset collapse into the
+ * latest one, and survive a restart of the server. Every instance drains the queue on a schedule: it claims a batch of
+ * assets, embeds all of their distinct texts with a single request, and replaces the embeddings of each asset in its
+ * project document with a bulk scripted update rather than rewriting the whole document.
+ *
+ * <p>A claimed asset is moved to a map of the assets in progress, with a lease. It is removed from there once written,
+ * or once queued again to be retried, and an asset whose lease expired, because the instance that claimed it stopped,
+ * is queued again by the next drain of any instance. An asset is in progress on one instance at a time, so a newer
+ * change to it waits in the queue until the older one is written.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProjectEmbeddingPipeline {
+
+	private final ObjectMapper objectMapper;
+	private final ElasticsearchConfiguration elasticConfig;
+	private final ElasticsearchService elasticService;
+	private final EmbeddingService embeddingService;
+	private final RedissonClient redissonClient;
+	private final MeterRegistry meterRegistry;
+
+	private static final String PENDING_KEY = "project-search-pending-embeddings";
+	private static final String IN_PROGRESS_KEY = "project-search-embeddings-in-progress";
+	private static final String EMBEDDED_KEY = "project-search-embedded-sha256";
+	private static final String EMBEDDED_KEYS_PREFIX = "project-search-embedded-keys:";
+
+	// Replaces every embedding of the given assets in the project document
+	private static final String REPLACE_EMBEDDINGS_SCRIPT =
+		"if (ctx._source.asset_embeddings == null) { ctx._source.asset_embeddings = new ArrayList(); } " +
+		"ctx._source.asset_embeddings.removeIf(e -> params.assetIds.contains(e.assetId)); " +
+		"ctx._source.asset_embeddings.addAll(params.embeddings);";
+
+	// The maximum number of texts embedded by a single request
+	@Value("${terarium.project-search.embeddings.batch-size:64}")
+	private int BATCH_SIZE;
+
+	// Assets queued beyond this are rejected until the queue drains
+	@Value("${terarium.project-search.embeddings.max-pending:10000}")
+	private int MAX_PENDING;
+
+	// The number of times a failed asset is put back on the queue
+	@Value("${terarium.project-search.embeddings.max-attempts:3}")
+	private int MAX_ATTEMPTS;
+
+	// How long to remember the texts that have been embedded for an asset
+	@Value("${terarium.project-search.embeddings.embedded-ttl-days:30}")
+	private long EMBEDDED_TTL_DAYS;
+
+	// How long an instance has to write a batch it claimed before the assets are queued again
+	@Value("${terarium.project-search.embeddings.lease-seconds:300}")
+	private long LEASE_SECONDS;
+
+	// How long to wait for an asset queued here that another instance claimed to be written
+	@Value("${terarium.project-search.embeddings.claimed-timeout-seconds:300}")
+	private long CLAIMED_TIMEOUT_SECONDS;
+
+	@Data
+	public static class EmbeddingJob {
+
+		private String id;
+		private UUID projectId;
+		private UUID assetId;
+		private AssetType assetType;
+		private Map<TerariumAssetEmbeddingType, String> texts;
+		private String sha256;
+		private long enqueuedAt;
+		private int attempts;
+		// when the claim of the instance writing the job expires, if it is in progress
+		private long leaseUntil;
+
+		/** @return a copy of the job, with the given attempts and lease */
+		EmbeddingJob copy(final int attempts, final long leaseUntil) {
+			final EmbeddingJob copy = new EmbeddingJob();
+			copy.setId(id);
+			copy.setProjectId(projectId);
+			copy.setAssetId(assetId);
+			copy.setAssetType(assetType);
+			copy.setTexts(texts);
+			copy.setSha256(sha256);
+			copy.setEnqueuedAt(enqueuedAt);
+			copy.setAttempts(attempts);
+			copy.setLeaseUntil(leaseUntil);
+			return copy;
+		}
+	}
+
+	private RMap<String, EmbeddingJob> pending;
+
+	// The jobs claimed by an instance and not yet written or queued again, by the key of their asset
+	private RMap<String, EmbeddingJob> inProgress;
+
+	// The sha256 of the texts last written for each project asset
+	private RMapCache<String, String> embedded;
+
+	/** A caller on this instance waiting for a job to be written */
+	private record Waiting(String key, String sha256, long enqueuedAt, CompletableFuture<Void> future) {}
+
+	// The callers on this instance, by the id of the job they are waiting for
+	private final Map<String, Waiting> futures = new ConcurrentHashMap<>();
+
+	private Timer lagTimer;
+	private Timer batchTimer;
+	private DistributionSummary batchSize;
+	private Counter embeddedCounter;
+	private Counter dedupedCounter;
+	private Counter unchangedCounter;
+	private Counter rejectedCounter;
+	private Counter failedCounter;
+
+	@PostConstruct
+	void init() {
+		pending = redissonClient.getMap(PENDING_KEY);
+		inProgress = redissonClient.getMap(IN_PROGRESS_KEY);
+		embedded = redissonClient.getMapCache(EMBEDDED_KEY);
+
+		Gauge.builder("terarium.project-search.embeddings.pending", pending, RMap::size).register(meterRegistry);
+		Gauge.builder("terarium.project-search.embeddings.in-progress", inProgress, RMap::size).register(meterRegistry);
+		lagTimer = Timer.builder("terarium.project-search.embeddings.lag").register(meterRegistry);
+		batchTimer = Timer.builder("terarium.project-search.embeddings.batch").register(meterRegistry);
+		batchSize = DistributionSummary.builder("terarium.project-search.embeddings.batch-size").register(meterRegistry);
+		embeddedCounter = Counter.builder("terarium.project-search.embeddings.texts")
+			.tag("outcome", "embedded")
+			.register(meterRegistry);
+		dedupedCounter = Counter.builder("terarium.project-search.embeddings.texts")
+			.tag("outcome", "deduplicated")
+			.register(meterRegistry);
+		unchangedCounter = Counter.builder("terarium.project-search.embeddings.assets")
+			.tag("outcome", "unchanged")
+			.register(meterRegistry);
+		rejectedCounter = Counter.builder("terarium.project-search.embeddings.assets")
+			.tag("outcome", "rejected")
+			.register(meterRegistry);
+		failedCounter = Counter.builder("terarium.project-search.embeddings.assets")
+			.tag("outcome", "failed")
+			.register(meterRegistry);
+	}
+
+	private static String getKey(final UUID projectId, final UUID assetId) {
+		return projectId.toString() + "_" + assetId.toString();
+	}
+
+	// The keys of the assets of a project whose texts are in the embedded map, to forget them without a scan of the map
+	private RSet<String> getEmbeddedKeys(final UUID projectId) {
+		return redissonClient.getSet(EMBEDDED_KEYS_PREFIX + projectId);
+	}
+
+	private static String getSha256(final Map<TerariumAssetEmbeddingType, String> texts) {
+		// sorted by type so that the hash doesn't depend on the order of the map
+		final StringBuilder sb = new StringBuilder();
+		new TreeMap<>(texts).forEach((type, text) -> sb.append(type.name()).append('\u0000').append(text).append('\u0000'));
+		return DigestUtils.sha256Hex(sb.toString());
+	}
+
+	/**
+	 * Queue the embeddings of an asset to be written to its project document.
+	 *
+	 * @return A future that completes once the embeddings are written, or exceptionally with a
+	 *     {@link RejectedExecutionException} if the queue is full
+	 */
+	public CompletableFuture<Void> enqueue(final UUID projectId, final TerariumAsset asset) {
+		return enqueue(projectId, asset, false);
+	}
+
+	/**
+	 * Queue the embeddings of an asset to be written to its project document.
+	 *
+	 * @param force whether to write the embeddings even if the same texts were written already
+	 * @return A future that completes once the embeddings are written, or exceptionally with a
+	 *     {@link RejectedExecutionException} if the queue is full
+	 */
+	public CompletableFuture<Void> enqueue(final UUID projectId, final TerariumAsset asset, final boolean force) {
+		final Map<TerariumAssetEmbeddingType, String> texts = asset.getEmbeddingsSourceByType();
+		if (texts == null) {
+			log.warn("unable to get embedding sources for asset {}", asset.getId());
+			return CompletableFuture.completedFuture(null);
+		}
+
+		// remove any null values
+		texts.values().removeIf(text -> text == null || text.isEmpty());
+		if (texts.isEmpty()) {
+			log.warn("No embedding sources for asset {}, not indexing anything", asset.getId());
+			return CompletableFuture.completedFuture(null);
+		}
+
+		final String key = getKey(projectId, asset.getId());
+		final String sha256 = getSha256(texts);
+		if (!force && sha256.equals(embedded.get(key))) {
+			log.debug("Embedding for asset {} has not changed, skipping", asset.getId());
+			unchangedCounter.increment();
+			return CompletableFuture.completedFuture(null);
+		}
+
+		if (pending.size() >= MAX_PENDING && !pending.containsKey(key)) {
+			log.warn("Embedding queue is full, not embedding asset {}", asset.getId());
+			rejectedCounter.increment();
+			return CompletableFuture.failedFuture(new RejectedExecutionException("Embedding queue is full"));
+		}
+
+		final EmbeddingJob job = new EmbeddingJob();
+		job.setProjectId(projectId);
+		job.setAssetId(asset.getId());
+		job.setAssetType(AssetType.getAssetType(asset.getClass()));
+		job.setTexts(texts);
+		job.setSha256(sha256);
+		job.setEnqueuedAt(System.currentTimeMillis());
+		job.setId(UUID.randomUUID().toString());
+
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		futures.put(job.getId(), new Waiting(key, sha256, job.getEnqueuedAt(), future));
+
+		// replaces any older change to the same asset that hasn't been embedded yet, whose callers then wait for this one
+		final EmbeddingJob replaced = pending.put(key, job);
+		if (replaced != null) {
+			final Waiting waiting = futures.remove(replaced.getId());
+			if (waiting != null) {
+				future.whenComplete((result, error) -> {
+					if (error != null) {
+						waiting.future().completeExceptionally(error);
+					} else {
+						waiting.future().complete(null);
+					}
+				});
+			}
+		}
+		log.info("Queued embedding generation for asset {}", asset.getId());
+		return future;
+	}
+
+	/**
+	 * Forget which embeddings were written to the document of a project, so that they are all written again. This is
+	 * for a document that was replaced without its embeddings, or removed.
+	 */
+	public void forgetProject(final UUID projectId) {
+		final RSet<String> embeddedKeys = getEmbeddedKeys(projectId);
+		final Set<String> keys = embeddedKeys.readAll();
+		if (!keys.isEmpty()) {
+			embedded.fastRemove(keys.toArray(String[]::new));
+			// only the keys read, a key added meanwhile was written after the document was replaced
+			embeddedKeys.removeAll(keys);
+		}
+	}
+
+	/** Remove the embeddings of an asset from its project document, and forget any queued change to it. */
+	public void remove(final UUID projectId, final UUID assetId) throws Exception {
+		final String key = getKey(projectId, assetId);
+		pending.fastRemove(key);
+		inProgress.fastRemove(key);
+		embedded.fastRemove(key);
+		getEmbeddedKeys(projectId).remove(key);
+		futures.forEach((jobId, waiting) -> {
+			if (waiting.key().equals(key)) {
+				complete(jobId);
+			}
+		});
+
+		final ScriptedUpdate update = new ScriptedUpdate();
+		update.setId(projectId.toString());
+		update.setRouting(projectId.toString());
+		update.getParams().put("assetIds", List.of(assetId.toString()));
+		update.getParams().put("embeddings", List.of());
+
+		final BulkResponse response = elasticService.bulkScriptedUpdate(
+			elasticConfig.getProjectAlias(),
+			REPLACE_EMBEDDINGS_SCRIPT,
+			List.of(update)
+		);
+		if (response.errors() && response.items().get(0).error() != null) {
+			throw new RuntimeException(response.items().get(0).error().reason());
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${terarium.project-search.embeddings.poll-interval-millis:1000}")
+	public void drain() {
+		final List<EmbeddingJob> retries = new ArrayList<>();
+		try {
+			requeueExpired();
+			List<EmbeddingJob> batch;
+			while (!(batch = claimBatch()).isEmpty()) {
+				processBatch(batch, retries);
+			}
+		} catch (final Exception e) {
+			log.error("Error draining the embedding queue", e);
+		}
+
+		// failed assets are queued again for the next drain, unless a newer change to
+		// the asset has been queued since, and only then released
+		for (final EmbeddingJob job : retries) {
+			final String key = getKey(job.getProjectId(), job.getAssetId());
+			pending.fastPutIfAbsent(key, job.copy(job.getAttempts() + 1, 0));
+			inProgress.remove(key, job);
+		}
+		completeClaimedElsewhere();
+	}
+
+	/** Queue the jobs again whose lease expired, counting it as a failed attempt */
+	private void requeueExpired() {
+		final long now = System.currentTimeMillis();
+		for (final Map.Entry<String, EmbeddingJob> entry : inProgress.readAllEntrySet()) {
+			final EmbeddingJob job = entry.getValue();
+			if (job.getLeaseUntil() > now) {
+				continue;
+			}
+			if (job.getAttempts() + 1 >= MAX_ATTEMPTS) {
+				log.error("Giving up on embeddings for asset {} after {} attempts", job.getAssetId(), job.getAttempts() + 1);
+				failedCounter.increment();
+			} else {
+				log.warn("Claim of the embeddings for asset {} expired, queueing them again", job.getAssetId());
+				pending.fastPutIfAbsent(entry.getKey(), job.copy(job.getAttempts() + 1, 0));
+			}
+			inProgress.remove(entry.getKey(), job);
+		}
+	}
+
+	/**
+	 * Claim queued assets until their texts fill a batch. A job is claimed by adding it to the assets in progress, which
+	 * fails if the asset is in progress already, and then removing it from the queue, which fails if it was claimed by
+	 * another instance or replaced in the meantime.
+	 */
+	private List<EmbeddingJob> claimBatch() {
+		final List<EmbeddingJob> batch = new ArrayList<>();
+		int texts = 0;
+		final long leaseUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+		final Iterator<String> keys = pending.keySet(BATCH_SIZE).iterator();
+		while (keys.hasNext() && texts < BATCH_SIZE) {
+			final String key = keys.next();
+			final EmbeddingJob job = pending.get(key);
+			if (job == null) {
+				continue;
+			}
+			final EmbeddingJob claimed = job.copy(job.getAttempts(), leaseUntil);
+			if (!inProgress.fastPutIfAbsent(key, claimed)) {
+				continue;
+			}
+			if (!pending.remove(key, job)) {
+				inProgress.remove(key, claimed);
+				continue;
+			}
+			batch.add(claimed);
+			texts += claimed.getTexts().size();
+		}
+		return batch;
+	}
+
+	private void processBatch(final List<EmbeddingJob> batch, final List<EmbeddingJob> retries) {
+		final long start = System.nanoTime();
+		batchSize.record(batch.size());
+
+		// embed each distinct text once
+		final Map<String, String> textsBySha = new LinkedHashMap<>();
+		int total = 0;
+		for (final EmbeddingJob job : batch) {
+			for (final String text : job.getTexts().values()) {
+				textsBySha.putIfAbsent(DigestUtils.sha256Hex(text), text);
+				total++;
+			}
+		}
+		dedupedCounter.increment(total - textsBySha.size());
+
+		final Map<String, TerariumAssetEmbeddings.Embedding> embeddingsBySha = new HashMap<>();
+		try {
+			final List<String> shas = new ArrayList<>(textsBySha.keySet());
+			final TerariumAssetEmbeddings embeddings = embeddingService.generateEmbeddings(
+				new ArrayList<>(textsBySha.values())
+			);
+			for (int i = 0; i < shas.size(); i++) {
+				embeddingsBySha.put(shas.get(i), embeddings.getEmbeddings().get(i));
+			}
+			embeddedCounter.increment(shas.size());
+		} catch (final Exception e) {
+			log.error("Failed to generate embeddings for {} assets", batch.size(), e);
+			batch.forEach(job -> retry(job, retries));
+			return;
+		}
+
+		// one update per project, replacing the embeddings of every asset in the batch
+		final Map<UUID, List<EmbeddingJob>> jobsByProject = new LinkedHashMap<>();
+		for (final EmbeddingJob job : batch) {
+			jobsByProject.computeIfAbsent(job.getProjectId(), id -> new ArrayList<>()).add(job);
+		}
+
+		final List<ScriptedUpdate> updates = new ArrayList<>();
+		for (final Map.Entry<UUID, List<EmbeddingJob>> entry : jobsByProject.entrySet()) {
+			final List<String> assetIds = new ArrayList<>();
+			final List<Object> projectEmbeddings = new ArrayList<>();
+			for (final EmbeddingJob job : entry.getValue()) {
+				assetIds.add(job.getAssetId().toString());
+				for (final Map.Entry<TerariumAssetEmbeddingType, String> text : job.getTexts().entrySet()) {
+					final TerariumAssetEmbeddings.Embedding embedding = embeddingsBySha.get(DigestUtils.sha256Hex(text.getValue()));
+
+					final ProjectAssetEmbedding projectAssetEmbedding = new ProjectAssetEmbedding();
+					projectAssetEmbedding.setAssetId(job.getAssetId());
+					projectAssetEmbedding.setAssetType(job.getAssetType());
+					projectAssetEmbedding.setEmbeddingType(text.getKey());
+					projectAssetEmbedding.setEmbeddingId(UUID.randomUUID().toString());
+					projectAssetEmbedding.setVector(embedding.getVector());
+					projectAssetEmbedding.setSpan(new long[] { 0, text.getValue().length() });
+
+					// the script params are serialized as plain json, the same as the document
+					projectEmbeddings.add(objectMapper.convertValue(projectAssetEmbedding, Map.class));
+				}
+			}
+
+			final ScriptedUpdate update = new ScriptedUpdate();
+			update.setId(entry.getKey().toString());
+			update.setRouting(entry.getKey().toString());
+			update.getParams().put("assetIds", assetIds);
+			update.getParams().put("embeddings", projectEmbeddings);
+			updates.add(update);
+		}
+
+		final List<List<EmbeddingJob>> projects = new ArrayList<>(jobsByProject.values());
+		try {
+			final BulkResponse response = elasticService.bulkScriptedUpdate(
+				elasticConfig.getProjectAlias(),
+				REPLACE_EMBEDDINGS_SCRIPT,
+				updates
+			);
+
+			for (int i = 0; i < response.items().size(); i++) {
+				final BulkResponseItem item = response.items().get(i);
+				if (item.error() == null) {
+					written(projects.get(i));
+				} else if (item.status() == 404) {
+					// the project has been removed, there is nothing to write to
+					log.warn("Project {} not found, dropping its embeddings", item.id());
+					projects.get(i).forEach(job -> {
+						release(job);
+						complete(job.getId());
+					});
+				} else {
+					log.error("Failed to write embeddings for project {}: {}", item.id(), item.error().reason());
+					projects.get(i).forEach(job -> retry(job, retries));
+				}
+			}
+		} catch (final Exception e) {
+			log.error("Failed to write embeddings for {} projects", updates.size(), e);
+			projects.forEach(jobs -> jobs.forEach(job -> retry(job, retries)));
+		}
+
+		batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	/** Record the texts written for the assets of a project, and release them */
+	private void written(final List<EmbeddingJob> jobs) {
+		final RSet<String> embeddedKeys = getEmbeddedKeys(jobs.get(0).getProjectId());
+		embeddedKeys.addAll(jobs.stream().map(job -> getKey(job.getProjectId(), job.getAssetId())).toList());
+		embeddedKeys.expire(Duration.ofDays(EMBEDDED_TTL_DAYS));
+
+		for (final EmbeddingJob job : jobs) {
+			final String key = getKey(job.getProjectId(), job.getAssetId());
+			embedded.fastPut(key, job.getSha256(), EMBEDDED_TTL_DAYS, TimeUnit.DAYS);
+			release(job);
+			lagTimer.record(System.currentTimeMillis() - job.getEnqueuedAt(), TimeUnit.MILLISECONDS);
+			complete(job.getId());
+		}
+	}
+
+	// removes the claim of a job, unless it expired and the job was claimed again
+	private void release(final EmbeddingJob job) {
+		inProgress.remove(getKey(job.getProjectId(), job.getAssetId()), job);
+	}
+
+	private void retry(final EmbeddingJob job, final List<EmbeddingJob> retries) {
+		if (job.getAttempts() + 1 >= MAX_ATTEMPTS) {
+			log.error("Giving up on embeddings for asset {} after {} attempts", job.getAssetId(), job.getAttempts() + 1);
+			failedCounter.increment();
+			release(job);
+			final Waiting waiting = futures.remove(job.getId());
+			if (waiting != null) {
+				waiting.future().completeExceptionally(new RuntimeException("Failed to embed asset " + job.getAssetId()));
+			}
+			return;
+		}
+		retries.add(job);
+	}
+
+	private void complete(final String jobId) {
+		final Waiting waiting = futures.remove(jobId);
+		if (waiting != null) {
+			waiting.future().complete(null);
+		}
+	}
+
+	private void completeClaimedElsewhere() {
+		// assets queued here but claimed by another instance are complete once their texts are the ones written, as
+		// long as the other instance hasn't given up on them
+		final long now = System.currentTimeMillis();
+		for (final Map.Entry<String, Waiting> entry : futures.entrySet()) {
+			final Waiting waiting = entry.getValue();
+			final EmbeddingJob job = pending.get(waiting.key());
+			if (job != null && entry.getKey().equals(job.getId())) {
+				continue;
+			}
+			if (waiting.sha256().equals(embedded.get(waiting.key()))) {
+				complete(entry.getKey());
+			} else if (now - waiting.enqueuedAt() > TimeUnit.SECONDS.toMillis(CLAIMED_TIMEOUT_SECONDS)) {
+				futures.remove(entry.getKey());
+				waiting
+					.future()
+					.completeExceptionally(new TimeoutException("Embeddings of " + waiting.key() + " were not written in time"));
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.hmiserver.models.User;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Contributor;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.service.UserService;
+import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
+import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
+import software.uncharted.terarium.hmiserver.utils.rebac.SchemaObject;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacPermissionRelationship;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacProject;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacUser;
+
+/**
+ * Fills in what the project list shows about each project: the permission of the user, whether it is public, its
+ * number of contributors and the name of its author. Each is resolved for the whole list at once rather than per
+ * project, and all of them concurrently.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProjectListService {
+
+	private final ReBACService reBACService;
+	private final ProjectPermissionsService projectPermissionsService;
+	private final UserService userService;
+
+	@Value("${terarium.project-list.threads:16}")
+	private int THREADS;
+
+	// The most threads the contributors of the projects of one list are read on, so that a long list doesn't take the
+	// whole pool from the other requests
+	@Value("${terarium.project-list.contributor-tasks:4}")
+	private int CONTRIBUTOR_TASKS;
+
+	private ExecutorService executor;
+
+	@PostConstruct
+	void init() {
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Set the user permission, public status, contributor count and author name of each of a list of projects.
+	 *
+	 * @param rebacUser the user the projects are listed for
+	 * @param projects the projects to populate
+	 * @throws Exception if the permissions of the user for the projects can't be resolved
+	 */
+	public void populateProjects(final RebacUser rebacUser, final List<Project> projects) throws Exception {
+		final List<UUID> projectIds = projects.stream().map(Project::getId).toList();
+
+		final Future<Map<UUID, String>> permissions = executor.submit(() -> rebacUser.getPermissionsFor(projectIds));
+		final Future<Set<String>> publicProjects = executor.submit(this::getPublicProjectIds);
+		final Future<Map<String, String>> authorNames = executor.submit(() -> getAuthorNames(projects));
+
+		// SpiceDB reads the relationships of one resource at a time, so these are read per project, split between a
+		// bounded number of tasks
+		final List<Future<Map<UUID, List<Contributor>>>> contributorTasks = new ArrayList<>();
+		final int tasks = Math.min(Math.max(CONTRIBUTOR_TASKS, 1), projectIds.size());
+		for (int task = 0; task < tasks; task++) {
+			final List<UUID> slice = new ArrayList<>();
+			for (int i = task; i < projectIds.size(); i += tasks) {
+				slice.add(projectIds.get(i));
+			}
+			contributorTasks.add(executor.submit(() -> getContributors(slice)));
+		}
+
+		final Map<UUID, String> userPermissions;
+		try {
+			userPermissions = permissions.get();
+		} catch (final ExecutionException e) {
+			contributorTasks.forEach(future -> future.cancel(true));
+			throw e;
+		}
+
+		final Map<UUID, List<Contributor>> contributors = new HashMap<>();
+		for (final Future<Map<UUID, List<Contributor>>> task : contributorTasks) {
+			contributors.putAll(task.get());
+		}
+
+		Set<String> publicIds;
+		try {
+			publicIds = publicProjects.get();
+		} catch (final ExecutionException e) {
+			log.error("Failed to get public projects from SpiceDB... Defaulting to private.", e.getCause());
+			publicIds = Set.of();
+		}
+
+		Map<String, String> names;
+		try {
+			names = authorNames.get();
+		} catch (final ExecutionException e) {
+			log.error("Failed to get project author names from postgres db", e.getCause());
+			names = Map.of();
+		}
+
+		for (final Project project : projects) {
+			project.setUserPermission(userPermissions.get(project.getId()));
+			project.setPublicProject(publicIds.contains(project.getId().toString()));
+
+			if (contributors.containsKey(project.getId())) {
+				final List<Contributor> projectContributors = contributors.get(project.getId());
+				if (project.getMetadata() == null) {
+					project.setMetadata(new HashMap<>());
+				}
+				project
+					.getMetadata()
+					.put("contributor-count", Integer.toString(projectContributors == null ? 0 : projectContributors.size()));
+			}
+
+			if (project.getUserId() != null && names.containsKey(project.getUserId())) {
+				project.setUserName(names.get(project.getUserId()));
+			}
+		}
+	}
+
+	/** The contributors of each of some projects, read one project after the other; those that failed are left out */
+	private Map<UUID, List<Contributor>> getContributors(final List<UUID> projectIds) {
+		final Map<UUID, List<Contributor>> contributors = new HashMap<>();
+		for (final UUID projectId : projectIds) {
+			try {
+				contributors.put(
+					projectId,
+					projectPermissionsService.getContributors(new RebacProject(projectId, reBACService))
+				);
+			} catch (final Exception e) {
+				log.error("Failed to get project contributors from SpiceDB for project {}", projectId, e);
+			}
+		}
+		return contributors;
+	}
+
+	/** The ids of the projects that the public group can read or write, read in one request */
+	private Set<String> getPublicProjectIds() throws Exception {
+		final Set<String> ids = new HashSet<>();
+		final SchemaObject publicGroup = new SchemaObject(Schema.Type.GROUP, ReBACService.PUBLIC_GROUP_ID);
+		for (final RebacPermissionRelationship relationship : reBACService.getSubjectRelationships(
+			publicGroup,
+			Schema.Type.PROJECT
+		)) {
+			if (
+				relationship.getRelationship().equals(Schema.Relationship.READER) ||
+				relationship.getRelationship().equals(Schema.Relationship.WRITER)
+			) {
+				ids.add(relationship.getResourceId());
+			}
+		}
+		return ids;
+	}
+
+	/** The names of the authors of the projects by user id, read in one query */
+	private Map<String, String> getAuthorNames(final List<Project> projects) {
+		final Set<String> userIds = new HashSet<>();
+		for (final Project project : projects) {
+			if (project.getUserId() != null) {
+				userIds.add(project.getUserId());
+			}
+		}
+		if (userIds.isEmpty()) {
+			return Map.of();
+		}
+
+		final Map<String, String> names = new HashMap<>();
+		for (final User user : userService.getByIds(userIds)) {
+			if (user.getName() != null) {
+				names.put(user.getId(), user.getName());
+			}
+		}
+		return names;
+	}
+}
@@ -48,6 +48,7 @@ public class ProjectSearchService {
 	protected final ElasticsearchConfiguration elasticConfig;
 	protected final ElasticsearchService elasticService;
 	protected final EmbeddingService embeddingService;
+	protected final ProjectEmbeddingPipeline embeddingPipeline;
 	protected final Environment env;
 
 	protected boolean isRunningTestProfile() {
@@ -190,6 +191,8 @@ public class ProjectSearchService {
 
 		final String routing = project.getId().toString();
 
+		// the new document has none of the embeddings of the project
+		embeddingPipeline.forgetProject(project.getId());
 		elasticService.indexWithRouting(getAlias(), project.getId().toString(), doc, routing);
 
 		// ensure the project is embedded too
@@ -233,6 +236,7 @@ public class ProjectSearchService {
 	 */
 	public void removeProject(final UUID id) throws IOException {
 		elasticService.delete(getAlias(), id.toString());
+		embeddingPipeline.forgetProject(id);
 	}
 
 	/**
@@ -341,17 +345,13 @@ public class ProjectSearchService {
 		return QueryBuilders.bool(b -> b.must(onlyProjects).must(permissionQuery));
 	}
 
-	// private String getEmbeddingSha256(final Map<TerariumAssetEmbeddingType, String> embeddingTexts) {
-	// 	final String concatenatedText = embeddingTexts.values().stream().sorted().reduce((a, b) -> a + " " + b).orElse("");
-	// 	return DigestUtils.sha256Hex(concatenatedText);
-	// }
-
 	/**
 	 * Generate asset embeddings for a project
 	 *
 	 * @param projectId - the project id
 	 * @param asset - the asset to generate embeddings for
-	 * @param force - force the embedding to be generated even if the asset is temporary
+	 * @param force - force the embedding to be generated even if the asset is temporary, or its texts were written
+	 *     already
 	 * @return - a future that will be completed when the embedding is generated
 	 */
 	public Future<Void> generateAndUpsertProjectAssetEmbeddings(
@@ -359,93 +359,11 @@ public class ProjectSearchService {
 		final TerariumAsset asset,
 		final boolean force
 	) throws IOException {
-		//TODO: Temporary fix for performance issue. Disabling embeddings for now. Jan 29 2025
-
-		/*if (force || (!isRunningTestProfile() && !asset.getTemporary())) {
-			final Map<TerariumAssetEmbeddingType, String> embeddingTexts = asset.getEmbeddingsSourceByType();
-			if (embeddingTexts == null) {
-				log.warn("unable to get embedding sources for asset {}", asset.getId());
-				return null;
-			}
-
-			// remove any null values
-			embeddingTexts.values().removeIf(text -> text == null || text.isEmpty());
-
-			if (embeddingTexts.isEmpty()) {
-				log.warn("No embedding sources for asset {}, not indexing anything", asset.getId());
-				return null;
-			}
-
-			// compute the new embedding sha
-			final String newEmbeddingSha256 = getEmbeddingSha256(embeddingTexts);
-
-			final ProjectDocument projectDoc = elasticService.get(getAlias(), projectId.toString(), ProjectDocument.class);
-
-			if (projectDoc == null) {
-				log.warn("Project {} not found, skipping", projectId);
-				return null;
-			}
-
-			if (projectDoc.embeddingSha256 != null && projectDoc.embeddingSha256.equals(newEmbeddingSha256)) {
-				log.info("Embedding for asset {} has not changed, skipping", asset.getId());
-				return null;
-			}
-
-			log.info("Dispatch async embedding generation for asset {}", asset.getId());
-			return CompletableFuture.runAsync(() -> {
-				new Thread(() -> {
-					try {
-						final Map<TerariumAssetEmbeddingType, TerariumAssetEmbeddings> embeddings =
-							embeddingService.generateEmbeddingsBySource(embeddingTexts);
-
-						for (final Map.Entry<TerariumAssetEmbeddingType, TerariumAssetEmbeddings> entry : embeddings.entrySet()) {
-							final TerariumAssetEmbeddings embedding = entry.getValue();
-
-							final ProjectAssetEmbedding projectAssetEmbedding = new ProjectAssetEmbedding();
-							projectAssetEmbedding.setAssetId(asset.getId());
-							projectAssetEmbedding.setAssetType(AssetType.getAssetType(asset.getClass()));
-							projectAssetEmbedding.setEmbeddingType(entry.getKey());
-							projectAssetEmbedding.setEmbeddingId(embedding.getEmbeddings().get(0).getEmbeddingId());
-							projectAssetEmbedding.setVector(embedding.getEmbeddings().get(0).getVector());
-							projectAssetEmbedding.setSpan(embedding.getEmbeddings().get(0).getSpan());
-
-							// update the embedding on the project
-							if (projectDoc.getAssetEmbeddings() == null) {
-								projectDoc.setAssetEmbeddings(List.of(projectAssetEmbedding));
-							} else {
-								int index = -1;
-								for (int i = 0; i < projectDoc.getAssetEmbeddings().size(); i++) {
-									if (
-										projectDoc.getAssetEmbeddings().get(i).getAssetId().equals(asset.getId()) &&
-										projectDoc.getAssetEmbeddings().get(i).getEmbeddingType().equals(entry.getKey())
-									) {
-										index = i;
-										break;
-									}
-								}
-								if (index != -1) {
-									projectDoc.getAssetEmbeddings().set(index, projectAssetEmbedding);
-								} else {
-									projectDoc.getAssetEmbeddings().add(projectAssetEmbedding);
-								}
-							}
-						}
-
-						// save the new embedding sha256
-						projectDoc.embeddingSha256 = newEmbeddingSha256;
-
-						final String routing = projectId.toString();
-
-						log.info("Writing asset embedding for project {} for asset {}", projectId, asset.getId());
-
-						// Execute the update request
-						elasticService.updateWithRouting(getAlias(), projectId.toString(), projectDoc, routing);
-					} catch (final Exception e) {
-						log.error("Failed to update embeddings for document {}", asset.getId(), e);
-					}
-				}).start();
-			});
-		}*/
+		if (force || (!isRunningTestProfile() && !asset.getTemporary())) {
+			// the embeddings are generated and written in the background, batched with
+			// the changes to other assets
+			return embeddingPipeline.enqueue(projectId, asset, force);
+		}
 		return null;
 	}
 
@@ -462,15 +380,7 @@ public class ProjectSearchService {
 	 */
 	public void removeProjectAssetEmbedding(final UUID projectId, final UUID assetId) {
 		try {
-			final ProjectDocument projectDoc = elasticService.get(getAlias(), projectId.toString(), ProjectDocument.class);
-
-			if (projectDoc.getAssetEmbeddings() != null) {
-				projectDoc.getAssetEmbeddings().removeIf(e -> e.getAssetId().equals(assetId));
-			}
-
-			final String routing = projectId.toString();
-
-			elasticService.updateWithRouting(getAlias(), projectId.toString(), projectDoc, routing);
+			embeddingPipeline.remove(projectId, assetId);
 		} catch (final Exception e) {
 			log.error("Failed to remove embeddings for document {}", assetId, e);
 			throw new RuntimeException("Failed to remove embeddings for document " + assetId, e);
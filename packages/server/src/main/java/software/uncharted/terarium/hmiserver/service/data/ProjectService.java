@@ -1,6 +1,9 @@
 package software.uncharted.terarium.hmiserver.service.data;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -12,9 +15,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -52,6 +58,23 @@ public class ProjectService {
 	final ReBACService reBACService;
 	final Messages messages;
 
+	// projects are rarely deleted, so that they exist is cached for a while rather than queried on every request
+	@Value("${terarium.project-exists.cache-ttl-seconds:60}")
+	private long EXISTS_CACHE_TTL_SECONDS;
+
+	@Value("${terarium.project-exists.cache-max-entries:10000}")
+	private long EXISTS_CACHE_MAX_ENTRIES;
+
+	private Cache<UUID, Boolean> existingProjects;
+
+	@PostConstruct
+	void init() {
+		existingProjects = Caffeine.newBuilder()
+			.maximumSize(EXISTS_CACHE_MAX_ENTRIES)
+			.expireAfterWrite(EXISTS_CACHE_TTL_SECONDS, TimeUnit.SECONDS)
+			.build();
+	}
+
 	@Observed(name = "function_profile")
 	public List<Project> getProjects() {
 		return projectRepository.findByDeletedOnIsNull();
@@ -174,12 +197,32 @@ public class ProjectService {
 		return Optional.of(updated);
 	}
 
+	/**
+	 * Whether a project exists and isn't deleted, without reading the project. Only projects that exist are cached, so
+	 * that a project is found as soon as it is created.
+	 *
+	 * @param id the id of the project
+	 * @return true if the project exists
+	 */
+	@Observed(name = "function_profile")
+	public boolean projectExists(final UUID id) {
+		if (existingProjects.getIfPresent(id) != null) {
+			return true;
+		}
+		final boolean exists = projectRepository.existsByIdAndDeletedOnIsNull(id);
+		if (exists) {
+			existingProjects.put(id, true);
+		}
+		return exists;
+	}
+
 	@Observed(name = "function_profile")
 	public boolean delete(final UUID id) throws IOException {
 		final Optional<Project> project = getProject(id);
 		if (project.isEmpty()) return false;
 		project.get().setDeletedOn(Timestamp.from(Instant.now()));
 		projectRepository.save(project.get());
+		existingProjects.invalidate(id);
 		projectSearchService.removeProject(id);
 		return true;
 	}
@@ -206,6 +249,26 @@ public class ProjectService {
 		}
 	}
 
+	/**
+	 * Check a project permission without blocking, so that the caller can do other work while it is checked
+	 *
+	 * @return whether the user has the permission, failing with a {@link ResponseStatusException} if it can't be checked
+	 */
+	public CompletableFuture<Boolean> hasPermissionAsync(
+		final UUID projectId,
+		final User user,
+		final Schema.Permission permission
+	) {
+		final RebacUser rebacUser = new RebacUser(user.getId(), reBACService);
+		final RebacProject rebacProject = new RebacProject(projectId, reBACService);
+		return rebacUser
+			.canAsync(rebacProject, permission)
+			.exceptionally(e -> {
+				log.error("Error checking project permission", e);
+				throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, messages.get("rebac.service-unavailable"));
+			});
+	}
+
 	/**
 	 * Add a group to a project with a specific permission level
 	 *
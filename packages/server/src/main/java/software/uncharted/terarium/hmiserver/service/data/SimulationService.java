@@ -10,10 +10,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.entity.ContentType;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.uncharted.terarium.hmiserver.configuration.Config;
 import software.uncharted.terarium.hmiserver.models.dataservice.AssetType;
@@ -186,39 +183,26 @@ public class SimulationService extends TerariumAssetService<Simulation, Simulati
 		}
 	}
 
+	@Override
 	@Observed(name = "function_profile")
-	public Map<String, FileExport> exportAssetFiles(final UUID simId) throws IOException {
-		final Map<String, FileExport> files = super.exportAssetFiles(simId);
+	public Map<String, FileExport> getAssetFileExports(final Simulation simulation) throws IOException {
+		final Map<String, FileExport> files = super.getAssetFileExports(simulation);
 
 		// we also need to export the result files
-
-		final Simulation simulation = getAsset(simId).orElseThrow();
 		if (simulation.getResultFiles() != null) {
 			for (final String resultFile : simulation.getResultFiles()) {
 				final String filename = S3Service.parseFilename(resultFile);
-				final String key = getResultsPath(simId, filename);
-
-				try {
-					final ResponseInputStream<GetObjectResponse> stream = s3ClientService
-						.getS3Service()
-						.getObject(config.getFileStorageS3BucketName(), key);
-					final byte[] bytes = stream.readAllBytes();
-
-					final String contentType = stream.response().contentType();
-
-					final FileExport fileExport = new FileExport();
-					fileExport.setBytes(bytes);
-					fileExport.setContentType(ContentType.parse(contentType));
-					fileExport.setPathPrefix(config.getResultsPath());
-
-					files.put(resultFile, fileExport);
-				} catch (final NoSuchKeyException e) {
-					log.error("Failed to export simulation result file, no object found, excluding from exported asset", e);
+				final FileExport fileExport = getFileExport(
+					getResultsPath(simulation.getId(), filename),
+					config.getResultsPath()
+				);
+				if (fileExport == null) {
+					log.error("Failed to export simulation result file, no object found, excluding from exported asset");
 					continue;
 				}
+				files.put(resultFile, fileExport);
 			}
 		}
-
 		return files;
 	}
 }
@@ -4,11 +4,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micrometer.observation.annotation.Observed;
 import jakarta.ws.rs.NotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -82,6 +83,18 @@ public abstract class TerariumAssetService<T extends TerariumAsset, R extends PS
 		return repository.getByIdAndDeletedOnIsNull(id);
 	}
 
+	/**
+	 * Get the assets with the given IDs in a single query, skipping any that do not exist or are deleted
+	 *
+	 * @param ids The IDs of the assets to get
+	 * @return The assets found
+	 */
+	@Override
+	@Observed(name = "function_profile")
+	public List<T> getAssets(final List<UUID> ids) {
+		return repository.findAllByIdInAndDeletedOnIsNull(ids);
+	}
+
 	/**
 	 * Check if an asset exists by its ID
 	 *
@@ -179,7 +192,7 @@ public abstract class TerariumAssetService<T extends TerariumAsset, R extends PS
 	@Override
 	@Observed(name = "function_profile")
 	public Optional<T> updateAsset(final T asset, final UUID projectId) throws IOException, IllegalArgumentException {
-		final Optional<T> oldAsset = getAsset(asset.getId());
+		final Optional<T> oldAsset = repository.getByIdAndDeletedOnIsNull(asset.getId());
 
 		if (oldAsset.isEmpty()) {
 			throw new NotFoundException("Asset not found for id: " + asset.getId().toString());
@@ -312,17 +325,22 @@ public abstract class TerariumAssetService<T extends TerariumAsset, R extends PS
 	@Observed(name = "function_profile")
 	public Integer uploadFile(final UUID assetId, final String filename, final FileExport fileExport) throws IOException {
 		final String bucket = config.getFileStorageS3BucketName();
-		String prefix = fileExport.getPathPrefix();
-		if (prefix.isEmpty()) {
-			prefix = getAssetPath();
-		}
+		final String key = getExportPath(assetId, filename, fileExport);
 
-		final String key = getPrefixedPath(prefix, assetId, filename);
+		final PutObjectResponse res;
+		if (fileExport.getPath() != null) {
+			res = s3ClientService.getS3Service().putObject(bucket, key, fileExport.getContentType(), fileExport.getPath());
+		} else {
+			res = s3ClientService.getS3Service().putObject(bucket, key, fileExport.getContentType(), fileExport.getBytes());
+		}
+		return res.sdkHttpResponse().statusCode();
+	}
 
-		final PutObjectResponse res = s3ClientService
+	@Observed(name = "function_profile")
+	public void deleteFile(final UUID assetId, final String filename, final FileExport fileExport) throws IOException {
+		s3ClientService
 			.getS3Service()
-			.putObject(bucket, key, fileExport.getContentType(), fileExport.getBytes());
-		return res.sdkHttpResponse().statusCode();
+			.deleteObject(config.getFileStorageS3BucketName(), getExportPath(assetId, filename, fileExport));
 	}
 
 	@Observed(name = "function_profile")
@@ -348,34 +366,58 @@ public abstract class TerariumAssetService<T extends TerariumAsset, R extends PS
 	@Observed(name = "function_profile")
 	public Map<String, FileExport> exportAssetFiles(final UUID assetId) throws IOException {
 		final T asset = getAsset(assetId).orElseThrow();
-		final String bucket = config.getFileStorageS3BucketName();
 
-		final Map<String, FileExport> files = new HashMap<>();
+		final Map<String, FileExport> files = getAssetFileExports(asset);
+		for (final Map.Entry<String, FileExport> entry : files.entrySet()) {
+			try (final InputStream stream = openFileExport(entry.getValue())) {
+				entry.getValue().setBytes(stream.readAllBytes());
+			}
+		}
+		return files;
+	}
+
+	@Observed(name = "function_profile")
+	public Map<String, FileExport> getAssetFileExports(final T asset) throws IOException {
+		final Map<String, FileExport> files = new LinkedHashMap<>();
 		if (asset.getFileNames() != null) {
 			for (final String fileName : asset.getFileNames()) {
-				final String key = getPath(assetId, fileName);
-
-				try {
-					final ResponseInputStream<GetObjectResponse> stream = s3ClientService.getS3Service().getObject(bucket, key);
-					final byte[] bytes = stream.readAllBytes();
-
-					final String contentType = stream.response().contentType();
-
-					final FileExport fileExport = new FileExport();
-					fileExport.setBytes(bytes);
-					fileExport.setContentType(ContentType.parse(contentType));
-					fileExport.setPathPrefix(getAssetPath());
-
-					files.put(fileName, fileExport);
-				} catch (final NoSuchKeyException e) {
-					log.error("Failed to export fileName {}, no object found, excluding from exported asset", e);
+				final FileExport fileExport = getFileExport(getPath(asset.getId(), fileName), getAssetPath());
+				if (fileExport == null) {
+					log.error("Failed to export fileName {}, no object found, excluding from exported asset", fileName);
 					continue;
 				}
+				files.put(fileName, fileExport);
 			}
 		}
 		return files;
 	}
 
+	public InputStream openFileExport(final FileExport fileExport) throws IOException {
+		return s3ClientService.getS3Service().getObject(config.getFileStorageS3BucketName(), fileExport.getKey());
+	}
+
+	/**
+	 * Describe an S3 object as an exported file without reading its contents
+	 *
+	 * @param key The key of the object
+	 * @param pathPrefix The prefix the file is uploaded under when it is imported
+	 * @return The file export, or null if the object does not exist
+	 */
+	protected FileExport getFileExport(final String key, final String pathPrefix) {
+		final Optional<String> contentType = s3ClientService
+			.getS3Service()
+			.getObjectContentType(config.getFileStorageS3BucketName(), key);
+		if (contentType.isEmpty()) {
+			return null;
+		}
+
+		final FileExport fileExport = new FileExport();
+		fileExport.setKey(key);
+		fileExport.setContentType(ContentType.parse(contentType.get()));
+		fileExport.setPathPrefix(pathPrefix);
+		return fileExport;
+	}
+
 	protected String getPath(final UUID id, final String filename) {
 		return String.join("/", getAssetPath(), id.toString(), filename);
 	}
@@ -383,4 +425,10 @@ public abstract class TerariumAssetService<T extends TerariumAsset, R extends PS
 	protected String getPrefixedPath(final String prefix, final UUID id, final String filename) {
 		return String.join("/", prefix, id.toString(), filename);
 	}
+
+	// The key an exported file is uploaded under when it is imported
+	private String getExportPath(final UUID id, final String filename, final FileExport fileExport) {
+		final String prefix = fileExport.getPathPrefix();
+		return getPrefixedPath(prefix.isEmpty() ? getAssetPath() : prefix, id, filename);
+	}
 }
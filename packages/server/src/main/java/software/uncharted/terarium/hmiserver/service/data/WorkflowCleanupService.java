@@ -1,55 +1,112 @@
 package software.uncharted.terarium.hmiserver.service.data;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
-import java.io.IOException;
-import java.util.Set;
+import java.sql.Timestamp;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
-import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
-import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
 
+/**
+ * Removes the rows of workflow nodes and edges that were marked for deletion, in the background.
+ *
+ * <p>Deleted elements are kept for a while so that clients still holding a workflow can't add them back, then removed
+ * a few batches at a time on a schedule by a single instance, oldest first. The elements marked for deletion are found
+ * through a partial index, so a run costs nothing when there are none.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WorkflowCleanupService {
 
 	private final RedissonClient redissonClient;
-	private final WorkflowService workflowService;
+	private final WorkflowElementService workflowElementService;
+	private final MeterRegistry meterRegistry;
+
+	private static final String LOCK_KEY = "workflow-compaction-lock";
+
+	// How long an element is kept after it was deleted
+	@Value("${terarium.workflow-compaction.min-age-seconds:3600}")
+	private long MIN_AGE_SECONDS;
+
+	// The maximum number of nodes, and of edges, removed in a transaction
+	@Value("${terarium.workflow-compaction.batch-size:100}")
+	private int BATCH_SIZE;
+
+	// The maximum number of batches in a run, which limits the rate at which rows are removed
+	@Value("${terarium.workflow-compaction.max-batches:10}")
+	private int MAX_BATCHES;
+
+	@Value("${terarium.workflow-compaction.lock-lease-seconds:100}")
+	private long LOCK_LEASE_SECONDS;
+
 	private RLock lock;
 
+	// How long the oldest element that can be removed has been waiting for it, as of the last run
+	private final AtomicLong lagSeconds = new AtomicLong();
+
+	private Counter removedCounter;
+	private Counter bytesCounter;
+
 	@PostConstruct
 	void init() {
-		lock = redissonClient.getLock("cleaner_upper_lock_name");
+		lock = redissonClient.getLock(LOCK_KEY);
+		Gauge.builder("terarium.workflow-compaction.lag", lagSeconds, AtomicLong::get)
+			.baseUnit("seconds")
+			.register(meterRegistry);
+		removedCounter = Counter.builder("terarium.workflow-compaction.removed").register(meterRegistry);
+		bytesCounter = Counter.builder("terarium.workflow-compaction.reclaimed").baseUnit("bytes").register(meterRegistry);
 	}
 
-	@EventListener(ApplicationReadyEvent.class)
-	public void onApplicationReady(final ApplicationReadyEvent event) {
+	@Scheduled(fixedDelayString = "${terarium.workflow-compaction.interval-millis:60000}")
+	public void compact() {
 		try {
-			if (lock.tryLock(1, 100, TimeUnit.SECONDS)) {
-				try {
-					final Set<Workflow> workflows = workflowService.findWorkflowsToClean();
-					for (final Workflow workflow : workflows) {
-						workflow.getEdges().removeIf(WorkflowEdge::getIsDeleted);
-						workflow.getNodes().removeIf(WorkflowNode::getIsDeleted);
-					}
-					workflowService.updateWorkflows(workflows);
-				} catch (final IOException e) {
-					throw new RuntimeException(e);
-				} finally {
-					lock.unlock();
-				}
-			} else {
-				log.info("Someone else is cleaning this up");
+			if (!lock.tryLock(0, LOCK_LEASE_SECONDS, TimeUnit.SECONDS)) {
+				log.debug("Someone else is compacting workflows");
+				return;
 			}
 		} catch (final InterruptedException e) {
-			throw new RuntimeException(e);
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		try {
+			final Timestamp deletedBefore = new Timestamp(System.currentTimeMillis() - MIN_AGE_SECONDS * 1000);
+			int removed = 0;
+			long bytes = 0;
+			for (int batch = 0; batch < MAX_BATCHES; batch++) {
+				final WorkflowElementService.Compaction compaction = workflowElementService.compact(deletedBefore, BATCH_SIZE);
+				removed += compaction.removed();
+				bytes += compaction.bytes();
+				if (compaction.found() == 0) {
+					break;
+				}
+			}
+			removedCounter.increment(removed);
+			bytesCounter.increment(bytes);
+			if (removed > 0) {
+				log.info("Removed {} deleted workflow nodes and edges, {} bytes", removed, bytes);
+			}
+
+			final Optional<Timestamp> oldest = workflowElementService.findOldestDeletedOn();
+			lagSeconds.set(
+				oldest.map(deletedOn -> Math.max(0, (deletedBefore.getTime() - deletedOn.getTime()) / 1000)).orElse(0L)
+			);
+		} catch (final Exception e) {
+			log.error("Error compacting workflows", e);
+		} finally {
+			if (lock.isHeldByCurrentThread()) {
+				lock.unlock();
+			}
 		}
 	}
 }
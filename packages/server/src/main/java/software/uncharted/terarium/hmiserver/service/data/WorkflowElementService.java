@@ -0,0 +1,352 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.transaction.Transactional;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdgeRecord;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowElementRecord;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNodeRecord;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowEdgeRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowElementRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowNodeRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowRepository;
+
+/**
+ * Reads and writes the nodes and edges of workflows, which are stored as rows of their own rather than in the row of
+ * the workflow. An edit to some of the elements of a workflow only reads, locks and writes the rows of those elements.
+ *
+ * <p>Each element has a version, which is incremented every time the element changes. An element is only written if
+ * the version it was read at is still its version in the database, otherwise the change is dropped and the element is
+ * replaced by the one in the database, as with the other version conflicts of workflows.
+ *
+ * <p>Deleted elements are kept, marked for deletion, so that a client still holding them can't add them back. Their
+ * rows are removed by the compaction once they have been deleted for long enough.
+ */
+@Service
+@Slf4j
+public class WorkflowElementService {
+
+	/** How to store one kind of workflow element */
+	private record Kind<E, R extends WorkflowElementRecord>(
+		String name,
+		Class<E> elementClass,
+		WorkflowElementRecordRepository<R> repository,
+		Supplier<R> newRecord,
+		Function<E, UUID> id,
+		Function<E, Long> version,
+		BiConsumer<E, Long> setVersion,
+		Function<E, Boolean> isDeleted
+	) {}
+
+	/**
+	 * The result of a compaction
+	 *
+	 * @param found the number of elements marked for deletion that were found
+	 * @param removed the number of elements whose rows were removed
+	 * @param bytes the size of the content of the rows that were removed
+	 */
+	public record Compaction(int found, int removed, long bytes) {
+		Compaction plus(final Compaction other) {
+			return new Compaction(found + other.found, removed + other.removed, bytes + other.bytes);
+		}
+	}
+
+	private final ObjectMapper objectMapper;
+	private final WorkflowRepository workflowRepository;
+	private final Kind<WorkflowNode, WorkflowNodeRecord> nodes;
+	private final Kind<WorkflowEdge, WorkflowEdgeRecord> edges;
+
+	public WorkflowElementService(
+		final ObjectMapper objectMapper,
+		final WorkflowRepository workflowRepository,
+		final WorkflowNodeRecordRepository nodeRepository,
+		final WorkflowEdgeRecordRepository edgeRepository
+	) {
+		this.objectMapper = objectMapper;
+		this.workflowRepository = workflowRepository;
+		nodes = new Kind<>(
+			"node",
+			WorkflowNode.class,
+			nodeRepository,
+			WorkflowNodeRecord::new,
+			WorkflowNode::getId,
+			WorkflowNode::getVersion,
+			WorkflowNode::setVersion,
+			WorkflowNode::getIsDeleted
+		);
+		edges = new Kind<>(
+			"edge",
+			WorkflowEdge.class,
+			edgeRepository,
+			WorkflowEdgeRecord::new,
+			WorkflowEdge::getId,
+			WorkflowEdge::getVersion,
+			WorkflowEdge::setVersion,
+			WorkflowEdge::getIsDeleted
+		);
+	}
+
+	/**
+	 * Set the nodes and edges of workflows from their rows, with two queries for all the workflows
+	 *
+	 * @param workflows the workflows to load the elements of
+	 */
+	@Observed(name = "function_profile")
+	public void load(final Collection<Workflow> workflows) {
+		if (workflows.isEmpty()) {
+			return;
+		}
+		final List<UUID> workflowIds = workflows.stream().map(Workflow::getId).toList();
+		final Map<UUID, List<WorkflowNode>> nodesByWorkflow = load(nodes, workflowIds);
+		final Map<UUID, List<WorkflowEdge>> edgesByWorkflow = load(edges, workflowIds);
+		for (final Workflow workflow : workflows) {
+			workflow.setNodes(nodesByWorkflow.getOrDefault(workflow.getId(), new ArrayList<>()));
+			workflow.setEdges(edgesByWorkflow.getOrDefault(workflow.getId(), new ArrayList<>()));
+		}
+	}
+
+	private <E, R extends WorkflowElementRecord> Map<UUID, List<E>> load(
+		final Kind<E, R> kind,
+		final Collection<UUID> workflowIds
+	) {
+		final Map<UUID, List<E>> elements = new HashMap<>();
+		for (final R record : kind.repository().findAllByWorkflowIdInOrderBySortOrder(workflowIds)) {
+			elements.computeIfAbsent(record.getWorkflowId(), id -> new ArrayList<>()).add(toElement(kind, record));
+		}
+		return elements;
+	}
+
+	private <E, R extends WorkflowElementRecord> E toElement(final Kind<E, R> kind, final R record) {
+		try {
+			final E element = objectMapper.treeToValue(record.getContent(), kind.elementClass());
+			kind.setVersion().accept(element, record.getVersion());
+			return element;
+		} catch (final JsonProcessingException e) {
+			throw new IllegalStateException(
+				"Invalid " + kind.name() + " id=" + record.getElementId() + ", workflow id=" + record.getWorkflowId(),
+				e
+			);
+		}
+	}
+
+	/**
+	 * Write some of the nodes and edges of a workflow. Those that are new are inserted, and those that changed since
+	 * they were read are written with their version incremented, in the workflow as well. Those whose version changed
+	 * in the meantime, or that were deleted, are left as they are in the database and replaced in the workflow by the
+	 * database copy.
+	 *
+	 * @param workflow the workflow
+	 * @param nodeIds the ids of the nodes to write, if they changed
+	 * @param edgeIds the ids of the edges to write, if they changed
+	 * @return whether any element was written
+	 */
+	@Transactional(rollbackOn = Exception.class)
+	@Observed(name = "function_profile")
+	public boolean save(final Workflow workflow, final Collection<UUID> nodeIds, final Collection<UUID> edgeIds) {
+		final boolean nodesChanged = save(nodes, workflow.getId(), workflow.getNodes(), new HashSet<>(nodeIds));
+		final boolean edgesChanged = save(edges, workflow.getId(), workflow.getEdges(), new HashSet<>(edgeIds));
+		if (nodesChanged || edgesChanged) {
+			workflowRepository.setUpdatedOnToNow(workflow.getId());
+			return true;
+		}
+		return false;
+	}
+
+	private <E, R extends WorkflowElementRecord> boolean save(
+		final Kind<E, R> kind,
+		final UUID workflowId,
+		final List<E> elements,
+		final Set<UUID> ids
+	) {
+		if (elements == null || ids.isEmpty()) {
+			return false;
+		}
+
+		final Map<UUID, R> records = new HashMap<>();
+		for (final R record : kind.repository().findAllByWorkflowIdAndElementIdIn(workflowId, ids)) {
+			records.put(record.getElementId(), record);
+		}
+
+		final List<R> changed = new ArrayList<>();
+		for (int index = 0; index < elements.size(); index++) {
+			final E element = elements.get(index);
+			final UUID id = kind.id().apply(element);
+			if (!ids.contains(id)) {
+				continue;
+			}
+
+			final R record = records.get(id);
+			if (record == null) {
+				if (kind.version().apply(element) == null) {
+					kind.setVersion().accept(element, 1L);
+				}
+				changed.add(toRecord(kind, workflowId, index, element, kind.newRecord().get()));
+				continue;
+			}
+
+			// an element that is deleted can't be changed
+			if (record.getIsDeleted()) {
+				elements.set(index, toElement(kind, record));
+				continue;
+			}
+			if (!record.getVersion().equals(kind.version().apply(element))) {
+				log.warn("{} version conflict id={}, workflow id={}", kind.name(), id, workflowId);
+				elements.set(index, toElement(kind, record));
+				continue;
+			}
+
+			final boolean contentChanged = !objectMapper.valueToTree(element).equals(record.getContent());
+			if (!contentChanged && record.getSortOrder() == index) {
+				continue;
+			}
+			if (contentChanged) {
+				kind.setVersion().accept(element, record.getVersion() + 1L);
+			}
+			changed.add(toRecord(kind, workflowId, index, element, record));
+		}
+
+		kind.repository().saveAll(changed);
+		return !changed.isEmpty();
+	}
+
+	private <E, R extends WorkflowElementRecord> R toRecord(
+		final Kind<E, R> kind,
+		final UUID workflowId,
+		final int index,
+		final E element,
+		final R record
+	) {
+		final boolean isDeleted = Boolean.TRUE.equals(kind.isDeleted().apply(element));
+		record
+			.setWorkflowId(workflowId)
+			.setElementId(kind.id().apply(element))
+			.setSortOrder(index)
+			.setVersion(kind.version().apply(element))
+			.setIsDeleted(isDeleted)
+			.setContent(objectMapper.valueToTree(element));
+		if (!isDeleted) {
+			record.setDeletedOn(null);
+		} else if (record.getDeletedOn() == null) {
+			record.setDeletedOn(new Timestamp(System.currentTimeMillis()));
+		}
+		return record;
+	}
+
+	/**
+	 * Write all the nodes and edges of a workflow as they are, without checking their versions, and delete the rows of
+	 * those that are no longer in the workflow. This is for workflows that are created, and for changes made by the
+	 * server to the whole workflow.
+	 *
+	 * @param workflow the workflow
+	 */
+	@Transactional(rollbackOn = Exception.class)
+	@Observed(name = "function_profile")
+	public void replace(final Workflow workflow) {
+		replace(nodes, workflow.getId(), workflow.getNodes());
+		replace(edges, workflow.getId(), workflow.getEdges());
+	}
+
+	private <E, R extends WorkflowElementRecord> void replace(
+		final Kind<E, R> kind,
+		final UUID workflowId,
+		final List<E> elements
+	) {
+		final Map<UUID, R> records = new HashMap<>();
+		for (final R record : kind.repository().findAllByWorkflowId(workflowId)) {
+			records.put(record.getElementId(), record);
+		}
+
+		final List<R> changed = new ArrayList<>();
+		if (elements != null) {
+			for (int index = 0; index < elements.size(); index++) {
+				final E element = elements.get(index);
+				if (kind.version().apply(element) == null) {
+					kind.setVersion().accept(element, 1L);
+				}
+				final R record = records.remove(kind.id().apply(element));
+				if (
+					record != null &&
+					record.getSortOrder() == index &&
+					record.getVersion().equals(kind.version().apply(element)) &&
+					objectMapper.valueToTree(element).equals(record.getContent())
+				) {
+					continue;
+				}
+				changed.add(toRecord(kind, workflowId, index, element, record != null ? record : kind.newRecord().get()));
+			}
+		}
+
+		kind.repository().saveAll(changed);
+		kind.repository().deleteAll(records.values());
+	}
+
+	/**
+	 * Remove the rows of the oldest nodes and edges that were marked for deletion before a time, up to a number of each.
+	 * A row is only removed if it is still as it was read, so an element restored in the meantime is kept.
+	 *
+	 * @param deletedBefore the time before which the elements were marked for deletion
+	 * @param limit the maximum number of nodes, and of edges, to remove
+	 * @return what was removed
+	 */
+	@Transactional(rollbackOn = Exception.class)
+	@Observed(name = "function_profile")
+	public Compaction compact(final Timestamp deletedBefore, final int limit) {
+		return compact(nodes, deletedBefore, limit).plus(compact(edges, deletedBefore, limit));
+	}
+
+	private <E, R extends WorkflowElementRecord> Compaction compact(
+		final Kind<E, R> kind,
+		final Timestamp deletedBefore,
+		final int limit
+	) {
+		final List<R> records = kind
+			.repository()
+			.findAllByIsDeletedTrueAndDeletedOnBeforeOrderByDeletedOn(deletedBefore, PageRequest.of(0, limit));
+		int removed = 0;
+		long bytes = 0;
+		for (final R record : records) {
+			final int deleted = kind
+				.repository()
+				.deleteIfUnchanged(record.getWorkflowId(), record.getElementId(), record.getVersion(), record.getDeletedOn());
+			if (deleted > 0) {
+				removed++;
+				bytes += record.getContent().toString().getBytes(StandardCharsets.UTF_8).length;
+			}
+		}
+		return new Compaction(records.size(), removed, bytes);
+	}
+
+	/**
+	 * Find when the oldest node or edge that is marked for deletion was marked
+	 *
+	 * @return the time, if any element is marked for deletion
+	 */
+	@Observed(name = "function_profile")
+	public Optional<Timestamp> findOldestDeletedOn() {
+		return Stream.of(nodes.repository().findOldestDeletedOn(), edges.repository().findOldestDeletedOn())
+			.flatMap(Optional::stream)
+			.min(Timestamp::compareTo);
+	}
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.micrometer.observation.annotation.Observed;
+import jakarta.transaction.Transactional;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -16,6 +17,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -36,6 +38,7 @@ import software.uncharted.terarium.hmiserver.service.s3.S3ClientService;
 public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepository> {
 
 	private final NotebookSessionService notebookSessionService;
+	private final WorkflowElementService workflowElementService;
 
 	public WorkflowService(
 		final ObjectMapper objectMapper,
@@ -44,30 +47,90 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 		final ProjectAssetService projectAssetService,
 		final S3ClientService s3ClientService,
 		final WorkflowRepository repository,
-		final NotebookSessionService notebookSessionService
+		final NotebookSessionService notebookSessionService,
+		final WorkflowElementService workflowElementService
 	) {
 		super(objectMapper, config, projectService, projectAssetService, repository, s3ClientService, Workflow.class);
 		this.notebookSessionService = notebookSessionService;
+		this.workflowElementService = workflowElementService;
 	}
 
+	@Override
+	@Observed(name = "function_profile")
+	public Optional<Workflow> getAsset(final UUID id) {
+		final Optional<Workflow> workflow = super.getAsset(id);
+		workflow.ifPresent(w -> workflowElementService.load(List.of(w)));
+		return workflow;
+	}
+
+	@Override
 	@Observed(name = "function_profile")
-	public Set<Workflow> findWorkflowsToClean() {
-		final Set<Workflow> workflows = new HashSet<>();
-		workflows.addAll(repository.findWorkflowsWithEdgesToBeDeleted());
-		workflows.addAll(repository.findWorkflowsWithNodesToBeDeleted());
+	public List<Workflow> getAssets(final List<UUID> ids) {
+		final List<Workflow> workflows = super.getAssets(ids);
+		workflowElementService.load(workflows);
 		return workflows;
 	}
 
+	@Override
 	@Observed(name = "function_profile")
-	public Optional<List<Workflow>> updateWorkflows(final Collection<Workflow> assets)
-		throws IOException, IllegalArgumentException {
-		final List<Workflow> workflows = repository.saveAll(assets);
-		return Optional.of(workflows);
+	public List<Workflow> getPublicNotTemporaryAssets(final Integer page, final Integer pageSize) {
+		final List<Workflow> workflows = super.getPublicNotTemporaryAssets(page, pageSize);
+		workflowElementService.load(workflows);
+		return workflows;
 	}
 
+	// The row of the workflow and the rows of its elements are written in one transaction
 	@Override
 	@Observed(name = "function_profile")
+	@Transactional(rollbackOn = Exception.class)
 	public Workflow createAsset(final Workflow asset, final UUID projectId) throws IOException, IllegalArgumentException {
+		prepareNewWorkflow(asset);
+		final Workflow created = super.createAsset(asset, projectId);
+		workflowElementService.replace(asset);
+		return withElementsOf(created, asset);
+	}
+
+	@Override
+	@Observed(name = "function_profile")
+	@Transactional(rollbackOn = Exception.class)
+	public List<Workflow> createAssets(final List<Workflow> assets, final UUID projectId)
+		throws IOException, IllegalArgumentException {
+		assets.forEach(this::prepareNewWorkflow);
+		final List<Workflow> created = super.createAssets(assets, projectId);
+		for (int i = 0; i < assets.size(); i++) {
+			workflowElementService.replace(assets.get(i));
+			withElementsOf(created.get(i), assets.get(i));
+		}
+		return created;
+	}
+
+	/**
+	 * Write the given nodes and edges of a workflow, for changes that are made to those elements only. Only their rows
+	 * are read and written, instead of the whole workflow.
+	 *
+	 * @param workflow the workflow, with the changes made to its elements
+	 * @param nodeIds the ids of the nodes that changed
+	 * @param edgeIds the ids of the edges that changed
+	 * @return the workflow, with the versions of the elements that were written incremented
+	 */
+	@Observed(name = "function_profile")
+	public Optional<Workflow> updateElements(
+		final Workflow workflow,
+		final Collection<UUID> nodeIds,
+		final Collection<UUID> edgeIds
+	) {
+		workflowElementService.save(workflow, nodeIds, edgeIds);
+		return Optional.of(workflow);
+	}
+
+	// The nodes and edges are not part of the row of the workflow, so they are not in the copy returned by a save
+	private static Workflow withElementsOf(final Workflow saved, final Workflow workflow) {
+		saved.setNodes(workflow.getNodes());
+		saved.setEdges(workflow.getEdges());
+		return saved;
+	}
+
+	private void prepareNewWorkflow(final Workflow asset) {
 		// ensure the workflow id is set correctly
 		if (asset.getNodes() != null) {
 			for (final WorkflowNode node : asset.getNodes()) {
@@ -99,20 +162,43 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 				}
 			}
 		}
-		return super.createAsset(asset, projectId);
 	}
 
+	// The elements are read, merged and written with the row of the workflow in one transaction
 	@Override
 	@Observed(name = "function_profile")
+	@Transactional(rollbackOn = Exception.class)
 	public Optional<Workflow> updateAsset(final Workflow asset, final UUID projectId)
 		throws IOException, IllegalArgumentException {
+		return updateAsset(asset, projectId, stored -> {});
+	}
+
+	/**
+	 * Update a workflow, merging the changes into the copy in the database
+	 *
+	 * @param asset the workflow, with the changes
+	 * @param projectId the id of the project of the workflow
+	 * @param beforeChange called with the copy in the database before the changes are merged into it
+	 * @return the updated workflow
+	 */
+	@Observed(name = "function_profile")
+	@Transactional(rollbackOn = Exception.class)
+	public Optional<Workflow> updateAsset(
+		final Workflow asset,
+		final UUID projectId,
+		final Consumer<Workflow> beforeChange
+	) throws IOException, IllegalArgumentException {
 		// Fetch database copy, we will update into it
 		final Workflow dbWorkflow = getAsset(asset.getId()).get();
+		beforeChange.accept(dbWorkflow);
 
 		List<WorkflowNode> dbWorkflowNodes = dbWorkflow.getNodes();
 		List<WorkflowEdge> dbWorkflowEdges = dbWorkflow.getEdges();
 		final Map<UUID, WorkflowNode> nodeMap = new HashMap<>();
 		final Map<UUID, WorkflowEdge> edgeMap = new HashMap<>();
+		// the elements sent, which are written if they changed
+		final Set<UUID> nodeIds = new HashSet<>();
+		final Set<UUID> edgeIds = new HashSet<>();
 
 		dbWorkflow.setName(asset.getName());
 		dbWorkflow.setDescription(asset.getDescription());
@@ -141,6 +227,7 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 					}
 				}
 				nodeMap.put(node.getId(), node);
+				nodeIds.add(node.getId());
 			}
 		}
 		if (asset.getEdges() != null) {
@@ -150,6 +237,7 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 					edge.setVersion(1L);
 				}
 				edgeMap.put(edge.getId(), edge);
+				edgeIds.add(edge.getId());
 			}
 		}
 
@@ -178,10 +266,9 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 					sameContent = true;
 				}
 
-				// Only update if if node is not already deleted in the db
+				// Only update if if node is not already deleted in the db, the version is incremented when it is written
 				if (sameContent == false) {
 					if (dbNode.getIsDeleted() == false && dbNode.getVersion().equals(node.getVersion())) {
-						dbNode.setVersion(dbNode.getVersion() + 1L);
 						dbNode.setCreatedBy(node.getCreatedBy());
 						dbNode.setCreatedAt(node.getCreatedAt());
 						dbNode.setDisplayName(node.getDisplayName());
@@ -327,9 +414,8 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 					continue;
 				}
 
-				// Only update if if edge is not already deleted in the db
+				// Only update if if edge is not already deleted in the db, the version is incremented when it is written
 				if (dbEdge.getIsDeleted() == false && dbEdge.getVersion().equals(edge.getVersion())) {
-					edge.setVersion(dbEdge.getVersion() + 1L);
 					dbWorkflowEdges.set(index, edge);
 				}
 
@@ -343,6 +429,7 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 		////////////////////////////////////////////////////////////////////////////////
 		if (dbWorkflowNodes == null) {
 			dbWorkflowNodes = new ArrayList<>();
+			dbWorkflow.setNodes(dbWorkflowNodes);
 		}
 		for (final Map.Entry<UUID, WorkflowNode> pair : nodeMap.entrySet()) {
 			dbWorkflowNodes.add(pair.getValue());
@@ -350,13 +437,17 @@ public class WorkflowService extends TerariumAssetService<Workflow, WorkflowRepo
 
 		if (dbWorkflowEdges == null) {
 			dbWorkflowEdges = new ArrayList<>();
+			dbWorkflow.setEdges(dbWorkflowEdges);
 		}
 		for (final Map.Entry<UUID, WorkflowEdge> pair : edgeMap.entrySet()) {
 			dbWorkflowEdges.add(pair.getValue());
 		}
 
+		// Only the nodes and edges that changed are written
+		workflowElementService.save(dbWorkflow, nodeIds, edgeIds);
+
 		final Optional<Workflow> result = super.updateAsset(dbWorkflow, projectId);
-		return result;
+		return result.map(updated -> withElementsOf(updated, dbWorkflow));
 	}
 
 	@Observed(name = "function_profile")
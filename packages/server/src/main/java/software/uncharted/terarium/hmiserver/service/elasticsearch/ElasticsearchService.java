@@ -37,6 +37,7 @@ import co.elastic.clients.elasticsearch.indices.PutAliasRequest;
 import co.elastic.clients.elasticsearch.indices.RefreshRequest;
 import co.elastic.clients.elasticsearch.indices.RefreshResponse;
 import co.elastic.clients.elasticsearch.ingest.GetPipelineRequest;
+import co.elastic.clients.json.JsonData;
 import co.elastic.clients.json.JsonpMapper;
 import co.elastic.clients.json.JsonpUtils;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
@@ -53,8 +54,10 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -958,6 +961,48 @@ public class ElasticsearchService {
 		return client.bulk(BulkRequest.of(bulkRequest -> bulkRequest.index(index).operations(bulkOperations)));
 	}
 
+	@Data
+	public static class ScriptedUpdate {
+
+		private String id;
+		private String routing;
+		private Map<String, Object> params = new HashMap<>();
+	}
+
+	/**
+	 * Update documents in place with a painless script, without reading them first.
+	 *
+	 * @param index   The index the documents are in
+	 * @param script  The source of the script, run once per document
+	 * @param updates The documents to update and the params of the script for each
+	 * @return The bulk response, with an item per update in the same order
+	 * @throws IOException If the bulk update fails
+	 */
+	public BulkResponse bulkScriptedUpdate(final String index, final String script, final List<ScriptedUpdate> updates)
+		throws IOException {
+		try {
+			final List<BulkOperation> operations = new ArrayList<>();
+			for (final ScriptedUpdate update : updates) {
+				final Map<String, JsonData> params = new HashMap<>();
+				update.getParams().forEach((key, value) -> params.put(key, JsonData.of(value)));
+
+				final UpdateOperation<Object, Object> updateOperation = new UpdateOperation.Builder<>()
+					.index(index)
+					.id(update.getId())
+					.routing(update.getRouting())
+					.retryOnConflict(3)
+					.action(a -> a.script(sc -> sc.inline(i -> i.lang("painless").source(script).params(params))))
+					.build();
+				operations.add(new BulkOperation.Builder().update(updateOperation).build());
+			}
+
+			log.info("Elasticsearch | Bulk | Updating {} documents in index {}", updates.size(), index);
+			return client.bulk(BulkRequest.of(b -> b.operations(operations)));
+		} catch (final ElasticsearchException e) {
+			throw handleException(e);
+		}
+	}
+
 	/**
 	 * Checks if the given index exists
 	 *
@@ -3,17 +3,35 @@ package software.uncharted.terarium.hmiserver.service.gollm;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.uncharted.terarium.hmiserver.models.TerariumAssetEmbeddingType;
 import software.uncharted.terarium.hmiserver.models.TerariumAssetEmbeddings;
@@ -33,10 +51,51 @@ public class EmbeddingService {
 	private final ObjectMapper objectMapper;
 	private final TaskService taskService;
 	private final CurrentUserService currentUserService;
+	private final RedissonClient redissonClient;
+	private final MeterRegistry meterRegistry;
 
 	private static final int REQUEST_TIMEOUT_MINUTES = 1;
 	public static final String EMBEDDING_MODEL = "text-embedding-ada-002";
 
+	private static final String CACHE_KEY = "embedding-cache";
+
+	// The number of vectors kept in memory, an ada-002 vector is 6KB
+	@Value("${terarium.embeddings.cache.local-max-entries:10000}")
+	private long CACHE_LOCAL_MAX_ENTRIES;
+
+	@Value("${terarium.embeddings.cache.ttl-days:30}")
+	private long CACHE_TTL_DAYS;
+
+	// Keyed by the embedding model and the sha256 of the text
+	private Cache<String, byte[]> localCache;
+	private RMapCache<String, byte[]> redisCache;
+
+	private Counter localHits;
+	private Counter redisHits;
+	private Counter misses;
+
+	@PostConstruct
+	void init() {
+		localCache = Caffeine.newBuilder().maximumSize(CACHE_LOCAL_MAX_ENTRIES).build();
+		redisCache = redissonClient.getMapCache(
+			CACHE_KEY,
+			new CompositeCodec(StringCodec.INSTANCE, ByteArrayCodec.INSTANCE)
+		);
+
+		localHits = Counter.builder("terarium.embeddings.cache")
+			.tag("result", "hit")
+			.tag("tier", "local")
+			.register(meterRegistry);
+		redisHits = Counter.builder("terarium.embeddings.cache")
+			.tag("result", "hit")
+			.tag("tier", "redis")
+			.register(meterRegistry);
+		misses = Counter.builder("terarium.embeddings.cache")
+			.tag("result", "miss")
+			.tag("tier", "none")
+			.register(meterRegistry);
+	}
+
 	@Data
 	public static class GoLLMSearchRequest {
 
@@ -59,39 +118,13 @@ public class EmbeddingService {
 
 	public TerariumAssetEmbeddings generateEmbeddings(final List<String> input)
 		throws TimeoutException, InterruptedException, ExecutionException, IOException {
-		// create the embedding search request
-		final GoLLMSearchRequest embeddingRequest = new GoLLMSearchRequest();
-		embeddingRequest.setText(input);
-		embeddingRequest.setEmbeddingModel(EMBEDDING_MODEL);
-
-		final TaskRequest req = new TaskRequest();
-		req.setTimeoutMinutes(REQUEST_TIMEOUT_MINUTES);
-		req.setType(TaskType.GOLLM);
-		req.setInput(embeddingRequest);
-		req.setScript("gollm:embedding");
-		try {
-			req.setUserId(currentUserService.get().getId());
-		} catch (final Exception e) {
-			log.warn("No user id to associate with embedding request");
-		}
-
-		final TaskResponse resp = taskService.runTaskSync(req);
-		if (resp.getStatus() != TaskStatus.SUCCESS) {
-			throw new RuntimeException("Task failed: " + resp.getStderr());
-		}
-
-		final byte[] outputBytes = resp.getOutput();
-		final JsonNode output = objectMapper.readTree(outputBytes);
-
-		final EmbeddingsResponse embeddingResp = objectMapper.convertValue(output, EmbeddingsResponse.class);
+		final List<double[]> vectors = getVectors(input);
 
 		final TerariumAssetEmbeddings embeddings = new TerariumAssetEmbeddings();
-
-		for (int i = 0; i < embeddingResp.response.size(); i++) {
-			double[] response = embeddingResp.response.get(i);
-			String text = input.get(i);
+		for (int i = 0; i < vectors.size(); i++) {
+			final String text = input.get(i);
 			final Embedding embeddingChunk = new Embedding();
-			embeddingChunk.setVector(response);
+			embeddingChunk.setVector(vectors.get(i));
 			embeddingChunk.setEmbeddingId(UUID.randomUUID().toString());
 			embeddingChunk.setSpan(new long[] { 0, text.length() });
 			embeddings.getEmbeddings().add(embeddingChunk);
@@ -109,9 +142,123 @@ public class EmbeddingService {
 			inputs.add(input.get(key));
 		}
 
+		final List<double[]> vectors = getVectors(inputs);
+
+		final Map<TerariumAssetEmbeddingType, TerariumAssetEmbeddings> result = new HashMap<>();
+		for (int i = 0; i < vectors.size(); i++) {
+			final TerariumAssetEmbeddingType embeddingType = indices.get(i);
+			final String source = input.get(embeddingType);
+
+			final Embedding embeddingChunk = new Embedding();
+			embeddingChunk.setVector(vectors.get(i));
+			embeddingChunk.setEmbeddingId(UUID.randomUUID().toString());
+			embeddingChunk.setSpan(new long[] { 0, source.length() });
+
+			final TerariumAssetEmbeddings embeddings = new TerariumAssetEmbeddings();
+			embeddings.getEmbeddings().add(embeddingChunk);
+
+			result.put(embeddingType, embeddings);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the vector of each text, in order. Texts are looked up in the local cache, then in redis, and only the
+	 * distinct texts found in neither are sent to gollm.
+	 */
+	private List<double[]> getVectors(final List<String> input)
+		throws TimeoutException, InterruptedException, ExecutionException, IOException {
+		final List<String> keys = new ArrayList<>(input.size());
+		for (final String text : input) {
+			keys.add(getCacheKey(text));
+		}
+
+		final Map<String, byte[]> found = new HashMap<>(localCache.getAllPresent(keys));
+		localHits.increment(countFound(keys, found.keySet()));
+
+		// the text of each distinct key that isn't in memory
+		final Map<String, String> missing = new LinkedHashMap<>();
+		for (int i = 0; i < keys.size(); i++) {
+			if (!found.containsKey(keys.get(i))) {
+				missing.putIfAbsent(keys.get(i), input.get(i));
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			try {
+				final Map<String, byte[]> cached = redisCache.getAll(missing.keySet());
+				redisHits.increment(countFound(keys, cached.keySet()));
+				localCache.putAll(cached);
+				found.putAll(cached);
+				missing.keySet().removeAll(cached.keySet());
+			} catch (final Exception e) {
+				// the cache is an optimization, carry on without it
+				log.warn("Unable to read embeddings from the cache", e);
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			misses.increment(countFound(keys, missing.keySet()));
+
+			final List<double[]> vectors = requestEmbeddings(new ArrayList<>(missing.values()));
+			if (vectors.size() != missing.size()) {
+				throw new RuntimeException("Expected " + missing.size() + " embeddings, got " + vectors.size());
+			}
+
+			final Map<String, byte[]> computed = new HashMap<>();
+			int i = 0;
+			for (final String key : missing.keySet()) {
+				computed.put(key, toBytes(vectors.get(i++)));
+			}
+			localCache.putAll(computed);
+			found.putAll(computed);
+			try {
+				redisCache.putAllAsync(computed, CACHE_TTL_DAYS, TimeUnit.DAYS);
+			} catch (final Exception e) {
+				log.warn("Unable to write embeddings to the cache", e);
+			}
+		}
+
+		final List<double[]> result = new ArrayList<>(keys.size());
+		for (final String key : keys) {
+			result.add(toVector(found.get(key)));
+		}
+		return result;
+	}
+
+	// Count every position of a text, repeated texts in a request are hits or misses each time
+	private static long countFound(final List<String> keys, final Set<String> found) {
+		return keys.stream().filter(found::contains).count();
+	}
+
+	private static String getCacheKey(final String text) {
+		return EMBEDDING_MODEL + ":" + DigestUtils.sha256Hex(text);
+	}
+
+	/** Vectors are cached as little-endian float32, half the size of a double[] and a fraction of its JSON. */
+	static byte[] toBytes(final double[] vector) {
+		final ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		for (final double value : vector) {
+			buffer.putFloat((float) value);
+		}
+		return buffer.array();
+	}
+
+	static double[] toVector(final byte[] bytes) {
+		final FloatBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		final double[] vector = new double[buffer.remaining()];
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = buffer.get(i);
+		}
+		return vector;
+	}
+
+	private List<double[]> requestEmbeddings(final List<String> input)
+		throws TimeoutException, InterruptedException, ExecutionException, IOException {
 		// create the embedding search request
 		final GoLLMSearchRequest embeddingRequest = new GoLLMSearchRequest();
-		embeddingRequest.setText(inputs);
+		embeddingRequest.setText(input);
 		embeddingRequest.setEmbeddingModel(EMBEDDING_MODEL);
 
 		final TaskRequest req = new TaskRequest();
@@ -134,27 +281,6 @@ public class EmbeddingService {
 		final JsonNode output = objectMapper.readTree(outputBytes);
 
 		final EmbeddingsResponse embeddingResp = objectMapper.convertValue(output, EmbeddingsResponse.class);
-
-		final Map<TerariumAssetEmbeddingType, TerariumAssetEmbeddings> result = new HashMap<>();
-
-		int index = 0;
-		for (final double[] entry : embeddingResp.response) {
-			final TerariumAssetEmbeddingType embeddingType = indices.get(index);
-			final String source = input.get(embeddingType);
-
-			final Embedding embeddingChunk = new Embedding();
-			embeddingChunk.setVector(entry);
-			embeddingChunk.setEmbeddingId(UUID.randomUUID().toString());
-			embeddingChunk.setSpan(new long[] { 0, source.length() });
-
-			final TerariumAssetEmbeddings embeddings = new TerariumAssetEmbeddings();
-			embeddings.getEmbeddings().add(embeddingChunk);
-
-			result.put(embeddingType, embeddings);
-
-			index++;
-		}
-
-		return result;
+		return embeddingResp.response;
 	}
 }
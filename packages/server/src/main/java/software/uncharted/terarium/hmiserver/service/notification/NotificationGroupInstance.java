@@ -135,6 +135,11 @@ public class NotificationGroupInstance<T> {
 		sendNotification(msg, null, estimateT(), state);
 	}
 
+	/** Send a message with a known progress, which is capped below 1.0 as that is reserved for the final message */
+	public void sendProgress(final String msg, final double progress) {
+		sendNotification(msg, null, Math.min(Math.max(progress, 0.0), 0.99), ProgressState.RUNNING);
+	}
+
 	public void sendFinalMessage(final String msg) {
 		sendNotification(msg, null, 1.0, ProgressState.COMPLETE);
 	}
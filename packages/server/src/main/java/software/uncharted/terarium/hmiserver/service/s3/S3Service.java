@@ -3,6 +3,7 @@ package software.uncharted.terarium.hmiserver.service.s3;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -39,12 +40,17 @@ import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
 import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
@@ -58,6 +64,10 @@ import software.uncharted.terarium.hmiserver.service.HashService;
 @Slf4j
 public class S3Service {
 
+	// S3 limits a single copy to 5GB, larger objects are copied in parts
+	private static final long MAX_SINGLE_COPY_SIZE = 5L * 1024L * 1024L * 1024L;
+	private static final long MULTIPART_COPY_PART_SIZE = 256L * 1024L * 1024L;
+
 	private final S3Client client;
 	private final int BUFFER_SIZE;
 	private final S3Presigner preSigner;
@@ -215,6 +225,30 @@ public class S3Service {
 		return client.putObject(request, RequestBody.fromBytes(data));
 	}
 
+	/**
+	 * Put an object in a bucket from a file, which is streamed from disk rather than read into memory
+	 *
+	 * @param bucketName  The name of the bucket
+	 * @param key         The key of the object
+	 * @param contentType The content type of the object
+	 * @param file        The file holding the contents of the object
+	 * @return The response from the put object request
+	 */
+	public PutObjectResponse putObject(
+		final String bucketName,
+		final String key,
+		final ContentType contentType,
+		final Path file
+	) {
+		log.debug("Putting object {} in bucket {} from {}", key, bucketName, file);
+		final PutObjectRequest request = PutObjectRequest.builder()
+			.bucket(bucketName)
+			.key(key)
+			.contentType(contentType.toString())
+			.build();
+		return client.putObject(request, RequestBody.fromFile(file));
+	}
+
 	/**
 	 * Initialize a multipart upload. The caller can use the returned upload ID to
 	 * upload parts and to complete the
@@ -368,6 +402,25 @@ public class S3Service {
 		}
 	}
 
+	/**
+	 * Get the content type of an object without reading its contents
+	 *
+	 * @param bucketName The name of the bucket
+	 * @param key        The key of the object
+	 * @return The content type of the object, or empty if the object does not exist
+	 */
+	public Optional<String> getObjectContentType(final String bucketName, final String key) {
+		log.debug("Getting content type of object {} in bucket {}", key, bucketName);
+		final HeadObjectRequest request = HeadObjectRequest.builder().bucket(bucketName).key(key).build();
+		try {
+			final HeadObjectResponse response = client.headObject(request);
+			return Optional.ofNullable(response.contentType());
+		} catch (final NoSuchKeyException e) {
+			log.debug("Object {} does not exist in bucket {}", key, bucketName);
+			return Optional.empty();
+		}
+	}
+
 	/**
 	 * Delete an object from a bucket
 	 *
@@ -412,6 +465,27 @@ public class S3Service {
 		return listing;
 	}
 
+	/**
+	 * Delete the objects under a prefix that were last modified before a time, listing all of them a page at a time
+	 *
+	 * @param bucketName   The name of the bucket
+	 * @param prefix       The prefix of the objects
+	 * @param beforeMillis The time the objects must have been last modified before, in milliseconds since the epoch
+	 * @return The number of objects deleted
+	 */
+	public int deleteObjectsModifiedBefore(final String bucketName, final String prefix, final long beforeMillis) {
+		final ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(bucketName).prefix(prefix).build();
+		int deleted = 0;
+		final ListObjectsV2Iterable pages = client.listObjectsV2Paginator(request);
+		for (final software.amazon.awssdk.services.s3.model.S3Object object : pages.contents()) {
+			if (object.lastModified().toEpochMilli() < beforeMillis) {
+				deleteObject(bucketName, object.key());
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+
 	/**
 	 * Get the pre-signed signature for a download
 	 *
@@ -577,7 +651,11 @@ public class S3Service {
 	}
 
 	/**
-	 * Copies an object from one bucket to another
+	 * Copies an object from one bucket to another. The copy is done by S3 without
+	 * the contents passing through the
+	 * server. Objects over {@link #MAX_SINGLE_COPY_SIZE} are rejected by a single
+	 * copy, only then is the size of
+	 * the object read and the object copied a part at a time.
 	 *
 	 * @param sourceBucket
 	 * @param sourceKey
@@ -597,7 +675,80 @@ public class S3Service {
 			.destinationKey(destinationKey)
 			.build();
 
-		client.copyObject(copyObjectRequest);
+		try {
+			client.copyObject(copyObjectRequest);
+		} catch (final S3Exception e) {
+			if (e.statusCode() != 400) {
+				throw e;
+			}
+			final HeadObjectResponse head = client.headObject(
+				HeadObjectRequest.builder().bucket(sourceBucket).key(sourceKey).build()
+			);
+			if (head.contentLength() == null || head.contentLength() <= MAX_SINGLE_COPY_SIZE) {
+				throw e;
+			}
+			multipartCopyObject(sourceBucket, sourceKey, destinationBucket, destinationKey, head);
+		}
+	}
+
+	private void multipartCopyObject(
+		final String sourceBucket,
+		final String sourceKey,
+		final String destinationBucket,
+		final String destinationKey,
+		final HeadObjectResponse head
+	) {
+		log.debug("Copying multipart object {} in bucket {}", destinationKey, destinationBucket);
+		// a single copy keeps the metadata of the source, a multipart upload has to be given it
+		final String uploadId = client
+			.createMultipartUpload(
+				CreateMultipartUploadRequest.builder()
+					.bucket(destinationBucket)
+					.key(destinationKey)
+					.metadata(head.metadata())
+					.cacheControl(head.cacheControl())
+					.contentDisposition(head.contentDisposition())
+					.contentEncoding(head.contentEncoding())
+					.contentLanguage(head.contentLanguage())
+					.contentType(head.contentType())
+					.expires(head.expires())
+					.build()
+			)
+			.uploadId();
+
+		try {
+			final List<CompletedPart> completedParts = new ArrayList<>();
+			final long size = head.contentLength();
+			int partNumber = 1;
+			for (long offset = 0; offset < size; offset += MULTIPART_COPY_PART_SIZE, partNumber++) {
+				final long end = Math.min(offset + MULTIPART_COPY_PART_SIZE, size) - 1;
+				final UploadPartCopyResponse response = client.uploadPartCopy(
+					UploadPartCopyRequest.builder()
+						.sourceBucket(sourceBucket)
+						.sourceKey(sourceKey)
+						.destinationBucket(destinationBucket)
+						.destinationKey(destinationKey)
+						.uploadId(uploadId)
+						.partNumber(partNumber)
+						.copySourceRange("bytes=" + offset + "-" + end)
+						.build()
+				);
+				completedParts.add(
+					CompletedPart.builder().partNumber(partNumber).eTag(response.copyPartResult().eTag()).build()
+				);
+			}
+
+			client.completeMultipartUpload(b ->
+				b
+					.bucket(destinationBucket)
+					.key(destinationKey)
+					.uploadId(uploadId)
+					.multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+			);
+		} catch (final RuntimeException e) {
+			client.abortMultipartUpload(b -> b.bucket(destinationBucket).key(destinationKey).uploadId(uploadId));
+			throw e;
+		}
 	}
 
 	/**
@@ -0,0 +1,78 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+
+/**
+ * Remembers the queues and exchanges that have been declared on a single rabbit connection so that each is declared
+ * once rather than on every request. A queue that isn't durable is gone once the broker restarts, so everything that
+ * has been declared is declared again whenever the connection is re-established.
+ */
+@Slf4j
+class RabbitTopologyCache implements ConnectionListener {
+
+	private final RabbitAdmin rabbitAdmin;
+
+	// keyed by the type and name of the queue or exchange
+	private final Map<String, Declarable> declared = new ConcurrentHashMap<>();
+
+	RabbitTopologyCache(final RabbitAdmin rabbitAdmin, final ConnectionFactory connectionFactory) {
+		this.rabbitAdmin = rabbitAdmin;
+		connectionFactory.addConnectionListener(this);
+	}
+
+	RabbitAdmin getRabbitAdmin() {
+		return rabbitAdmin;
+	}
+
+	/** Declare the queue unless it has already been declared on this connection. */
+	void declareQueue(final Queue queue) {
+		// concurrent requests for the same queue wait for the first to declare it
+		declared.computeIfAbsent("queue:" + queue.getName(), key -> {
+			rabbitAdmin.declareQueue(queue);
+			return queue;
+		});
+	}
+
+	/** Declare the exchange unless it has already been declared on this connection. */
+	void declareExchange(final Exchange exchange) {
+		declared.computeIfAbsent("exchange:" + exchange.getName(), key -> {
+			rabbitAdmin.declareExchange(exchange);
+			return exchange;
+		});
+	}
+
+	boolean isDeclared(final String queueName) {
+		return declared.containsKey("queue:" + queueName);
+	}
+
+	@Override
+	public void onCreate(final Connection connection) {
+		if (declared.isEmpty()) {
+			return;
+		}
+
+		log.info("Rabbit connection (re)established, re-declaring {} queues and exchanges", declared.size());
+		for (final Map.Entry<String, Declarable> entry : declared.entrySet()) {
+			try {
+				if (entry.getValue() instanceof final Queue queue) {
+					rabbitAdmin.declareQueue(queue);
+				} else if (entry.getValue() instanceof final Exchange exchange) {
+					rabbitAdmin.declareExchange(exchange);
+				}
+			} catch (final Exception e) {
+				// forget it so that the next request that needs it declares it again
+				log.error("Failed to re-declare {}", entry.getKey(), e);
+				declared.remove(entry.getKey());
+			}
+		}
+	}
+}
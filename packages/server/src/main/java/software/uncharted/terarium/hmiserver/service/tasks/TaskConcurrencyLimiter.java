@@ -0,0 +1,141 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest.TaskType;
+
+/**
+ * Limits the number of tasks of a single type that are waited on concurrently. Tasks beyond the limit are held in a
+ * bounded queue and are rejected once the queue is full, unless their caller blocks on them. Neither case blocks the
+ * calling thread, tasks are started when a running task completes.
+ */
+@Slf4j
+class TaskConcurrencyLimiter {
+
+	private final TaskType type;
+	private final int maxConcurrency;
+	private final int maxQueueSize;
+
+	private final Deque<Runnable> queue = new ArrayDeque<>();
+	private int running = 0;
+
+	private final Timer queueTimer;
+	private final Counter rejectedCounter;
+
+	TaskConcurrencyLimiter(
+		final TaskType type,
+		final int maxConcurrency,
+		final int maxQueueSize,
+		final MeterRegistry meterRegistry
+	) {
+		this.type = type;
+		this.maxConcurrency = maxConcurrency;
+		this.maxQueueSize = maxQueueSize;
+
+		Gauge.builder("terarium.taskrunner.sync.running", this, TaskConcurrencyLimiter::getRunning)
+			.tag("type", type.toString())
+			.register(meterRegistry);
+		Gauge.builder("terarium.taskrunner.sync.queued", this, TaskConcurrencyLimiter::getQueued)
+			.tag("type", type.toString())
+			.register(meterRegistry);
+		queueTimer = Timer.builder("terarium.taskrunner.sync.queue-wait").tag("type", type.toString()).register(meterRegistry);
+		rejectedCounter = Counter.builder("terarium.taskrunner.sync.rejected")
+			.tag("type", type.toString())
+			.register(meterRegistry);
+	}
+
+	synchronized int getRunning() {
+		return running;
+	}
+
+	synchronized int getQueued() {
+		return queue.size();
+	}
+
+	/**
+	 * Start a task once there is capacity for it.
+	 *
+	 * @param task Starts the task and returns a future that completes when the task does
+	 * @return A future that completes with the result of the task, or exceptionally with a
+	 *     {@link RejectedExecutionException} if the queue is full
+	 */
+	<T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> task) {
+		return submit(task, true);
+	}
+
+	/**
+	 * Start a task once there is capacity for it, queueing it however many tasks are queued already. For callers that
+	 * block a thread of their own on the result, which limits how many of them can queue.
+	 *
+	 * @param task Starts the task and returns a future that completes when the task does
+	 * @return A future that completes with the result of the task
+	 */
+	<T> CompletableFuture<T> submitWaiting(final Supplier<CompletableFuture<T>> task) {
+		return submit(task, false);
+	}
+
+	private <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> task, final boolean rejectWhenFull) {
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final long queuedAt = System.nanoTime();
+
+		final Runnable start = () -> {
+			queueTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+			CompletableFuture<T> future;
+			try {
+				future = task.get();
+			} catch (final Exception e) {
+				future = CompletableFuture.failedFuture(e);
+			}
+			future.whenComplete((value, e) -> {
+				release();
+				if (e != null) {
+					result.completeExceptionally(e);
+				} else {
+					result.complete(value);
+				}
+			});
+		};
+
+		synchronized (this) {
+			if (running >= maxConcurrency) {
+				if (rejectWhenFull && queue.size() >= maxQueueSize) {
+					log.warn("Rejecting {} task, {} running and {} queued", type, running, queue.size());
+					rejectedCounter.increment();
+					result.completeExceptionally(
+						new RejectedExecutionException("Too many " + type + " tasks are queued, please try again later")
+					);
+				} else {
+					queue.add(start);
+				}
+				return result;
+			}
+			running++;
+		}
+
+		start.run();
+		return result;
+	}
+
+	private void release() {
+		final Runnable next;
+		synchronized (this) {
+			next = queue.poll();
+			if (next == null) {
+				running--;
+				return;
+			}
+		}
+		// the permit is handed over to the next task, which is started off of the thread that completed this one as
+		// that is typically a message listener
+		CompletableFuture.runAsync(next);
+	}
+}
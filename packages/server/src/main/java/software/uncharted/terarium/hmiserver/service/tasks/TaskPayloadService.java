@@ -0,0 +1,238 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.hmiserver.configuration.Config;
+import software.uncharted.terarium.hmiserver.service.HashService;
+import software.uncharted.terarium.hmiserver.service.s3.S3ClientService;
+
+/**
+ * Stores large task payloads out of band so that only a reference to them is sent through the task queues, the
+ * response cache and the notification tables. Payloads are stored in S3 by default, or on the local filesystem when
+ * the taskrunner shares it with the hmi-server (local development and tests).
+ *
+ * <p>Payloads are deleted once they are older than the retention, which defaults to the ttl of the response cache
+ * that refers to them. Storing a payload that is already stored makes it new again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaskPayloadService {
+
+	private static final String PAYLOAD_PATH = "task-payloads";
+
+	private final Config config;
+	private final S3ClientService s3ClientService;
+
+	// Payloads larger than this are sent by reference, 0 disables the payload store.
+	@Value("${terarium.taskrunner.payload-threshold-bytes:0}")
+	private long PAYLOAD_THRESHOLD_BYTES;
+
+	// Either "s3" or "filesystem".
+	@Value("${terarium.taskrunner.payload-store:s3}")
+	private String PAYLOAD_STORE;
+
+	@Value("${terarium.taskrunner.payload-store-path:${java.io.tmpdir}/terarium-task-payloads}")
+	private String PAYLOAD_STORE_PATH;
+
+	// How long a payload url remains valid beyond the timeout of the task.
+	@Value("${terarium.taskrunner.payload-url-expiration-minutes:60}")
+	private long PAYLOAD_URL_EXPIRATION_MINUTES;
+
+	// How long a payload is kept after it was stored.
+	@Value("${terarium.taskrunner.payload-retention-seconds:${terarium.taskrunner.response-cache-ttl-seconds:43200}}")
+	private long PAYLOAD_RETENTION_SECONDS;
+
+	public boolean isEnabled() {
+		return PAYLOAD_THRESHOLD_BYTES > 0;
+	}
+
+	public long getThresholdBytes() {
+		return PAYLOAD_THRESHOLD_BYTES;
+	}
+
+	/**
+	 * Returns true if the payload should be sent by reference rather than inline.
+	 *
+	 * @param payload The payload, may be null
+	 * @return True if the payload exceeds the threshold
+	 */
+	public boolean shouldOffload(final byte[] payload) {
+		return isEnabled() && payload != null && payload.length > PAYLOAD_THRESHOLD_BYTES;
+	}
+
+	/**
+	 * Store a payload under a reference derived from its content, identical payloads are only stored once.
+	 *
+	 * @param payload The payload to store
+	 * @return The reference of the stored payload
+	 */
+	public String put(final byte[] payload) {
+		final String ref = PAYLOAD_PATH + "/" + HashService.sha256(payload);
+
+		if (isFilesystemStore()) {
+			final Path path = getPath(ref);
+			try {
+				if (Files.exists(path)) {
+					// kept for the retention from now on, as it is referred to again
+					Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+				} else {
+					Files.createDirectories(path.getParent());
+					Files.write(path, payload);
+				}
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else {
+			// written even if it exists, so that it is kept for the retention from now on
+			s3ClientService.getS3Service().putObject(config.getFileStorageS3BucketName(), ref, payload);
+		}
+
+		log.info("Stored task payload of {} bytes under {}", payload.length, ref);
+		return ref;
+	}
+
+	/**
+	 * Create the reference the output of a task will be written to by the taskrunner.
+	 *
+	 * @param taskId The id of the task
+	 * @return The reference of the output
+	 */
+	public String createOutputRef(final UUID taskId) {
+		return PAYLOAD_PATH + "/output/" + taskId;
+	}
+
+	/**
+	 * Read a stored payload.
+	 *
+	 * @param ref The reference of the payload
+	 * @return The payload
+	 */
+	public byte[] get(final String ref) {
+		try {
+			if (isFilesystemStore()) {
+				return Files.readAllBytes(getPath(ref));
+			}
+			try (
+				final InputStream stream = s3ClientService.getS3Service().getObject(config.getFileStorageS3BucketName(), ref)
+			) {
+				return stream.readAllBytes();
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Get a url the taskrunner can read a stored payload from.
+	 *
+	 * @param ref The reference of the payload
+	 * @param timeoutMinutes The timeout of the task the url is for
+	 * @return The url
+	 */
+	public String getReadUrl(final String ref, final long timeoutMinutes) {
+		if (isFilesystemStore()) {
+			return getPath(ref).toUri().toString();
+		}
+		return s3ClientService
+			.getS3Service()
+			.getS3PreSignedGetUrl(
+				config.getFileStorageS3BucketName(),
+				ref,
+				timeoutMinutes + PAYLOAD_URL_EXPIRATION_MINUTES
+			)
+			.orElseThrow(() -> new IllegalStateException("Task payload " + ref + " does not exist"));
+	}
+
+	/**
+	 * Get a url the taskrunner can write a payload to.
+	 *
+	 * @param ref The reference to write the payload to
+	 * @param timeoutMinutes The timeout of the task the url is for
+	 * @return The url
+	 */
+	public String getWriteUrl(final String ref, final long timeoutMinutes) {
+		if (isFilesystemStore()) {
+			final Path path = getPath(ref);
+			try {
+				Files.createDirectories(path.getParent());
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return path.toUri().toString();
+		}
+		return s3ClientService
+			.getS3Service()
+			.getS3PreSignedPutUrl(config.getFileStorageS3BucketName(), ref, timeoutMinutes + PAYLOAD_URL_EXPIRATION_MINUTES);
+	}
+
+	/** Deletes the payloads that are older than the retention */
+	@Scheduled(fixedDelayString = "${terarium.taskrunner.payload-cleanup-interval-millis:3600000}")
+	public void deleteExpired() {
+		if (!isEnabled()) {
+			return;
+		}
+		final long expiredBefore = System.currentTimeMillis() - PAYLOAD_RETENTION_SECONDS * 1000;
+		try {
+			final int deleted;
+			if (isFilesystemStore()) {
+				deleted = deleteExpiredFiles(expiredBefore);
+			} else {
+				deleted = s3ClientService
+					.getS3Service()
+					.deleteObjectsModifiedBefore(config.getFileStorageS3BucketName(), PAYLOAD_PATH + "/", expiredBefore);
+			}
+			if (deleted > 0) {
+				log.info("Deleted {} expired task payloads", deleted);
+			}
+		} catch (final Exception e) {
+			log.error("Error deleting expired task payloads", e);
+		}
+	}
+
+	private int deleteExpiredFiles(final long expiredBefore) throws IOException {
+		final Path root = getPath(PAYLOAD_PATH);
+		if (!Files.exists(root)) {
+			return 0;
+		}
+		final List<Path> expired;
+		try (final Stream<Path> paths = Files.walk(root)) {
+			expired = paths
+				.filter(Files::isRegularFile)
+				.filter(path -> {
+					try {
+						return Files.getLastModifiedTime(path).toMillis() < expiredBefore;
+					} catch (final IOException e) {
+						// deleted in the meantime
+						return false;
+					}
+				})
+				.toList();
+		}
+		for (final Path path : expired) {
+			Files.deleteIfExists(path);
+		}
+		return expired.size();
+	}
+
+	private boolean isFilesystemStore() {
+		return "filesystem".equals(PAYLOAD_STORE);
+	}
+
+	private Path getPath(final String ref) {
+		return Paths.get(PAYLOAD_STORE_PATH).resolve(ref);
+	}
+}
@@ -1,12 +1,17 @@
 package software.uncharted.terarium.hmiserver.service.tasks;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -25,6 +30,7 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.Exchange;
@@ -85,6 +91,19 @@ public class TaskService {
 		private UUID id;
 		private String routingKey;
 
+		// When the payloads of the request are sent through the payload store rather
+		// than the queue, the taskrunner reads the input from the input url and writes
+		// outputs larger than the threshold to the output url.
+		private String inputUrl;
+		private String outputUrl;
+		private String outputRef;
+		private long payloadThresholdBytes;
+
+		// The SHA256 of the original request, preserved when the input is removed for
+		// transport.
+		@JsonIgnore
+		private String digest;
+
 		TaskRequestWithId(final TaskRequest req, final String rk) {
 			id = UUID.randomUUID();
 			type = req.getType();
@@ -98,6 +117,28 @@ public class TaskService {
 			useCache = req.isUseCache();
 		}
 
+		// Copy a request for transport, the input is only copied if it is not being
+		// read from the input url.
+		TaskRequestWithId(final TaskRequestWithId req, final String inputUrl) {
+			id = req.getId();
+			type = req.getType();
+			script = req.getScript();
+			input = inputUrl == null ? req.getInput() : null;
+			userId = req.getUserId();
+			projectId = req.getProjectId();
+			timeoutMinutes = req.getTimeoutMinutes();
+			additionalProperties = req.getAdditionalProperties();
+			routingKey = req.getRoutingKey();
+			useCache = req.isUseCache();
+			digest = req.getSHA256();
+			this.inputUrl = inputUrl;
+		}
+
+		@Override
+		public String getSHA256() {
+			return digest != null ? digest : super.getSHA256();
+		}
+
 		public TaskResponse createResponse(final TaskStatus status, final String stdout, final String stderr) {
 			return new TaskResponse()
 				.setId(id)
@@ -131,6 +172,7 @@ public class TaskService {
 			// and then copy over the response payload.
 			final TaskResponse actualResp = req.createResponse(resp.getStatus(), resp.getStdout(), resp.getStderr());
 			actualResp.setOutput(resp.getOutput());
+			actualResp.setOutputRef(resp.getOutputRef());
 
 			this.future = new CompletableFuture<>();
 			this.future.complete(actualResp);
@@ -143,6 +185,10 @@ public class TaskService {
 		}
 	}
 
+	// A request that has been attached to an identical request that is already
+	// running rather than being dispatched to the taskrunner itself.
+	private record CoalescedRequest(TaskRequestWithId req, CompletableTaskFuture future) {}
+
 	private final TaskRunnerConfiguration taskRunnerConfiguration;
 
 	private static final String RESPONSE_CACHE_KEY = "task-service-response-cache";
@@ -157,15 +203,40 @@ public class TaskService {
 	@Value("${terarium.taskrunner.response-cache-max-idle-seconds:7200}") // 2 hours
 	private long CACHE_MAX_IDLE_SECONDS;
 
+	private static final String IN_FLIGHT_CACHE_KEY = "task-service-in-flight-requests";
+
+	private static final String CANCELLED_TASKS_KEY = "task-service-cancelled-tasks";
+
+	private static final String STARTED_TASKS_KEY = "task-service-started-tasks";
+
+	// How long to remember a cancellation, or the start of a task, for a task that
+	// hasn't sent its final response yet.
+	@Value("${terarium.taskrunner.cancelled-task-ttl-seconds:86400}") // 24 hours
+	private long CANCELLED_TASK_TTL_SECONDS;
+
+	// When enabled, identical requests (same SHA256) submitted while a task is
+	// already running will attach to that task instead of being dispatched again.
+	@Value("${terarium.taskrunner.coalesce-in-flight-requests:true}")
+	private boolean COALESCE_IN_FLIGHT_REQUESTS;
+
 	private Map<String, RabbitAdmin> rabbitAdmins;
 	private Map<String, RabbitAdmin> rabbitAdminsByConnection;
 	private Map<String, URI> rabbitURIByKey;
 
+	// The queues and exchanges declared on each unique rabbit connection, and the
+	// one each task type resolves to.
+	private final Map<String, RabbitTopologyCache> topologyByConnection = new HashMap<>();
+	private final Map<TaskType, RabbitTopologyCache> topologyByType = new ConcurrentHashMap<>();
+
+	// Time spent in broker round trips to dispatch a request, per task type.
+	private final Map<TaskType, Timer> dispatchTimers = new ConcurrentHashMap<>();
+
 	private final Map<String, CachingConnectionFactory> connectionFactories = new HashMap<>();
 	private final Config config;
 	private final ObjectMapper objectMapper;
 	private final NotificationService notificationService;
 	private final ClientEventService clientEventService;
+	private final TaskPayloadService taskPayloadService;
 
 	private final Map<String, DirectMessageListenerContainer> taskResponseConsumers = new HashMap<>();
 
@@ -181,6 +252,45 @@ public class TaskService {
 	private RMapCache<String, TaskResponse> responseCache;
 	private final Map<UUID, CompletableTaskFuture> futures = new ConcurrentHashMap<>();
 
+	// Cluster-wide registry of the running task id for each request SHA256. An
+	// entry is removed _before_ the final response of the task is broadcast, so
+	// any instance that observes an entry is guaranteed to receive the final
+	// response of that task.
+	private RMapCache<String, String> inFlightRequests;
+
+	// Local fast path of the above registry for tasks this instance knows are
+	// still running, avoids a redis round trip for repeated requests.
+	private final Map<String, UUID> localInFlightRequests = new ConcurrentHashMap<>();
+
+	// Cluster-wide set of cancelled task ids, mapped to their task type. Cancellations
+	// are broadcast to every taskrunner, one that starts the task without having
+	// seen the broadcast is sent the cancellation again when it reports the task as
+	// running.
+	private RMapCache<String, String> cancelledTasks;
+
+	// Cluster-wide set of the ids of the tasks a taskrunner has reported as running,
+	// the first running response of each task is the one sent when it starts. The
+	// responses are spread over every instance, so this can't be tracked locally.
+	private RMapCache<String, Boolean> startedTasks;
+
+	// Requests attached to a running task, keyed by the id of the running task.
+	private final Map<UUID, List<CoalescedRequest>> coalescedRequests = new HashMap<>();
+	private final Object inFlightLock = new Object();
+
+	private final MeterRegistry meterRegistry;
+
+	// The maximum number of sync tasks of each type that are waited on at once,
+	// further tasks are queued up to the queue size and rejected beyond it. Both
+	// can be overridden per task type, ex:
+	// `terarium.taskrunner.sync-concurrency.gollm=16`
+	@Value("${terarium.taskrunner.sync-concurrency:64}")
+	private int SYNC_CONCURRENCY;
+
+	@Value("${terarium.taskrunner.sync-queue-size:512}")
+	private int SYNC_QUEUE_SIZE;
+
+	private final Map<TaskType, TaskConcurrencyLimiter> syncLimiters = new ConcurrentHashMap<>();
+
 	// The queue name that the taskrunner will consume on for requests.
 	@Value("${terarium.taskrunner.request-queue}")
 	private String TASK_RUNNER_REQUEST_QUEUE;
@@ -224,10 +334,16 @@ public class TaskService {
 		// use a distributed cache and lock so that these can be synchronized across
 		// multiple instances of the hmi-server
 		responseCache = redissonClient.getMapCache(RESPONSE_CACHE_KEY);
+		inFlightRequests = redissonClient.getMapCache(IN_FLIGHT_CACHE_KEY);
+		cancelledTasks = redissonClient.getMapCache(CANCELLED_TASKS_KEY);
+		startedTasks = redissonClient.getMapCache(STARTED_TASKS_KEY);
 
 		if (isRunningLocalProfile()) {
 			// sanity check for local development to clear the caches
 			responseCache.clear();
+			inFlightRequests.clear();
+			cancelledTasks.clear();
+			startedTasks.clear();
 		}
 
 		// create the consumers
@@ -235,53 +351,30 @@ public class TaskService {
 		initResponseConsumers();
 	}
 
-	private void declareAndBindTransientQueueWithRoutingKey(
-		final TaskType requestType,
-		final String exchangeName,
-		final String queueName,
-		final String routingKey
-	) {
-		RabbitAdmin rabbitAdmin = rabbitAdmins.get(requestType.toString());
-		if (rabbitAdmin == null) {
-			rabbitAdmin = rabbitAdmins.get("default");
-		}
-
-		// Declare a direct exchange
-		final DirectExchange exchange = new DirectExchange(exchangeName, config.getDurableQueues(), false);
-		rabbitAdmin.declareExchange(exchange);
-
-		// Declare a queue
-		final Queue queue = new Queue(queueName, config.getDurableQueues(), false, true);
-		rabbitAdmin.declareQueue(queue);
+	private RabbitTopologyCache getTopology(final TaskType requestType) {
+		return topologyByType.computeIfAbsent(requestType, type -> {
+			URI rabbitAddress = rabbitURIByKey.get(type.toString());
+			if (rabbitAddress == null) {
+				rabbitAddress = rabbitURIByKey.get("default");
+			}
+			return topologyByConnection.get(rabbitAddress.toString());
+		});
+	}
 
-		// Bind the queue to the exchange with a routing key
-		final Binding binding = BindingBuilder.bind(queue).to(exchange).with(routingKey);
-		rabbitAdmin.declareBinding(binding);
+	private Timer getDispatchTimer(final TaskType requestType) {
+		return dispatchTimers.computeIfAbsent(requestType, type ->
+			Timer.builder("terarium.taskrunner.dispatch.broker").tag("type", type.toString()).register(meterRegistry)
+		);
 	}
 
 	private void declareQueue(final TaskType requestType, final String queueName) {
-		RabbitAdmin rabbitAdmin = rabbitAdmins.get(requestType.toString());
-		if (rabbitAdmin == null) {
-			rabbitAdmin = rabbitAdmins.get("default");
-		}
+		// only the first request for a queue on a connection goes to the broker
 		final Queue queue = new Queue(queueName, config.getDurableQueues(), false, false);
-		rabbitAdmin.declareQueue(queue);
-	}
-
-	private void deleteQueue(final TaskType requestType, final String queueName) {
-		RabbitAdmin rabbitAdmin = rabbitAdmins.get(requestType.toString());
-		if (rabbitAdmin == null) {
-			rabbitAdmin = rabbitAdmins.get("default");
-		}
-		rabbitAdmin.deleteQueue(queueName);
+		getTopology(requestType).declareQueue(queue);
 	}
 
 	private void convertAndSendToDefaultExchange(final TaskType requestType, final String queue, final String msg) {
-		RabbitAdmin rabbitAdmin = rabbitAdmins.get(requestType.toString());
-		if (rabbitAdmin == null) {
-			rabbitAdmin = rabbitAdmins.get("default");
-		}
-		rabbitAdmin.getRabbitTemplate().convertAndSend(queue, msg);
+		getTopology(requestType).getRabbitAdmin().getRabbitTemplate().convertAndSend(queue, msg);
 	}
 
 	private void convertAndSend(
@@ -290,10 +383,7 @@ public class TaskService {
 		final String routingKey,
 		final String msg
 	) {
-		RabbitAdmin rabbitAdmin = rabbitAdmins.get(requestType.toString());
-		if (rabbitAdmin == null) {
-			rabbitAdmin = rabbitAdmins.get("default");
-		}
+		final RabbitAdmin rabbitAdmin = getTopology(requestType).getRabbitAdmin();
 
 		log.info(
 			"Sending message to exchange: {} with routing key: {} to rabbit instance: {}",
@@ -310,9 +400,60 @@ public class TaskService {
 	}
 
 	public void cancelTask(final TaskType taskType, final UUID taskId) {
-		// send the cancellation to the task runner
-		final String msg = "";
-		convertAndSend(taskType, TASK_RUNNER_CANCELLATION_EXCHANGE, taskId.toString(), msg);
+		// a coalesced request was never dispatched, so detach it from the running
+		// task rather than cancelling the task other requests are waiting on
+		final CoalescedRequest coalesced = detachCoalescedRequest(taskId);
+		if (coalesced != null) {
+			log.info("Cancelling coalesced request for task id: {}", taskId);
+			final TaskResponse resp = coalesced.req().createResponse(TaskStatus.CANCELLED, "", "");
+			processCachedTaskResponse(coalesced.req(), resp);
+			coalesced.future().complete(resp);
+			return;
+		}
+
+		// remember the cancellation in case the task is started by a taskrunner that
+		// doesn't receive the broadcast
+		try {
+			cancelledTasks.put(taskId.toString(), taskType.name(), CANCELLED_TASK_TTL_SECONDS, TimeUnit.SECONDS);
+		} catch (final Exception e) {
+			log.error("Failed to record cancellation of task {}", taskId, e);
+		}
+
+		sendCancellation(taskType, taskId);
+	}
+
+	private void sendCancellation(final TaskType taskType, final UUID taskId) {
+		// broadcast the cancellation to every task runner, the id is the body of the message
+		convertAndSend(taskType, TASK_RUNNER_CANCELLATION_EXCHANGE, "", taskId.toString());
+	}
+
+	// Records that the task has been reported as running, returns whether this is
+	// the first running response of the task.
+	private boolean markStarted(final TaskResponse resp) {
+		try {
+			return startedTasks.fastPutIfAbsent(
+				resp.getId().toString(),
+				true,
+				CANCELLED_TASK_TTL_SECONDS,
+				TimeUnit.SECONDS
+			);
+		} catch (final Exception e) {
+			// better to check for a cancellation more than once than not at all
+			log.error("Failed to record start of task {}", resp.getId(), e);
+			return true;
+		}
+	}
+
+	private void resendCancellationIfCancelled(final TaskResponse resp) {
+		try {
+			final String taskType = cancelledTasks.get(resp.getId().toString());
+			if (taskType != null) {
+				log.info("Task {} was started after it was cancelled, re-sending cancellation", resp.getId());
+				sendCancellation(TaskType.valueOf(taskType), resp.getId());
+			}
+		} catch (final Exception e) {
+			log.error("Failed to re-send cancellation for task {}", resp.getId(), e);
+		}
 	}
 
 	// This is an anonymous queue, every instance the hmi-server will receive a
@@ -352,18 +493,22 @@ public class TaskService {
 				final CompletableTaskFuture future = futures.remove(resp.getId());
 				if (future != null) {
 					log.info("Found promise for task id: {}", resp.getId());
+					// the caller expects the output, fetch it if it was sent by reference
+					resolveOutput(resp);
 					// complete the future
 					log.info("Completing future for task id {} with status {}", resp.getId(), resp.getStatus());
 					future.complete(resp);
 				} else {
 					log.info("Did not find promise for task id: {}", resp.getId());
 				}
+				completeCoalescedRequests(resp);
 			} else {
 				final CompletableTaskFuture future = futures.get(resp.getId());
 				if (future != null) {
 					log.info("Updating latest response on task id: {} future to {}", resp.getId(), resp.getStatus());
 					future.setLatest(resp);
 				}
+				updateCoalescedRequests(resp);
 			}
 		} catch (final Exception e) {
 			log.error("Error processing task response message", e);
@@ -393,6 +538,10 @@ public class TaskService {
 
 					connectionFactories.put(rabbitAddress.toString(), connectionFactory);
 					rabbitAdminsByConnection.put(rabbitAddress.toString(), rabbitAdmin);
+					topologyByConnection.put(
+						rabbitAddress.toString(),
+						new RabbitTopologyCache(rabbitAdmin, connectionFactory)
+					);
 				} else {
 					connectionFactory = connectionFactories.get(rabbitAddress.toString());
 					rabbitAdmin = rabbitAdminsByConnection.get(rabbitAddress.toString());
@@ -426,9 +575,20 @@ public class TaskService {
 					? TASK_RUNNER_RESPONSE_QUEUE
 					: TASK_RUNNER_RESPONSE_QUEUE + "-local-" + UUID.randomUUID();
 
+				final RabbitTopologyCache topology = topologyByConnection.get(rabbitAddress.toString());
+
 				// Declare a direct exchange
 				final DirectExchange exchange = new DirectExchange(TASK_RUNNER_RESPONSE_EXCHANGE, IS_DURABLE_QUEUES, false);
-				rabbitAdmin.declareExchange(exchange);
+				topology.declareExchange(exchange);
+
+				// Declare the fanout exchange cancellations are broadcast on, each taskrunner
+				// binds its own queue to it
+				final FanoutExchange cancellationExchange = new FanoutExchange(
+					TASK_RUNNER_CANCELLATION_EXCHANGE,
+					config.getDurableQueues(),
+					false
+				);
+				topology.declareExchange(cancellationExchange);
 
 				// Declare a queue
 				final Queue queue = new Queue(queueName, IS_DURABLE_QUEUES, false, true);
@@ -464,7 +624,11 @@ public class TaskService {
 
 			log.info("Received response status {} for task {}", resp.getStatus(), resp.getId());
 
+			byte[] resolvedOutput = null;
 			try {
+				// the handler and the client need the output, fetch it if it was sent by
+				// reference
+				resolvedOutput = resolveOutput(resp);
 				// execute the handler
 				if (responseHandlers.containsKey(resp.getScript())) {
 					// handle the response
@@ -478,6 +642,27 @@ public class TaskService {
 				resp.setOutput(e.getMessage().getBytes());
 			}
 
+			// only a reference to a large output is cached and broadcast
+			final TaskResponse refResp = withOutputByReference(resp, resolvedOutput);
+
+			if (
+				resp.getStatus() == TaskStatus.SUCCESS ||
+				resp.getStatus() == TaskStatus.CANCELLED ||
+				resp.getStatus() == TaskStatus.FAILED
+			) {
+				try {
+					// the task is no longer in flight, this must happen before the response is
+					// broadcast so that no request can attach to it after the broadcast
+					inFlightRequests.remove(resp.getRequestSHA256(), resp.getId().toString());
+					cancelledTasks.fastRemove(resp.getId().toString());
+					startedTasks.fastRemove(resp.getId().toString());
+				} catch (final Exception e) {
+					log.error("Failed to remove in-flight entry for task {}", resp.getId(), e);
+				}
+			} else if (resp.getStatus() == TaskStatus.RUNNING && markStarted(resp)) {
+				resendCancellationIfCancelled(resp);
+			}
+
 			if (resp.getStatus() == TaskStatus.SUCCESS && resp.isUseCache()) {
 				try {
 					// add to the response cache
@@ -489,7 +674,7 @@ public class TaskService {
 					);
 					responseCache.put(
 						resp.getRequestSHA256(),
-						resp,
+						refResp,
 						CACHE_TTL_SECONDS,
 						TimeUnit.SECONDS,
 						CACHE_MAX_IDLE_SECONDS,
@@ -501,9 +686,9 @@ public class TaskService {
 			}
 
 			try {
-				// create the notification event
+				// create the notification event, with only a reference to a large output
 				final NotificationEvent event = new NotificationEvent();
-				event.setData(resp);
+				event.setData(refResp);
 
 				log.info("Creating notification event under group id: {}", resp.getId());
 
@@ -546,7 +731,7 @@ public class TaskService {
 
 			// once the handler has executed and the response cache is up to date, we now
 			// will broadcast to all hmi-server instances to dispatch the clientside events
-			broadcastTaskResponseToAllInstances(resp);
+			broadcastTaskResponseToAllInstances(refResp);
 		} catch (final Exception e) {
 			log.error("Error processing task response message", e);
 		}
@@ -568,7 +753,11 @@ public class TaskService {
 			log.error("Failed to create notification group for id: {}", req.getId(), e);
 		}
 
+		byte[] resolvedOutput = null;
 		try {
+			// the handler, the caller and the client need the output, fetch it if it was
+			// cached by reference
+			resolvedOutput = resolveOutput(resp);
 			// execute the handler
 			if (responseHandlers.containsKey(resp.getScript())) {
 				// handle the response
@@ -593,9 +782,9 @@ public class TaskService {
 			group.setProjectId(req.getProjectId());
 
 			notificationService.createNotificationGroup(group);
-			// create the notification event
+			// create the notification event, with only a reference to a large output
 			final NotificationEvent event = new NotificationEvent();
-			event.setData(resp);
+			event.setData(withOutputByReference(resp, resolvedOutput));
 
 			log.info("Creating notification event under group id: {}", resp.getId());
 
@@ -621,6 +810,76 @@ public class TaskService {
 		}
 	}
 
+	// Fetches the output of the response from the payload store if it was sent by
+	// reference, returns the referenced output or null if there is no reference.
+	private byte[] resolveOutput(final TaskResponse resp) {
+		if (resp.getOutputRef() == null) {
+			return null;
+		}
+		if (resp.getOutput() == null) {
+			log.info("Fetching output {} for task {}", resp.getOutputRef(), resp.getId());
+			resp.setOutput(taskPayloadService.get(resp.getOutputRef()));
+		}
+		return resp.getOutput();
+	}
+
+	// Returns a response that carries a reference to its output rather than the
+	// output itself if the output is too large to send inline.
+	private TaskResponse withOutputByReference(final TaskResponse resp, final byte[] resolvedOutput) {
+		if (resp.getOutput() == null) {
+			return resp;
+		}
+
+		final String outputRef;
+		if (resp.getOutputRef() != null && resp.getOutput() == resolvedOutput) {
+			// the output is unchanged since it was resolved, re-use its reference
+			outputRef = resp.getOutputRef();
+		} else if (taskPayloadService.shouldOffload(resp.getOutput())) {
+			outputRef = taskPayloadService.put(resp.getOutput());
+		} else {
+			// the output was replaced and is small enough to send inline
+			resp.setOutputRef(null);
+			return resp;
+		}
+
+		return new TaskResponse()
+			.setId(resp.getId())
+			.setScript(resp.getScript())
+			.setStatus(resp.getStatus())
+			.setOutputRef(outputRef)
+			.setUserId(resp.getUserId())
+			.setProjectId(resp.getProjectId())
+			.setAdditionalProperties(resp.getAdditionalProperties())
+			.setStdout(resp.getStdout())
+			.setStderr(resp.getStderr())
+			.setRequestSHA256(resp.getRequestSHA256())
+			.setRoutingKey(resp.getRoutingKey())
+			.setUseCache(resp.isUseCache());
+	}
+
+	// Returns the request to send to the taskrunner, when the payload store is
+	// enabled large inputs are sent by reference and the taskrunner is told where to
+	// write large outputs.
+	private TaskRequestWithId withPayloadReferences(final TaskRequestWithId req) {
+		if (!taskPayloadService.isEnabled()) {
+			return req;
+		}
+
+		String inputUrl = null;
+		if (taskPayloadService.shouldOffload(req.getInput())) {
+			final String inputRef = taskPayloadService.put(req.getInput());
+			inputUrl = taskPayloadService.getReadUrl(inputRef, req.getTimeoutMinutes());
+		}
+
+		final String outputRef = taskPayloadService.createOutputRef(req.getId());
+
+		final TaskRequestWithId transportReq = new TaskRequestWithId(req, inputUrl);
+		transportReq.setOutputRef(outputRef);
+		transportReq.setOutputUrl(taskPayloadService.getWriteUrl(outputRef, req.getTimeoutMinutes()));
+		transportReq.setPayloadThresholdBytes(taskPayloadService.getThresholdBytes());
+		return transportReq;
+	}
+
 	private void broadcastTaskResponseToAllInstances(final TaskResponse resp) {
 		try {
 			final String jsonStr = objectMapper.writeValueAsString(resp);
@@ -688,6 +947,7 @@ public class TaskService {
 					// process the cached response as if it were a new response
 					processCachedTaskResponse(req, future.getLatest());
 
+					countRequest(req.getType(), "cached");
 					return future;
 				}
 			} catch (final Exception e) {
@@ -702,7 +962,224 @@ public class TaskService {
 			}
 		}
 
-		// no cache entry for task, send a new one
+		// no cache entry for task, attach to an identical running task or send a new
+		// one
+		return dispatchOrCoalesce(req, new CompletableTaskFuture(req.getId()));
+	}
+
+	private TaskFuture dispatchOrCoalesce(final TaskRequestWithId req, final CompletableTaskFuture future)
+		throws JsonProcessingException {
+		if (!req.isUseCache() || !COALESCE_IN_FLIGHT_REQUESTS) {
+			return dispatch(req, future);
+		}
+
+		final String hash = req.getSHA256();
+
+		// check for a task this instance already knows is running
+		final UUID localLeaderId = localInFlightRequests.get(hash);
+		if (localLeaderId != null && attachToLocalInFlightTask(localLeaderId, hash, req, future)) {
+			return future;
+		}
+
+		final String leaderId;
+		try {
+			leaderId = inFlightRequests.putIfAbsent(
+				hash,
+				req.getId().toString(),
+				req.getTimeoutMinutes() + 1L,
+				TimeUnit.MINUTES
+			);
+		} catch (final Exception e) {
+			log.warn("Failed to check for in-flight request under SHA: {} for {}, sending request", hash, req.getId(), e);
+			return dispatch(req, future);
+		}
+
+		if (leaderId == null) {
+			// no identical task is running, this request becomes the running task
+			localInFlightRequests.put(hash, req.getId());
+			try {
+				return dispatch(req, future);
+			} catch (final Exception e) {
+				localInFlightRequests.remove(hash, req.getId());
+				inFlightRequests.remove(hash, req.getId().toString());
+				throw e;
+			}
+		}
+
+		if (attachToInFlightTask(UUID.fromString(leaderId), hash, req, future)) {
+			return future;
+		}
+
+		// the running task completed while we were attaching, try again
+		return dispatchOrCoalesce(req, future);
+	}
+
+	private boolean attachToLocalInFlightTask(
+		final UUID leaderId,
+		final String hash,
+		final TaskRequestWithId req,
+		final CompletableTaskFuture future
+	) {
+		synchronized (inFlightLock) {
+			// the local entry is removed under this lock when the final response is
+			// received, so if it is still present the final response is still to come
+			if (!leaderId.equals(localInFlightRequests.get(hash))) {
+				return false;
+			}
+			addCoalescedRequest(leaderId, req, future);
+		}
+		return true;
+	}
+
+	private boolean attachToInFlightTask(
+		final UUID leaderId,
+		final String hash,
+		final TaskRequestWithId req,
+		final CompletableTaskFuture future
+	) {
+		synchronized (inFlightLock) {
+			addCoalescedRequest(leaderId, req, future);
+		}
+
+		// confirm the task is still running now that we are attached, if the entry is
+		// gone the final response may have been broadcast before we attached
+		final boolean stillInFlight;
+		try {
+			stillInFlight = leaderId.toString().equals(inFlightRequests.get(hash));
+		} catch (final Exception e) {
+			log.warn("Failed to confirm in-flight request under SHA: {} for {}", hash, req.getId(), e);
+			return detachCoalescedRequest(req.getId()) == null;
+		}
+
+		if (!stillInFlight) {
+			// if we can no longer detach, the final response was processed in the
+			// meantime and our future has already been completed
+			return detachCoalescedRequest(req.getId()) == null;
+		}
+
+		synchronized (inFlightLock) {
+			if (coalescedRequests.containsKey(leaderId)) {
+				localInFlightRequests.putIfAbsent(hash, leaderId);
+			}
+		}
+		return true;
+	}
+
+	private void addCoalescedRequest(
+		final UUID leaderId,
+		final TaskRequestWithId req,
+		final CompletableTaskFuture future
+	) {
+		log.info("Attaching request {} to in-flight task {} with SHA: {}", req.getId(), leaderId, req.getSHA256());
+
+		future.setLatest(req.createResponse(TaskStatus.QUEUED, "", ""));
+		coalescedRequests.computeIfAbsent(leaderId, k -> new ArrayList<>()).add(new CoalescedRequest(req, future));
+
+		countRequest(req.getType(), "coalesced");
+	}
+
+	private CoalescedRequest detachCoalescedRequest(final UUID id) {
+		synchronized (inFlightLock) {
+			for (final List<CoalescedRequest> requests : coalescedRequests.values()) {
+				for (final CoalescedRequest coalesced : requests) {
+					if (coalesced.req().getId().equals(id)) {
+						requests.remove(coalesced);
+						return coalesced;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private void updateCoalescedRequests(final TaskResponse resp) {
+		final List<CoalescedRequest> requests;
+		synchronized (inFlightLock) {
+			final List<CoalescedRequest> attached = coalescedRequests.get(resp.getId());
+			if (attached == null) {
+				return;
+			}
+			requests = new ArrayList<>(attached);
+		}
+
+		// the callers and the clients of the requests expect the output, fetch it if
+		// it was sent by reference
+		resolveOutput(resp);
+
+		for (final CoalescedRequest coalesced : requests) {
+			final TaskResponse coalescedResp = coalesced
+				.req()
+				.createResponse(resp.getStatus(), resp.getStdout(), resp.getStderr())
+				.setOutput(resp.getOutput())
+				.setOutputRef(resp.getOutputRef());
+			coalesced.future().setLatest(coalescedResp);
+
+			try {
+				final ClientEvent<TaskResponse> clientEvent = ClientEvent.<TaskResponse>builder()
+					.notificationGroupId(coalescedResp.getId())
+					.projectId(coalescedResp.getProjectId())
+					.type(TaskNotificationEventTypes.getTypeFor(coalescedResp.getScript()))
+					.data(coalescedResp)
+					.build();
+				clientEventService.sendToUser(clientEvent, coalescedResp.getUserId());
+			} catch (final Exception e) {
+				log.error("Failed to send client event for for task {}", coalescedResp.getId(), e);
+			}
+		}
+	}
+
+	private void completeCoalescedRequests(final TaskResponse resp) {
+		final List<CoalescedRequest> requests;
+		synchronized (inFlightLock) {
+			localInFlightRequests.remove(resp.getRequestSHA256(), resp.getId());
+			requests = coalescedRequests.remove(resp.getId());
+		}
+		if (requests == null) {
+			return;
+		}
+
+		for (final CoalescedRequest coalesced : requests) {
+			final TaskRequestWithId req = coalesced.req();
+
+			if (resp.getStatus() == TaskStatus.CANCELLED) {
+				// the task was cancelled on behalf of another request, run it again for the
+				// requests that are still waiting on it
+				try {
+					log.info("In-flight task {} was cancelled, re-sending request {}", resp.getId(), req.getId());
+					dispatchOrCoalesce(req, coalesced.future());
+				} catch (final Exception e) {
+					log.error("Failed to re-send coalesced request {}", req.getId(), e);
+					final TaskResponse failedResp = req.createResponse(TaskStatus.FAILED, "", "");
+					processCachedTaskResponse(req, failedResp);
+					coalesced.future().complete(failedResp);
+				}
+				continue;
+			}
+
+			log.info(
+				"Completing coalesced request {} from task {} with status {}",
+				req.getId(),
+				resp.getId(),
+				resp.getStatus()
+			);
+
+			// process the response as if it were a cached response for this request
+			final TaskResponse coalescedResp = req
+				.createResponse(resp.getStatus(), resp.getStdout(), resp.getStderr())
+				.setOutput(resp.getOutput())
+				.setOutputRef(resp.getOutputRef());
+			processCachedTaskResponse(req, coalescedResp);
+			coalesced.future().complete(coalescedResp);
+		}
+	}
+
+	private void countRequest(final TaskType type, final String outcome) {
+		meterRegistry.counter("terarium.taskrunner.requests", "type", type.toString(), "outcome", outcome).increment();
+	}
+
+	private TaskFuture dispatch(final TaskRequestWithId req, final CompletableTaskFuture future)
+		throws JsonProcessingException {
+		final String hash = req.getSHA256();
 
 		try {
 			log.info("Creating notification group under id: {}", req.getId());
@@ -724,71 +1201,133 @@ public class TaskService {
 
 		log.info("Readying task: {} with SHA: {} to send on queue: {}", req.getId(), hash, req.getType());
 
+		final String jsonStr = objectMapper.writeValueAsString(withPayloadReferences(req));
+		final TaskResponse queuedResponse = req.createResponse(TaskStatus.QUEUED, "", "");
+		final String respJsonStr = objectMapper.writeValueAsString(queuedResponse);
+
+		final long dispatchStart = System.nanoTime();
+
 		// ensure the request queue exists
 		declareQueue(req.getType(), requestQueue);
 
-		// create the cancellation queue _BEFORE_ sending the request, because a
-		// cancellation can be send before the request is consumed on the other end if
-		// there is contention. We need this queue to exist to hold the message.
-		final String queueName = req.getId().toString();
-		final String cancellationRoutingKey = req.getId().toString();
-		declareAndBindTransientQueueWithRoutingKey(
-			req.getType(),
-			TASK_RUNNER_CANCELLATION_EXCHANGE,
-			queueName,
-			cancellationRoutingKey
-		);
+		// send the request to the task runner
+		log.info("Dispatching request for task id: {}", req.getId());
+		convertAndSendToDefaultExchange(req.getType(), requestQueue, jsonStr);
 
-		try {
-			// send the request to the task runner
-			log.info("Dispatching request for task id: {}", req.getId());
-			final String jsonStr = objectMapper.writeValueAsString(req);
-			convertAndSendToDefaultExchange(r.getType(), requestQueue, jsonStr);
-
-			// publish the queued task response
-			final TaskResponse queuedResponse = req.createResponse(TaskStatus.QUEUED, "", "");
-			final String respJsonStr = objectMapper.writeValueAsString(queuedResponse);
-			convertAndSend(r.getType(), TASK_RUNNER_RESPONSE_EXCHANGE, req.getRoutingKey(), respJsonStr);
-
-			// create and return the future
-			final CompletableTaskFuture future = new CompletableTaskFuture(req.getId());
-			future.setLatest(queuedResponse);
-			log.info("Adding future for task id: {} to the futures map", req.getId());
-			futures.put(req.getId(), future);
-			return future;
-		} catch (final Exception e) {
-			// ensure cancellation queue is removed on failure
-			deleteQueue(req.getType(), queueName);
-			throw e;
-		}
+		// publish the queued task response
+		convertAndSend(req.getType(), TASK_RUNNER_RESPONSE_EXCHANGE, req.getRoutingKey(), respJsonStr);
+
+		getDispatchTimer(req.getType()).record(System.nanoTime() - dispatchStart, TimeUnit.NANOSECONDS);
+
+		// return the future
+		future.setLatest(queuedResponse);
+		log.info("Adding future for task id: {} to the futures map", req.getId());
+		futures.put(req.getId(), future);
+
+		countRequest(req.getType(), "dispatched");
+		return future;
 	}
 
+	/**
+	 * Runs a task and waits for its final response on the calling thread. Prefer
+	 * {@link #runTaskSyncAsync(TaskRequest)} when the caller is a request thread.
+	 *
+	 * The task counts towards the limit of tasks of its type that are waited on
+	 * at once, but it is never rejected when too many are queued, it waits for a
+	 * running task to complete instead. The internal callers of this method have
+	 * no way to retry a rejected task, and a blocked thread of their own already
+	 * limits how many of them can queue.
+	 */
 	public TaskResponse runTaskSync(final TaskRequest req)
 		throws JsonProcessingException, TimeoutException, InterruptedException, ExecutionException {
-		// send the request
-		final TaskFuture future = runTaskAsync(req);
 		try {
-			// wait for the response
-			log.info("Waiting for response for task id: {}", future.getId());
-			final TaskResponse resp = future.getFinal(req.getTimeoutMinutes(), TimeUnit.MINUTES);
-			if (resp.getStatus() == TaskStatus.CANCELLED) {
-				throw new InterruptedException("Task was cancelled");
-			}
-			log.info("Future completed for task: {}", future.getId());
-			return resp;
-		} catch (final TimeoutException e) {
-			// remove the future
-			futures.remove(future.getId());
-			try {
-				// if the task is still running, or hasn't started yet, lets cancel it
-				cancelTask(req.getType(), future.getId());
-			} catch (final Exception ee) {
-				log.warn("Failed to cancel task: {}", future.getId(), ee);
+			return getSyncLimiter(req.getType()).submitWaiting(() -> waitForTask(req)).get();
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof final JsonProcessingException cause) {
+				throw cause;
+			} else if (e.getCause() instanceof final TimeoutException cause) {
+				throw cause;
+			} else if (e.getCause() instanceof final InterruptedException cause) {
+				throw cause;
 			}
-			throw new TimeoutException(
-				"Task " + future.getId().toString() + " did not complete within " + req.getTimeoutMinutes() + " minutes"
-			);
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs a task and returns a future of its final response without blocking the
+	 * calling thread. The number of tasks of each type that are waited on at once
+	 * is limited, tasks beyond the limit are queued until a running task
+	 * completes.
+	 *
+	 * The future completes exceptionally with a:
+	 * - JsonProcessingException if the request could not be dispatched
+	 * - TimeoutException if the task did not complete within its timeout, in which
+	 * case the task is cancelled
+	 * - InterruptedException if the task was cancelled
+	 * - RejectedExecutionException if too many tasks of the type are queued, the
+	 * controllers report it as a 503 so that the client can try again later
+	 *
+	 * @param req The task request
+	 * @return A future of the final response of the task
+	 */
+	public CompletableFuture<TaskResponse> runTaskSyncAsync(final TaskRequest req) {
+		return getSyncLimiter(req.getType()).submit(() -> waitForTask(req));
+	}
+
+	private CompletableFuture<TaskResponse> waitForTask(final TaskRequest req) {
+		final TaskFuture future;
+		try {
+			// send the request
+			future = runTaskAsync(req);
+		} catch (final JsonProcessingException e) {
+			return CompletableFuture.failedFuture(e);
 		}
+
+		log.info("Waiting for response for task id: {}", future.getId());
+		final CompletableFuture<TaskResponse> result = new CompletableFuture<>();
+		future
+			.toCompletableFuture()
+			.orTimeout(req.getTimeoutMinutes(), TimeUnit.MINUTES)
+			.whenComplete((resp, e) -> {
+				if (e instanceof TimeoutException) {
+					// remove the future
+					futures.remove(future.getId());
+					// if the task is still running, or hasn't started yet, lets cancel it, this
+					// is done off of the shared timeout thread as it publishes a message
+					CompletableFuture.runAsync(() -> {
+						try {
+							cancelTask(req.getType(), future.getId());
+						} catch (final Exception ee) {
+							log.warn("Failed to cancel task: {}", future.getId(), ee);
+						}
+					});
+					result.completeExceptionally(
+						new TimeoutException(
+							"Task " + future.getId().toString() + " did not complete within " + req.getTimeoutMinutes() + " minutes"
+						)
+					);
+				} else if (e != null) {
+					result.completeExceptionally(e);
+				} else if (resp.getStatus() == TaskStatus.CANCELLED) {
+					result.completeExceptionally(new InterruptedException("Task was cancelled"));
+				} else {
+					log.info("Future completed for task: {}", future.getId());
+					result.complete(resp);
+				}
+			});
+		return result;
+	}
+
+	private TaskConcurrencyLimiter getSyncLimiter(final TaskType type) {
+		return syncLimiters.computeIfAbsent(type, t ->
+			new TaskConcurrencyLimiter(
+				t,
+				env.getProperty("terarium.taskrunner.sync-concurrency." + t, Integer.class, SYNC_CONCURRENCY),
+				env.getProperty("terarium.taskrunner.sync-queue-size." + t, Integer.class, SYNC_QUEUE_SIZE),
+				meterRegistry
+			)
+		);
 	}
 
 	public TaskResponse runTask(final TaskMode mode, final TaskRequest req)
@@ -806,6 +1345,54 @@ public class TaskService {
 		}
 	}
 
+	/**
+	 * Runs a task in the specified mode without blocking the calling thread. In
+	 * SYNC mode the future completes with the final response of the task, in ASYNC
+	 * mode it completes with the queued response as soon as the task has been
+	 * dispatched.
+	 *
+	 * @param mode The mode in which to run the task (SYNC or ASYNC).
+	 * @param req  The task request.
+	 * @return A future of the response of the task, see
+	 *         {@link #runTaskSyncAsync(TaskRequest)} for the exceptions it may
+	 *         complete with.
+	 */
+	public CompletableFuture<TaskResponse> runTaskNonBlocking(final TaskMode mode, final TaskRequest req) {
+		if (req instanceof CompoundTask) {
+			return runTaskNonBlocking(mode, (CompoundTask) req);
+		}
+
+		if (mode == TaskMode.SYNC) {
+			return runTaskSyncAsync(req);
+		} else if (mode == TaskMode.ASYNC) {
+			try {
+				return CompletableFuture.completedFuture(runTaskAsync(req).getLatest());
+			} catch (final JsonProcessingException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		} else {
+			throw new IllegalArgumentException("Invalid task mode: " + mode);
+		}
+	}
+
+	/**
+	 * Runs a compound task without blocking the calling thread, the secondary
+	 * tasks are run in the specified mode once the primary task has completed.
+	 *
+	 * @param mode The mode in which to run the secondary tasks (SYNC or ASYNC).
+	 * @param req  The compound task containing the primary and secondary tasks.
+	 * @return A future of the response of the primary task.
+	 */
+	public CompletableFuture<TaskResponse> runTaskNonBlocking(final TaskMode mode, final CompoundTask req) {
+		return runTaskNonBlocking(TaskMode.SYNC, req.getPrimaryTask()).thenCompose(response -> {
+			CompletableFuture<TaskResponse> secondary = CompletableFuture.completedFuture(response);
+			for (final TaskRequest secondaryTask : req.getSecondaryTasks()) {
+				secondary = secondary.thenCompose(r -> runTaskNonBlocking(mode, secondaryTask));
+			}
+			return secondary.thenApply(r -> response);
+		});
+	}
+
 	/**
 	 * Runs a compound task, executing the primary task synchronously and the
 	 * secondary tasks
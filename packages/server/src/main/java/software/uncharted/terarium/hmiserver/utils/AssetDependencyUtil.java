@@ -1,18 +1,20 @@
 package software.uncharted.terarium.hmiserver.utils;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.function.BiConsumer;
 import lombok.Data;
 import org.springframework.data.util.Pair;
 
@@ -37,41 +39,52 @@ public class AssetDependencyUtil {
 		Set<UUID> ids = new HashSet<>();
 	}
 
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	// the length of the canonical string form of a uuid, and the positions of its hyphens
+	private static final int UUID_LENGTH = 36;
+	private static final int[] UUID_HYPHENS = { 8, 13, 18, 23 };
+
 	/**
-	 * Traverse the JSON of the serialized asset searching for any keys or values that are uuids. If the uuid is in the
+	 * Stream the JSON of the serialized asset searching for any keys or values that are uuids. If the uuid is in the
 	 * assetIds set, it is added to the AssetDependencyMap.
 	 *
 	 * <p>The intended usage of this method is to pass a set of all asset ids of a project and an asset to determine if
 	 * that asset references any other asset.
 	 *
+	 * <p>The asset is serialized to a token buffer rather than a tree, only strings shaped like a uuid are parsed, and
+	 * the path to a uuid is only built when it is one of the assetIds.
+	 *
 	 * @param <T>
 	 * @param assetIds
 	 * @param asset
 	 * @return
 	 */
 	public static <T> AssetDependencyMap getAssetDependencies(final Set<UUID> assetIds, final T asset) {
-		final ObjectMapper mapper = new ObjectMapper();
-
-		final JsonNode assetJson = mapper.valueToTree(asset);
-
 		final AssetDependencyMap dependencies = new AssetDependencyMap();
+		if (assetIds.isEmpty()) {
+			return dependencies;
+		}
 
-		executeOnEveryKeyAndText(
-			new ArrayList<>(),
-			assetJson,
-			(final List<String> path, final String key) -> {
-				final UUID uuid = uuidOrNull(key);
-				if (uuid != null && assetIds.contains(uuid)) {
-					dependencies.addKeyId(path, uuid);
-				}
-			},
-			(final List<String> path, final String value) -> {
-				final UUID uuid = uuidOrNull(value);
-				if (uuid != null && assetIds.contains(uuid)) {
-					dependencies.addValueId(path, uuid);
+		try (final JsonParser parser = asTokens(asset)) {
+			JsonToken token;
+			while ((token = parser.nextToken()) != null) {
+				if (token == JsonToken.FIELD_NAME) {
+					final UUID uuid = uuidOrNull(parser.currentName());
+					if (uuid != null && assetIds.contains(uuid)) {
+						// the path of a key is the path of the object that holds it
+						dependencies.addKeyId(getPath(parser.getParsingContext().getParent()), uuid);
+					}
+				} else if (token == JsonToken.VALUE_STRING && parser.getTextLength() == UUID_LENGTH) {
+					final UUID uuid = uuidOrNull(parser.getText());
+					if (uuid != null && assetIds.contains(uuid)) {
+						dependencies.addValueId(getPath(parser.getParsingContext()), uuid);
+					}
 				}
 			}
-		);
+		} catch (final IOException e) {
+			throw new RuntimeException("Unable to read the asset as JSON", e);
+		}
 
 		return dependencies;
 	}
@@ -82,6 +95,9 @@ public class AssetDependencyUtil {
 	 *
 	 * <p>The intended usage of this method is to replace any uuids of existing assets with newly cloned asset ids.
 	 *
+	 * <p>The asset is copied a token at a time with the keys and values of the dependencies replaced along the way, so
+	 * the asset is only serialized and deserialized once.
+	 *
 	 * @param <T>
 	 * @param asset
 	 * @param assetIdMapping
@@ -94,127 +110,109 @@ public class AssetDependencyUtil {
 		final Map<UUID, UUID> assetIdMapping,
 		final AssetDependencyMap dependencies
 	) {
-		final ObjectMapper mapper = new ObjectMapper();
-
-		final ObjectNode dest = (ObjectNode) mapper.valueToTree(asset);
-
-		// replace key ids
-		for (final Pair<UUID, List<String>> keyId : dependencies.getKeyIds()) {
-			final UUID id = keyId.getFirst();
+		final Map<String, String> replacements = new HashMap<>();
+		for (final UUID id : dependencies.getIds()) {
 			if (!assetIdMapping.containsKey(id)) {
-				throw new RuntimeException("No id mapping for id: " + keyId.getSecond());
+				throw new RuntimeException("No id mapping for id: " + id);
 			}
-			final UUID newId = assetIdMapping.get(id);
-
-			final List<String> path = keyId.getSecond();
-			final JsonNode node = traversePathAndGetNode(dest, path);
-
-			// do the final swap
-			final JsonNode value = node.get(id.toString());
-			((ObjectNode) node).remove(id.toString());
-			((ObjectNode) node).set(newId.toString(), value);
+			replacements.put(id.toString(), assetIdMapping.get(id).toString());
 		}
 
-		// replace value ids
-		for (final Pair<UUID, List<String>> valueId : dependencies.getValueIds()) {
-			final UUID id = valueId.getFirst();
-			if (!assetIdMapping.containsKey(id)) {
-				throw new RuntimeException("No id mapping for id: " + valueId.getSecond());
-			}
-			final UUID newId = assetIdMapping.get(id);
-
-			final List<String> path = valueId.getSecond();
-			final Pair<JsonNode, String> parentAndKey = traversePathAndGetParent(dest, path);
-
-			final JsonNode parent = parentAndKey.getFirst();
-
-			final String key = parentAndKey.getSecond();
-
-			// replace the text value
-			if (parent.isArray()) {
-				final int index = Integer.parseInt(key);
-				((ArrayNode) parent).set(index, new TextNode(newId.toString()));
-			} else {
-				((ObjectNode) parent).set(key, new TextNode(newId.toString()));
+		final TokenBuffer dest = new TokenBuffer(MAPPER, false);
+		try (final JsonParser parser = asTokens(asset)) {
+			JsonToken token;
+			while ((token = parser.nextToken()) != null) {
+				if (token == JsonToken.FIELD_NAME) {
+					dest.writeFieldName(replace(parser.currentName(), replacements));
+				} else if (token == JsonToken.VALUE_STRING) {
+					dest.writeString(replace(parser.getText(), replacements));
+				} else {
+					dest.copyCurrentEvent(parser);
+				}
 			}
+		} catch (final IOException e) {
+			throw new RuntimeException("Unable to read the asset as JSON", e);
 		}
 
-		try {
-			return mapper.treeToValue(dest, (Class<T>) asset.getClass());
+		try (final JsonParser parser = dest.asParser()) {
+			return MAPPER.readValue(parser, (Class<T>) asset.getClass());
 		} catch (final Exception e) {
 			throw new RuntimeException("Unable to write asset back into its original type", e);
 		}
 	}
 
-	private static JsonNode traversePathAndGetNode(JsonNode node, final List<String> path) {
-		for (final String key : path) {
-			if (node.isArray()) {
-				final int index = Integer.parseInt(key);
-				node = node.get(index);
-			} else if (node.isObject()) {
-				node = node.get(key);
-			} else {
-				throw new RuntimeException("Path element is not an object or array: " + key);
-			}
+	private static JsonParser asTokens(final Object asset) throws IOException {
+		if (asset instanceof final JsonNode node) {
+			return MAPPER.treeAsTokens(node);
 		}
-		return node;
+		final TokenBuffer buffer = new TokenBuffer(MAPPER, false);
+		MAPPER.writeValue(buffer, asset);
+		return buffer.asParser();
 	}
 
-	private static Pair<JsonNode, String> traversePathAndGetParent(JsonNode node, final List<String> path) {
-		for (int i = 0; i < path.size() - 1; i++) {
-			final String key = path.get(i);
-			if (node.isArray()) {
-				final int index = Integer.parseInt(key);
-				node = node.get(index);
-			} else if (node.isObject()) {
-				node = node.get(key);
-			} else {
-				throw new RuntimeException("Path element is not an object or array: " + key);
-			}
+	private static String replace(final String text, final Map<String, String> replacements) {
+		if (text == null || text.length() != UUID_LENGTH) {
+			return text;
+		}
+		final UUID uuid = uuidOrNull(text);
+		if (uuid == null) {
+			return text;
 		}
-		return Pair.of(node, path.get(path.size() - 1));
+		return replacements.getOrDefault(uuid.toString(), text);
 	}
 
-	private static UUID uuidOrNull(final String str) {
-		try {
-			final UUID uuid = UUID.fromString(str);
-			return uuid;
-		} catch (final IllegalArgumentException e) {
-			return null;
+	/** Build the path to the current position of a context, from the root down */
+	private static List<String> getPath(JsonStreamContext context) {
+		final List<String> path = new ArrayList<>();
+		while (context != null && !context.inRoot()) {
+			path.add(context.inArray() ? String.valueOf(context.getCurrentIndex()) : context.getCurrentName());
+			context = context.getParent();
 		}
+		Collections.reverse(path);
+		return path;
 	}
 
-	private static void executeOnEveryKeyAndText(
-		final List<String> path,
-		final JsonNode node,
-		final BiConsumer<List<String>, String> keyFunc,
-		final BiConsumer<List<String>, String> valueFunc
-	) {
-		if (node.isObject()) {
-			final Iterator<Map.Entry<String, JsonNode>> iterator = node.fields();
-			while (iterator.hasNext()) {
-				final Map.Entry<String, JsonNode> entry = iterator.next();
-				final String key = entry.getKey();
-				final JsonNode value = entry.getValue();
-
-				keyFunc.accept(path, key);
-
-				final List<String> pathCopy = new ArrayList<>(path);
-				pathCopy.add(key);
+	/** Parse a uuid in its canonical form, without throwing for the strings that are not one */
+	static UUID uuidOrNull(final String str) {
+		if (str == null || str.length() != UUID_LENGTH) {
+			return null;
+		}
+		for (final int hyphen : UUID_HYPHENS) {
+			if (str.charAt(hyphen) != '-') {
+				return null;
+			}
+		}
 
-				executeOnEveryKeyAndText(pathCopy, value, keyFunc, valueFunc);
+		long mostSigBits = 0;
+		long leastSigBits = 0;
+		for (int i = 0; i < UUID_LENGTH; i++) {
+			final char c = str.charAt(i);
+			if (c == '-') {
+				continue;
 			}
-		} else if (node.isArray()) {
-			int i = 0;
-			for (final JsonNode subNode : node) {
-				final List<String> pathCopy = new ArrayList<>(path);
-				pathCopy.add(String.valueOf(i));
-
-				executeOnEveryKeyAndText(pathCopy, subNode, keyFunc, valueFunc);
-				i++;
+			final int digit = hexDigit(c);
+			if (digit < 0) {
+				return null;
+			}
+			if (i < UUID_HYPHENS[2]) {
+				mostSigBits = (mostSigBits << 4) | digit;
+			} else {
+				leastSigBits = (leastSigBits << 4) | digit;
 			}
-		} else if (node.isTextual()) {
-			valueFunc.accept(path, node.asText());
 		}
+		return new UUID(mostSigBits, leastSigBits);
+	}
+
+	private static int hexDigit(final char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
 	}
 }
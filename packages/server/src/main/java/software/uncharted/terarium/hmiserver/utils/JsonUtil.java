@@ -2,9 +2,12 @@ package software.uncharted.terarium.hmiserver.utils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.function.Predicate;
 import lombok.extern.slf4j.Slf4j;
@@ -49,6 +52,42 @@ public class JsonUtil {
 		}
 	}
 
+	/**
+	 * Computes the JSON merge patch (RFC 7386) that turns one node into another: objects are compared field by field, a
+	 * field that was removed is set to null, and any other value that changed, including an array, is replaced whole.
+	 * Patches of the same node can be combined with {@link #recursiveSetAll}.
+	 *
+	 * @param before - The node before the change, or null if there was none
+	 * @param after - The node after the change, or null if it was removed
+	 * @return - The patch, or null if the nodes are equal
+	 */
+	public static JsonNode diff(final JsonNode before, final JsonNode after) {
+		if (Objects.equals(before, after)) {
+			return null;
+		}
+		if (before == null || after == null || !before.isObject() || !after.isObject()) {
+			return after == null ? NullNode.getInstance() : after;
+		}
+
+		final ObjectNode patch = JsonNodeFactory.instance.objectNode();
+		before
+			.fieldNames()
+			.forEachRemaining(fieldName -> {
+				if (!after.has(fieldName)) {
+					patch.putNull(fieldName);
+				}
+			});
+		after
+			.fields()
+			.forEachRemaining(entry -> {
+				final JsonNode fieldPatch = diff(before.get(entry.getKey()), entry.getValue());
+				if (fieldPatch != null) {
+					patch.set(entry.getKey(), fieldPatch);
+				}
+			});
+		return patch;
+	}
+
 	/**
 	 * Parse a UUID from a JSON request
 	 * @param jsonNode - The JSON request
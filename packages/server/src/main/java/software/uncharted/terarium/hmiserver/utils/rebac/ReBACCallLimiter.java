@@ -0,0 +1,74 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of SpiceDB requests in flight at once. Requests over the bound wait in a queue rather than
+ * blocking their caller, and are started as the requests in flight complete.
+ */
+public class ReBACCallLimiter {
+
+	private final int maxInFlight;
+	private final Semaphore permits;
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+	public ReBACCallLimiter(final int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+		this.permits = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Start a request once there is room for it
+	 *
+	 * @param call starts the request, returning its result
+	 * @return the result of the request
+	 */
+	public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> call) {
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		waiting.add(() -> {
+			CompletableFuture<T> request;
+			try {
+				request = call.get();
+			} catch (final Exception e) {
+				request = CompletableFuture.failedFuture(e);
+			}
+			request.whenComplete((value, error) -> {
+				permits.release();
+				drain();
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		});
+		drain();
+		return result;
+	}
+
+	/** The number of requests in flight */
+	public int getInFlight() {
+		return maxInFlight - permits.availablePermits();
+	}
+
+	/** The number of requests waiting for room */
+	public int getQueued() {
+		return waiting.size();
+	}
+
+	private void drain() {
+		while (!waiting.isEmpty() && permits.tryAcquire()) {
+			final Runnable next = waiting.poll();
+			if (next == null) {
+				// another thread started the last of them
+				permits.release();
+			} else {
+				next.run();
+			}
+		}
+	}
+}
@@ -12,12 +12,16 @@ import com.authzed.api.v1.PermissionService.RelationshipFilter;
 import com.authzed.api.v1.PermissionsServiceGrpc;
 import com.authzed.grpcutil.BearerToken;
 import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import lombok.extern.slf4j.Slf4j;
 import software.uncharted.terarium.hmiserver.utils.rebac.RelationsipAlreadyExistsException.RelationshipAlreadyExistsException;
 import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacPermissionRelationship;
@@ -29,9 +33,28 @@ public class ReBACFunctions {
 	private static final String ALREADY_EXISTS_CREATE_RELATIONSHIP = "ALREADY_EXISTS: could not CREATE relationship";
 
 	final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+	final PermissionsServiceGrpc.PermissionsServiceStub asyncPermissionsService;
+	final ReBACCallLimiter limiter;
+	final long deadlineMillis;
 
 	public ReBACFunctions(final ManagedChannel channel, final BearerToken bearerToken) {
+		this(channel, bearerToken, new ReBACCallLimiter(Integer.MAX_VALUE), 0);
+	}
+
+	/**
+	 * @param limiter        bounds the async requests in flight, shared by every instance using the channel
+	 * @param deadlineMillis the deadline of each async request, or 0 for none
+	 */
+	public ReBACFunctions(
+		final ManagedChannel channel,
+		final BearerToken bearerToken,
+		final ReBACCallLimiter limiter,
+		final long deadlineMillis
+	) {
 		this.permissionsService = PermissionsServiceGrpc.newBlockingStub(channel).withCallCredentials(bearerToken);
+		this.asyncPermissionsService = PermissionsServiceGrpc.newStub(channel).withCallCredentials(bearerToken);
+		this.limiter = limiter;
+		this.deadlineMillis = deadlineMillis;
 	}
 
 	private static ObjectReference createObject(final String type, final String id) {
@@ -66,15 +89,45 @@ public class ReBACFunctions {
 		final String resourceId,
 		final Consistency consistency
 	) throws Exception {
-		final PermissionService.CheckPermissionRequest request = PermissionService.CheckPermissionRequest.newBuilder()
+		final PermissionService.CheckPermissionResponse response = permissionsService.checkPermission(
+			checkPermissionRequest(subjectType, subjectId, permission, resourceType, resourceId, consistency)
+		);
+		return response.getPermissionship().name().equalsIgnoreCase(HAS_PERMISSION);
+	}
+
+	public CompletableFuture<Boolean> checkPermissionAsync(
+		final SchemaObject subject,
+		final Schema.Permission permission,
+		final SchemaObject resource,
+		final Consistency consistency
+	) {
+		final PermissionService.CheckPermissionRequest request = checkPermissionRequest(
+			subject.type.toString(),
+			subject.id,
+			permission.toString(),
+			resource.type.toString(),
+			resource.id,
+			consistency
+		);
+		return this.<PermissionService.CheckPermissionResponse>callAsync((stub, observer) ->
+			stub.checkPermission(request, observer)
+		).thenApply(responses -> responses.get(0).getPermissionship().name().equalsIgnoreCase(HAS_PERMISSION));
+	}
+
+	private static PermissionService.CheckPermissionRequest checkPermissionRequest(
+		final String subjectType,
+		final String subjectId,
+		final String permission,
+		final String resourceType,
+		final String resourceId,
+		final Consistency consistency
+	) {
+		return PermissionService.CheckPermissionRequest.newBuilder()
 			.setConsistency(consistency)
 			.setResource(createObject(resourceType, resourceId))
 			.setSubject(createSubject(subjectType, subjectId))
 			.setPermission(permission)
 			.build();
-
-		final PermissionService.CheckPermissionResponse response = permissionsService.checkPermission(request);
-		return response.getPermissionship().name().equalsIgnoreCase(HAS_PERMISSION);
 	}
 
 	public String createRelationship(
@@ -191,26 +244,72 @@ public class ReBACFunctions {
 		final Iterator<ReadRelationshipsResponse> iter = permissionsService.readRelationships(request);
 
 		while (iter.hasNext()) {
-			final PermissionService.ReadRelationshipsResponse response = iter.next();
-			final ObjectReference subject = response.getRelationship().getSubject().getObject();
-			final ObjectReference resource = response.getRelationship().getResource();
-			final RebacPermissionRelationship rebacRelationship = new RebacPermissionRelationship(
-				subject,
-				response.getRelationship().getRelation(),
-				resource
-			);
-			relationships.add(rebacRelationship);
+			relationships.add(toRelationship(iter.next()));
 		}
 		return relationships;
 	}
 
+	public CompletableFuture<List<RebacPermissionRelationship>> getRelationshipAsync(
+		final PermissionService.ReadRelationshipsRequest request
+	) {
+		return this.<ReadRelationshipsResponse>callAsync((stub, observer) ->
+			stub.readRelationships(request, observer)
+		).thenApply(responses -> responses.stream().map(ReBACFunctions::toRelationship).toList());
+	}
+
+	private static RebacPermissionRelationship toRelationship(final ReadRelationshipsResponse response) {
+		final ObjectReference subject = response.getRelationship().getSubject().getObject();
+		final ObjectReference resource = response.getRelationship().getResource();
+		return new RebacPermissionRelationship(subject, response.getRelationship().getRelation(), resource);
+	}
+
+	public List<RebacPermissionRelationship> getSubjectRelationships(
+		final SchemaObject subject,
+		final Schema.Type resourceType,
+		final Consistency consistency
+	) throws Exception {
+		final PermissionService.ReadRelationshipsRequest request = PermissionService.ReadRelationshipsRequest.newBuilder()
+			.setConsistency(consistency)
+			.setRelationshipFilter(
+				RelationshipFilter.newBuilder()
+					.setResourceType(resourceType.toString())
+					.setOptionalSubjectFilter(
+						PermissionService.SubjectFilter.newBuilder()
+							.setSubjectType(subject.type.toString())
+							.setOptionalSubjectId(subject.id)
+							.build()
+					)
+			)
+			.build();
+		return getRelationship(request);
+	}
+
 	public boolean hasRelationship(
 		final SchemaObject who,
 		final Schema.Relationship relationship,
 		final SchemaObject what,
 		final Consistency consistency
 	) throws Exception {
-		final PermissionService.ReadRelationshipsRequest request = PermissionService.ReadRelationshipsRequest.newBuilder()
+		return isRelatedUser(who, getRelationship(hasRelationshipRequest(relationship, what, consistency)));
+	}
+
+	public CompletableFuture<Boolean> hasRelationshipAsync(
+		final SchemaObject who,
+		final Schema.Relationship relationship,
+		final SchemaObject what,
+		final Consistency consistency
+	) {
+		return getRelationshipAsync(hasRelationshipRequest(relationship, what, consistency)).thenApply(relationships ->
+			isRelatedUser(who, relationships)
+		);
+	}
+
+	private static PermissionService.ReadRelationshipsRequest hasRelationshipRequest(
+		final Schema.Relationship relationship,
+		final SchemaObject what,
+		final Consistency consistency
+	) {
+		return PermissionService.ReadRelationshipsRequest.newBuilder()
 			.setConsistency(consistency)
 			.setRelationshipFilter(
 				RelationshipFilter.newBuilder()
@@ -219,7 +318,9 @@ public class ReBACFunctions {
 					.setOptionalRelation(relationship.toString())
 			)
 			.build();
-		final List<RebacPermissionRelationship> relationships = getRelationship(request);
+	}
+
+	private static boolean isRelatedUser(final SchemaObject who, final List<RebacPermissionRelationship> relationships) {
 		for (final RebacPermissionRelationship permissionRelationship : relationships) {
 			if (
 				Schema.Type.USER.equals(permissionRelationship.getSubjectType()) &&
@@ -239,30 +340,63 @@ public class ReBACFunctions {
 	) throws Exception {
 		final List<UUID> results = new ArrayList<>();
 
-		final PermissionService.LookupResourcesRequest request = PermissionService.LookupResourcesRequest.newBuilder()
+		final Iterator<LookupResourcesResponse> iter = permissionsService.lookupResources(
+			lookupResourcesRequest(resourceType, permission, who, consistency)
+		);
+		while (iter.hasNext()) {
+			addResourceId(results, iter.next());
+		}
+		return results;
+	}
+
+	public CompletableFuture<List<UUID>> lookupResourcesAsync(
+		final Schema.Type resourceType,
+		final Schema.Permission permission,
+		final SchemaObject who,
+		final Consistency consistency
+	) {
+		final PermissionService.LookupResourcesRequest request = lookupResourcesRequest(
+			resourceType,
+			permission,
+			who,
+			consistency
+		);
+		return this.<LookupResourcesResponse>callAsync((stub, observer) ->
+			stub.lookupResources(request, observer)
+		).thenApply(responses -> {
+			final List<UUID> results = new ArrayList<>();
+			for (final LookupResourcesResponse response : responses) {
+				addResourceId(results, response);
+			}
+			return results;
+		});
+	}
+
+	private static PermissionService.LookupResourcesRequest lookupResourcesRequest(
+		final Schema.Type resourceType,
+		final Schema.Permission permission,
+		final SchemaObject who,
+		final Consistency consistency
+	) {
+		return PermissionService.LookupResourcesRequest.newBuilder()
 			.setConsistency(consistency)
 			.setResourceObjectType(resourceType.toString())
 			.setSubject(createSubject(who.type.toString(), who.id))
 			.setPermission(permission.toString())
 			.build();
+	}
 
-		final Iterator<LookupResourcesResponse> iter = permissionsService.lookupResources(request);
-		while (iter.hasNext()) {
-			final PermissionService.LookupResourcesResponse response = iter.next();
-
-			if (
-				response.getPermissionshipValue() ==
-				PermissionService.LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION.getNumber()
-			) {
-				try {
-					final UUID uuid = UUID.fromString(response.getResourceObjectId());
-					results.add(uuid);
-				} catch (final IllegalArgumentException e) {
-					log.warn("Unable to parse resource object id as UUID", e);
-				}
+	private static void addResourceId(final List<UUID> results, final LookupResourcesResponse response) {
+		if (
+			response.getPermissionshipValue() ==
+			PermissionService.LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION.getNumber()
+		) {
+			try {
+				results.add(UUID.fromString(response.getResourceObjectId()));
+			} catch (final IllegalArgumentException e) {
+				log.warn("Unable to parse resource object id as UUID", e);
 			}
 		}
-		return results;
 	}
 
 	public List<UUID> lookupResources(final Schema.Type resourceType, final Consistency consistency) throws Exception {
@@ -286,4 +420,42 @@ public class ReBACFunctions {
 		}
 		return new ArrayList<>(results);
 	}
+
+	/**
+	 * Make a request with the async stub, once the limiter has room for it and with the deadline of this instance
+	 *
+	 * @param call makes the request with the stub, sending its responses to the observer
+	 * @return every response of the request, once it completes
+	 */
+	private <R> CompletableFuture<List<R>> callAsync(
+		final BiConsumer<PermissionsServiceGrpc.PermissionsServiceStub, StreamObserver<R>> call
+	) {
+		return limiter.submit(() -> {
+			final CompletableFuture<List<R>> future = new CompletableFuture<>();
+			final List<R> responses = new ArrayList<>();
+			final PermissionsServiceGrpc.PermissionsServiceStub stub = deadlineMillis > 0
+				? asyncPermissionsService.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+				: asyncPermissionsService;
+			call.accept(
+				stub,
+				new StreamObserver<>() {
+					@Override
+					public void onNext(final R response) {
+						responses.add(response);
+					}
+
+					@Override
+					public void onError(final Throwable t) {
+						future.completeExceptionally(t);
+					}
+
+					@Override
+					public void onCompleted() {
+						future.complete(responses);
+					}
+				}
+			);
+			return future;
+		});
+	}
 }
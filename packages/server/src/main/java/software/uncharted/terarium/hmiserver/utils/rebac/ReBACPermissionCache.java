@@ -0,0 +1,339 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches ReBAC permission decisions for every hmi-server instance. Decisions are kept in a local tier in front of a
+ * tier in Redis that all instances share, so that a decision made by one instance is a hit for the others.
+ *
+ * <p>A relationship write invalidates the decisions on its resource in both tiers of every instance, and carries the
+ * ZedToken of the write so that every instance reads SpiceDB at least as fresh as the write from then on. A write to
+ * a group changes what its members can do with every resource, so it invalidates every decision.
+ *
+ * <p>The decisions on a resource in Redis carry a version, bumped by every write to the resource, and all of them a
+ * generation, bumped by every write to a group. A decision is only written back to Redis if neither changed since
+ * before it was loaded, so that an instance that hasn't yet heard of a write can't put back a decision from before it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReBACPermissionCache {
+
+	private final RedissonClient redissonClient;
+	private final MeterRegistry meterRegistry;
+
+	private static final String CACHE_KEY = "rebac-permission-cache";
+	private static final String ZED_TOKEN_KEY = "rebac-zed-token";
+	private static final String INVALIDATION_TOPIC = "rebac-permission-invalidations";
+	private static final String GENERATION_KEY = "rebac-permission-generation";
+	private static final String ALL_RESOURCES = "*";
+	// the field of the hash of a resource that holds its version, fields of decisions always contain a ':'
+	private static final String VERSION_FIELD = "version";
+
+	// Reads a decision, with the version of its resource and the generation of all the decisions. A missing decision
+	// is an empty string.
+	// KEYS: the hash of the resource, the generation. ARGV: the field of the decision
+	static final String READ_SCRIPT =
+		"return {redis.call('hget', KEYS[1], ARGV[1]) or '', " +
+		"redis.call('hget', KEYS[1], '" +
+		VERSION_FIELD +
+		"') or '0', redis.call('get', KEYS[2]) or '0'}";
+
+	// Writes a decision if the version of its resource and the generation are the ones it was loaded at
+	// KEYS: the hash of the resource, the generation. ARGV: the field, the decision, the version, the generation, the
+	// ttl in milliseconds
+	static final String WRITE_SCRIPT =
+		"if (redis.call('hget', KEYS[1], '" +
+		VERSION_FIELD +
+		"') or '0') ~= ARGV[3] or (redis.call('get', KEYS[2]) or '0') ~= ARGV[4] then return 0 end " +
+		"redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) " +
+		"redis.call('pexpire', KEYS[1], ARGV[5]) " +
+		"return 1";
+
+	// Removes the decisions on a resource and bumps its version, which is kept for the ttl of the decisions
+	// KEYS: the hash of the resource. ARGV: the ttl in milliseconds
+	static final String INVALIDATE_SCRIPT =
+		"local version = redis.call('hincrby', KEYS[1], '" +
+		VERSION_FIELD +
+		"', 1) " +
+		"redis.call('del', KEYS[1]) " +
+		"redis.call('hset', KEYS[1], '" +
+		VERSION_FIELD +
+		"', version) " +
+		"redis.call('pexpire', KEYS[1], ARGV[1]) " +
+		"return version";
+
+	@Value("${terarium.rebac.cache.local-max-entries:100000}")
+	private long LOCAL_MAX_ENTRIES;
+
+	// the local tier only saves a round trip to redis, so it is kept briefly in case an invalidation is missed
+	@Value("${terarium.rebac.cache.local-ttl-seconds:60}")
+	private long LOCAL_TTL_SECONDS;
+
+	@Value("${terarium.rebac.cache.ttl-minutes:5}")
+	private long TTL_MINUTES;
+
+	// identifies the invalidations published by this instance, which it has already applied
+	private final String instanceId = UUID.randomUUID().toString();
+
+	// incremented by every invalidation, decisions loaded across one are not cached as they may predate the write
+	private final AtomicLong generation = new AtomicLong();
+
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+	// Keyed by resource, then subject and permission
+	private Cache<String, Boolean> localCache;
+	private RScript script;
+	private RBucket<String> sharedZedToken;
+	private RTopic invalidations;
+
+	private volatile String zedToken;
+
+	@PostConstruct
+	void init() {
+		localCache = Caffeine.newBuilder()
+			.maximumSize(LOCAL_MAX_ENTRIES)
+			.expireAfterWrite(LOCAL_TTL_SECONDS, TimeUnit.SECONDS)
+			.build();
+		script = redissonClient.getScript(StringCodec.INSTANCE);
+		sharedZedToken = redissonClient.getBucket(ZED_TOKEN_KEY, StringCodec.INSTANCE);
+		invalidations = redissonClient.getTopic(INVALIDATION_TOPIC, StringCodec.INSTANCE);
+		invalidations.addListener(String.class, (channel, message) -> onInvalidation(message));
+
+		try {
+			zedToken = sharedZedToken.get();
+		} catch (final Exception e) {
+			log.warn("Failed to read the latest ZedToken from redis, reading SpiceDB fully consistent until a write", e);
+		}
+	}
+
+	/** The ZedToken of the latest relationship write on any instance, or null if there hasn't been one */
+	public String getZedToken() {
+		return zedToken;
+	}
+
+	/**
+	 * Listen for the invalidations of every instance, with the id of the subject of the write that caused it
+	 *
+	 * @param listener called with the subject id of each invalidation
+	 */
+	public void addInvalidationListener(final Consumer<String> listener) {
+		invalidationListeners.add(listener);
+	}
+
+	/**
+	 * Get whether `who` has `permission` on `what`, loading it if it isn't cached. Neither tier blocks the caller, so
+	 * that many decisions can be read concurrently.
+	 *
+	 * @param who        User requesting access
+	 * @param permission Granted permission
+	 * @param what       Resource being questioned
+	 * @param loader     Checks the permission with SpiceDB
+	 * @return true if resource grants permission for user, false if it doesn't or it couldn't be loaded
+	 */
+	public CompletableFuture<Boolean> getAsync(
+		final SchemaObject who,
+		final Schema.Permission permission,
+		final SchemaObject what,
+		final Supplier<CompletableFuture<Boolean>> loader
+	) {
+		final String resource = resourceKey(what);
+		final String field = fieldKey(who, permission);
+		final String localKey = resource + "#" + field;
+
+		final Boolean local = localCache.getIfPresent(localKey);
+		if (local != null) {
+			count(permission, "hit", "local");
+			return CompletableFuture.completedFuture(local);
+		}
+
+		final long loadGeneration = generation.get();
+		final long loadStarted = System.nanoTime();
+		final List<Object> keys = List.of(resource, GENERATION_KEY);
+		CompletableFuture<List<String>> cached;
+		try {
+			cached = script
+				.<List<String>>evalAsync(resource, RScript.Mode.READ_ONLY, READ_SCRIPT, RScript.ReturnType.MULTI, keys, field)
+				.toCompletableFuture();
+		} catch (final Exception e) {
+			cached = CompletableFuture.failedFuture(e);
+		}
+
+		return cached
+			.exceptionally(e -> {
+				log.warn("Failed to read permission from redis, checking SpiceDB", e);
+				return null;
+			})
+			.thenCompose(entry -> {
+				if (entry != null && !entry.get(0).isEmpty()) {
+					count(permission, "hit", "redis");
+					final boolean result = Boolean.parseBoolean(entry.get(0));
+					if (generation.get() == loadGeneration) {
+						localCache.put(localKey, result);
+					}
+					return CompletableFuture.completedFuture(result);
+				}
+
+				count(permission, "miss", "none");
+				return load(loader).handle((result, e) -> {
+					if (e != null) {
+						// not cached, so that the permission is checked again once SpiceDB is available
+						log.error("Failed to get Permission from SpiceDB", e);
+						return false;
+					}
+					if (generation.get() == loadGeneration) {
+						localCache.put(localKey, result);
+					}
+					// the version of a resource expires with its decisions, so it can't tell if a load took longer
+					if (entry != null && System.nanoTime() - loadStarted < TimeUnit.MINUTES.toNanos(TTL_MINUTES)) {
+						writeBack(resource, field, result, entry.get(1), entry.get(2));
+					}
+					return result;
+				});
+			});
+	}
+
+	/**
+	 * Write a decision to redis, unless a write invalidated it while it was loaded. The decisions on a resource expire
+	 * together, the ttl after the last of them was cached.
+	 */
+	private void writeBack(
+		final String resource,
+		final String field,
+		final boolean result,
+		final String version,
+		final String generation
+	) {
+		try {
+			script.evalAsync(
+				resource,
+				RScript.Mode.READ_WRITE,
+				WRITE_SCRIPT,
+				RScript.ReturnType.INTEGER,
+				List.of(resource, GENERATION_KEY),
+				field,
+				Boolean.toString(result),
+				version,
+				generation,
+				Long.toString(Duration.ofMinutes(TTL_MINUTES).toMillis())
+			);
+		} catch (final Exception e) {
+			log.warn("Failed to write permission to redis", e);
+		}
+	}
+
+	private static CompletableFuture<Boolean> load(final Supplier<CompletableFuture<Boolean>> loader) {
+		try {
+			return loader.get();
+		} catch (final Exception e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Invalidate the decisions changed by a relationship write on every instance
+	 *
+	 * @param who      The subject of the relationship
+	 * @param what     The resource of the relationship
+	 * @param zedToken The ZedToken of the write
+	 */
+	public void invalidate(final SchemaObject who, final SchemaObject what, final String zedToken) {
+		final String resource = what.type == Schema.Type.GROUP ? ALL_RESOURCES : resourceKey(what);
+
+		if (zedToken != null) {
+			this.zedToken = zedToken;
+			sharedZedToken.setAsync(zedToken);
+		}
+		evictLocal(resource);
+		if (ALL_RESOURCES.equals(resource)) {
+			// the generation is bumped first, so that no decision loaded before it can be written once they are deleted
+			redissonClient
+				.getAtomicLong(GENERATION_KEY)
+				.incrementAndGetAsync()
+				.thenCompose(next -> redissonClient.getKeys().deleteByPatternAsync(CACHE_KEY + ":*"));
+		} else {
+			script.evalAsync(
+				resource,
+				RScript.Mode.READ_WRITE,
+				INVALIDATE_SCRIPT,
+				RScript.ReturnType.INTEGER,
+				List.of(resource),
+				Long.toString(Duration.ofMinutes(TTL_MINUTES).toMillis())
+			);
+		}
+		invalidationListeners.forEach(listener -> listener.accept(who.id));
+
+		invalidations.publishAsync(String.join("|", instanceId, resource, who.id, zedToken == null ? "" : zedToken));
+	}
+
+	private void onInvalidation(final String message) {
+		final String[] parts = message.split("\\|", -1);
+		if (parts.length != 4) {
+			log.warn("Ignoring malformed permission invalidation: {}", message);
+			return;
+		}
+		if (instanceId.equals(parts[0])) {
+			return;
+		}
+
+		if (!parts[3].isEmpty()) {
+			zedToken = parts[3];
+		}
+		evictLocal(parts[1]);
+		invalidationListeners.forEach(listener -> listener.accept(parts[2]));
+	}
+
+	private void evictLocal(final String resource) {
+		generation.incrementAndGet();
+		if (ALL_RESOURCES.equals(resource)) {
+			localCache.invalidateAll();
+		} else {
+			localCache.asMap().keySet().removeIf(key -> key.startsWith(resource + "#"));
+		}
+	}
+
+	private void count(final Schema.Permission permission, final String result, final String tier) {
+		counters
+			.computeIfAbsent(permission + "/" + result + "/" + tier, k ->
+				Counter.builder("terarium.rebac.permission.cache")
+					.tag("permission", permission.toString())
+					.tag("result", result)
+					.tag("tier", tier)
+					.register(meterRegistry)
+			)
+			.increment();
+	}
+
+	private static String resourceKey(final SchemaObject what) {
+		return CACHE_KEY + ":" + what.type + ":" + what.id;
+	}
+
+	private static String fieldKey(final SchemaObject who, final Schema.Permission permission) {
+		return who.type + ":" + who.id + ":" + permission;
+	}
+}
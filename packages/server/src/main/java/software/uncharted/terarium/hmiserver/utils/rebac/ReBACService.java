@@ -13,15 +13,17 @@ import com.github.benmanes.caffeine.cache.RemovalCause;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.inprocess.InProcessChannelBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.micrometer.observation.annotation.Observed;
 import jakarta.annotation.PostConstruct;
 import jakarta.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.nullness.qual.PolyNull;
@@ -58,6 +60,10 @@ public class ReBACService {
 
 	private final Config config;
 
+	private final ReBACPermissionCache permissionCache;
+
+	private final MeterRegistry meterRegistry;
+
 	private final SchemaManager schemaManager = new SchemaManager();
 
 	@Value("${terarium.keycloak.realm}")
@@ -72,6 +78,14 @@ public class ReBACService {
 	@Value("${spicedb.launchmode}")
 	String SPICEDB_LAUNCHMODE;
 
+	// the deadline of each async SpiceDB request
+	@Value("${spicedb.deadline-ms:5000}")
+	long SPICEDB_DEADLINE_MS;
+
+	// async SpiceDB requests over this wait for the requests in flight to complete
+	@Value("${spicedb.max-in-flight:64}")
+	int SPICEDB_MAX_IN_FLIGHT;
+
 	@Value("${terarium.keycloak.api-service-name}")
 	String API_SERVICE_USER_NAME = "api-service";
 
@@ -80,6 +94,7 @@ public class ReBACService {
 
 	private BearerToken spiceDbBearerToken;
 	private ManagedChannel channel;
+	private ReBACCallLimiter limiter;
 
 	public static final String PUBLIC_GROUP_NAME = "Public";
 	public static String PUBLIC_GROUP_ID;
@@ -89,46 +104,10 @@ public class ReBACService {
 	public static String API_SERVICE_USER_ID;
 	public static String ADMIN_API_SERVICE_USER_ID;
 
-	private volatile String CURRENT_ZED_TOKEN;
-
 	private String getKeycloakBearerToken() {
 		return "Bearer " + keycloak.tokenManager().getAccessTokenString();
 	}
 
-	private static class CacheKey {
-
-		SchemaObject who;
-		Schema.Permission permission;
-		SchemaObject what;
-
-		CacheKey(final SchemaObject who, final Schema.Permission permission, final SchemaObject what) {
-			this.who = who;
-			this.permission = permission;
-			this.what = what;
-		}
-
-		@Override
-		public boolean equals(final Object o) {
-			if (!(o instanceof final CacheKey other)) {
-				return false;
-			}
-			return who.equals(other.who) && permission == other.permission && what.equals(other.what);
-		}
-
-		@Override
-		public int hashCode() {
-			return Objects.hash(who, permission, what);
-		}
-	}
-
-	private final Cache<CacheKey, Boolean> permissionCache = Caffeine.newBuilder()
-		.expireAfterWrite(5, TimeUnit.MINUTES)
-		.recordStats()
-		.removalListener((final Object key, final Object value, final RemovalCause cause) ->
-			log.trace("Key {} was removed {}", key, cause)
-		)
-		.build();
-
 	private final Cache<String, PermissionUser> userCache = Caffeine.newBuilder()
 		.expireAfterWrite(15, TimeUnit.MINUTES)
 		.recordStats()
@@ -139,6 +118,14 @@ public class ReBACService {
 
 	@PostConstruct
 	void startup() throws Exception {
+		CaffeineCacheMetrics.monitor(meterRegistry, userCache, "rebac-users");
+		// relationship writes on any instance can change a user's groups
+		permissionCache.addInvalidationListener(userCache::invalidate);
+
+		limiter = new ReBACCallLimiter(SPICEDB_MAX_IN_FLIGHT);
+		meterRegistry.gauge("terarium.rebac.requests.in-flight", limiter, ReBACCallLimiter::getInFlight);
+		meterRegistry.gauge("terarium.rebac.requests.queued", limiter, ReBACCallLimiter::getQueued);
+
 		keycloak = KeycloakBuilder.builder()
 			.serverUrl(config.getKeycloak().getUrl())
 			.realm(config.getKeycloak().getAdminRealm())
@@ -233,6 +220,27 @@ public class ReBACService {
 		ADMIN_API_SERVICE_USER_ID = getUserId(ADMIN_API_SERVICE_USER_NAME);
 	}
 
+	// the functions for async calls, bounded by the limiter and with a deadline
+	private ReBACFunctions rebac() {
+		return new ReBACFunctions(channel, spiceDbBearerToken, limiter, SPICEDB_DEADLINE_MS);
+	}
+
+	/**
+	 * Wait for the result of an async ReBAC call
+	 *
+	 * @throws Exception the failure of the call, most likely SpiceDB is unavailable
+	 */
+	public static <T> T await(final CompletableFuture<T> future) throws Exception {
+		try {
+			return future.join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof final Exception cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
 	private String getUserId(final String name) {
 		final List<UserRepresentation> users = keycloak.realm(REALM_NAME).users().search(name);
 		for (final UserRepresentation user : users) {
@@ -320,7 +328,6 @@ public class ReBACService {
 				return null;
 			}
 		});
-		log.trace("User Cache hit: {}, miss: {}", userCache.stats().hitCount(), userCache.stats().missCount());
 		return result;
 	}
 
@@ -467,47 +474,55 @@ public class ReBACService {
 	 */
 	@Observed(name = "function_profile")
 	public boolean can(final SchemaObject who, final Schema.Permission permission, final SchemaObject what) {
-		@PolyNull
-		final Boolean result = permissionCache.get(new CacheKey(who, permission, what), permissionMappingFn);
-		log.trace("Cache hit: {}, miss: {}", permissionCache.stats().hitCount(), permissionCache.stats().missCount());
-		return result;
+		return canAsync(who, permission, what).join();
 	}
 
-	private final Function<CacheKey, Boolean> permissionMappingFn = key -> {
-		final ReBACFunctions rebac = new ReBACFunctions(channel, spiceDbBearerToken);
-		try {
-			if (SPICEDB_LAUNCHMODE.equals("TEST")) {
-				return true;
-			}
-			return rebac.checkPermission(key.who, key.permission, key.what, getCurrentConsistency());
-		} catch (final Exception e) {
-			log.error("Failed to get Permission from SpiceDB: {}", e);
-			return false;
+	/**
+	 * Determines if user `who` has `permission` on resource `what`, without blocking, so that many checks can be made
+	 * concurrently
+	 *
+	 * @param who        User requesting access
+	 * @param permission Granted permission
+	 * @param what       Resource being questioned
+	 * @return true if resource grants permission for user, false if it doesn't or SpiceDB is unavailable
+	 */
+	public CompletableFuture<Boolean> canAsync(
+		final SchemaObject who,
+		final Schema.Permission permission,
+		final SchemaObject what
+	) {
+		return permissionCache.getAsync(who, permission, what, () -> checkPermission(who, permission, what));
+	}
+
+	private CompletableFuture<Boolean> checkPermission(
+		final SchemaObject who,
+		final Schema.Permission permission,
+		final SchemaObject what
+	) {
+		if (SPICEDB_LAUNCHMODE.equals("TEST")) {
+			return CompletableFuture.completedFuture(true);
 		}
-	};
+		return rebac().checkPermissionAsync(who, permission, what, getCurrentConsistency());
+	}
 
 	@Observed(name = "function_profile")
 	public boolean isMemberOf(final SchemaObject who, final SchemaObject what) throws Exception {
-		@PolyNull
-		final Boolean result = permissionCache.get(
-			new CacheKey(who, Schema.Permission.MEMBERSHIP, what),
-			permissionMappingFn
+		return await(isMemberOfAsync(who, what));
+	}
+
+	public CompletableFuture<Boolean> isMemberOfAsync(final SchemaObject who, final SchemaObject what) {
+		return permissionCache.getAsync(who, Schema.Permission.MEMBERSHIP, what, () ->
+			checkPermission(who, Schema.Permission.MEMBERSHIP, what)
 		);
-		log.trace("Cache hit: {}, miss: {}", permissionCache.stats().hitCount(), permissionCache.stats().missCount());
-		return result;
 	}
 
 	@Observed(name = "function_profile")
 	public boolean isCreator(final SchemaObject who, final SchemaObject what) throws Exception {
-		final ReBACFunctions rebac = new ReBACFunctions(channel, spiceDbBearerToken);
-		return rebac.hasRelationship(who, Schema.Relationship.CREATOR, what, getCurrentConsistency());
+		return await(isCreatorAsync(who, what));
 	}
 
-	private void invalidatePermissionCache(final SchemaObject who, final SchemaObject what) {
-		permissionCache.invalidate(new CacheKey(who, Schema.Permission.READ, what));
-		permissionCache.invalidate(new CacheKey(who, Schema.Permission.WRITE, what));
-		permissionCache.invalidate(new CacheKey(who, Schema.Permission.MEMBERSHIP, what));
-		permissionCache.invalidate(new CacheKey(who, Schema.Permission.ADMINISTRATE, what));
+	public CompletableFuture<Boolean> isCreatorAsync(final SchemaObject who, final SchemaObject what) {
+		return rebac().hasRelationshipAsync(who, Schema.Relationship.CREATOR, what, getCurrentConsistency());
 	}
 
 	@Observed(name = "function_profile")
@@ -516,10 +531,8 @@ public class ReBACService {
 		final SchemaObject what,
 		final Schema.Relationship relationship
 	) throws Exception, RelationshipAlreadyExistsException {
-		userCache.invalidate(who.id);
-		invalidatePermissionCache(who, what);
 		final ReBACFunctions rebac = new ReBACFunctions(channel, spiceDbBearerToken);
-		CURRENT_ZED_TOKEN = rebac.createRelationship(who, relationship, what);
+		permissionCache.invalidate(who, what, rebac.createRelationship(who, relationship, what));
 	}
 
 	@Observed(name = "function_profile")
@@ -528,21 +541,20 @@ public class ReBACService {
 		final SchemaObject what,
 		final Schema.Relationship relationship
 	) throws Exception {
-		userCache.invalidate(who.id);
-		invalidatePermissionCache(who, what);
 		final ReBACFunctions rebac = new ReBACFunctions(channel, spiceDbBearerToken);
 		try {
-			CURRENT_ZED_TOKEN = rebac.removeRelationship(who, relationship, what);
+			permissionCache.invalidate(who, what, rebac.removeRelationship(who, relationship, what));
 		} catch (RelationshipAlreadyExistsException ignore) {
 			// NB: This is a no-op as the relationship is already removed
 		}
 	}
 
 	private Consistency getCurrentConsistency() {
-		if (CURRENT_ZED_TOKEN == null) {
+		final String currentZedToken = permissionCache.getZedToken();
+		if (currentZedToken == null) {
 			return Consistency.newBuilder().setFullyConsistent(true).build();
 		}
-		final Core.ZedToken zedToken = Core.ZedToken.newBuilder().setToken(CURRENT_ZED_TOKEN).build();
+		final Core.ZedToken zedToken = Core.ZedToken.newBuilder().setToken(currentZedToken).build();
 		return Consistency.newBuilder().setAtLeastAsFresh(zedToken).build();
 	}
 
@@ -552,6 +564,22 @@ public class ReBACService {
 		return rebac.getRelationship(what, getCurrentConsistency());
 	}
 
+	/**
+	 * Gets the relationships that `who` has to every resource of a type, e.g. every project a group can read
+	 *
+	 * @param who  The subject of the relationships
+	 * @param type The type of the resources
+	 * @return the relationships of `who`
+	 * @throws Exception some sort of ReBAC error, most likely SpiceDB is
+	 *                   unavailable
+	 */
+	@Observed(name = "function_profile")
+	public List<RebacPermissionRelationship> getSubjectRelationships(final SchemaObject who, final Schema.Type type)
+		throws Exception {
+		final ReBACFunctions rebac = new ReBACFunctions(channel, spiceDbBearerToken);
+		return rebac.getSubjectRelationships(who, type, getCurrentConsistency());
+	}
+
 	@Observed(name = "function_profile")
 	public ResponseEntity<Void> deleteRoleFromUser(final String roleName, final String userId) {
 		// NB: No need to adjust {rebacCache} as we will allow for a maximum 5 minute
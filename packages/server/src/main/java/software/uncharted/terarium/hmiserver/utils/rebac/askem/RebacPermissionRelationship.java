@@ -30,4 +30,8 @@ public class RebacPermissionRelationship {
 	public Schema.Relationship getRelationship() {
 		return relationship;
 	}
+
+	public String getResourceId() {
+		return resourceId;
+	}
 }
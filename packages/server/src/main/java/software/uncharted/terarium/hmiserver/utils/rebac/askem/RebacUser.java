@@ -1,7 +1,13 @@
 package software.uncharted.terarium.hmiserver.utils.rebac.askem;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
 import software.uncharted.terarium.hmiserver.models.permissions.PermissionGroup;
 import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
@@ -44,10 +50,40 @@ public class RebacUser extends RebacObject {
 		}
 	}
 
+	public CompletableFuture<Boolean> isAdminAsync() {
+		if (adminServiceUser) {
+			return CompletableFuture.completedFuture(true);
+		}
+		return reBACService
+			.isMemberOfAsync(
+				getSchemaObject(),
+				new RebacGroup(ReBACService.ASKEM_ADMIN_GROUP_ID, reBACService).getSchemaObject()
+			)
+			.exceptionally(e -> {
+				log.error("Error checking if user is admin", e);
+				return false;
+			});
+	}
+
 	public boolean can(final RebacObject rebacObject, final Schema.Permission permission) throws Exception {
-		if (serviceUser || isAdmin()) return true;
-		if (rebacObject.getId().isEmpty()) return false;
-		return reBACService.can(getSchemaObject(), permission, rebacObject.getSchemaObject());
+		return ReBACService.await(canAsync(rebacObject, permission));
+	}
+
+	/** Checks whether the user is an admin and whether it has the permission concurrently */
+	public CompletableFuture<Boolean> canAsync(final RebacObject rebacObject, final Schema.Permission permission) {
+		if (serviceUser) {
+			return CompletableFuture.completedFuture(true);
+		}
+		final CompletableFuture<Boolean> admin = isAdminAsync();
+		if (rebacObject.getId().isEmpty()) {
+			return admin;
+		}
+		final CompletableFuture<Boolean> granted = reBACService.canAsync(
+			getSchemaObject(),
+			permission,
+			rebacObject.getSchemaObject()
+		);
+		return admin.thenCombine(granted, (isAdmin, can) -> isAdmin || can);
 	}
 
 	public boolean isMemberOf(final RebacGroup rebacGroup) throws Exception {
@@ -73,16 +109,97 @@ public class RebacUser extends RebacObject {
 	}
 
 	public String getPermissionFor(final RebacProject rebacProject) throws Exception {
-		if (reBACService.isCreator(getSchemaObject(), rebacProject.getSchemaObject())) {
-			return Schema.Relationship.CREATOR.toString();
-		} else if (can(rebacProject, Schema.Permission.WRITE)) {
-			return Schema.Relationship.WRITER.toString();
-		} else if (can(rebacProject, Schema.Permission.READ)) {
-			return Schema.Relationship.READER.toString();
-		} else if (isAdmin() || can(rebacProject, Schema.Permission.ADMINISTRATE)) {
-			return Schema.Relationship.ADMIN.toString();
+		return ReBACService.await(getPermissionForAsync(rebacProject));
+	}
+
+	/**
+	 * Each check is only made if the ones before it failed, as the first that succeeds is the permission, and whether
+	 * the user is an admin is checked once, as it grants every permission
+	 */
+	private CompletableFuture<String> getPermissionForAsync(final RebacProject rebacProject) {
+		final SchemaObject project = rebacProject.getSchemaObject();
+		return reBACService
+			.isCreatorAsync(getSchemaObject(), project)
+			.thenCompose(creator -> {
+				if (creator) {
+					return CompletableFuture.completedFuture(Schema.Relationship.CREATOR.toString());
+				}
+				final CompletableFuture<Boolean> admin = serviceUser ? CompletableFuture.completedFuture(true) : isAdminAsync();
+				return admin.thenCompose(isAdmin -> {
+					if (isAdmin) {
+						return CompletableFuture.completedFuture(Schema.Relationship.WRITER.toString());
+					}
+					if (rebacProject.getId().isEmpty()) {
+						return CompletableFuture.completedFuture("none");
+					}
+					return firstGranted(
+						project,
+						List.of(Schema.Permission.WRITE, Schema.Permission.READ, Schema.Permission.ADMINISTRATE),
+						List.of(Schema.Relationship.WRITER, Schema.Relationship.READER, Schema.Relationship.ADMIN)
+					);
+				});
+			});
+	}
+
+	/** The relationship of the first of the permissions the user has on the object, checking them one after the other */
+	private CompletableFuture<String> firstGranted(
+		final SchemaObject what,
+		final List<Schema.Permission> permissions,
+		final List<Schema.Relationship> relationships
+	) {
+		if (permissions.isEmpty()) {
+			return CompletableFuture.completedFuture("none");
+		}
+		return reBACService
+			.canAsync(getSchemaObject(), permissions.get(0), what)
+			.thenCompose(granted ->
+				granted
+					? CompletableFuture.completedFuture(relationships.get(0).toString())
+					: firstGranted(
+						what,
+						permissions.subList(1, permissions.size()),
+						relationships.subList(1, relationships.size())
+					)
+			);
+	}
+
+	/**
+	 * Gets the permission of this user for each of the given projects, as {@link #getPermissionFor} does, with a lookup
+	 * per permission rather than checks per project.
+	 */
+	public Map<UUID, String> getPermissionsFor(final Collection<UUID> projectIds) throws Exception {
+		final Set<String> created = new HashSet<>();
+		for (final RebacPermissionRelationship relationship : reBACService.getSubjectRelationships(
+			getSchemaObject(),
+			Schema.Type.PROJECT
+		)) {
+			if (relationship.getRelationship().equals(Schema.Relationship.CREATOR)) {
+				created.add(relationship.getResourceId());
+			}
+		}
+
+		// admins can write to every project, so there is nothing to look up
+		final boolean canWriteAll = serviceUser || isAdmin();
+		final Set<UUID> writable = new HashSet<>();
+		final Set<UUID> readable = new HashSet<>();
+		if (!canWriteAll) {
+			writable.addAll(reBACService.lookupResources(getSchemaObject(), Schema.Permission.WRITE, Schema.Type.PROJECT));
+			readable.addAll(lookupProjects());
+		}
+
+		final Map<UUID, String> permissions = new HashMap<>();
+		for (final UUID projectId : projectIds) {
+			if (created.contains(projectId.toString())) {
+				permissions.put(projectId, Schema.Relationship.CREATOR.toString());
+			} else if (canWriteAll || writable.contains(projectId)) {
+				permissions.put(projectId, Schema.Relationship.WRITER.toString());
+			} else if (readable.contains(projectId)) {
+				permissions.put(projectId, Schema.Relationship.READER.toString());
+			} else {
+				permissions.put(projectId, "none");
+			}
 		}
-		return "none";
+		return permissions;
 	}
 
 	public List<UUID> lookupProjects() throws Exception {
@@ -0,0 +1,127 @@
+-- Copy the nodes and edges of workflows out of the json arrays of the workflow table into rows of their own, so that
+-- an edit to a node reads and writes that node only. The json columns are left as they are, so that nothing is lost if
+-- the copy has to be checked or redone, and are to be dropped by a later migration.
+
+CREATE TABLE IF NOT EXISTS workflow_node (
+	workflow_id uuid NOT NULL,
+	element_id uuid NOT NULL,
+	sort_order integer NOT NULL,
+	version bigint NOT NULL,
+	is_deleted boolean NOT NULL,
+	content json NOT NULL,
+	PRIMARY KEY (workflow_id, element_id)
+);
+
+CREATE TABLE IF NOT EXISTS workflow_edge (
+	workflow_id uuid NOT NULL,
+	element_id uuid NOT NULL,
+	sort_order integer NOT NULL,
+	version bigint NOT NULL,
+	is_deleted boolean NOT NULL,
+	content json NOT NULL,
+	PRIMARY KEY (workflow_id, element_id)
+);
+
+-- The elements marked for deletion are few, and are looked for by the cleanup
+CREATE INDEX IF NOT EXISTS workflow_node_deleted ON workflow_node (workflow_id) WHERE is_deleted;
+CREATE INDEX IF NOT EXISTS workflow_edge_deleted ON workflow_edge (workflow_id) WHERE is_deleted;
+
+DO $$
+DECLARE
+	uuid_pattern CONSTANT text := '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$';
+	duplicates text;
+	skipped bigint;
+BEGIN
+	-- the kept columns are no longer written to, new workflows leave them empty
+	IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'workflow' AND column_name = 'nodes') THEN
+		ALTER TABLE workflow ALTER COLUMN nodes DROP NOT NULL;
+	END IF;
+	IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'workflow' AND column_name = 'edges') THEN
+		ALTER TABLE workflow ALTER COLUMN edges DROP NOT NULL;
+	END IF;
+
+	IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'workflow' AND column_name = 'nodes')
+		AND NOT EXISTS (SELECT 1 FROM workflow_node) THEN
+		-- two nodes of a workflow with the same id can't both be kept, which one to keep is left to a person
+		SELECT string_agg(DISTINCT d.id::text, ', ') INTO duplicates
+		FROM (
+			SELECT w.id
+			FROM workflow w
+			CROSS JOIN LATERAL json_array_elements(
+				CASE WHEN json_typeof(w.nodes) = 'array' THEN w.nodes ELSE '[]'::json END
+			) AS e(content)
+			WHERE e.content ->> 'id' ~ uuid_pattern
+			GROUP BY w.id, (e.content ->> 'id')::uuid
+			HAVING count(*) > 1
+		) AS d;
+		IF duplicates IS NOT NULL THEN
+			RAISE EXCEPTION 'Workflows have nodes with the same id, remove the duplicates to migrate them: %', duplicates;
+		END IF;
+
+		SELECT count(*) INTO skipped
+		FROM workflow w
+		CROSS JOIN LATERAL json_array_elements(
+			CASE WHEN json_typeof(w.nodes) = 'array' THEN w.nodes ELSE '[]'::json END
+		) AS e(content)
+		WHERE e.content ->> 'id' IS NULL OR NOT (e.content ->> 'id' ~ uuid_pattern);
+		IF skipped > 0 THEN
+			RAISE WARNING 'Skipped % workflow nodes without a uuid id, they are left in workflow.nodes', skipped;
+		END IF;
+
+		INSERT INTO workflow_node (workflow_id, element_id, sort_order, version, is_deleted, content)
+		SELECT
+			w.id,
+			(e.content ->> 'id')::uuid,
+			e.ordinality - 1,
+			COALESCE((e.content ->> 'version')::bigint, 1),
+			COALESCE((e.content ->> 'isDeleted')::boolean, false),
+			e.content
+		FROM workflow w
+		CROSS JOIN LATERAL json_array_elements(
+			CASE WHEN json_typeof(w.nodes) = 'array' THEN w.nodes ELSE '[]'::json END
+		) WITH ORDINALITY AS e(content, ordinality)
+		WHERE e.content ->> 'id' ~ uuid_pattern;
+	END IF;
+
+	IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'workflow' AND column_name = 'edges')
+		AND NOT EXISTS (SELECT 1 FROM workflow_edge) THEN
+		SELECT string_agg(DISTINCT d.id::text, ', ') INTO duplicates
+		FROM (
+			SELECT w.id
+			FROM workflow w
+			CROSS JOIN LATERAL json_array_elements(
+				CASE WHEN json_typeof(w.edges) = 'array' THEN w.edges ELSE '[]'::json END
+			) AS e(content)
+			WHERE e.content ->> 'id' ~ uuid_pattern
+			GROUP BY w.id, (e.content ->> 'id')::uuid
+			HAVING count(*) > 1
+		) AS d;
+		IF duplicates IS NOT NULL THEN
+			RAISE EXCEPTION 'Workflows have edges with the same id, remove the duplicates to migrate them: %', duplicates;
+		END IF;
+
+		SELECT count(*) INTO skipped
+		FROM workflow w
+		CROSS JOIN LATERAL json_array_elements(
+			CASE WHEN json_typeof(w.edges) = 'array' THEN w.edges ELSE '[]'::json END
+		) AS e(content)
+		WHERE e.content ->> 'id' IS NULL OR NOT (e.content ->> 'id' ~ uuid_pattern);
+		IF skipped > 0 THEN
+			RAISE WARNING 'Skipped % workflow edges without a uuid id, they are left in workflow.edges', skipped;
+		END IF;
+
+		INSERT INTO workflow_edge (workflow_id, element_id, sort_order, version, is_deleted, content)
+		SELECT
+			w.id,
+			(e.content ->> 'id')::uuid,
+			e.ordinality - 1,
+			COALESCE((e.content ->> 'version')::bigint, 1),
+			COALESCE((e.content ->> 'isDeleted')::boolean, false),
+			e.content
+		FROM workflow w
+		CROSS JOIN LATERAL json_array_elements(
+			CASE WHEN json_typeof(w.edges) = 'array' THEN w.edges ELSE '[]'::json END
+		) WITH ORDINALITY AS e(content, ordinality)
+		WHERE e.content ->> 'id' ~ uuid_pattern;
+	END IF;
+END $$;
@@ -0,0 +1,16 @@
+-- Record when workflow nodes and edges were marked for deletion, so that their rows are removed some time after by
+-- the compaction, oldest first
+
+ALTER TABLE workflow_node ADD COLUMN IF NOT EXISTS deleted_on timestamp with time zone;
+ALTER TABLE workflow_edge ADD COLUMN IF NOT EXISTS deleted_on timestamp with time zone;
+
+-- The elements already marked for deletion are removed once they have been kept as long as the others
+UPDATE workflow_node SET deleted_on = now() WHERE is_deleted AND deleted_on IS NULL;
+UPDATE workflow_edge SET deleted_on = now() WHERE is_deleted AND deleted_on IS NULL;
+
+DROP INDEX IF EXISTS workflow_node_deleted;
+DROP INDEX IF EXISTS workflow_edge_deleted;
+
+-- The elements marked for deletion are few, and are looked for by the compaction in the order they were marked
+CREATE INDEX IF NOT EXISTS workflow_node_deleted_on ON workflow_node (deleted_on) WHERE is_deleted;
+CREATE INDEX IF NOT EXISTS workflow_edge_deleted_on ON workflow_edge (deleted_on) WHERE is_deleted;
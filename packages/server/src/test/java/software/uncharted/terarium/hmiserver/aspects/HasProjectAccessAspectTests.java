@@ -0,0 +1,145 @@
+package software.uncharted.terarium.hmiserver.aspects;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+import software.uncharted.terarium.hmiserver.annotations.HasProjectAccess;
+import software.uncharted.terarium.hmiserver.models.User;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.service.CurrentUserService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectService;
+import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
+
+public class HasProjectAccessAspectTests {
+
+	private final UUID projectId = UUID.randomUUID();
+
+	private ProjectService projectService;
+	private HasProjectAccessAspect aspect;
+
+	@BeforeEach
+	public void setup() {
+		projectService = mock(ProjectService.class);
+		final CurrentUserService currentUserService = mock(CurrentUserService.class);
+		final User user = new User();
+		user.setId("user-id");
+		when(currentUserService.get()).thenReturn(user);
+
+		final ApplicationContext applicationContext = mock(ApplicationContext.class);
+		when(applicationContext.getBeanDefinitionNames()).thenReturn(new String[] { "testService", "objectMapper" });
+		when(applicationContext.getType(anyString(), anyBoolean())).thenAnswer(inv ->
+			inv.getArgument(0).equals("testService") ? HasProjectAccessAspectMethodTestService.class : Map.class
+		);
+
+		aspect = new HasProjectAccessAspect(projectService, currentUserService, applicationContext);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+	}
+
+	@AfterEach
+	public void teardown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	private Object call(final String methodName, final Object arg) throws Throwable {
+		return call(methodName, String.class, arg);
+	}
+
+	private Object call(final String methodName, final Class<?> parameterType, final Object arg) throws Throwable {
+		final Method method = HasProjectAccessAspectMethodTestService.class.getMethod(methodName, parameterType);
+		final MethodSignature signature = mock(MethodSignature.class);
+		when(signature.getMethod()).thenReturn(method);
+		when(signature.getParameterNames()).thenReturn(new String[] { method.getParameters()[0].getName() });
+		final ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+		when(joinPoint.getSignature()).thenReturn(signature);
+		when(joinPoint.getArgs()).thenReturn(new Object[] { arg });
+		when(joinPoint.proceed()).thenReturn("proceeded");
+
+		return aspect.methodHasProjectAccess(joinPoint, method.getAnnotation(HasProjectAccess.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItResolvesExpressionsAtStartup() {
+		aspect.afterSingletonsInstantiated();
+
+		final Map<Method, ProjectIdResolver> resolvers = (Map<Method, ProjectIdResolver>) ReflectionTestUtils.getField(
+			aspect,
+			"resolvers"
+		);
+		Assertions.assertEquals(
+			HasProjectAccessAspectMethodTestService.class.getDeclaredMethods().length,
+			resolvers.size()
+		);
+	}
+
+	@Test
+	public void testItChecksThePermissionOncePerRequest() throws Throwable {
+		when(projectService.projectExists(projectId)).thenReturn(true);
+		when(projectService.hasPermissionAsync(eq(projectId), any(), eq(Schema.Permission.READ))).thenReturn(
+			CompletableFuture.completedFuture(true)
+		);
+		aspect.afterSingletonsInstantiated();
+
+		Assertions.assertEquals("proceeded", call("defaultParameterName", projectId.toString()));
+		Assertions.assertEquals("proceeded", call("customParameterName", projectId.toString()));
+		verify(projectService, times(1)).hasPermissionAsync(any(), any(), any());
+
+		// a write is a different decision
+		when(projectService.hasPermissionAsync(any(), any(), eq(Schema.Permission.WRITE))).thenReturn(
+			CompletableFuture.completedFuture(false)
+		);
+		Assertions.assertThrows(AccessDeniedException.class, () -> call("ownerLevel", projectId.toString()));
+		verify(projectService, times(2)).hasPermissionAsync(any(), any(), any());
+
+		// and the next request checks again
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		call("defaultParameterName", projectId.toString());
+		verify(projectService, times(3)).hasPermissionAsync(any(), any(), any());
+	}
+
+	@Test
+	public void testItEvaluatesExpressionsOnArguments() throws Throwable {
+		when(projectService.projectExists(projectId)).thenReturn(true);
+		when(projectService.hasPermissionAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(true));
+
+		final Project project = (Project) new Project().setId(projectId);
+		Assertions.assertEquals("proceeded", call("objectSpel", Project.class, project));
+		Assertions.assertEquals("proceeded", call("objectSpel", Project.class, project));
+		Assertions.assertThrows(RuntimeException.class, () -> call("objectSpel", Project.class, null));
+		verify(projectService, times(2)).projectExists(projectId);
+	}
+
+	@Test
+	public void testItRejectsProjectsThatDontExist() {
+		when(projectService.projectExists(projectId)).thenReturn(false);
+		when(projectService.hasPermissionAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(true));
+
+		Assertions.assertThrows(ResponseStatusException.class, () ->
+			call("defaultParameterName", projectId.toString())
+		);
+		verify(projectService, times(0)).getProject(any());
+	}
+}
@@ -1,10 +1,12 @@
 package software.uncharted.terarium.hmiserver.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.PostConstruct;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
@@ -16,6 +18,7 @@ import software.uncharted.terarium.hmiserver.models.authority.Role;
 import software.uncharted.terarium.hmiserver.models.permissions.PermissionGroup;
 import software.uncharted.terarium.hmiserver.models.permissions.PermissionRole;
 import software.uncharted.terarium.hmiserver.models.permissions.PermissionUser;
+import software.uncharted.terarium.hmiserver.utils.rebac.ReBACPermissionCache;
 import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
 import software.uncharted.terarium.hmiserver.utils.rebac.RelationsipAlreadyExistsException.RelationshipAlreadyExistsException;
 import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
@@ -34,8 +37,12 @@ public class TestReBACService extends ReBACService {
 	private final Map<String, PermissionUser> users = new HashMap<>();
 	private final Map<String, PermissionRole> roles = new HashMap<>();
 
-	public TestReBACService(final Config config) {
-		super(config);
+	public TestReBACService(
+		final Config config,
+		final ReBACPermissionCache permissionCache,
+		final MeterRegistry meterRegistry
+	) {
+		super(config, permissionCache, meterRegistry);
 	}
 
 	@PostConstruct
@@ -139,6 +146,11 @@ public class TestReBACService extends ReBACService {
 		return true;
 	}
 
+	@Override
+	public CompletableFuture<Boolean> isMemberOfAsync(final SchemaObject who, final SchemaObject what) {
+		return CompletableFuture.completedFuture(true);
+	}
+
 	public boolean canAdministrate(final SchemaObject who, final SchemaObject what) throws Exception {
 		return true;
 	}
@@ -148,6 +160,11 @@ public class TestReBACService extends ReBACService {
 		return true;
 	}
 
+	@Override
+	public CompletableFuture<Boolean> isCreatorAsync(final SchemaObject who, final SchemaObject what) {
+		return CompletableFuture.completedFuture(true);
+	}
+
 	@Override
 	public void createRelationship(
 		final SchemaObject who,
@@ -167,6 +184,12 @@ public class TestReBACService extends ReBACService {
 		return new ArrayList<>();
 	}
 
+	@Override
+	public List<RebacPermissionRelationship> getSubjectRelationships(final SchemaObject who, final Schema.Type type)
+		throws Exception {
+		return new ArrayList<>();
+	}
+
 	@Override
 	public ResponseEntity<Void> deleteRoleFromUser(final String roleName, final String userId) {
 		if (!users.containsKey(userId)) {
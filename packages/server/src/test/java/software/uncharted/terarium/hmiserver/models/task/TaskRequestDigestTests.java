@@ -0,0 +1,63 @@
+package software.uncharted.terarium.hmiserver.models.task;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest.TaskType;
+
+public class TaskRequestDigestTests {
+
+	private static final int ONE_MB = 1024 * 1024;
+
+	// The original implementation, kept to verify the digest is unchanged. The memory
+	// saved is measured by TaskRequestDigestBenchmark.
+	private static String legacySHA256(final TaskType type, final String script, final byte[] input) throws Exception {
+		final String encodedInput = Base64.getEncoder().encodeToString(input);
+		final String strHash = String.format("%s-%s-%s", type, script, encodedInput);
+		final MessageDigest md = MessageDigest.getInstance("SHA-256");
+		return Base64.getEncoder().encodeToString(md.digest(strHash.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static byte[] randomBytes(final int length) {
+		final byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	@Test
+	public void testItMatchesLegacyDigest() throws Exception {
+		// cover every base64 padding case as well as multiple encoder chunks
+		for (final int length : new int[] { 1, 2, 3, 4, 5, 1000, 8192, 100_000, ONE_MB }) {
+			final byte[] input = randomBytes(length);
+			Assertions.assertEquals(
+				legacySHA256(TaskType.GOLLM, "gollm:model_card", input),
+				TaskRequestDigest.sha256(TaskType.GOLLM, "gollm:model_card", input)
+			);
+		}
+		Assertions.assertEquals(
+			legacySHA256(TaskType.MIRA, "mira_task:amr_to_mmt", new byte[0]),
+			TaskRequestDigest.sha256(TaskType.MIRA, "mira_task:amr_to_mmt", new byte[0])
+		);
+	}
+
+	@Test
+	public void testItMemoizesUntilRequestChanges() throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setType(TaskType.GOLLM);
+		req.setScript("echo.py");
+		req.setInput("{\"input\":\"a\"}".getBytes());
+
+		final String hash = req.getSHA256();
+		Assertions.assertSame(hash, req.getSHA256());
+
+		req.setInput("{\"input\":\"b\"}".getBytes());
+		final String inputHash = req.getSHA256();
+		Assertions.assertNotEquals(hash, inputHash);
+
+		req.setScript("other.py");
+		Assertions.assertNotEquals(inputHash, req.getSHA256());
+	}
+}
@@ -0,0 +1,176 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class ClientEventEmitterTests {
+
+	// runs the tasks of the emitter only when the test says so, as if the sender threads were busy
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+	private ScheduledExecutorService timeoutExecutor;
+	private long writeTimeoutMillis = 10000;
+
+	private SseEmitter sseEmitter;
+	private Timer sendTimer;
+	private Counter droppedCounter;
+	private Counter slowDisconnectCounter;
+
+	@BeforeEach
+	public void setup() {
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		timeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+		sseEmitter = mock(SseEmitter.class);
+		sendTimer = Timer.builder("send").register(registry);
+		droppedCounter = Counter.builder("dropped").register(registry);
+		slowDisconnectCounter = Counter.builder("slow-disconnects").register(registry);
+	}
+
+	@AfterEach
+	public void teardown() {
+		timeoutExecutor.shutdownNow();
+	}
+
+	private ClientEventEmitter emitter(final ClientEventEmitter.OverflowPolicy overflowPolicy) {
+		return new ClientEventEmitter(
+			"user",
+			sseEmitter,
+			2,
+			overflowPolicy,
+			tasks::add,
+			timeoutExecutor,
+			writeTimeoutMillis,
+			sendTimer,
+			droppedCounter,
+			slowDisconnectCounter
+		);
+	}
+
+	private static ClientEventEmitter.Frame frame(final String event) {
+		return ClientEventEmitter.Frame.of(("\"" + event + "\"").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void runTasks() {
+		while (!tasks.isEmpty()) {
+			tasks.poll().run();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private String sent() throws IOException {
+		final ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> data = ArgumentCaptor.forClass(Set.class);
+		verify(sseEmitter, times(1)).send(data.capture());
+		return data
+			.getValue()
+			.stream()
+			.map(d -> new String((byte[]) d.getData(), StandardCharsets.UTF_8))
+			.collect(Collectors.joining());
+	}
+
+	@Test
+	public void testItWritesTheQueuedFramesAtOnce() throws IOException {
+		final ClientEventEmitter emitter = emitter(ClientEventEmitter.OverflowPolicy.DISCONNECT);
+		Assertions.assertTrue(emitter.offer(frame("first")));
+		Assertions.assertTrue(emitter.offer(frame("second")));
+		Assertions.assertEquals(1, tasks.size());
+		Assertions.assertFalse(emitter.isIdle());
+
+		runTasks();
+
+		Assertions.assertEquals("data:\"first\"\n\ndata:\"second\"\n\n", sent());
+		Assertions.assertEquals(2, sendTimer.count());
+		Assertions.assertTrue(emitter.isIdle());
+	}
+
+	@Test
+	public void testItDropsTheOldestFramesOfASlowConnection() throws IOException {
+		final ClientEventEmitter emitter = emitter(ClientEventEmitter.OverflowPolicy.DROP_OLDEST);
+		emitter.offer(frame("first"));
+		emitter.offer(frame("second"));
+		Assertions.assertTrue(emitter.offer(frame("third")));
+
+		runTasks();
+
+		Assertions.assertEquals("data:\"second\"\n\ndata:\"third\"\n\n", sent());
+		Assertions.assertEquals(1, droppedCounter.count());
+		Assertions.assertFalse(emitter.isClosed());
+	}
+
+	@Test
+	public void testItDisconnectsASlowConnection() throws IOException {
+		final ClientEventEmitter emitter = emitter(ClientEventEmitter.OverflowPolicy.DISCONNECT);
+		emitter.offer(frame("first"));
+		emitter.offer(frame("second"));
+		Assertions.assertFalse(emitter.offer(frame("third")));
+		Assertions.assertTrue(emitter.isClosed());
+		Assertions.assertEquals(3, droppedCounter.count());
+		Assertions.assertEquals(1, slowDisconnectCounter.count());
+
+		// the connection is completed by the task writing to it, once its current write is done
+		verify(sseEmitter, never()).complete();
+		runTasks();
+		verify(sseEmitter, never()).send(anySet());
+		verify(sseEmitter).complete();
+		Assertions.assertFalse(emitter.offer(frame("fourth")));
+	}
+
+	@Test
+	public void testItClosesAConnectionThatFailed() throws IOException {
+		doThrow(new IOException("disconnected")).when(sseEmitter).send(anySet());
+		final ClientEventEmitter emitter = emitter(ClientEventEmitter.OverflowPolicy.DISCONNECT);
+		emitter.offer(frame("first"));
+
+		runTasks();
+
+		Assertions.assertTrue(emitter.isClosed());
+		Assertions.assertEquals(1, droppedCounter.count());
+		verify(sseEmitter, never()).complete();
+	}
+
+	@Test
+	public void testItDisconnectsAConnectionWhoseWriteTimedOut() throws IOException {
+		// the write blocks until it is interrupted, as if the client stopped reading
+		doAnswer(invocation -> {
+			new CountDownLatch(1).await();
+			return null;
+		})
+			.when(sseEmitter)
+			.send(anySet());
+		writeTimeoutMillis = 50;
+		final ClientEventEmitter emitter = emitter(ClientEventEmitter.OverflowPolicy.DISCONNECT);
+		emitter.offer(frame("first"));
+
+		runTasks();
+
+		Assertions.assertTrue(emitter.isClosed());
+		Assertions.assertEquals(1, droppedCounter.count());
+		Assertions.assertEquals(1, slowDisconnectCounter.count());
+		verify(sseEmitter).complete();
+		Assertions.assertFalse(Thread.currentThread().isInterrupted());
+	}
+}
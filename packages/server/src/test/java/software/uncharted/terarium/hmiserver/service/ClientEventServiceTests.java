@@ -0,0 +1,246 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.redisson.api.RSetCache;
+import org.redisson.api.RedissonClient;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import software.uncharted.terarium.hmiserver.models.ClientEvent;
+import software.uncharted.terarium.hmiserver.models.ClientEventType;
+
+public class ClientEventServiceTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private RabbitTemplate rabbitTemplate;
+	private RedissonClient redissonClient;
+	private ClientPresenceService clientPresenceService;
+	private ClientEventService clientEventService;
+
+	@BeforeEach
+	public void setup() {
+		rabbitTemplate = mock(RabbitTemplate.class);
+		redissonClient = mock(RedissonClient.class);
+		clientPresenceService = mock(ClientPresenceService.class);
+		clientEventService = new ClientEventService(
+			mapper,
+			rabbitTemplate,
+			redissonClient,
+			clientPresenceService,
+			new SimpleMeterRegistry()
+		);
+		ReflectionTestUtils.setField(clientEventService, "SUBSCRIPTION_TTL_MINUTES", 5L);
+		ReflectionTestUtils.setField(clientEventService, "SENDER_THREADS", 2);
+		ReflectionTestUtils.setField(clientEventService, "QUEUE_CAPACITY", 16);
+		ReflectionTestUtils.setField(clientEventService, "OVERFLOW_POLICY", ClientEventEmitter.OverflowPolicy.DISCONNECT);
+		clientEventService.init();
+	}
+
+	@AfterEach
+	public void teardown() {
+		clientEventService.shutdown();
+	}
+
+	private static ClientEvent<String> event(final String data) {
+		return ClientEvent.<String>builder().type(ClientEventType.WORKFLOW_UPDATE).data(data).build();
+	}
+
+	private Message message(final List<String> userIds, final ClientEvent<String> event) throws IOException {
+		final ClientEventService.UsersClientEvent<String> usersEvent = new ClientEventService.UsersClientEvent<String>()
+			.setUserIds(userIds)
+			.setEvent(event);
+		return new Message(mapper.writeValueAsBytes(usersEvent), new MessageProperties());
+	}
+
+	private SseEmitter connect(final String userId) {
+		final SseEmitter emitter = mock(SseEmitter.class);
+		clientEventService.addEmitter(userId, emitter);
+		return emitter;
+	}
+
+	private static String sent(final Set<ResponseBodyEmitter.DataWithMediaType> data) {
+		return data
+			.stream()
+			.map(d -> new String((byte[]) d.getData(), StandardCharsets.UTF_8))
+			.collect(Collectors.joining());
+	}
+
+	@Test
+	public void testItSendsToEachInstanceOnlyItsUsers() {
+		when(clientPresenceService.getInstances(List.of("a", "b", "c"))).thenReturn(
+			Map.of("instance-1", List.of("a", "b"), "instance-2", List.of("c"))
+		);
+
+		clientEventService.sendToUsers(event("data"), List.of("a", "b", "c"));
+
+		final ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+		verify(rabbitTemplate).convertAndSend(eq("client-instance-event-exchange"), eq("instance-1"), body.capture());
+		Assertions.assertEquals(mapper.valueToTree(List.of("a", "b")), readTree(body.getValue()).get("userIds"));
+		verify(rabbitTemplate).convertAndSend(eq("client-instance-event-exchange"), eq("instance-2"), anyString());
+		verify(rabbitTemplate, times(2)).convertAndSend(anyString(), anyString(), anyString());
+	}
+
+	@Test
+	public void testItSendsNothingToUsersThatAreNotConnected() {
+		when(clientPresenceService.getInstances(List.of("a"))).thenReturn(Map.of());
+
+		clientEventService.sendToUser(event("data"), "a");
+
+		verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), anyString());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAUserStaysSubscribedUntilAllItsTabsUnsubscribe() {
+		final Set<String> subscribers = new HashSet<>();
+		final RSetCache<String> subscriberSet = mock(RSetCache.class);
+		when(subscriberSet.add(anyString(), anyLong(), any())).thenAnswer(inv -> subscribers.add(inv.getArgument(0)));
+		when(subscriberSet.remove(any())).thenAnswer(inv -> subscribers.remove(inv.getArgument(0)));
+		when(subscriberSet.readAll()).thenAnswer(inv -> new HashSet<>(subscribers));
+		when(redissonClient.<String>getSetCache(anyString(), any())).thenReturn(subscriberSet);
+		when(clientPresenceService.getInstances(any())).thenAnswer(inv ->
+			Map.of("instance", List.copyOf((Collection<String>) inv.getArgument(0)))
+		);
+
+		final UUID workflowId = UUID.randomUUID();
+		final UUID tab = UUID.randomUUID();
+		final UUID otherTab = UUID.randomUUID();
+		clientEventService.subscribe(workflowId, "a", tab);
+		clientEventService.subscribe(workflowId, "a", otherTab);
+		clientEventService.unsubscribe(workflowId, "a", tab);
+
+		clientEventService.sendToSubscribers(event("data"), workflowId);
+		final ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+		verify(rabbitTemplate).convertAndSend(eq("client-instance-event-exchange"), eq("instance"), body.capture());
+		Assertions.assertEquals(mapper.valueToTree(List.of("a")), readTree(body.getValue()).get("userIds"));
+
+		clientEventService.unsubscribe(workflowId, "a", otherTab);
+		Assertions.assertTrue(subscribers.isEmpty());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItSendsTheEventsOfAUserInOneFlush() throws IOException {
+		final SseEmitter emitter = connect("a");
+		final SseEmitter other = connect("b");
+
+		clientEventService.onSendToUsersEvents(
+			List.of(
+				message(List.of("a"), event("first")),
+				message(List.of("a", "b"), event("second")),
+				message(List.of("c"), event("third"))
+			)
+		);
+
+		final ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> data = ArgumentCaptor.forClass(Set.class);
+		verify(emitter, timeout(1000).atLeastOnce()).send(data.capture());
+		final String sent = data.getAllValues().stream().map(ClientEventServiceTests::sent).collect(Collectors.joining());
+		Assertions.assertTrue(sent.startsWith("data:{"));
+		Assertions.assertTrue(sent.indexOf("first") < sent.indexOf("second"));
+		Assertions.assertFalse(sent.contains("third"));
+		verify(other, timeout(1000)).send(anySet());
+	}
+
+	@Test
+	public void testItRemovesUsersWhoseEmittersFailed() throws Exception {
+		final SseEmitter emitter = mock(SseEmitter.class);
+		doThrow(new IOException("disconnected")).when(emitter).send(anySet());
+		final ClientEventEmitter clientEventEmitter = clientEventService.addEmitter("a", emitter);
+
+		clientEventService.onSendToUsersEvents(List.of(message(List.of("a"), event("data"))));
+		final long deadline = System.currentTimeMillis() + 1000;
+		while (!clientEventEmitter.isClosed() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		// the closed connection is removed on the next heartbeat
+		clientEventService.sendHeartbeat();
+		Assertions.assertFalse(clientEventService.userIdToEmitters.containsKey("a"));
+		verify(clientPresenceService).unregister("a");
+	}
+
+	@Test
+	public void testItKeepsThePresenceOfAUserWhoReconnectsWhileBeingRemoved() {
+		clientEventService.addEmitter("a", mock(SseEmitter.class)).close(false);
+
+		// the user connects again after its closed connection was removed, before its presence is
+		doAnswer(inv -> connect("a"))
+			.doNothing()
+			.when(clientPresenceService)
+			.unregister("a");
+		clientEventService.sendHeartbeat();
+
+		Assertions.assertEquals(1, clientEventService.userIdToEmitters.get("a").size());
+		final InOrder inOrder = inOrder(clientPresenceService);
+		inOrder.verify(clientPresenceService).unregister("a");
+		inOrder.verify(clientPresenceService, times(2)).register("a");
+	}
+
+	@Test
+	public void testItSendsHeartbeatsToTheConnectionsOfThisInstance() throws Exception {
+		final SseEmitter emitter = connect("a");
+		// waits for the write rather than verifying it with a timeout, which can miss a write still in progress
+		final CountDownLatch written = new CountDownLatch(1);
+		final List<String> data = new CopyOnWriteArrayList<>();
+		doAnswer(invocation -> {
+			data.add(sent(invocation.getArgument(0)));
+			written.countDown();
+			return null;
+		})
+			.when(emitter)
+			.send(anySet());
+
+		clientEventService.sendHeartbeat();
+
+		Assertions.assertTrue(written.await(1, TimeUnit.SECONDS));
+		Assertions.assertTrue(data.get(0).contains("HEARTBEAT"));
+		verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), anyString());
+	}
+
+	private JsonNode readTree(final String json) {
+		try {
+			return mapper.readTree(json);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.models.TerariumAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.Artifact;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetType;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.simulation.ProgressState;
+import software.uncharted.terarium.hmiserver.service.data.ITerariumAssetService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectAssetService;
+import software.uncharted.terarium.hmiserver.service.data.ProjectService;
+import software.uncharted.terarium.hmiserver.service.data.TerariumAssetServices;
+import software.uncharted.terarium.hmiserver.service.notification.NotificationGroupInstance;
+
+public class ProjectCloneServiceTests {
+
+	private final UUID sourceProjectId = UUID.randomUUID();
+	private final Project project = (Project) new Project().setName("Copying project").setId(UUID.randomUUID());
+	private final List<ProjectAsset> projectAssets = new ArrayList<>();
+	private final Map<UUID, Artifact> artifacts = new LinkedHashMap<>();
+
+	private ProjectService projectService;
+	private ProjectAssetService projectAssetService;
+	private ITerariumAssetService<TerariumAsset> artifactService;
+	private NotificationGroupInstance<?> notificationInterface;
+	private ProjectCloneService projectCloneService;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		projectService = mock(ProjectService.class);
+		projectAssetService = mock(ProjectAssetService.class);
+		when(projectAssetService.getProjectAssets(sourceProjectId)).thenReturn(projectAssets);
+
+		// a mock of a generic interface can only be created from its raw class
+		artifactService = mock(ITerariumAssetService.class);
+		when(artifactService.getAssets(anyList())).thenAnswer(inv -> {
+			final List<Artifact> found = new ArrayList<>();
+			for (final UUID id : (List<UUID>) inv.getArgument(0)) {
+				if (artifacts.containsKey(id)) {
+					found.add(artifacts.get(id));
+				}
+			}
+			return found;
+		});
+		when(artifactService.createAssets(anyList(), any(UUID.class))).thenAnswer(inv -> inv.getArgument(0));
+
+		final TerariumAssetServices terariumAssetServices = mock(TerariumAssetServices.class);
+		doReturn(artifactService).when(terariumAssetServices).getServiceByType(AssetType.ARTIFACT);
+
+		notificationInterface = mock(NotificationGroupInstance.class);
+
+		projectCloneService = new ProjectCloneService(
+			projectService,
+			projectAssetService,
+			terariumAssetServices
+		);
+		ReflectionTestUtils.setField(projectCloneService, "JOB_THREADS", 1);
+		ReflectionTestUtils.setField(projectCloneService, "COPY_THREADS", 4);
+		ReflectionTestUtils.setField(projectCloneService, "BATCH_SIZE", 2);
+		projectCloneService.init();
+	}
+
+	@AfterEach
+	public void teardown() {
+		projectCloneService.shutdown();
+	}
+
+	private Artifact addArtifact(final String description) {
+		final Artifact artifact = new Artifact();
+		artifact.setId(UUID.randomUUID());
+		artifact.setName("artifact-" + artifacts.size());
+		artifact.setDescription(description);
+		artifact.setFileNames(new ArrayList<>(List.of("file.csv")));
+		artifacts.put(artifact.getId(), artifact);
+
+		final ProjectAsset projectAsset = new ProjectAsset();
+		projectAsset.setAssetId(artifact.getId());
+		projectAsset.setAssetType(AssetType.ARTIFACT);
+		projectAssets.add(projectAsset);
+		return artifact;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItClonesAssetsInBatchesWithNewIds() throws Exception {
+		final Artifact first = addArtifact(null);
+		for (int i = 0; i < 3; i++) {
+			addArtifact(first.getId().toString());
+		}
+
+		projectCloneService.cloneProjectAssets(sourceProjectId, project, notificationInterface).get(5, TimeUnit.SECONDS);
+
+		// rows are read and inserted two at a time
+		verify(artifactService, times(2)).getAssets(anyList());
+		final ArgumentCaptor<List<TerariumAsset>> created = ArgumentCaptor.forClass(List.class);
+		verify(artifactService, times(2)).createAssets(created.capture(), eq(project.getId()));
+		verify(artifactService, never()).createAsset(any(), any());
+		verify(projectAssetService, times(2)).createProjectAssets(eq(project), eq(AssetType.ARTIFACT), anyList());
+
+		// the files are copied from the source to the clone, without reading them
+		verify(artifactService, times(4)).copyAssetFiles(any(), any());
+		verify(artifactService, never()).openFileExport(any());
+
+		// every clone has a new id, with the references between them swapped
+		final List<TerariumAsset> clones = new ArrayList<>();
+		created.getAllValues().forEach(clones::addAll);
+		Assertions.assertEquals(4, clones.size());
+		final TerariumAsset firstClone = clones
+			.stream()
+			.filter(clone -> clone.getName().equals(first.getName()))
+			.findFirst()
+			.orElseThrow();
+		for (final TerariumAsset clone : clones) {
+			Assertions.assertFalse(artifacts.containsKey(clone.getId()));
+			if (clone != firstClone) {
+				Assertions.assertEquals(firstClone.getId().toString(), clone.getDescription());
+			}
+		}
+
+		verify(notificationInterface).sendProgress(anyString(), eq(0.9));
+		verify(notificationInterface).sendFinalMessage("Cloning complete");
+		verify(projectService, never()).delete(any());
+	}
+
+	@Test
+	public void testItCopiesFilesConcurrently() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			addArtifact(null);
+		}
+
+		// every copy waits until four are running at once
+		final CountDownLatch running = new CountDownLatch(4);
+		doAnswer(inv -> {
+			running.countDown();
+			if (!running.await(5, TimeUnit.SECONDS)) {
+				throw new IOException("Copies did not run concurrently");
+			}
+			return null;
+		})
+			.when(artifactService)
+			.copyAssetFiles(any(), any());
+
+		projectCloneService.cloneProjectAssets(sourceProjectId, project, notificationInterface).get(10, TimeUnit.SECONDS);
+
+		Assertions.assertEquals(0, running.getCount());
+		verify(projectAssetService, times(2)).createProjectAssets(eq(project), eq(AssetType.ARTIFACT), anyList());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItOmitsAssetsThatFailToCopy() throws Exception {
+		final Artifact failed = addArtifact(null);
+		addArtifact(null);
+
+		doAnswer(inv -> {
+			if (((TerariumAsset) inv.getArgument(1)).getId().equals(failed.getId())) {
+				throw new IOException("S3 unavailable");
+			}
+			return null;
+		})
+			.when(artifactService)
+			.copyAssetFiles(any(), any());
+
+		projectCloneService.cloneProjectAssets(sourceProjectId, project, notificationInterface).get(5, TimeUnit.SECONDS);
+
+		final ArgumentCaptor<List<TerariumAsset>> created = ArgumentCaptor.forClass(List.class);
+		verify(artifactService, times(1)).createAssets(created.capture(), eq(project.getId()));
+		Assertions.assertEquals(1, created.getValue().size());
+		Assertions.assertNotEquals(failed.getName(), created.getValue().get(0).getName());
+	}
+
+	@Test
+	public void testItReportsAFailedClone() throws Exception {
+		addArtifact(null);
+		when(artifactService.getAssets(anyList())).thenThrow(new RuntimeException("postgres unavailable"));
+
+		Assertions.assertThrows(Exception.class, () ->
+			projectCloneService.cloneProjectAssets(sourceProjectId, project, notificationInterface).get(5, TimeUnit.SECONDS)
+		);
+		verify(notificationInterface).sendFinalMessage("Cloning failed", ProgressState.ERROR);
+		verify(notificationInterface, never()).sendFinalMessage("Cloning complete");
+
+		// the partial clone is not left behind
+		verify(projectService).delete(project.getId());
+	}
+}
@@ -0,0 +1,283 @@
+package software.uncharted.terarium.hmiserver.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.InputPort;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.OutputPort;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowAnnotation;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowDelta;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
+
+public class WorkflowEventServiceTests {
+
+	private final ObjectMapper mapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+	private Workflow workflow;
+
+	@BeforeEach
+	public void setup() {
+		workflow = new Workflow();
+		workflow.setId(UUID.randomUUID());
+		workflow.setName("workflow");
+		workflow.setNodes(new ArrayList<>());
+		workflow.setEdges(new ArrayList<>());
+		workflow.setAnnotations(new HashMap<>());
+
+		final WorkflowNode source = node(1);
+		final WorkflowNode target = node(2);
+		workflow.getNodes().add(source);
+		workflow.getNodes().add(target);
+		workflow
+			.getEdges()
+			.add(
+				new WorkflowEdge()
+					.setId(UUID.randomUUID())
+					.setWorkflowId(workflow.getId())
+					.setIsDeleted(false)
+					.setSource(source.getId())
+					.setSourcePortId(source.getOutputs().get(0).getId())
+					.setTarget(target.getId())
+					.setTargetPortId(target.getInputs().get(0).getId())
+					.setPoints(new ArrayList<>(List.of(point(0, 0), point(1, 1))))
+			);
+
+		final WorkflowAnnotation annotation = new WorkflowAnnotation();
+		annotation.setId(UUID.randomUUID());
+		annotation.setContent("note");
+		workflow.getAnnotations().put(annotation.getId(), annotation);
+	}
+
+	private WorkflowNode node(final int i) {
+		final ObjectNode state = mapper.createObjectNode();
+		state.put("summary", "node " + i);
+		state.set("series", mapper.createArrayNode().add(1).add(2).add(3));
+
+		final WorkflowNode node = new WorkflowNode()
+			.setId(UUID.randomUUID())
+			.setWorkflowId(workflow.getId())
+			.setIsDeleted(false)
+			.setDisplayName("node " + i)
+			.setX(10.0 * i)
+			.setY(20.0 * i)
+			.setState(state)
+			.setStatus("invalid")
+			.setInputs(new ArrayList<>())
+			.setOutputs(new ArrayList<>());
+		node.getInputs().add(new InputPort().setId(UUID.randomUUID()).setType("model").setStatus("not connected"));
+		node.getOutputs().add(new OutputPort().setId(UUID.randomUUID()).setType("model").setStatus("not connected"));
+		return node;
+	}
+
+	private JsonNode point(final double x, final double y) {
+		return mapper.createObjectNode().put("x", x).put("y", y);
+	}
+
+	// Applies a delta the way the client does
+	private JsonNode apply(final JsonNode workflowState, final WorkflowDelta delta) {
+		final ObjectNode result = workflowState.deepCopy();
+		if (delta.getWorkflow() != null) {
+			mergePatch(result, delta.getWorkflow());
+		}
+
+		final ArrayNode nodes = (ArrayNode) result.get("nodes");
+		delta
+			.getNodes()
+			.forEach((id, patch) -> {
+				final JsonNode node = find(nodes, id);
+				if (node == null) {
+					nodes.add(patch.deepCopy());
+				} else {
+					mergePatch((ObjectNode) node, patch);
+				}
+			});
+		delta
+			.getInputs()
+			.forEach((nodeId, ports) ->
+				ports.forEach((portId, patch) ->
+					mergePatch((ObjectNode) find((ArrayNode) find(nodes, nodeId).get("inputs"), portId), patch)
+				)
+			);
+		delta
+			.getOutputs()
+			.forEach((nodeId, ports) ->
+				ports.forEach((portId, patch) ->
+					mergePatch((ObjectNode) find((ArrayNode) find(nodes, nodeId).get("outputs"), portId), patch)
+				)
+			);
+		delta.getRemovedNodes().forEach(id -> nodes.remove(indexOf(nodes, id)));
+
+		final ArrayNode edges = (ArrayNode) result.get("edges");
+		delta
+			.getEdges()
+			.forEach((id, patch) -> {
+				final JsonNode edge = find(edges, id);
+				if (edge == null) {
+					edges.add(patch.deepCopy());
+				} else {
+					mergePatch((ObjectNode) edge, patch);
+				}
+			});
+		delta.getRemovedEdges().forEach(id -> edges.remove(indexOf(edges, id)));
+		return result;
+	}
+
+	private static void mergePatch(final ObjectNode target, final JsonNode patch) {
+		patch
+			.fields()
+			.forEachRemaining(entry -> {
+				if (entry.getValue().isNull()) {
+					target.remove(entry.getKey());
+				} else if (entry.getValue().isObject() && target.path(entry.getKey()).isObject()) {
+					mergePatch((ObjectNode) target.get(entry.getKey()), entry.getValue());
+				} else {
+					target.set(entry.getKey(), entry.getValue().deepCopy());
+				}
+			});
+	}
+
+	private static int indexOf(final ArrayNode elements, final UUID id) {
+		for (int i = 0; i < elements.size(); i++) {
+			if (elements.get(i).get("id").asText().equals(id.toString())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static JsonNode find(final ArrayNode elements, final UUID id) {
+		final int index = indexOf(elements, id);
+		return index < 0 ? null : elements.get(index);
+	}
+
+	private WorkflowDelta diff(final JsonNode before) {
+		final WorkflowDelta delta = WorkflowEventService.diff(before, mapper.valueToTree(workflow));
+		Assertions.assertEquals(mapper.valueToTree(workflow), apply(before, delta));
+		return delta;
+	}
+
+	@Test
+	public void testItSendsOnlyTheChangedFields() {
+		final JsonNode before = mapper.valueToTree(workflow);
+		final WorkflowNode node = workflow.getNodes().get(0);
+		node.setX(100.0).setY(200.0);
+		workflow.getEdges().get(0).getPoints().set(0, point(100, 200));
+
+		final WorkflowDelta delta = diff(before);
+		Assertions.assertNull(delta.getWorkflow());
+		Assertions.assertEquals(
+			Map.of(node.getId(), mapper.createObjectNode().put("x", 100.0).put("y", 200.0)),
+			delta.getNodes()
+		);
+		Assertions.assertTrue(delta.getInputs().isEmpty());
+		Assertions.assertTrue(delta.getOutputs().isEmpty());
+		Assertions.assertEquals(1, delta.getEdges().size());
+		Assertions.assertFalse(delta.getEdges().values().iterator().next().has("source"));
+	}
+
+	@Test
+	public void testItPatchesStatesPortsAndAnnotations() {
+		final JsonNode before = mapper.valueToTree(workflow);
+		final WorkflowNode node = workflow.getNodes().get(1);
+		((ObjectNode) node.getState()).put("summary", "changed").remove("series");
+		node.getInputs().get(0).setStatus("connected");
+		workflow.getNodes().get(0).getOutputs().get(0).setValue(mapper.createArrayNode().add("value"));
+		workflow.getAnnotations().clear();
+		workflow.setDescription("described");
+
+		final WorkflowDelta delta = diff(before);
+		final JsonNode nodePatch = delta.getNodes().get(node.getId());
+		Assertions.assertEquals("changed", nodePatch.at("/state/summary").asText());
+		Assertions.assertTrue(nodePatch.at("/state/series").isNull());
+		Assertions.assertFalse(nodePatch.has("inputs"));
+		Assertions.assertEquals(
+			"connected",
+			delta.getInputs().get(node.getId()).get(node.getInputs().get(0).getId()).get("status").asText()
+		);
+		Assertions.assertEquals(1, delta.getOutputs().size());
+		Assertions.assertEquals("described", delta.getWorkflow().get("description").asText());
+	}
+
+	@Test
+	public void testItReplacesPortListsWhosePortsChanged() {
+		final JsonNode before = mapper.valueToTree(workflow);
+		final WorkflowNode node = workflow.getNodes().get(0);
+		node.getOutputs().add(new OutputPort().setId(UUID.randomUUID()).setType("dataset"));
+
+		final WorkflowDelta delta = diff(before);
+		Assertions.assertEquals(2, delta.getNodes().get(node.getId()).get("outputs").size());
+		Assertions.assertTrue(delta.getOutputs().isEmpty());
+	}
+
+	@Test
+	public void testItAddsAndRemovesNodesAndEdges() {
+		final JsonNode before = mapper.valueToTree(workflow);
+		final WorkflowNode removed = workflow.getNodes().remove(0);
+		workflow.getEdges().clear();
+		final WorkflowNode added = node(3);
+		workflow.getNodes().add(added);
+
+		final WorkflowDelta delta = diff(before);
+		Assertions.assertEquals(mapper.valueToTree(added), delta.getNodes().get(added.getId()));
+		Assertions.assertEquals(List.of(removed.getId()), new ArrayList<>(delta.getRemovedNodes()));
+		Assertions.assertEquals(1, delta.getRemovedEdges().size());
+
+		// an unchanged workflow has nothing to send
+		Assertions.assertTrue(WorkflowEventService.isEmpty(diff(mapper.valueToTree(workflow))));
+	}
+
+	@Test
+	public void testItSendsOnlyTheCapturedElements() {
+		final WorkflowEventService service = new WorkflowEventService(mapper, null, null);
+		service.init();
+		final WorkflowNode moved = workflow.getNodes().get(0);
+		final WorkflowNode other = workflow.getNodes().get(1);
+		final JsonNode before = service.capture(workflow, Set.of(moved.getId()), List.of());
+		moved.setX(100.0);
+		other.setX(100.0);
+
+		final WorkflowDelta delta = WorkflowEventService.diff(
+			before,
+			service.capture(workflow, Set.of(moved.getId()), List.of())
+		);
+		Assertions.assertNull(delta.getWorkflow());
+		Assertions.assertEquals(Map.of(moved.getId(), mapper.createObjectNode().put("x", 100.0)), delta.getNodes());
+		Assertions.assertTrue(delta.getRemovedNodes().isEmpty());
+		Assertions.assertTrue(delta.getEdges().isEmpty());
+		Assertions.assertTrue(delta.getRemovedEdges().isEmpty());
+	}
+
+	@Test
+	public void testMergedDeltasApplyLikeTheirSequence() {
+		final JsonNode first = mapper.valueToTree(workflow);
+		final WorkflowNode node = workflow.getNodes().get(0);
+		node.setX(100.0);
+		((ObjectNode) node.getState()).put("summary", "changed");
+		node.getOutputs().get(0).setStatus("connected");
+		final JsonNode second = mapper.valueToTree(workflow);
+		final WorkflowDelta earlier = WorkflowEventService.diff(first, second);
+
+		node.setX(200.0).setY(300.0);
+		((ObjectNode) node.getState()).remove("series");
+		node.getOutputs().add(new OutputPort().setId(UUID.randomUUID()).setType("dataset"));
+		workflow.getNodes().remove(1);
+		final WorkflowDelta later = WorkflowEventService.diff(second, mapper.valueToTree(workflow));
+
+		final JsonNode expected = apply(apply(first, earlier), later);
+		Assertions.assertEquals(mapper.valueToTree(workflow), expected);
+		Assertions.assertEquals(expected, apply(first, WorkflowEventService.merge(earlier, later)));
+	}
+}
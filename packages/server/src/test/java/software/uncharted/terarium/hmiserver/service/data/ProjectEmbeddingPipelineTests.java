@@ -0,0 +1,321 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.configuration.ElasticsearchConfiguration;
+import software.uncharted.terarium.hmiserver.models.TerariumAssetEmbeddings;
+import software.uncharted.terarium.hmiserver.models.dataservice.Artifact;
+import software.uncharted.terarium.hmiserver.service.data.ProjectEmbeddingPipeline.EmbeddingJob;
+import software.uncharted.terarium.hmiserver.service.elasticsearch.ElasticsearchService;
+import software.uncharted.terarium.hmiserver.service.elasticsearch.ElasticsearchService.ScriptedUpdate;
+import software.uncharted.terarium.hmiserver.service.gollm.EmbeddingService;
+
+public class ProjectEmbeddingPipelineTests {
+
+	private final Map<String, EmbeddingJob> pending = new LinkedHashMap<>();
+	private final Map<String, EmbeddingJob> inProgress = new LinkedHashMap<>();
+	private final Map<String, String> embedded = new LinkedHashMap<>();
+	private final Map<String, Set<String>> embeddedKeys = new HashMap<>();
+	private ElasticsearchService elasticService;
+	private EmbeddingService embeddingService;
+	private ProjectEmbeddingPipeline pipeline;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		final RMap<String, EmbeddingJob> pendingMap = mock(RMap.class);
+		when(pendingMap.keySet(anyInt())).thenAnswer(inv -> new LinkedHashMap<>(pending).keySet());
+		when(pendingMap.remove(any())).thenAnswer(inv -> pending.remove(inv.getArgument(0)));
+		when(pendingMap.remove(any(), any())).thenAnswer(inv -> pending.remove(inv.getArgument(0), inv.getArgument(1)));
+		when(pendingMap.fastPut(anyString(), any())).thenAnswer(inv -> pending.put(inv.getArgument(0), inv.getArgument(1)) == null);
+		when(pendingMap.put(anyString(), any())).thenAnswer(inv -> pending.put(inv.getArgument(0), inv.getArgument(1)));
+		when(pendingMap.get(any())).thenAnswer(inv -> pending.get(inv.getArgument(0)));
+		when(pendingMap.fastPutIfAbsent(anyString(), any())).thenAnswer(
+			inv -> pending.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null
+		);
+		when(pendingMap.containsKey(any())).thenAnswer(inv -> pending.containsKey(inv.getArgument(0)));
+		when(pendingMap.size()).thenAnswer(inv -> pending.size());
+
+		final RMap<String, EmbeddingJob> inProgressMap = mock(RMap.class);
+		when(inProgressMap.fastPutIfAbsent(anyString(), any())).thenAnswer(
+			inv -> inProgress.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null
+		);
+		when(inProgressMap.remove(any(), any())).thenAnswer(
+			inv -> inProgress.remove(inv.getArgument(0), inv.getArgument(1))
+		);
+		when(inProgressMap.readAllEntrySet()).thenAnswer(inv -> new LinkedHashMap<>(inProgress).entrySet());
+
+		final RedissonClient redissonClient = mock(RedissonClient.class);
+		when(redissonClient.<String, EmbeddingJob>getMap("project-search-pending-embeddings")).thenReturn(pendingMap);
+		when(redissonClient.<String, EmbeddingJob>getMap("project-search-embeddings-in-progress")).thenReturn(
+			inProgressMap
+		);
+		when(redissonClient.<String>getSet(anyString())).thenAnswer(inv -> {
+			final Set<String> keys = embeddedKeys.computeIfAbsent(inv.getArgument(0), name -> new HashSet<>());
+			final RSet<String> set = mock(RSet.class);
+			when(set.readAll()).thenAnswer(i -> new HashSet<>(keys));
+			when(set.addAll(any())).thenAnswer(i -> keys.addAll(i.getArgument(0)));
+			when(set.removeAll(any())).thenAnswer(i -> keys.removeAll(i.getArgument(0)));
+			when(set.remove(any())).thenAnswer(i -> keys.remove(i.getArgument(0)));
+			return set;
+		});
+		final RMapCache<String, String> embeddedMap = mock(RMapCache.class);
+		when(embeddedMap.get(any())).thenAnswer(inv -> embedded.get(inv.getArgument(0)));
+		when(embeddedMap.fastPut(anyString(), anyString(), anyLong(), any())).thenAnswer(
+			inv -> embedded.put(inv.getArgument(0), inv.getArgument(1)) == null
+		);
+		when(embeddedMap.fastRemove(any(String[].class))).thenAnswer(inv -> {
+			final Object[] keys = inv.getArguments();
+			for (final Object key : keys) {
+				embedded.remove(key);
+			}
+			return (long) keys.length;
+		});
+		when(redissonClient.<String, String>getMapCache(anyString())).thenReturn(embeddedMap);
+
+		final ElasticsearchConfiguration elasticConfig = mock(ElasticsearchConfiguration.class);
+		when(elasticConfig.getProjectAlias()).thenReturn("project");
+
+		elasticService = mock(ElasticsearchService.class);
+		when(elasticService.bulkScriptedUpdate(anyString(), anyString(), anyList())).thenAnswer(inv -> {
+			final List<ScriptedUpdate> updates = inv.getArgument(2);
+			final List<BulkResponseItem> items = new ArrayList<>();
+			for (final ScriptedUpdate update : updates) {
+				items.add(
+					BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("project").id(update.getId()).status(200))
+				);
+			}
+			return BulkResponse.of(b -> b.errors(false).took(1).items(items));
+		});
+
+		embeddingService = mock(EmbeddingService.class);
+		when(embeddingService.generateEmbeddings(anyList())).thenAnswer(inv -> {
+			final List<String> texts = inv.getArgument(0);
+			final TerariumAssetEmbeddings embeddings = new TerariumAssetEmbeddings();
+			for (final String text : texts) {
+				final TerariumAssetEmbeddings.Embedding embedding = new TerariumAssetEmbeddings.Embedding();
+				embedding.setVector(new double[] { text.length() });
+				embeddings.getEmbeddings().add(embedding);
+			}
+			return embeddings;
+		});
+
+		pipeline = new ProjectEmbeddingPipeline(
+			new ObjectMapper(),
+			elasticConfig,
+			elasticService,
+			embeddingService,
+			redissonClient,
+			new SimpleMeterRegistry()
+		);
+		ReflectionTestUtils.setField(pipeline, "BATCH_SIZE", 64);
+		ReflectionTestUtils.setField(pipeline, "MAX_PENDING", 100);
+		ReflectionTestUtils.setField(pipeline, "MAX_ATTEMPTS", 3);
+		ReflectionTestUtils.setField(pipeline, "EMBEDDED_TTL_DAYS", 30L);
+		ReflectionTestUtils.setField(pipeline, "LEASE_SECONDS", 300L);
+		ReflectionTestUtils.setField(pipeline, "CLAIMED_TIMEOUT_SECONDS", 300L);
+		pipeline.init();
+	}
+
+	private static Artifact createArtifact(final String name, final String description) {
+		final Artifact artifact = new Artifact();
+		artifact.setId(UUID.randomUUID());
+		artifact.setName(name);
+		artifact.setDescription(description);
+		return artifact;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItBatchesAndDeduplicatesTexts() throws Exception {
+		final UUID projectA = UUID.randomUUID();
+		final UUID projectB = UUID.randomUUID();
+
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		futures.add(pipeline.enqueue(projectA, createArtifact("artifact", "shared description")));
+		futures.add(pipeline.enqueue(projectA, createArtifact("another artifact", "shared description")));
+		futures.add(pipeline.enqueue(projectB, createArtifact("artifact", "shared description")));
+
+		pipeline.drain();
+
+		for (final CompletableFuture<Void> future : futures) {
+			future.get(1, TimeUnit.SECONDS);
+		}
+
+		// one request for the three distinct texts
+		final ArgumentCaptor<List<String>> texts = ArgumentCaptor.forClass(List.class);
+		verify(embeddingService, times(1)).generateEmbeddings(texts.capture());
+		Assertions.assertEquals(3, texts.getValue().size());
+
+		// and one update per project
+		final ArgumentCaptor<List<ScriptedUpdate>> updates = ArgumentCaptor.forClass(List.class);
+		verify(elasticService, times(1)).bulkScriptedUpdate(eq("project"), anyString(), updates.capture());
+		Assertions.assertEquals(2, updates.getValue().size());
+		Assertions.assertEquals(2, ((List<?>) updates.getValue().get(0).getParams().get("assetIds")).size());
+		Assertions.assertEquals(4, ((List<?>) updates.getValue().get(0).getParams().get("embeddings")).size());
+		Assertions.assertEquals(projectA.toString(), updates.getValue().get(0).getRouting());
+
+		Assertions.assertTrue(pending.isEmpty());
+		Assertions.assertTrue(inProgress.isEmpty());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItCoalescesRepeatedChanges() throws Exception {
+		final UUID projectId = UUID.randomUUID();
+		final Artifact artifact = createArtifact("artifact", "first");
+
+		pipeline.enqueue(projectId, artifact);
+		artifact.setDescription("second");
+		pipeline.enqueue(projectId, artifact);
+		Assertions.assertEquals(1, pending.size());
+
+		pipeline.drain();
+
+		// only the latest texts are embedded
+		final ArgumentCaptor<List<String>> texts = ArgumentCaptor.forClass(List.class);
+		verify(embeddingService, times(1)).generateEmbeddings(texts.capture());
+		Assertions.assertEquals(Set.of("artifact", "second"), Set.copyOf(texts.getValue()));
+	}
+
+	@Test
+	public void testItRetriesFailedBatches() throws Exception {
+		when(embeddingService.generateEmbeddings(anyList())).thenThrow(new RuntimeException("gollm unavailable"));
+
+		final CompletableFuture<Void> future = pipeline.enqueue(UUID.randomUUID(), createArtifact("artifact", null));
+
+		// a failed asset is put back on the queue for the next drain
+		pipeline.drain();
+		Assertions.assertFalse(future.isDone());
+		Assertions.assertEquals(1, pending.size());
+		Assertions.assertTrue(inProgress.isEmpty());
+		verify(embeddingService, times(1)).generateEmbeddings(anyList());
+
+		// until it runs out of attempts
+		pipeline.drain();
+		pipeline.drain();
+		Assertions.assertTrue(future.isCompletedExceptionally());
+		Assertions.assertTrue(pending.isEmpty());
+		Assertions.assertTrue(inProgress.isEmpty());
+		verify(embeddingService, times(3)).generateEmbeddings(anyList());
+	}
+
+	@Test
+	public void testItQueuesAgainTheJobsOfAnInstanceThatStopped() throws Exception {
+		final UUID projectId = UUID.randomUUID();
+		final Artifact artifact = createArtifact("artifact", "description");
+		pipeline.enqueue(projectId, artifact);
+
+		// claimed by an instance that stopped before writing it
+		final String key = pending.keySet().iterator().next();
+		final EmbeddingJob claimed = pending.remove(key).copy(0, System.currentTimeMillis() + 60_000);
+		inProgress.put(key, claimed);
+
+		// a newer change to the asset waits while the asset is in progress
+		artifact.setDescription("changed");
+		final CompletableFuture<Void> future = pipeline.enqueue(projectId, artifact);
+		pipeline.drain();
+		verify(embeddingService, times(0)).generateEmbeddings(anyList());
+		Assertions.assertEquals(1, pending.size());
+
+		// once the lease expires, the newer change is written
+		inProgress.put(key, claimed.copy(0, System.currentTimeMillis() - 1));
+		pipeline.drain();
+		verify(embeddingService, times(1)).generateEmbeddings(anyList());
+		Assertions.assertTrue(future.isDone());
+		Assertions.assertTrue(pending.isEmpty());
+		Assertions.assertTrue(inProgress.isEmpty());
+
+		// and a job alone in progress is queued again and written
+		pipeline.enqueue(projectId, createArtifact("other", "description"));
+		final String otherKey = pending.keySet().iterator().next();
+		inProgress.put(otherKey, pending.remove(otherKey).copy(0, System.currentTimeMillis() - 1));
+		pipeline.drain();
+		verify(embeddingService, times(2)).generateEmbeddings(anyList());
+		Assertions.assertTrue(inProgress.isEmpty());
+	}
+
+	@Test
+	public void testItSkipsUnchangedAssetsUnlessForced() throws Exception {
+		final UUID projectId = UUID.randomUUID();
+		final Artifact artifact = createArtifact("artifact", "description");
+		pipeline.enqueue(projectId, artifact);
+		pipeline.drain();
+
+		Assertions.assertTrue(pipeline.enqueue(projectId, artifact).isDone());
+		Assertions.assertTrue(pending.isEmpty());
+
+		Assertions.assertFalse(pipeline.enqueue(projectId, artifact, true).isDone());
+		Assertions.assertEquals(1, pending.size());
+	}
+
+	@Test
+	public void testItEmbedsTheAssetsOfAForgottenProjectAgain() throws Exception {
+		final UUID projectId = UUID.randomUUID();
+		final UUID otherProjectId = UUID.randomUUID();
+		final Artifact artifact = createArtifact("artifact", "description");
+		pipeline.enqueue(projectId, artifact);
+		pipeline.enqueue(otherProjectId, artifact);
+		pipeline.drain();
+
+		pipeline.forgetProject(projectId);
+
+		Assertions.assertFalse(pipeline.enqueue(projectId, artifact).isDone());
+		Assertions.assertTrue(pipeline.enqueue(otherProjectId, artifact).isDone());
+	}
+
+	@Test
+	public void testItCompletesACallerOnlyOnceItsJobIsWritten() throws Exception {
+		final UUID projectId = UUID.randomUUID();
+		final Artifact artifact = createArtifact("artifact", "first");
+		final CompletableFuture<Void> first = pipeline.enqueue(projectId, artifact);
+
+		// claimed by another instance, which hasn't written it yet
+		final EmbeddingJob claimed = pending.remove(pending.keySet().iterator().next());
+		artifact.setDescription("second");
+		final CompletableFuture<Void> second = pipeline.enqueue(projectId, artifact);
+		pending.clear();
+		pipeline.drain();
+		Assertions.assertFalse(first.isDone());
+		Assertions.assertFalse(second.isDone());
+
+		// the other instance writes the first change only
+		embedded.put(claimed.getProjectId() + "_" + claimed.getAssetId(), claimed.getSha256());
+		pipeline.drain();
+		Assertions.assertTrue(first.isDone());
+		Assertions.assertFalse(second.isDone());
+	}
+}
@@ -0,0 +1,245 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.entity.ContentType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.uncharted.terarium.hmiserver.models.dataservice.Artifact;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetExport;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetType;
+import software.uncharted.terarium.hmiserver.models.dataservice.FileExport;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectExport;
+import software.uncharted.terarium.hmiserver.repository.data.InterventionRepository;
+import software.uncharted.terarium.hmiserver.repository.data.ModelConfigRepository;
+import software.uncharted.terarium.hmiserver.service.TerariumAssetCloneService;
+
+public class ProjectExportStreamingTests {
+
+	private static final long MB = 1024L * 1024L;
+
+	private final Project project = (Project) new Project().setName("test-project-name").setId(UUID.randomUUID());
+	private final List<ProjectAsset> projectAssets = new ArrayList<>();
+	private final Map<UUID, Artifact> artifacts = new LinkedHashMap<>();
+
+	// the size of every file of every asset
+	private long fileSize;
+
+	// the total read from every file
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	private TerariumAssetCloneService cloneService;
+
+	@BeforeEach
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setup() throws Exception {
+		final ProjectService projectService = mock(ProjectService.class);
+		when(projectService.getProject(project.getId())).thenReturn(Optional.of(project));
+
+		final ProjectAssetService projectAssetService = mock(ProjectAssetService.class);
+		when(projectAssetService.getProjectAssets(project.getId())).thenReturn(projectAssets);
+
+		final ITerariumAssetService artifactService = mock(ITerariumAssetService.class);
+		when(artifactService.getAsset(any(UUID.class))).thenAnswer(inv ->
+			Optional.ofNullable(artifacts.get((UUID) inv.getArgument(0)))
+		);
+		when(artifactService.getAssetFileExports(any(Artifact.class))).thenAnswer(inv -> {
+			final Artifact artifact = inv.getArgument(0);
+			final Map<String, FileExport> files = new LinkedHashMap<>();
+			for (final String fileName : artifact.getFileNames()) {
+				files.put(
+					fileName,
+					new FileExport()
+						.setKey(artifact.getId() + "/" + fileName)
+						.setContentType(ContentType.APPLICATION_OCTET_STREAM)
+						.setPathPrefix("artifacts")
+				);
+			}
+			return files;
+		});
+		when(artifactService.openFileExport(any(FileExport.class))).thenAnswer(inv ->
+			new SyntheticInputStream(((FileExport) inv.getArgument(0)).getKey(), fileSize, bytesRead)
+		);
+
+		final TerariumAssetServices terariumAssetServices = mock(TerariumAssetServices.class);
+		doReturn(artifactService).when(terariumAssetServices).getServiceByType(AssetType.ARTIFACT);
+
+		cloneService = new TerariumAssetCloneService(
+			projectService,
+			projectAssetService,
+			terariumAssetServices,
+			mock(ModelConfigRepository.class),
+			mock(InterventionRepository.class)
+		);
+	}
+
+	private Artifact addArtifact(final String... fileNames) {
+		final Artifact artifact = new Artifact();
+		artifact.setId(UUID.randomUUID());
+		artifact.setName("artifact-" + artifacts.size());
+		artifact.setFileNames(new ArrayList<>(List.of(fileNames)));
+		artifacts.put(artifact.getId(), artifact);
+
+		final ProjectAsset projectAsset = new ProjectAsset();
+		projectAsset.setAssetId(artifact.getId());
+		projectAsset.setAssetType(AssetType.ARTIFACT);
+		projectAssets.add(projectAsset);
+		return artifact;
+	}
+
+	@Test
+	public void testItStreamsAnImportableArchive() throws Exception {
+		fileSize = 1000;
+		final Artifact first = addArtifact("a.csv", "b.pdf");
+		final Artifact second = addArtifact("c.txt");
+
+		// a reference from one asset to another
+		second.setDescription(first.getId().toString());
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		cloneService.exportProject(project.getId(), output);
+
+		final ProjectExport export = new ProjectExport();
+		export.loadFromZipFile(new ByteArrayInputStream(output.toByteArray()));
+
+		Assertions.assertEquals(project.getName(), export.getProject().getName());
+		Assertions.assertEquals(2, export.getAssets().size());
+
+		final AssetExport exportedFirst = export.getAssets().get(0);
+		final AssetExport exportedSecond = export.getAssets().get(1);
+		Assertions.assertNotEquals(first.getId(), exportedFirst.getAsset().getId());
+		Assertions.assertEquals(exportedFirst.getAsset().getId().toString(), exportedSecond.getAsset().getDescription());
+
+		Assertions.assertEquals(List.of("a.csv", "b.pdf"), new ArrayList<>(exportedFirst.getFiles().keySet()));
+		for (final Map.Entry<String, FileExport> file : exportedFirst.getFiles().entrySet()) {
+			final byte[] expected = new SyntheticInputStream(
+				first.getId() + "/" + file.getKey(),
+				fileSize,
+				new AtomicLong()
+			).readAllBytes();
+			Assertions.assertArrayEquals(expected, file.getValue().getBytes());
+		}
+	}
+
+	@Test
+	public void testItExportsAMultiGigabyteProjectInBoundedMemory() throws Exception {
+		// 4 assets with 2 files of 256MB each
+		fileSize = 256 * MB;
+		for (int i = 0; i < 4; i++) {
+			addArtifact("dataset.csv", "paper.pdf");
+		}
+
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		final long baseline = memory.getHeapMemoryUsage().getUsed();
+
+		final AtomicLong peak = new AtomicLong(baseline);
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final Thread sampler = new Thread(() -> {
+			while (!done.get()) {
+				peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (final InterruptedException e) {
+					return;
+				}
+			}
+		});
+		sampler.setDaemon(true);
+		sampler.start();
+
+		final CountingOutputStream output = new CountingOutputStream();
+		try {
+			cloneService.exportProject(project.getId(), output);
+		} finally {
+			done.set(true);
+			sampler.join();
+		}
+
+		final long exported = bytesRead.get();
+		Assertions.assertEquals(2L * 1024 * MB, exported);
+		Assertions.assertTrue(output.count > 0);
+
+		// well under the size of any single file, let alone the project
+		final long growth = peak.get() - baseline;
+		Assertions.assertTrue(growth < 128 * MB, "Heap grew by " + growth / MB + "MB exporting " + exported / MB + "MB");
+	}
+
+	/** A file of the given size whose contents are derived from its name, generated as it is read. */
+	private static class SyntheticInputStream extends InputStream {
+
+		// the contents repeat with this period
+		private static final int PERIOD = 251;
+
+		private final byte[] pattern = new byte[PERIOD * 64];
+		private final long size;
+		private final AtomicLong bytesRead;
+		private long position = 0;
+
+		SyntheticInputStream(final String name, final long size, final AtomicLong bytesRead) {
+			final byte seed = (byte) name.hashCode();
+			for (int i = 0; i < pattern.length; i++) {
+				pattern[i] = (byte) (seed + i % PERIOD);
+			}
+			this.size = size;
+			this.bytesRead = bytesRead;
+		}
+
+		@Override
+		public int read() {
+			if (position >= size) {
+				return -1;
+			}
+			bytesRead.incrementAndGet();
+			return pattern[(int) (position++ % PERIOD)] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (position >= size) {
+				return -1;
+			}
+			final int start = (int) (position % PERIOD);
+			final int n = (int) Math.min(Math.min(len, size - position), pattern.length - start);
+			System.arraycopy(pattern, start, b, off, n);
+			position += n;
+			bytesRead.addAndGet(n);
+			return n;
+		}
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		long count = 0;
+
+		@Override
+		public void write(final int b) {
+			count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.entity.ContentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.models.TerariumAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.Artifact;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetExport;
+import software.uncharted.terarium.hmiserver.models.dataservice.AssetType;
+import software.uncharted.terarium.hmiserver.models.dataservice.FileExport;
+import software.uncharted.terarium.hmiserver.models.dataservice.document.DocumentAsset;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.ProjectExport;
+import software.uncharted.terarium.hmiserver.repository.data.InterventionRepository;
+import software.uncharted.terarium.hmiserver.repository.data.ModelConfigRepository;
+import software.uncharted.terarium.hmiserver.service.TerariumAssetCloneService;
+
+public class ProjectImportStreamingTests {
+
+	private static final int SPILL_THRESHOLD_BYTES = 1024;
+
+	// the uploaded contents by asset id and filename
+	private final Map<String, byte[]> uploaded = new ConcurrentHashMap<>();
+
+	// the temporary file of each upload that was spilled to disk
+	private final Map<String, Path> spilled = new ConcurrentHashMap<>();
+
+	// the deleted uploads by asset id and filename
+	private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+
+	private ProjectService projectService;
+	private ProjectAssetService projectAssetService;
+	private ITerariumAssetService<TerariumAsset> artifactService;
+	private ITerariumAssetService<TerariumAsset> documentService;
+	private TerariumAssetCloneService cloneService;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		projectService = mock(ProjectService.class);
+		when(projectService.createProject(any(Project.class))).thenAnswer(inv -> {
+			final Project project = inv.getArgument(0);
+			project.setId(UUID.randomUUID());
+			return project;
+		});
+
+		projectAssetService = mock(ProjectAssetService.class);
+
+		artifactService = mockAssetService();
+		documentService = mockAssetService();
+
+		final TerariumAssetServices terariumAssetServices = mock(TerariumAssetServices.class);
+		doReturn(artifactService).when(terariumAssetServices).getServiceByType(AssetType.ARTIFACT);
+		doReturn(documentService).when(terariumAssetServices).getServiceByType(AssetType.DOCUMENT);
+
+		cloneService = new TerariumAssetCloneService(
+			projectService,
+			projectAssetService,
+			terariumAssetServices,
+			mock(ModelConfigRepository.class),
+			mock(InterventionRepository.class)
+		);
+		ReflectionTestUtils.setField(cloneService, "UPLOAD_THREADS", 4);
+		ReflectionTestUtils.setField(cloneService, "MAX_IN_FLIGHT", 4);
+		ReflectionTestUtils.setField(cloneService, "SPILL_THRESHOLD_BYTES", SPILL_THRESHOLD_BYTES);
+		ReflectionTestUtils.invokeMethod(cloneService, "init");
+	}
+
+	@AfterEach
+	public void teardown() {
+		ReflectionTestUtils.invokeMethod(cloneService, "shutdown");
+	}
+
+	@SuppressWarnings("unchecked")
+	private ITerariumAssetService<TerariumAsset> mockAssetService() throws IOException {
+		// a mock of a generic interface can only be created from its raw class
+		final ITerariumAssetService<TerariumAsset> service = mock(ITerariumAssetService.class);
+		when(service.uploadFile(any(UUID.class), anyString(), any(FileExport.class))).thenAnswer(inv -> {
+			final FileExport file = inv.getArgument(2);
+			final String key = inv.getArgument(0) + "/" + inv.getArgument(1);
+			if (file.getPath() != null) {
+				spilled.put(key, file.getPath());
+				uploaded.put(key, Files.readAllBytes(file.getPath()));
+			} else {
+				uploaded.put(key, file.getBytes());
+			}
+			return 200;
+		});
+		doAnswer(inv -> deleted.add(inv.getArgument(0) + "/" + inv.getArgument(1)))
+			.when(service)
+			.deleteFile(any(UUID.class), anyString(), any(FileExport.class));
+		when(service.createAssets(anyList(), any(UUID.class))).thenAnswer(inv -> inv.getArgument(0));
+		return service;
+	}
+
+	private static byte[] contents(final int size) {
+		final byte[] bytes = new byte[size];
+		Arrays.fill(bytes, (byte) size);
+		return bytes;
+	}
+
+	private static AssetExport export(final AssetType type, final TerariumAsset asset, final int... fileSizes) {
+		final Map<String, FileExport> files = new LinkedHashMap<>();
+		final List<String> fileNames = new ArrayList<>();
+		for (int i = 0; i < fileSizes.length; i++) {
+			final String fileName = "file-" + i + ".bin";
+			fileNames.add(fileName);
+			files.put(
+				fileName,
+				new FileExport()
+					.setContentType(ContentType.APPLICATION_OCTET_STREAM)
+					.setPathPrefix("assets")
+					.setBytes(contents(fileSizes[i]))
+			);
+		}
+		asset.setId(UUID.randomUUID());
+		asset.setName(type + "-" + asset.getId());
+		asset.setFileNames(fileNames);
+
+		final AssetExport assetExport = new AssetExport();
+		assetExport.setType(type);
+		assetExport.setAsset(asset);
+		assetExport.setFiles(files);
+		return assetExport;
+	}
+
+	private static byte[] archive(final AssetExport... assets) throws IOException {
+		final ProjectExport export = new ProjectExport();
+		export.setProject((Project) new Project().setName("imported").setId(UUID.randomUUID()));
+		export.setAssets(new ArrayList<>(List.of(assets)));
+		return export.getAsZipFile();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItImportsAssetsInBatchesWithNewIds() throws Exception {
+		final AssetExport first = export(AssetType.ARTIFACT, new Artifact(), 10, 5000);
+		final AssetExport second = export(AssetType.ARTIFACT, new Artifact(), 20);
+		final AssetExport document = export(AssetType.DOCUMENT, new DocumentAsset());
+
+		// a reference from one asset to another
+		second.getAsset().setDescription(first.getAsset().getId().toString());
+
+		final Project project = cloneService.importProject(
+			"user-id",
+			"user-name",
+			new ByteArrayInputStream(archive(first, second, document))
+		);
+		Assertions.assertEquals("user-id", project.getUserId());
+		Assertions.assertEquals("imported", project.getName());
+
+		// one insert per type
+		final ArgumentCaptor<List<TerariumAsset>> artifacts = ArgumentCaptor.forClass(List.class);
+		verify(artifactService, times(1)).createAssets(artifacts.capture(), eq(project.getId()));
+		verify(artifactService, never()).createAsset(any(), any());
+		verify(documentService, times(1)).createAssets(anyList(), eq(project.getId()));
+		verify(projectAssetService, times(1)).createProjectAssets(eq(project), eq(AssetType.ARTIFACT), anyList());
+		verify(projectAssetService, times(1)).createProjectAssets(eq(project), eq(AssetType.DOCUMENT), anyList());
+
+		// with new ids and the references between them swapped
+		final TerariumAsset importedFirst = artifacts.getValue().get(0);
+		final TerariumAsset importedSecond = artifacts.getValue().get(1);
+		Assertions.assertNotEquals(first.getAsset().getId(), importedFirst.getId());
+		Assertions.assertEquals(importedFirst.getId().toString(), importedSecond.getDescription());
+
+		// and the files uploaded under the new ids
+		Assertions.assertEquals(3, uploaded.size());
+		Assertions.assertArrayEquals(contents(10), uploaded.get(importedFirst.getId() + "/file-0.bin"));
+		Assertions.assertArrayEquals(contents(5000), uploaded.get(importedFirst.getId() + "/file-1.bin"));
+		Assertions.assertArrayEquals(contents(20), uploaded.get(importedSecond.getId() + "/file-0.bin"));
+	}
+
+	@Test
+	public void testItSpillsLargeFilesAndCleansThemUp() throws Exception {
+		final AssetExport asset = export(
+			AssetType.ARTIFACT,
+			new Artifact(),
+			SPILL_THRESHOLD_BYTES,
+			SPILL_THRESHOLD_BYTES + 1,
+			100_000
+		);
+
+		cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(archive(asset)));
+
+		// only the files over the threshold are written to disk
+		Assertions.assertEquals(3, uploaded.size());
+		Assertions.assertEquals(2, spilled.size());
+		for (final Path path : spilled.values()) {
+			Assertions.assertFalse(Files.exists(path), "Temporary file was not deleted: " + path);
+		}
+	}
+
+	@Test
+	public void testItUploadsConcurrently() throws Exception {
+		// every upload waits until four are running at once
+		final CountDownLatch running = new CountDownLatch(4);
+		when(artifactService.uploadFile(any(UUID.class), anyString(), any(FileExport.class))).thenAnswer(inv -> {
+			running.countDown();
+			if (!running.await(5, TimeUnit.SECONDS)) {
+				throw new IOException("Uploads did not run concurrently");
+			}
+			return 200;
+		});
+
+		final AssetExport first = export(AssetType.ARTIFACT, new Artifact(), 10, 20);
+		final AssetExport second = export(AssetType.ARTIFACT, new Artifact(), 30, 40);
+
+		cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(archive(first, second)));
+
+		Assertions.assertEquals(0, running.getCount());
+		verify(artifactService, times(4)).uploadFile(any(UUID.class), anyString(), any(FileExport.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItSkipsAssetsWithFailedUploads() throws Exception {
+		final AssetExport failed = export(AssetType.ARTIFACT, new Artifact(), 10);
+		final AssetExport succeeded = export(AssetType.ARTIFACT, new Artifact(), 20);
+		final String failedName = failed.getAsset().getName();
+
+		final List<UUID> failedIds = new ArrayList<>();
+		when(artifactService.uploadFile(any(UUID.class), anyString(), any(FileExport.class))).thenAnswer(inv -> {
+			if (((FileExport) inv.getArgument(2)).getBytes().length == 10) {
+				failedIds.add(inv.getArgument(0));
+				throw new IOException("S3 unavailable");
+			}
+			return 200;
+		});
+
+		cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(archive(failed, succeeded)));
+
+		final ArgumentCaptor<List<TerariumAsset>> artifacts = ArgumentCaptor.forClass(List.class);
+		verify(artifactService, times(1)).createAssets(artifacts.capture(), any(UUID.class));
+		Assertions.assertEquals(1, artifacts.getValue().size());
+		Assertions.assertEquals(succeeded.getAsset().getName(), artifacts.getValue().get(0).getName());
+		Assertions.assertNotEquals(failedName, artifacts.getValue().get(0).getName());
+		Assertions.assertEquals(1, failedIds.size());
+	}
+
+	@Test
+	public void testItDeletesTheUploadedFilesOfSkippedAssets() throws Exception {
+		final AssetExport failed = export(AssetType.ARTIFACT, new Artifact(), 10, 20);
+		final AssetExport succeeded = export(AssetType.ARTIFACT, new Artifact(), 30);
+
+		final Map<Integer, String> keys = new ConcurrentHashMap<>();
+		when(artifactService.uploadFile(any(UUID.class), anyString(), any(FileExport.class))).thenAnswer(inv -> {
+			final int size = ((FileExport) inv.getArgument(2)).getBytes().length;
+			keys.put(size, inv.getArgument(0) + "/" + inv.getArgument(1));
+			if (size == 10) {
+				throw new IOException("S3 unavailable");
+			}
+			return 200;
+		});
+
+		cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(archive(failed, succeeded)));
+
+		// the file that was uploaded for the skipped asset is deleted, the others are kept
+		Assertions.assertEquals(Set.of(keys.get(20)), deleted);
+	}
+
+	@Test
+	public void testItDeletesTheUploadedFilesWhenTheImportFails() throws Exception {
+		when(projectService.createProject(any(Project.class))).thenThrow(new IOException("Database unavailable"));
+
+		final AssetExport first = export(AssetType.ARTIFACT, new Artifact(), 10, 5000);
+		final AssetExport second = export(AssetType.DOCUMENT, new DocumentAsset(), 20);
+
+		Assertions.assertThrows(
+			IOException.class,
+			() -> cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(archive(first, second)))
+		);
+
+		Assertions.assertEquals(3, uploaded.size());
+		Assertions.assertEquals(uploaded.keySet(), deleted);
+	}
+
+	@Test
+	public void testItDeletesTheUploadedFilesOfAssetsThatCouldNotBeAdded() throws Exception {
+		doThrow(new RuntimeException("Database unavailable"))
+			.when(projectAssetService)
+			.createProjectAssets(any(Project.class), eq(AssetType.DOCUMENT), anyList());
+
+		final AssetExport artifact = export(AssetType.ARTIFACT, new Artifact(), 10);
+		final AssetExport document = export(AssetType.DOCUMENT, new DocumentAsset(), 20);
+
+		cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(archive(artifact, document)));
+
+		Assertions.assertEquals(1, deleted.size());
+		Assertions.assertArrayEquals(contents(20), uploaded.get(deleted.iterator().next()));
+	}
+
+	@Test
+	public void testItRejectsAnInvalidArchive() throws Exception {
+		Assertions.assertThrows(
+			IllegalArgumentException.class,
+			() -> cloneService.importProject("user-id", "user-name", new ByteArrayInputStream(new byte[] { 1, 2, 3 }))
+		);
+		verify(projectService, never()).createProject(any(Project.class));
+	}
+}
@@ -0,0 +1,205 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.Core.ObjectReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.models.User;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Contributor;
+import software.uncharted.terarium.hmiserver.models.dataservice.project.Project;
+import software.uncharted.terarium.hmiserver.service.UserService;
+import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
+import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
+import software.uncharted.terarium.hmiserver.utils.rebac.SchemaObject;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacPermissionRelationship;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacProject;
+import software.uncharted.terarium.hmiserver.utils.rebac.askem.RebacUser;
+
+public class ProjectListServiceTests {
+
+	private static final String USER_ID = "user-id";
+	private static final String PUBLIC_GROUP_ID = "public-group-id";
+
+	private ReBACService reBACService;
+	private ProjectPermissionsService projectPermissionsService;
+	private UserService userService;
+	private ProjectListService projectListService;
+
+	private final List<Project> projects = new ArrayList<>();
+
+	@BeforeEach
+	public void setup() throws Exception {
+		ReBACService.PUBLIC_GROUP_ID = PUBLIC_GROUP_ID;
+		reBACService = mock(ReBACService.class);
+		projectPermissionsService = mock(ProjectPermissionsService.class);
+		userService = mock(UserService.class);
+
+		projectListService = new ProjectListService(reBACService, projectPermissionsService, userService);
+		ReflectionTestUtils.setField(projectListService, "THREADS", 4);
+		ReflectionTestUtils.setField(projectListService, "CONTRIBUTOR_TASKS", 2);
+		projectListService.init();
+
+		for (int i = 0; i < 4; i++) {
+			final Project project = (Project) new Project().setName("project-" + i).setId(UUID.randomUUID());
+			project.setUserId("author-" + (i % 2));
+			projects.add(project);
+		}
+	}
+
+	@AfterEach
+	public void teardown() {
+		projectListService.shutdown();
+		ReBACService.PUBLIC_GROUP_ID = null;
+	}
+
+	private static RebacPermissionRelationship relationship(
+		final Schema.Type subjectType,
+		final String subjectId,
+		final Schema.Relationship relationship,
+		final Project project
+	) {
+		return new RebacPermissionRelationship(
+			ObjectReference.newBuilder().setObjectType(subjectType.toString()).setObjectId(subjectId).build(),
+			relationship.toString(),
+			ObjectReference.newBuilder().setObjectType("project").setObjectId(project.getId().toString()).build()
+		);
+	}
+
+	private static User user(final String id, final String name) {
+		final User user = new User();
+		user.setId(id);
+		user.setName(name);
+		return user;
+	}
+
+	@Test
+	public void testItPopulatesProjectsWithoutPerProjectChecks() throws Exception {
+		final SchemaObject user = new SchemaObject(Schema.Type.USER, USER_ID);
+		final SchemaObject publicGroup = new SchemaObject(Schema.Type.GROUP, PUBLIC_GROUP_ID);
+
+		// the user created the first project, can write to the second and read the third and fourth
+		when(reBACService.getSubjectRelationships(user, Schema.Type.PROJECT)).thenReturn(
+			List.of(
+				relationship(Schema.Type.USER, USER_ID, Schema.Relationship.CREATOR, projects.get(0)),
+				relationship(Schema.Type.USER, USER_ID, Schema.Relationship.WRITER, projects.get(1))
+			)
+		);
+		when(reBACService.lookupResources(user, Schema.Permission.WRITE, Schema.Type.PROJECT)).thenReturn(
+			List.of(projects.get(0).getId(), projects.get(1).getId())
+		);
+		when(reBACService.lookupResources(user, Schema.Permission.READ, Schema.Type.PROJECT)).thenReturn(
+			projects.stream().map(Project::getId).toList()
+		);
+
+		// the third project is public
+		when(reBACService.getSubjectRelationships(publicGroup, Schema.Type.PROJECT)).thenReturn(
+			List.of(relationship(Schema.Type.GROUP, PUBLIC_GROUP_ID, Schema.Relationship.READER, projects.get(2)))
+		);
+
+		when(projectPermissionsService.getContributors(any(RebacProject.class))).thenReturn(
+			List.of(new Contributor("Author", USER_ID, Schema.Relationship.CREATOR))
+		);
+		when(userService.getByIds(anyCollection())).thenReturn(List.of(user("author-0", "Author Zero")));
+
+		projectListService.populateProjects(new RebacUser(USER_ID, reBACService), projects);
+
+		Assertions.assertEquals("creator", projects.get(0).getUserPermission());
+		Assertions.assertEquals("writer", projects.get(1).getUserPermission());
+		Assertions.assertEquals("reader", projects.get(2).getUserPermission());
+		Assertions.assertEquals("reader", projects.get(3).getUserPermission());
+
+		Assertions.assertFalse(projects.get(0).getPublicProject());
+		Assertions.assertTrue(projects.get(2).getPublicProject());
+
+		for (final Project project : projects) {
+			Assertions.assertEquals("1", project.getMetadata().get("contributor-count"));
+		}
+
+		// only the authors that exist are named
+		Assertions.assertEquals("Author Zero", projects.get(0).getUserName());
+		Assertions.assertEquals("Author Zero", projects.get(2).getUserName());
+		Assertions.assertNull(projects.get(1).getUserName());
+
+		// one lookup per permission and one query for the authors, rather than one of each per project
+		verify(reBACService, never()).can(any(), any(), any());
+		verify(reBACService, never()).isCreator(any(), any());
+		verify(reBACService, times(1)).lookupResources(user, Schema.Permission.WRITE, Schema.Type.PROJECT);
+		verify(reBACService, times(1)).lookupResources(user, Schema.Permission.READ, Schema.Type.PROJECT);
+		verify(userService, times(1)).getByIds(eq(Set.of("author-0", "author-1")));
+		verify(userService, never()).getById(any());
+	}
+
+	@Test
+	public void testAdminsCanWriteToEveryProject() throws Exception {
+		when(reBACService.isMemberOf(any(), any())).thenReturn(true);
+
+		projectListService.populateProjects(new RebacUser(USER_ID, reBACService), projects);
+
+		for (final Project project : projects) {
+			Assertions.assertEquals("writer", project.getUserPermission());
+		}
+		verify(reBACService, never()).lookupResources(any(), any(), any());
+	}
+
+	@Test
+	public void testItToleratesFailedContributorsAndAuthors() throws Exception {
+		when(projectPermissionsService.getContributors(any(RebacProject.class))).thenAnswer(inv -> {
+			if (((RebacProject) inv.getArgument(0)).getId().equals(projects.get(1).getId().toString())) {
+				throw new RuntimeException("SpiceDB unavailable");
+			}
+			return List.of();
+		});
+		when(userService.getByIds(anyCollection())).thenThrow(new RuntimeException("postgres unavailable"));
+
+		projectListService.populateProjects(new RebacUser(USER_ID, reBACService), projects);
+
+		Assertions.assertEquals("0", projects.get(0).getMetadata().get("contributor-count"));
+		Assertions.assertNull(projects.get(1).getMetadata());
+		for (final Project project : projects) {
+			Assertions.assertEquals("none", project.getUserPermission());
+			Assertions.assertNull(project.getUserName());
+		}
+	}
+
+	@Test
+	public void testItReadsTheContributorsOfAListOnABoundedNumberOfThreads() throws Exception {
+		final Set<String> threads = ConcurrentHashMap.newKeySet();
+		when(projectPermissionsService.getContributors(any(RebacProject.class))).thenAnswer(inv -> {
+			threads.add(Thread.currentThread().getName());
+			return List.of();
+		});
+
+		projectListService.populateProjects(new RebacUser(USER_ID, reBACService), projects);
+
+		verify(projectPermissionsService, times(projects.size())).getContributors(any(RebacProject.class));
+		Assertions.assertTrue(threads.size() <= 2, "contributors read on " + threads);
+		for (final Project project : projects) {
+			Assertions.assertEquals("0", project.getMetadata().get("contributor-count"));
+		}
+	}
+
+	@Test
+	public void testItFailsWhenPermissionsCantBeResolved() throws Exception {
+		when(reBACService.lookupResources(any(), any(), any())).thenThrow(new RuntimeException("SpiceDB unavailable"));
+
+		Assertions.assertThrows(Exception.class, () ->
+			projectListService.populateProjects(new RebacUser(USER_ID, reBACService), projects)
+		);
+	}
+}
@@ -0,0 +1,111 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class WorkflowCleanupServiceTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private RLock lock;
+	private WorkflowElementService workflowElementService;
+	private WorkflowCleanupService workflowCleanupService;
+
+	@BeforeEach
+	public void setup() throws InterruptedException {
+		final RedissonClient redissonClient = mock(RedissonClient.class);
+		lock = mock(RLock.class);
+		when(redissonClient.getLock(any())).thenReturn(lock);
+		when(lock.tryLock(eq(0L), anyLong(), eq(TimeUnit.SECONDS))).thenReturn(true);
+		when(lock.isHeldByCurrentThread()).thenReturn(true);
+		workflowElementService = mock(WorkflowElementService.class);
+		when(workflowElementService.findOldestDeletedOn()).thenReturn(Optional.empty());
+
+		workflowCleanupService = new WorkflowCleanupService(redissonClient, workflowElementService, meterRegistry);
+		ReflectionTestUtils.setField(workflowCleanupService, "MIN_AGE_SECONDS", 3600L);
+		ReflectionTestUtils.setField(workflowCleanupService, "BATCH_SIZE", 2);
+		ReflectionTestUtils.setField(workflowCleanupService, "MAX_BATCHES", 3);
+		ReflectionTestUtils.setField(workflowCleanupService, "LOCK_LEASE_SECONDS", 100L);
+		workflowCleanupService.init();
+	}
+
+	@Test
+	public void testItCompactsInBatchesUntilNothingIsLeft() {
+		when(workflowElementService.compact(any(), eq(2))).thenReturn(
+			new WorkflowElementService.Compaction(4, 4, 400L),
+			new WorkflowElementService.Compaction(1, 1, 100L),
+			new WorkflowElementService.Compaction(0, 0, 0L)
+		);
+
+		workflowCleanupService.compact();
+
+		verify(workflowElementService, times(3)).compact(any(), anyInt());
+		Assertions.assertEquals(5, meterRegistry.get("terarium.workflow-compaction.removed").counter().count());
+		Assertions.assertEquals(500, meterRegistry.get("terarium.workflow-compaction.reclaimed").counter().count());
+		verify(lock).unlock();
+	}
+
+	@Test
+	public void testItLimitsTheBatchesOfARun() {
+		when(workflowElementService.compact(any(), eq(2))).thenReturn(new WorkflowElementService.Compaction(4, 4, 1L));
+
+		workflowCleanupService.compact();
+
+		verify(workflowElementService, times(3)).compact(any(), anyInt());
+	}
+
+	@Test
+	public void testItOnlyRemovesElementsDeletedLongEnoughAgo() {
+		when(workflowElementService.compact(any(), anyInt())).thenReturn(new WorkflowElementService.Compaction(0, 0, 0L));
+		final long before = System.currentTimeMillis();
+
+		workflowCleanupService.compact();
+
+		final ArgumentCaptor<Timestamp> deletedBefore = ArgumentCaptor.forClass(Timestamp.class);
+		verify(workflowElementService).compact(deletedBefore.capture(), anyInt());
+		Assertions.assertTrue(deletedBefore.getValue().getTime() <= before - 3600 * 1000 + 1000);
+		Assertions.assertTrue(deletedBefore.getValue().getTime() >= before - 3600 * 1000);
+	}
+
+	@Test
+	public void testItReportsTheLagOfTheOldestDeletedElement() {
+		when(workflowElementService.compact(any(), anyInt())).thenReturn(new WorkflowElementService.Compaction(0, 0, 0L));
+		when(workflowElementService.findOldestDeletedOn()).thenReturn(
+			Optional.of(new Timestamp(System.currentTimeMillis() - 4600 * 1000))
+		);
+
+		workflowCleanupService.compact();
+
+		final double lag = meterRegistry.get("terarium.workflow-compaction.lag").gauge().value();
+		Assertions.assertTrue(lag >= 999 && lag <= 1001, "lag " + lag);
+	}
+
+	@Test
+	public void testItDoesNothingWhenAnotherInstanceIsCompacting() throws InterruptedException {
+		when(lock.tryLock(eq(0L), anyLong(), eq(TimeUnit.SECONDS))).thenReturn(false);
+
+		workflowCleanupService.compact();
+
+		verify(workflowElementService, never()).compact(any(), anyInt());
+		verify(lock, never()).unlock();
+	}
+}
@@ -0,0 +1,236 @@
+package software.uncharted.terarium.hmiserver.service.data;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.Workflow;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdge;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowEdgeRecord;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNode;
+import software.uncharted.terarium.hmiserver.models.dataservice.workflow.WorkflowNodeRecord;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowEdgeRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowNodeRecordRepository;
+import software.uncharted.terarium.hmiserver.repository.data.WorkflowRepository;
+
+public class WorkflowElementServiceTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final UUID workflowId = UUID.randomUUID();
+
+	private WorkflowRepository workflowRepository;
+	private WorkflowNodeRecordRepository nodeRepository;
+	private WorkflowEdgeRecordRepository edgeRepository;
+	private WorkflowElementService workflowElementService;
+
+	@BeforeEach
+	public void setup() {
+		workflowRepository = mock(WorkflowRepository.class);
+		nodeRepository = mock(WorkflowNodeRecordRepository.class);
+		edgeRepository = mock(WorkflowEdgeRecordRepository.class);
+		workflowElementService = new WorkflowElementService(mapper, workflowRepository, nodeRepository, edgeRepository);
+	}
+
+	private static WorkflowNode node(final String displayName, final long version) {
+		return new WorkflowNode().setId(UUID.randomUUID()).setDisplayName(displayName).setVersion(version);
+	}
+
+	private WorkflowNodeRecord record(final WorkflowNode node, final int sortOrder) {
+		final WorkflowNodeRecord record = new WorkflowNodeRecord();
+		record
+			.setWorkflowId(workflowId)
+			.setElementId(node.getId())
+			.setSortOrder(sortOrder)
+			.setVersion(node.getVersion())
+			.setIsDeleted(Boolean.TRUE.equals(node.getIsDeleted()))
+			.setContent(mapper.valueToTree(node));
+		return record;
+	}
+
+	private Workflow workflow(final WorkflowNode... nodes) {
+		return (Workflow) new Workflow()
+			.setNodes(new ArrayList<>(List.of(nodes)))
+			.setEdges(new ArrayList<>())
+			.setId(workflowId);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<WorkflowNodeRecord> savedNodes() {
+		final ArgumentCaptor<List<WorkflowNodeRecord>> saved = ArgumentCaptor.forClass(List.class);
+		verify(nodeRepository).saveAll(saved.capture());
+		return saved.getValue();
+	}
+
+	@Test
+	public void testItLoadsTheElementsInOrderWithTheirVersions() {
+		final WorkflowNode a = node("a", 1L);
+		final WorkflowNode b = node("b", 1L);
+		final WorkflowNodeRecord recordB = record(b, 1);
+		recordB.setVersion(7L);
+		when(nodeRepository.findAllByWorkflowIdInOrderBySortOrder(List.of(workflowId))).thenReturn(
+			List.of(record(a, 0), recordB)
+		);
+		final Workflow workflow = (Workflow) new Workflow().setId(workflowId);
+
+		workflowElementService.load(List.of(workflow));
+
+		Assertions.assertEquals(List.of("a", "b"), workflow.getNodes().stream().map(WorkflowNode::getDisplayName).toList());
+		Assertions.assertEquals(7L, workflow.getNodes().get(1).getVersion());
+		Assertions.assertTrue(workflow.getEdges().isEmpty());
+	}
+
+	@Test
+	public void testItWritesOnlyTheElementsThatChanged() {
+		final WorkflowNode a = node("a", 1L);
+		final WorkflowNode b = node("b", 3L);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(
+			List.of(record(a, 0), record(b, 1))
+		);
+		b.setDisplayName("changed");
+
+		final boolean changed = workflowElementService.save(workflow(a, b), Set.of(a.getId(), b.getId()), Set.of());
+
+		Assertions.assertTrue(changed);
+		final List<WorkflowNodeRecord> saved = savedNodes();
+		Assertions.assertEquals(1, saved.size());
+		Assertions.assertEquals(b.getId(), saved.get(0).getElementId());
+		Assertions.assertEquals(4L, saved.get(0).getVersion());
+		Assertions.assertEquals("changed", saved.get(0).getContent().get("displayName").asText());
+		Assertions.assertEquals(4L, b.getVersion());
+		Assertions.assertEquals(1L, a.getVersion());
+		verify(workflowRepository).setUpdatedOnToNow(workflowId);
+	}
+
+	@Test
+	public void testItWritesNothingWhenNothingChanged() {
+		final WorkflowNode a = node("a", 1L);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(
+			List.of(record(a, 0))
+		);
+
+		Assertions.assertFalse(workflowElementService.save(workflow(a), Set.of(a.getId()), Set.of()));
+
+		Assertions.assertTrue(savedNodes().isEmpty());
+		verify(workflowRepository, never()).setUpdatedOnToNow(any());
+	}
+
+	@Test
+	public void testItKeepsTheDatabaseCopyOnAVersionConflict() {
+		final WorkflowNode a = node("a", 1L);
+		final WorkflowNodeRecord record = record(a, 0);
+		record.setVersion(2L);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(
+			List.of(record)
+		);
+		a.setDisplayName("stale");
+		final Workflow workflow = workflow(a);
+
+		Assertions.assertFalse(workflowElementService.save(workflow, Set.of(a.getId()), Set.of()));
+
+		Assertions.assertTrue(savedNodes().isEmpty());
+		Assertions.assertEquals("a", workflow.getNodes().get(0).getDisplayName());
+		Assertions.assertEquals(2L, workflow.getNodes().get(0).getVersion());
+	}
+
+	@Test
+	public void testItDoesNotChangeDeletedElements() {
+		final WorkflowNode a = node("a", 1L).setIsDeleted(true);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(
+			List.of(record(a, 0))
+		);
+		final Workflow workflow = workflow(node("a", 1L).setId(a.getId()).setIsDeleted(false));
+
+		workflowElementService.save(workflow, Set.of(a.getId()), Set.of());
+
+		Assertions.assertTrue(savedNodes().isEmpty());
+		Assertions.assertTrue(workflow.getNodes().get(0).getIsDeleted());
+	}
+
+	@Test
+	public void testItInsertsNewElements() {
+		final WorkflowNode a = node("a", 1L).setVersion(null);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(List.of());
+
+		Assertions.assertTrue(workflowElementService.save(workflow(a), Set.of(a.getId()), Set.of()));
+
+		final List<WorkflowNodeRecord> saved = savedNodes();
+		Assertions.assertEquals(1, saved.size());
+		Assertions.assertTrue(saved.get(0).isNew());
+		Assertions.assertEquals(1L, saved.get(0).getVersion());
+		Assertions.assertEquals(0, saved.get(0).getSortOrder());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItDeletesTheRowsOfElementsNoLongerInAReplacedWorkflow() {
+		final WorkflowNode a = node("a", 1L);
+		final WorkflowNode b = node("b", 1L);
+		final WorkflowNodeRecord recordB = record(b, 1);
+		when(nodeRepository.findAllByWorkflowId(workflowId)).thenReturn(List.of(record(a, 0), recordB));
+		final WorkflowEdge edge = new WorkflowEdge().setId(UUID.randomUUID()).setSource(a.getId());
+		final Workflow workflow = workflow(a);
+		workflow.setEdges(List.of(edge));
+
+		workflowElementService.replace(workflow);
+
+		Assertions.assertTrue(savedNodes().isEmpty());
+		final ArgumentCaptor<Iterable<WorkflowNodeRecord>> deleted = ArgumentCaptor.forClass(Iterable.class);
+		verify(nodeRepository).deleteAll(deleted.capture());
+		Assertions.assertEquals(List.of(recordB), List.copyOf((Collection<WorkflowNodeRecord>) deleted.getValue()));
+		final ArgumentCaptor<List<WorkflowEdgeRecord>> savedEdges = ArgumentCaptor.forClass(List.class);
+		verify(edgeRepository).saveAll(savedEdges.capture());
+		Assertions.assertEquals(edge.getId(), savedEdges.getValue().get(0).getElementId());
+		Assertions.assertEquals(1L, edge.getVersion());
+	}
+
+	@Test
+	public void testItRecordsWhenAnElementWasDeleted() {
+		final WorkflowNode a = node("a", 1L);
+		when(nodeRepository.findAllByWorkflowIdAndElementIdIn(eq(workflowId), anyCollection())).thenReturn(
+			List.of(record(a, 0))
+		);
+		a.setIsDeleted(true);
+
+		workflowElementService.save(workflow(a), Set.of(a.getId()), Set.of());
+
+		final WorkflowNodeRecord saved = savedNodes().get(0);
+		Assertions.assertTrue(saved.getIsDeleted());
+		Assertions.assertNotNull(saved.getDeletedOn());
+	}
+
+	@Test
+	public void testItRemovesOnlyTheDeletedElementsThatAreUnchanged() {
+		final Timestamp deletedOn = new Timestamp(1000L);
+		final WorkflowNodeRecord removed = record(node("removed", 2L).setIsDeleted(true), 0);
+		removed.setDeletedOn(deletedOn);
+		final WorkflowNodeRecord restored = record(node("restored", 1L).setIsDeleted(true), 1);
+		restored.setDeletedOn(deletedOn);
+		final Timestamp deletedBefore = new Timestamp(2000L);
+		when(nodeRepository.findAllByIsDeletedTrueAndDeletedOnBeforeOrderByDeletedOn(eq(deletedBefore), any())).thenReturn(
+			List.of(removed, restored)
+		);
+		when(nodeRepository.deleteIfUnchanged(workflowId, removed.getElementId(), 2L, deletedOn)).thenReturn(1);
+		when(nodeRepository.deleteIfUnchanged(workflowId, restored.getElementId(), 1L, deletedOn)).thenReturn(0);
+
+		final WorkflowElementService.Compaction compaction = workflowElementService.compact(deletedBefore, 10);
+
+		Assertions.assertEquals(2, compaction.found());
+		Assertions.assertEquals(1, compaction.removed());
+		Assertions.assertEquals(removed.getContent().toString().length(), compaction.bytes());
+	}
+}
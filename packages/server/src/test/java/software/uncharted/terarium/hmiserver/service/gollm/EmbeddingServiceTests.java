@@ -0,0 +1,147 @@
+package software.uncharted.terarium.hmiserver.service.gollm;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.models.TerariumAssetEmbeddings;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest;
+import software.uncharted.terarium.hmiserver.models.task.TaskResponse;
+import software.uncharted.terarium.hmiserver.models.task.TaskStatus;
+import software.uncharted.terarium.hmiserver.service.CurrentUserService;
+import software.uncharted.terarium.hmiserver.service.tasks.TaskService;
+
+public class EmbeddingServiceTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<String, byte[]> redis = new HashMap<>();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private TaskService taskService;
+	private EmbeddingService embeddingService;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		final RMapCache<String, byte[]> redisCache = mock(RMapCache.class);
+		when(redisCache.getAll(anySet())).thenAnswer(inv -> {
+			final Map<String, byte[]> found = new HashMap<>();
+			for (final String key : (Set<String>) inv.getArgument(0)) {
+				if (redis.containsKey(key)) {
+					found.put(key, redis.get(key));
+				}
+			}
+			return found;
+		});
+		when(redisCache.putAllAsync(anyMap(), anyLong(), any(TimeUnit.class))).thenAnswer(inv -> {
+			redis.putAll(inv.getArgument(0));
+			return null;
+		});
+
+		final RedissonClient redissonClient = mock(RedissonClient.class);
+		when(redissonClient.<String, byte[]>getMapCache(anyString(), any(Codec.class))).thenReturn(redisCache);
+
+		// embeds each text as its length and first character
+		taskService = mock(TaskService.class);
+		when(taskService.runTaskSync(any(TaskRequest.class))).thenAnswer(inv -> {
+			final TaskRequest req = inv.getArgument(0);
+			final List<double[]> vectors = new ArrayList<>();
+			for (final String text : getTexts(req)) {
+				vectors.add(new double[] { text.length(), text.charAt(0), 0.1 });
+			}
+			final TaskResponse resp = new TaskResponse();
+			resp.setStatus(TaskStatus.SUCCESS);
+			resp.setOutput(objectMapper.writeValueAsBytes(Map.of("response", vectors)));
+			return resp;
+		});
+
+		embeddingService = new EmbeddingService(
+			objectMapper,
+			taskService,
+			mock(CurrentUserService.class),
+			redissonClient,
+			meterRegistry
+		);
+		ReflectionTestUtils.setField(embeddingService, "CACHE_LOCAL_MAX_ENTRIES", 100L);
+		ReflectionTestUtils.setField(embeddingService, "CACHE_TTL_DAYS", 30L);
+		embeddingService.init();
+	}
+
+	private List<String> getTexts(final TaskRequest req) throws Exception {
+		return objectMapper.readValue(req.getInput(), EmbeddingService.GoLLMSearchRequest.class).getText();
+	}
+
+	private double count(final String result, final String tier) {
+		return meterRegistry.get("terarium.embeddings.cache").tag("result", result).tag("tier", tier).counter().count();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItOnlyRequestsDistinctMisses() throws Exception {
+		embeddingService.generateEmbeddings("first");
+
+		final TerariumAssetEmbeddings embeddings = embeddingService.generateEmbeddings(
+			List.of("second", "first", "second")
+		);
+
+		// the cached text is not requested again and the repeated text is requested once
+		final ArgumentCaptor<TaskRequest> requests = ArgumentCaptor.forClass(TaskRequest.class);
+		verify(taskService, times(2)).runTaskSync(requests.capture());
+		Assertions.assertEquals(List.of("second"), getTexts(requests.getValue()));
+
+		Assertions.assertEquals(3, embeddings.getEmbeddings().size());
+		Assertions.assertEquals(6, embeddings.getEmbeddings().get(0).getVector()[0]);
+		Assertions.assertEquals(5, embeddings.getEmbeddings().get(1).getVector()[0]);
+		Assertions.assertEquals(6, embeddings.getEmbeddings().get(2).getVector()[0]);
+
+		Assertions.assertEquals(1, count("hit", "local"));
+		Assertions.assertEquals(3, count("miss", "none"));
+	}
+
+	@Test
+	public void testItSharesVectorsThroughRedis() throws Exception {
+		embeddingService.generateEmbeddings("query");
+		Assertions.assertEquals(1, redis.size());
+
+		// another instance with an empty local cache
+		embeddingService.init();
+		final TerariumAssetEmbeddings embeddings = embeddingService.generateEmbeddings("query");
+
+		verify(taskService, times(1)).runTaskSync(any(TaskRequest.class));
+		Assertions.assertEquals(5, embeddings.getEmbeddings().get(0).getVector()[0]);
+		Assertions.assertEquals(1, count("hit", "redis"));
+	}
+
+	@Test
+	public void testItStoresVectorsAsFloat32() {
+		final double[] vector = new double[] { 0.1, -2.5, 3.0e-5 };
+		final byte[] bytes = EmbeddingService.toBytes(vector);
+		Assertions.assertEquals(vector.length * Float.BYTES, bytes.length);
+
+		final double[] decoded = EmbeddingService.toVector(bytes);
+		for (int i = 0; i < vector.length; i++) {
+			Assertions.assertEquals((float) vector[i], (float) decoded[i]);
+		}
+	}
+}
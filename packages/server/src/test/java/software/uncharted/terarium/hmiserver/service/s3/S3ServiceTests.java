@@ -0,0 +1,137 @@
+package software.uncharted.terarium.hmiserver.service.s3;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+import software.uncharted.terarium.hmiserver.configuration.Config;
+
+public class S3ServiceTests {
+
+	private static final long MB = 1024L * 1024L;
+
+	private S3Client client;
+	private S3Service s3Service;
+
+	@BeforeEach
+	public void setup() {
+		client = mock(S3Client.class);
+		when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(
+			CreateMultipartUploadResponse.builder().uploadId("upload-id").build()
+		);
+		when(client.uploadPartCopy(any(UploadPartCopyRequest.class))).thenAnswer(inv ->
+			UploadPartCopyResponse.builder()
+				.copyPartResult(
+					CopyPartResult.builder().eTag("etag-" + ((UploadPartCopyRequest) inv.getArgument(0)).partNumber()).build()
+				)
+				.build()
+		);
+		s3Service = new S3Service(mock(Config.class), client, null, 1024);
+	}
+
+	// S3 rejects a single copy of an object over 5GB
+	private void setSize(final long size) {
+		when(client.headObject(any(HeadObjectRequest.class))).thenReturn(
+			HeadObjectResponse.builder()
+				.contentLength(size)
+				.contentType("text/csv")
+				.contentDisposition("attachment")
+				.metadata(Map.of("owner", "user"))
+				.build()
+		);
+		if (size > 5120 * MB) {
+			when(client.copyObject(any(CopyObjectRequest.class))).thenThrow(
+				S3Exception.builder().statusCode(400).message("copy source is larger than the maximum").build()
+			);
+		}
+	}
+
+	@Test
+	public void testItCopiesSmallObjectsInOneRequest() {
+		setSize(10 * MB);
+
+		s3Service.copyObject("bucket", "source", "bucket", "destination");
+
+		verify(client, times(1)).copyObject(any(CopyObjectRequest.class));
+		verify(client, never()).headObject(any(HeadObjectRequest.class));
+		verify(client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+	}
+
+	@Test
+	public void testItDoesNotCopyInPartsOnOtherErrors() {
+		setSize(10 * MB);
+		when(client.copyObject(any(CopyObjectRequest.class))).thenThrow(
+			S3Exception.builder().statusCode(400).message("bad request").build()
+		);
+
+		Assertions.assertThrows(S3Exception.class, () ->
+			s3Service.copyObject("bucket", "source", "bucket", "destination")
+		);
+		verify(client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItCopiesLargeObjectsInParts() {
+		setSize(6000 * MB);
+
+		s3Service.copyObject("bucket", "source", "bucket", "destination");
+
+		final ArgumentCaptor<CreateMultipartUploadRequest> upload = ArgumentCaptor.forClass(
+			CreateMultipartUploadRequest.class
+		);
+		verify(client).createMultipartUpload(upload.capture());
+		Assertions.assertEquals("text/csv", upload.getValue().contentType());
+		Assertions.assertEquals("attachment", upload.getValue().contentDisposition());
+		Assertions.assertEquals(Map.of("owner", "user"), upload.getValue().metadata());
+
+		final ArgumentCaptor<UploadPartCopyRequest> parts = ArgumentCaptor.forClass(UploadPartCopyRequest.class);
+		verify(client, times(24)).uploadPartCopy(parts.capture());
+		final List<UploadPartCopyRequest> requests = parts.getAllValues();
+		Assertions.assertEquals("bytes=0-" + (256 * MB - 1), requests.get(0).copySourceRange());
+		Assertions.assertEquals("bytes=" + 5888 * MB + "-" + (6000 * MB - 1), requests.get(23).copySourceRange());
+		Assertions.assertEquals(24, requests.get(23).partNumber());
+
+		final ArgumentCaptor<Consumer<CompleteMultipartUploadRequest.Builder>> complete = ArgumentCaptor.forClass(
+			Consumer.class
+		);
+		verify(client).completeMultipartUpload(complete.capture());
+		final CompleteMultipartUploadRequest.Builder builder = CompleteMultipartUploadRequest.builder();
+		complete.getValue().accept(builder);
+		Assertions.assertEquals(24, builder.build().multipartUpload().parts().size());
+		Assertions.assertEquals("etag-24", builder.build().multipartUpload().parts().get(23).eTag());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItAbortsAFailedCopy() {
+		setSize(6000 * MB);
+		when(client.uploadPartCopy(any(UploadPartCopyRequest.class))).thenThrow(S3Exception.builder().build());
+
+		Assertions.assertThrows(S3Exception.class, () ->
+			s3Service.copyObject("bucket", "source", "bucket", "destination")
+		);
+		verify(client).abortMultipartUpload(any(Consumer.class));
+	}
+}
@@ -0,0 +1,75 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+
+public class RabbitTopologyCacheTests {
+
+	@Test
+	public void testItDeclaresEachQueueOnce() {
+		final RabbitAdmin rabbitAdmin = mock(RabbitAdmin.class);
+		final ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		final RabbitTopologyCache topology = new RabbitTopologyCache(rabbitAdmin, connectionFactory);
+		verify(connectionFactory).addConnectionListener(topology);
+
+		final Queue queue = new Queue("requests-gollm", false, false, false);
+		for (int i = 0; i < 100; i++) {
+			topology.declareQueue(queue);
+		}
+		topology.declareExchange(new FanoutExchange("cancellations", false, false));
+		topology.declareExchange(new FanoutExchange("cancellations", false, false));
+
+		verify(rabbitAdmin, times(1)).declareQueue(queue);
+		verify(rabbitAdmin, times(1)).declareExchange(any(FanoutExchange.class));
+		Assertions.assertTrue(topology.isDeclared("requests-gollm"));
+	}
+
+	@Test
+	public void testItRedeclaresOnReconnect() {
+		final RabbitAdmin rabbitAdmin = mock(RabbitAdmin.class);
+		final RabbitTopologyCache topology = new RabbitTopologyCache(rabbitAdmin, mock(ConnectionFactory.class));
+
+		final Queue queue = new Queue("requests-gollm", false, false, false);
+		final FanoutExchange exchange = new FanoutExchange("cancellations", false, false);
+		topology.declareQueue(queue);
+		topology.declareExchange(exchange);
+
+		// the connection to the broker is re-established
+		topology.onCreate(mock(Connection.class));
+
+		verify(rabbitAdmin, times(2)).declareQueue(queue);
+		verify(rabbitAdmin, times(2)).declareExchange(exchange);
+
+		// and later requests still don't go to the broker
+		topology.declareQueue(queue);
+		verify(rabbitAdmin, times(2)).declareQueue(queue);
+	}
+
+	@Test
+	public void testItRetriesFailedDeclarations() {
+		final RabbitAdmin rabbitAdmin = mock(RabbitAdmin.class);
+		final RabbitTopologyCache topology = new RabbitTopologyCache(rabbitAdmin, mock(ConnectionFactory.class));
+
+		final Queue queue = new Queue("requests-gollm", false, false, false);
+		doThrow(new AmqpException("broker unavailable")).doReturn("requests-gollm").when(rabbitAdmin).declareQueue(queue);
+
+		Assertions.assertThrows(AmqpException.class, () -> topology.declareQueue(queue));
+		Assertions.assertFalse(topology.isDeclared("requests-gollm"));
+
+		topology.declareQueue(queue);
+		Assertions.assertTrue(topology.isDeclared("requests-gollm"));
+		verify(rabbitAdmin, times(2)).declareQueue(queue);
+	}
+}
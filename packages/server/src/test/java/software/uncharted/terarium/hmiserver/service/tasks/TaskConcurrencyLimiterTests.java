@@ -0,0 +1,91 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest.TaskType;
+
+public class TaskConcurrencyLimiterTests {
+
+	@Test
+	public void testItQueuesAndRejectsBeyondTheLimit() throws Exception {
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final TaskConcurrencyLimiter limiter = new TaskConcurrencyLimiter(TaskType.GOLLM, 1, 1, registry);
+
+		final AtomicInteger started = new AtomicInteger();
+		final CompletableFuture<String> first = new CompletableFuture<>();
+		final CompletableFuture<String> second = new CompletableFuture<>();
+
+		final CompletableFuture<String> firstResult = limiter.submit(() -> {
+			started.incrementAndGet();
+			return first;
+		});
+		final CompletableFuture<String> secondResult = limiter.submit(() -> {
+			started.incrementAndGet();
+			return second;
+		});
+		final CompletableFuture<String> thirdResult = limiter.submit(() -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture("third");
+		});
+
+		Assertions.assertEquals(1, started.get());
+		Assertions.assertEquals(1, limiter.getRunning());
+		Assertions.assertEquals(1, limiter.getQueued());
+		Assertions.assertEquals(1.0, registry.get("terarium.taskrunner.sync.queued").gauge().value());
+
+		final ExecutionException rejected = Assertions.assertThrows(ExecutionException.class, thirdResult::get);
+		Assertions.assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+		// completing the first task starts the queued one
+		first.complete("first");
+		Assertions.assertEquals("first", firstResult.get(10, TimeUnit.SECONDS));
+
+		second.complete("second");
+		Assertions.assertEquals("second", secondResult.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(2, started.get());
+		Assertions.assertEquals(0, limiter.getRunning());
+		Assertions.assertEquals(0, limiter.getQueued());
+	}
+
+	@Test
+	public void testItReleasesOnFailure() throws Exception {
+		final TaskConcurrencyLimiter limiter = new TaskConcurrencyLimiter(TaskType.MIRA, 1, 0, new SimpleMeterRegistry());
+
+		final CompletableFuture<String> failed = limiter.submit(() -> {
+			throw new IllegalStateException("failed to dispatch");
+		});
+		Assertions.assertThrows(ExecutionException.class, failed::get);
+		Assertions.assertEquals(0, limiter.getRunning());
+
+		Assertions.assertEquals("ok", limiter.submit(() -> CompletableFuture.completedFuture("ok")).get());
+	}
+
+	@Test
+	public void testItQueuesTasksThatAreWaitedOnBeyondTheQueueSize() throws Exception {
+		final TaskConcurrencyLimiter limiter = new TaskConcurrencyLimiter(TaskType.GOLLM, 1, 0, new SimpleMeterRegistry());
+
+		final CompletableFuture<String> first = new CompletableFuture<>();
+		final CompletableFuture<String> firstResult = limiter.submit(() -> first);
+		final CompletableFuture<String> waitingResult = limiter.submitWaiting(() ->
+			CompletableFuture.completedFuture("waiting")
+		);
+		final CompletableFuture<String> rejectedResult = limiter.submit(() ->
+			CompletableFuture.completedFuture("rejected")
+		);
+
+		Assertions.assertEquals(1, limiter.getQueued());
+		final ExecutionException rejected = Assertions.assertThrows(ExecutionException.class, rejectedResult::get);
+		Assertions.assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+		first.complete("first");
+		Assertions.assertEquals("first", firstResult.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals("waiting", waitingResult.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, limiter.getQueued());
+	}
+}
@@ -0,0 +1,78 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import software.uncharted.terarium.hmiserver.configuration.Config;
+import software.uncharted.terarium.hmiserver.service.s3.S3ClientService;
+
+public class TaskPayloadServiceTests {
+
+	private static final long TWO_HOURS_MILLIS = 2 * 60 * 60 * 1000;
+
+	private Path storePath;
+	private TaskPayloadService taskPayloadService;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		storePath = Files.createTempDirectory("task-payloads");
+		taskPayloadService = new TaskPayloadService(mock(Config.class), mock(S3ClientService.class));
+		ReflectionTestUtils.setField(taskPayloadService, "PAYLOAD_THRESHOLD_BYTES", 1L);
+		ReflectionTestUtils.setField(taskPayloadService, "PAYLOAD_STORE", "filesystem");
+		ReflectionTestUtils.setField(taskPayloadService, "PAYLOAD_STORE_PATH", storePath.toString());
+		ReflectionTestUtils.setField(taskPayloadService, "PAYLOAD_RETENTION_SECONDS", 60L * 60);
+	}
+
+	@AfterEach
+	public void teardown() {
+		FileSystemUtils.deleteRecursively(storePath.toFile());
+	}
+
+	private Path path(final String ref) {
+		return storePath.resolve(ref);
+	}
+
+	private void age(final String ref) throws Exception {
+		Files.setLastModifiedTime(path(ref), FileTime.fromMillis(System.currentTimeMillis() - TWO_HOURS_MILLIS));
+	}
+
+	@Test
+	public void testItDeletesThePayloadsOlderThanTheRetention() throws Exception {
+		final String expired = taskPayloadService.put("expired".getBytes(StandardCharsets.UTF_8));
+		final String kept = taskPayloadService.put("kept".getBytes(StandardCharsets.UTF_8));
+		final String output = taskPayloadService.createOutputRef(UUID.randomUUID());
+		// written by the taskrunner to the url of the output
+		taskPayloadService.getWriteUrl(output, 1);
+		Files.write(path(output), "output".getBytes(StandardCharsets.UTF_8));
+		age(expired);
+		age(output);
+
+		taskPayloadService.deleteExpired();
+
+		Assertions.assertFalse(Files.exists(path(expired)));
+		Assertions.assertFalse(Files.exists(path(output)));
+		Assertions.assertArrayEquals("kept".getBytes(StandardCharsets.UTF_8), taskPayloadService.get(kept));
+	}
+
+	@Test
+	public void testItKeepsAPayloadThatIsStoredAgain() throws Exception {
+		final byte[] payload = "payload".getBytes(StandardCharsets.UTF_8);
+		final String ref = taskPayloadService.put(payload);
+		age(ref);
+
+		Assertions.assertEquals(ref, taskPayloadService.put(payload));
+		taskPayloadService.deleteExpired();
+
+		Assertions.assertArrayEquals(payload, taskPayloadService.get(ref));
+	}
+}
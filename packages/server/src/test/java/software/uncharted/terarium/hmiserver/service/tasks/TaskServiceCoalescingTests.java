@@ -0,0 +1,176 @@
+package software.uncharted.terarium.hmiserver.service.tasks;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.uncharted.terarium.hmiserver.configuration.Config;
+import software.uncharted.terarium.hmiserver.configuration.TaskRunnerConfiguration;
+import software.uncharted.terarium.hmiserver.models.task.TaskFuture;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest;
+import software.uncharted.terarium.hmiserver.models.task.TaskRequest.TaskType;
+import software.uncharted.terarium.hmiserver.models.task.TaskResponse;
+import software.uncharted.terarium.hmiserver.models.task.TaskStatus;
+import software.uncharted.terarium.hmiserver.service.ClientEventService;
+import software.uncharted.terarium.hmiserver.service.notification.NotificationService;
+
+/** The bookkeeping of coalesced requests and of started tasks, without a broker or a taskrunner. */
+public class TaskServiceCoalescingTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private TaskService taskService;
+	private RMapCache<String, TaskResponse> responseCache;
+	private RMapCache<String, String> inFlightRequests;
+	private RMapCache<String, String> cancelledTasks;
+	private final Set<String> started = ConcurrentHashMap.newKeySet();
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		taskService = new TaskService(
+			mock(TaskRunnerConfiguration.class),
+			mock(Config.class),
+			mapper,
+			mock(NotificationService.class),
+			mock(ClientEventService.class),
+			mock(TaskPayloadService.class),
+			mock(RedissonClient.class),
+			new SimpleMeterRegistry(),
+			mock(Environment.class)
+		);
+
+		responseCache = mock(RMapCache.class);
+		inFlightRequests = mock(RMapCache.class);
+		cancelledTasks = mock(RMapCache.class);
+
+		// the set of started tasks behaves as it would in redis
+		final RMapCache<String, Boolean> startedTasks = mock(RMapCache.class);
+		when(startedTasks.fastPutIfAbsent(anyString(), any(), anyLong(), any())).thenAnswer(invocation ->
+			started.add(invocation.getArgument(0))
+		);
+		when(startedTasks.fastRemove(any())).thenAnswer(invocation ->
+			started.remove((String) invocation.getArgument(0)) ? 1L : 0L
+		);
+
+		ReflectionTestUtils.setField(taskService, "responseCache", responseCache);
+		ReflectionTestUtils.setField(taskService, "inFlightRequests", inFlightRequests);
+		ReflectionTestUtils.setField(taskService, "cancelledTasks", cancelledTasks);
+		ReflectionTestUtils.setField(taskService, "startedTasks", startedTasks);
+		ReflectionTestUtils.setField(taskService, "COALESCE_IN_FLIGHT_REQUESTS", true);
+		ReflectionTestUtils.setField(taskService, "CANCELLED_TASK_TTL_SECONDS", 60L);
+	}
+
+	private static TaskRequest request() throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setType(TaskType.GOLLM);
+		req.setScript("echo.py");
+		req.setInput("{\"input\":\"coalesce me\"}".getBytes(StandardCharsets.UTF_8));
+		return req;
+	}
+
+	private Message message(final TaskResponse resp) throws Exception {
+		return new Message(mapper.writeValueAsBytes(resp), new MessageProperties());
+	}
+
+	private void receiveOnOneInstance(final TaskResponse resp) throws Exception {
+		ReflectionTestUtils.invokeMethod(taskService, "onTaskResponseOneInstanceReceives", message(resp));
+	}
+
+	private void receiveOnAllInstances(final TaskResponse resp) throws Exception {
+		ReflectionTestUtils.invokeMethod(taskService, "onTaskResponseAllInstanceReceive", message(resp));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testItAttachesToARunningTaskAndCompletesWithIt() throws Exception {
+		final TaskRequest req = request();
+		final String hash = req.getSHA256();
+		final UUID leaderId = UUID.randomUUID();
+
+		// an identical task that this instance knows is running
+		final Map<String, UUID> localInFlightRequests = (Map<String, UUID>) ReflectionTestUtils.getField(
+			taskService,
+			"localInFlightRequests"
+		);
+		localInFlightRequests.put(hash, leaderId);
+
+		final TaskFuture future = taskService.runTaskAsync(req);
+		Assertions.assertNotEquals(leaderId, future.getId());
+		Assertions.assertEquals(TaskStatus.QUEUED, future.getLatest().getStatus());
+
+		final TaskResponse progress = new TaskResponse()
+			.setId(leaderId)
+			.setScript("echo.py")
+			.setStatus(TaskStatus.RUNNING)
+			.setRequestSHA256(hash)
+			.setOutput("50%".getBytes(StandardCharsets.UTF_8));
+		receiveOnAllInstances(progress);
+		Assertions.assertEquals(TaskStatus.RUNNING, future.getLatest().getStatus());
+		Assertions.assertEquals(future.getId(), future.getLatest().getId());
+		Assertions.assertArrayEquals(progress.getOutput(), future.getLatest().getOutput());
+
+		final TaskResponse success = new TaskResponse()
+			.setId(leaderId)
+			.setScript("echo.py")
+			.setStatus(TaskStatus.SUCCESS)
+			.setRequestSHA256(hash)
+			.setOutput("done".getBytes(StandardCharsets.UTF_8));
+		receiveOnAllInstances(success);
+
+		final TaskResponse resp = future.getFinal(10, TimeUnit.SECONDS);
+		Assertions.assertEquals(future.getId(), resp.getId());
+		Assertions.assertEquals(TaskStatus.SUCCESS, resp.getStatus());
+		Assertions.assertArrayEquals(success.getOutput(), resp.getOutput());
+		Assertions.assertFalse(localInFlightRequests.containsKey(hash));
+	}
+
+	@Test
+	public void testItChecksForACancellationOnTheFirstRunningResponseOnly() throws Exception {
+		final UUID taskId = UUID.randomUUID();
+		final TaskResponse running = new TaskResponse()
+			.setId(taskId)
+			.setScript("echo.py")
+			.setStatus(TaskStatus.RUNNING)
+			.setRequestSHA256("sha");
+
+		// the responses of a task are spread over the instances, the first one to be
+		// processed may already carry progress
+		running.setOutput("10%".getBytes(StandardCharsets.UTF_8));
+		receiveOnOneInstance(running);
+		running.setOutput("20%".getBytes(StandardCharsets.UTF_8));
+		receiveOnOneInstance(running);
+		verify(cancelledTasks, times(1)).get(taskId.toString());
+		Assertions.assertTrue(started.contains(taskId.toString()));
+
+		// the final response forgets the task
+		receiveOnOneInstance(
+			new TaskResponse().setId(taskId).setScript("echo.py").setStatus(TaskStatus.SUCCESS).setRequestSHA256("sha")
+		);
+		verify(cancelledTasks).fastRemove(taskId.toString());
+		verify(inFlightRequests).remove(eq("sha"), eq(taskId.toString()));
+		Assertions.assertFalse(started.contains(taskId.toString()));
+	}
+}
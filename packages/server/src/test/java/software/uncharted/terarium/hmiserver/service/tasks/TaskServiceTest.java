@@ -449,4 +449,51 @@ public class TaskServiceTest extends TerariumApplicationTests {
 		Assertions.assertEquals(TaskStatus.SUCCESS, future3.getFinal(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatus());
 		Assertions.assertEquals(future2.getId(), future3.getId());
 	}
+
+	// @Test
+	@WithUserDetails(MockUser.URSULA)
+	public void testItCoalescesInFlightRequests() throws Exception {
+		final int TIMEOUT_SECONDS = 20;
+
+		final byte[] input = "{\"input\":\"This is my coalesced input string\",\"include_progress\":true}".getBytes();
+
+		final TaskRequest req = new TaskRequest();
+		req.setType(TaskType.GOLLM);
+		req.setScript("echo.py");
+		req.setInput(input);
+
+		// both requests are submitted before the first completes, so the second should
+		// attach to the first rather than being dispatched
+		final TaskFuture future1 = taskService.runTaskAsync(req);
+		final TaskFuture future2 = taskService.runTaskAsync(req);
+		Assertions.assertNotEquals(future1.getId(), future2.getId());
+
+		final TaskResponse resp1 = future1.getFinal(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		final TaskResponse resp2 = future2.getFinal(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		Assertions.assertEquals(TaskStatus.SUCCESS, resp1.getStatus());
+		Assertions.assertEquals(TaskStatus.SUCCESS, resp2.getStatus());
+		Assertions.assertEquals(future2.getId(), resp2.getId());
+		Assertions.assertArrayEquals(resp1.getOutput(), resp2.getOutput());
+	}
+
+	// @Test
+	@WithUserDetails(MockUser.URSULA)
+	public void testItCanCancelCoalescedRequestWithoutCancellingInFlightTask() throws Exception {
+		final int TIMEOUT_SECONDS = 20;
+
+		final byte[] input =
+			"{\"input\":\"This is my other coalesced input string\",\"include_progress\":true}".getBytes();
+
+		final TaskRequest req = new TaskRequest();
+		req.setType(TaskType.GOLLM);
+		req.setScript("echo.py");
+		req.setInput(input);
+
+		final TaskFuture future1 = taskService.runTaskAsync(req);
+		final TaskFuture future2 = taskService.runTaskAsync(req);
+
+		taskService.cancelTask(req.getType(), future2.getId());
+		Assertions.assertEquals(TaskStatus.CANCELLED, future2.getFinal(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatus());
+		Assertions.assertEquals(TaskStatus.SUCCESS, future1.getFinal(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatus());
+	}
 }
@@ -3,12 +3,14 @@ package software.uncharted.terarium.hmiserver.utils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import software.uncharted.terarium.hmiserver.models.dataservice.Artifact;
 import software.uncharted.terarium.hmiserver.utils.AssetDependencyUtil.AssetDependencyMap;
 
 public class AssetDependencyUtilTests {
@@ -214,4 +216,85 @@ public class AssetDependencyUtilTests {
 		Assertions.assertEquals(3, swappedDependencies.getKeyIds().size());
 		Assertions.assertEquals(6, swappedDependencies.getValueIds().size());
 	}
+
+	@Test
+	public void testAssetGetAssetDependencyPaths() throws Exception {
+		final UUID a = UUID.randomUUID();
+		final UUID b = UUID.randomUUID();
+
+		final JsonNode node = objectMapper.readTree(
+			"""
+				{
+					"keys": {
+						"nested": [
+							{ "other": 1 },
+							{ "%s": "a" }
+						]
+					},
+					"array": [
+						"not-an-id",
+						[ 0, { "deep": ["%s"] } ]
+					]
+			}""".formatted(a, b)
+		);
+
+		final AssetDependencyMap dependencies = AssetDependencyUtil.getAssetDependencies(Set.of(a, b), node);
+
+		// a key is found at the path of the object that holds it, and a value at its own path
+		Assertions.assertEquals(1, dependencies.getKeyIds().size());
+		Assertions.assertEquals(a, dependencies.getKeyIds().get(0).getFirst());
+		Assertions.assertEquals(List.of("keys", "nested", "1"), dependencies.getKeyIds().get(0).getSecond());
+
+		Assertions.assertEquals(1, dependencies.getValueIds().size());
+		Assertions.assertEquals(b, dependencies.getValueIds().get(0).getFirst());
+		Assertions.assertEquals(List.of("array", "1", "1", "deep", "0"), dependencies.getValueIds().get(0).getSecond());
+	}
+
+	@Test
+	public void testAssetGetAssetDependenciesOnlyMatchesUuids() throws Exception {
+		final UUID a = UUID.randomUUID();
+
+		// strings of the same length that are not uuids, and a uuid in upper case
+		final String notHex = a.toString().replace(a.toString().charAt(0), 'g');
+		final String noHyphens = a.toString().replace('-', '0');
+		final List<String> values = List.of(notHex, noHyphens, "1-1-1-1-1", "", a.toString().toUpperCase());
+
+		final AssetDependencyMap dependencies = AssetDependencyUtil.getAssetDependencies(
+			Set.of(a),
+			Map.of("values", values)
+		);
+
+		Assertions.assertEquals(1, dependencies.getValueIds().size());
+		Assertions.assertEquals(List.of("values", "4"), dependencies.getValueIds().get(0).getSecond());
+		Assertions.assertNull(AssetDependencyUtil.uuidOrNull(notHex));
+		Assertions.assertNull(AssetDependencyUtil.uuidOrNull(noHyphens));
+		Assertions.assertEquals(a, AssetDependencyUtil.uuidOrNull(a.toString()));
+	}
+
+	@Test
+	public void testAssetSwapAssetIdsOfAnAsset() throws Exception {
+		final UUID a = UUID.randomUUID();
+		final UUID b = UUID.randomUUID();
+
+		final Artifact artifact = new Artifact();
+		artifact.setId(a);
+		artifact.setName("artifact");
+		artifact.setDescription(b.toString());
+		artifact.setFileNames(List.of("file.csv"));
+		artifact.setMetadata(objectMapper.valueToTree(Map.of(b.toString(), "metadata")));
+
+		final AssetDependencyMap dependencies = AssetDependencyUtil.getAssetDependencies(Set.of(a, b), artifact);
+		Assertions.assertEquals(Set.of(a, b), dependencies.getIds());
+		Assertions.assertEquals(List.of("metadata"), dependencies.getKeyIds().get(0).getSecond());
+
+		final UUID c = UUID.randomUUID();
+		final UUID d = UUID.randomUUID();
+		final Artifact swapped = AssetDependencyUtil.swapAssetDependencies(artifact, Map.of(a, c, b, d), dependencies);
+
+		Assertions.assertEquals(c, swapped.getId());
+		Assertions.assertEquals(d.toString(), swapped.getDescription());
+		Assertions.assertEquals(objectMapper.valueToTree(Map.of(d.toString(), "metadata")), swapped.getMetadata());
+		Assertions.assertEquals("artifact", swapped.getName());
+		Assertions.assertEquals(List.of("file.csv"), swapped.getFileNames());
+	}
 }
@@ -0,0 +1,367 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import com.authzed.api.v1.Core;
+import com.authzed.api.v1.PermissionService;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process SpiceDB for tests and benchmarks. It keeps relationships in memory and evaluates the permissions of
+ * {@link Schema#schema}, optionally taking a fixed time to answer each request.
+ *
+ * <p>Clients connect with {@link #channel()}, or with {@code InProcessChannelBuilder.forName(name)}, which is how
+ * {@link ReBACService} connects in the TEST launch mode.
+ */
+public class FakeSpiceDB extends PermissionsServiceGrpc.PermissionsServiceImplBase implements AutoCloseable {
+
+	private static final Pattern DEFINITION = Pattern.compile("definition (\\w+) \\{([^}]*)}");
+	private static final Pattern PERMISSION = Pattern.compile("permission (\\w+) = (.+)");
+
+	private record Tuple(
+		String resourceType,
+		String resourceId,
+		String relation,
+		String subjectType,
+		String subjectId
+	) {}
+
+	private final String name;
+
+	// the terms of each permission, by resource type then permission
+	private final Map<String, Map<String, List<String>>> permissions = new HashMap<>();
+	private final Set<Tuple> relationships = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong revision = new AtomicLong();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+	private volatile long latencyMillis;
+	private Server server;
+
+	public FakeSpiceDB() {
+		this("TestSpiceDB");
+	}
+
+	public FakeSpiceDB(final String name) {
+		this.name = name;
+
+		final Matcher definitions = DEFINITION.matcher(Schema.schema);
+		while (definitions.find()) {
+			final Map<String, List<String>> typePermissions = new HashMap<>();
+			final Matcher typeDefinitions = PERMISSION.matcher(definitions.group(2));
+			while (typeDefinitions.find()) {
+				final List<String> terms = new ArrayList<>();
+				for (final String term : typeDefinitions.group(2).split("\\+")) {
+					terms.add(term.trim());
+				}
+				typePermissions.put(typeDefinitions.group(1), terms);
+			}
+			permissions.put(definitions.group(1), typePermissions);
+		}
+	}
+
+	public FakeSpiceDB start() throws IOException {
+		server = InProcessServerBuilder.forName(name).addService(this).build().start();
+		return this;
+	}
+
+	/** A new channel to this server */
+	public ManagedChannel channel() {
+		return InProcessChannelBuilder.forName(name).build();
+	}
+
+	/** Delay the response to each request by a fixed time, as a remote SpiceDB would */
+	public FakeSpiceDB setLatencyMillis(final long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+		return this;
+	}
+
+	/** The number of requests received */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/** The most requests that were in flight at once */
+	public int getMaxInFlight() {
+		return maxInFlight.get();
+	}
+
+	/** Add a relationship directly, without a request */
+	public FakeSpiceDB relate(final SchemaObject who, final Schema.Relationship relationship, final SchemaObject what) {
+		relationships.add(
+			new Tuple(what.type.toString(), what.id, relationship.toString(), who.type.toString(), who.id)
+		);
+		return this;
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.shutdownNow();
+		}
+		scheduler.shutdownNow();
+	}
+
+	@Override
+	public void checkPermission(
+		final PermissionService.CheckPermissionRequest request,
+		final StreamObserver<PermissionService.CheckPermissionResponse> observer
+	) {
+		final boolean hasPermission = check(
+			request.getResource().getObjectType(),
+			request.getResource().getObjectId(),
+			request.getPermission(),
+			request.getSubject().getObject().getObjectType(),
+			request.getSubject().getObject().getObjectId()
+		);
+		respond(
+			observer,
+			List.of(
+				PermissionService.CheckPermissionResponse.newBuilder()
+					.setPermissionship(
+						hasPermission
+							? PermissionService.CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+							: PermissionService.CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION
+					)
+					.setCheckedAt(zedToken(revision.get()))
+					.build()
+			)
+		);
+	}
+
+	@Override
+	public void writeRelationships(
+		final PermissionService.WriteRelationshipsRequest request,
+		final StreamObserver<PermissionService.WriteRelationshipsResponse> observer
+	) {
+		for (final Core.RelationshipUpdate update : request.getUpdatesList()) {
+			final Tuple tuple = toTuple(update.getRelationship());
+			switch (update.getOperation()) {
+				case OPERATION_CREATE:
+					if (!relationships.add(tuple)) {
+						requests.incrementAndGet();
+						observer.onError(
+							Status.ALREADY_EXISTS.withDescription("could not CREATE relationship " + tuple).asRuntimeException()
+						);
+						return;
+					}
+					break;
+				case OPERATION_TOUCH:
+					relationships.add(tuple);
+					break;
+				case OPERATION_DELETE:
+					relationships.remove(tuple);
+					break;
+				default:
+					break;
+			}
+		}
+		respond(
+			observer,
+			List.of(
+				PermissionService.WriteRelationshipsResponse.newBuilder()
+					.setWrittenAt(zedToken(revision.incrementAndGet()))
+					.build()
+			)
+		);
+	}
+
+	@Override
+	public void deleteRelationships(
+		final PermissionService.DeleteRelationshipsRequest request,
+		final StreamObserver<PermissionService.DeleteRelationshipsResponse> observer
+	) {
+		relationships.removeIf(tuple -> matches(request.getRelationshipFilter(), tuple));
+		respond(
+			observer,
+			List.of(
+				PermissionService.DeleteRelationshipsResponse.newBuilder()
+					.setDeletedAt(zedToken(revision.incrementAndGet()))
+					.build()
+			)
+		);
+	}
+
+	@Override
+	public void readRelationships(
+		final PermissionService.ReadRelationshipsRequest request,
+		final StreamObserver<PermissionService.ReadRelationshipsResponse> observer
+	) {
+		final List<PermissionService.ReadRelationshipsResponse> responses = new ArrayList<>();
+		for (final Tuple tuple : relationships) {
+			if (matches(request.getRelationshipFilter(), tuple)) {
+				responses.add(
+					PermissionService.ReadRelationshipsResponse.newBuilder()
+						.setRelationship(toRelationship(tuple))
+						.setReadAt(zedToken(revision.get()))
+						.build()
+				);
+			}
+		}
+		respond(observer, responses);
+	}
+
+	@Override
+	public void lookupResources(
+		final PermissionService.LookupResourcesRequest request,
+		final StreamObserver<PermissionService.LookupResourcesResponse> observer
+	) {
+		final Set<String> resourceIds = new LinkedHashSet<>();
+		for (final Tuple tuple : relationships) {
+			if (tuple.resourceType().equals(request.getResourceObjectType())) {
+				resourceIds.add(tuple.resourceId());
+			}
+		}
+
+		final List<PermissionService.LookupResourcesResponse> responses = new ArrayList<>();
+		for (final String resourceId : resourceIds) {
+			if (
+				check(
+					request.getResourceObjectType(),
+					resourceId,
+					request.getPermission(),
+					request.getSubject().getObject().getObjectType(),
+					request.getSubject().getObject().getObjectId()
+				)
+			) {
+				responses.add(
+					PermissionService.LookupResourcesResponse.newBuilder()
+						.setResourceObjectId(resourceId)
+						.setPermissionship(PermissionService.LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION)
+						.setLookedUpAt(zedToken(revision.get()))
+						.build()
+				);
+			}
+		}
+		respond(observer, responses);
+	}
+
+	/** Whether the subject has the permission or relation on the resource, following the arrows of the schema */
+	private boolean check(
+		final String resourceType,
+		final String resourceId,
+		final String permission,
+		final String subjectType,
+		final String subjectId
+	) {
+		final List<String> terms = permissions.getOrDefault(resourceType, Map.of()).get(permission);
+		if (terms == null) {
+			return relationships.contains(new Tuple(resourceType, resourceId, permission, subjectType, subjectId));
+		}
+
+		for (final String term : terms) {
+			final int arrow = term.indexOf("->");
+			if (arrow < 0) {
+				if (relationships.contains(new Tuple(resourceType, resourceId, term, subjectType, subjectId))) {
+					return true;
+				}
+				continue;
+			}
+
+			final String relation = term.substring(0, arrow);
+			final String subjectPermission = term.substring(arrow + 2);
+			for (final Tuple tuple : relationships) {
+				if (
+					tuple.resourceType().equals(resourceType) &&
+					tuple.resourceId().equals(resourceId) &&
+					tuple.relation().equals(relation) &&
+					check(tuple.subjectType(), tuple.subjectId(), subjectPermission, subjectType, subjectId)
+				) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches(final PermissionService.RelationshipFilter filter, final Tuple tuple) {
+		if (!filter.getResourceType().isEmpty() && !filter.getResourceType().equals(tuple.resourceType())) {
+			return false;
+		}
+		if (!filter.getOptionalResourceId().isEmpty() && !filter.getOptionalResourceId().equals(tuple.resourceId())) {
+			return false;
+		}
+		if (!filter.getOptionalRelation().isEmpty() && !filter.getOptionalRelation().equals(tuple.relation())) {
+			return false;
+		}
+		if (filter.hasOptionalSubjectFilter()) {
+			final PermissionService.SubjectFilter subjectFilter = filter.getOptionalSubjectFilter();
+			if (!subjectFilter.getSubjectType().equals(tuple.subjectType())) {
+				return false;
+			}
+			return (
+				subjectFilter.getOptionalSubjectId().isEmpty() ||
+				subjectFilter.getOptionalSubjectId().equals(tuple.subjectId())
+			);
+		}
+		return true;
+	}
+
+	/** Send the responses of a request, after the latency */
+	private <R> void respond(final StreamObserver<R> observer, final List<R> responses) {
+		requests.incrementAndGet();
+		maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+		final Runnable send = () -> {
+			inFlight.decrementAndGet();
+			responses.forEach(observer::onNext);
+			observer.onCompleted();
+		};
+		if (latencyMillis > 0) {
+			scheduler.schedule(send, latencyMillis, TimeUnit.MILLISECONDS);
+		} else {
+			send.run();
+		}
+	}
+
+	private static Tuple toTuple(final Core.Relationship relationship) {
+		return new Tuple(
+			relationship.getResource().getObjectType(),
+			relationship.getResource().getObjectId(),
+			relationship.getRelation(),
+			relationship.getSubject().getObject().getObjectType(),
+			relationship.getSubject().getObject().getObjectId()
+		);
+	}
+
+	private static Core.Relationship toRelationship(final Tuple tuple) {
+		return Core.Relationship.newBuilder()
+			.setResource(
+				Core.ObjectReference.newBuilder().setObjectType(tuple.resourceType()).setObjectId(tuple.resourceId()).build()
+			)
+			.setRelation(tuple.relation())
+			.setSubject(
+				Core.SubjectReference.newBuilder()
+					.setObject(
+						Core.ObjectReference.newBuilder().setObjectType(tuple.subjectType()).setObjectId(tuple.subjectId()).build()
+					)
+					.build()
+			)
+			.build();
+	}
+
+	private static Core.ZedToken zedToken(final long revision) {
+		return Core.ZedToken.newBuilder().setToken(Long.toString(revision)).build();
+	}
+}
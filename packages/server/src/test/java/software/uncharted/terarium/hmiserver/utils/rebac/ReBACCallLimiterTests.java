@@ -0,0 +1,63 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ReBACCallLimiterTests {
+
+	private final ReBACCallLimiter limiter = new ReBACCallLimiter(2);
+
+	// the requests started by the limiter, completed by the tests
+	private final List<CompletableFuture<String>> started = new ArrayList<>();
+
+	private CompletableFuture<String> submit() {
+		return limiter.submit(() -> {
+			final CompletableFuture<String> request = new CompletableFuture<>();
+			started.add(request);
+			return request;
+		});
+	}
+
+	@Test
+	public void testItQueuesRequestsOverTheBound() {
+		final CompletableFuture<String> first = submit();
+		submit();
+		final CompletableFuture<String> third = submit();
+
+		Assertions.assertEquals(2, started.size());
+		Assertions.assertEquals(2, limiter.getInFlight());
+		Assertions.assertEquals(1, limiter.getQueued());
+
+		// completing a request starts the next
+		started.get(0).complete("first");
+		Assertions.assertEquals("first", first.join());
+		Assertions.assertEquals(3, started.size());
+		Assertions.assertEquals(0, limiter.getQueued());
+
+		started.get(2).complete("third");
+		Assertions.assertEquals("third", third.join());
+		Assertions.assertEquals(1, limiter.getInFlight());
+	}
+
+	@Test
+	public void testFailedRequestsMakeRoom() {
+		final CompletableFuture<String> first = submit();
+		final CompletableFuture<String> second = limiter.submit(() -> {
+			throw new IllegalStateException("channel shut down");
+		});
+		submit();
+		submit();
+
+		Assertions.assertThrows(CompletionException.class, second::join);
+		Assertions.assertEquals(2, started.size());
+
+		started.get(0).completeExceptionally(new RuntimeException("SpiceDB unavailable"));
+		Assertions.assertThrows(CompletionException.class, first::join);
+		Assertions.assertEquals(3, started.size());
+		Assertions.assertEquals(2, limiter.getInFlight());
+	}
+}
@@ -0,0 +1,157 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import com.authzed.api.v1.PermissionService;
+import com.authzed.api.v1.PermissionService.Consistency;
+import com.authzed.grpcutil.BearerToken;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.uncharted.terarium.hmiserver.utils.rebac.RelationsipAlreadyExistsException.RelationshipAlreadyExistsException;
+
+public class ReBACFunctionsTests {
+
+	private static final Consistency CONSISTENCY = Consistency.newBuilder().setFullyConsistent(true).build();
+
+	private static final SchemaObject USER = new SchemaObject(Schema.Type.USER, "user-id");
+	private static final SchemaObject OTHER_USER = new SchemaObject(Schema.Type.USER, "other-user-id");
+	private static final SchemaObject GROUP = new SchemaObject(Schema.Type.GROUP, "group-id");
+
+	private FakeSpiceDB spiceDB;
+	private ManagedChannel channel;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		spiceDB = new FakeSpiceDB("ReBACFunctionsTests-" + UUID.randomUUID()).start();
+		channel = spiceDB.channel();
+	}
+
+	@AfterEach
+	public void teardown() {
+		channel.shutdownNow();
+		spiceDB.close();
+	}
+
+	private ReBACFunctions functions(final int maxInFlight, final long deadlineMillis) {
+		return new ReBACFunctions(channel, new BearerToken("key"), new ReBACCallLimiter(maxInFlight), deadlineMillis);
+	}
+
+	private static SchemaObject project() {
+		return new SchemaObject(Schema.Type.PROJECT, UUID.randomUUID().toString());
+	}
+
+	@Test
+	public void testItChecksPermissionsThroughGroups() throws Exception {
+		final SchemaObject project = project();
+		spiceDB.relate(USER, Schema.Relationship.MEMBER, GROUP).relate(GROUP, Schema.Relationship.WRITER, project);
+
+		final ReBACFunctions functions = functions(8, 5000);
+		final CompletableFuture<Boolean> write = functions.checkPermissionAsync(
+			USER,
+			Schema.Permission.WRITE,
+			project,
+			CONSISTENCY
+		);
+		final CompletableFuture<Boolean> administrate = functions.checkPermissionAsync(
+			USER,
+			Schema.Permission.ADMINISTRATE,
+			project,
+			CONSISTENCY
+		);
+		final CompletableFuture<Boolean> otherUser = functions.checkPermissionAsync(
+			OTHER_USER,
+			Schema.Permission.READ,
+			project,
+			CONSISTENCY
+		);
+
+		Assertions.assertTrue(write.join());
+		Assertions.assertFalse(administrate.join());
+		Assertions.assertFalse(otherUser.join());
+		// the blocking calls agree
+		Assertions.assertTrue(functions.checkPermission(USER, Schema.Permission.READ, project, CONSISTENCY));
+	}
+
+	@Test
+	public void testItReadsRelationshipsAndLooksUpResources() throws Exception, RelationshipAlreadyExistsException {
+		final SchemaObject created = project();
+		final SchemaObject read = project();
+		final SchemaObject other = project();
+
+		final ReBACFunctions functions = functions(8, 5000);
+		functions.createRelationship(USER, Schema.Relationship.CREATOR, created);
+		functions.createRelationship(USER, Schema.Relationship.READER, read);
+		functions.createRelationship(OTHER_USER, Schema.Relationship.CREATOR, other);
+		Assertions.assertThrows(RelationshipAlreadyExistsException.class, () ->
+			functions.createRelationship(USER, Schema.Relationship.CREATOR, created)
+		);
+
+		Assertions.assertTrue(
+			functions.hasRelationshipAsync(USER, Schema.Relationship.CREATOR, created, CONSISTENCY).join()
+		);
+		Assertions.assertFalse(functions.hasRelationshipAsync(USER, Schema.Relationship.CREATOR, read, CONSISTENCY).join());
+		Assertions.assertEquals(
+			2,
+			functions
+				.getRelationshipAsync(
+					PermissionService.ReadRelationshipsRequest.newBuilder()
+						.setConsistency(CONSISTENCY)
+						.setRelationshipFilter(
+							PermissionService.RelationshipFilter.newBuilder().setResourceType("project")
+						)
+						.build()
+				)
+				.join()
+				.stream()
+				.filter(relationship -> relationship.getSubjectId().equals(USER.id))
+				.count()
+		);
+
+		final List<UUID> readable = functions
+			.lookupResourcesAsync(Schema.Type.PROJECT, Schema.Permission.READ, USER, CONSISTENCY)
+			.join();
+		Assertions.assertEquals(2, readable.size());
+		Assertions.assertTrue(readable.contains(UUID.fromString(created.id)));
+		Assertions.assertTrue(readable.contains(UUID.fromString(read.id)));
+	}
+
+	@Test
+	public void testItBoundsTheRequestsInFlight() {
+		spiceDB.setLatencyMillis(20);
+		final SchemaObject project = project();
+		spiceDB.relate(USER, Schema.Relationship.READER, project);
+
+		final ReBACFunctions functions = functions(4, 5000);
+		final List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			checks.add(functions.checkPermissionAsync(USER, Schema.Permission.READ, project, CONSISTENCY));
+		}
+
+		for (final CompletableFuture<Boolean> check : checks) {
+			Assertions.assertTrue(check.join());
+		}
+		Assertions.assertEquals(20, spiceDB.getRequests());
+		Assertions.assertEquals(4, spiceDB.getMaxInFlight());
+	}
+
+	@Test
+	public void testItFailsRequestsPastTheirDeadline() {
+		spiceDB.setLatencyMillis(1000);
+
+		final CompletionException e = Assertions.assertThrows(CompletionException.class, () ->
+			functions(4, 50).checkPermissionAsync(USER, Schema.Permission.READ, project(), CONSISTENCY).join()
+		);
+		Assertions.assertEquals(
+			Status.Code.DEADLINE_EXCEEDED,
+			((StatusRuntimeException) e.getCause()).getStatus().getCode()
+		);
+	}
+}
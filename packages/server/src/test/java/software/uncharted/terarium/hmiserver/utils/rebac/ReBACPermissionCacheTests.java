@@ -0,0 +1,308 @@
+package software.uncharted.terarium.hmiserver.utils.rebac;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBucket;
+import org.redisson.api.RKeys;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.Codec;
+import org.redisson.misc.CompletableFutureWrapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ReBACPermissionCacheTests {
+
+	private static final SchemaObject USER = new SchemaObject(Schema.Type.USER, "user-id");
+	private static final SchemaObject PROJECT = new SchemaObject(Schema.Type.PROJECT, "project-id");
+	private static final SchemaObject OTHER_PROJECT = new SchemaObject(Schema.Type.PROJECT, "other-project-id");
+	private static final SchemaObject GROUP = new SchemaObject(Schema.Type.GROUP, "group-id");
+
+	private static final String PROJECT_KEY = "rebac-permission-cache:project:project-id";
+	private static final String FIELD = "user:user-id:read";
+
+	// the hashes in redis by name, and the generation of all the decisions
+	private final Map<String, Map<String, String>> redis = new HashMap<>();
+	private final AtomicLong redisGeneration = new AtomicLong();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private RTopic topic;
+	private RBucket<String> zedTokenBucket;
+	private RKeys keys;
+	private MessageListener<String> invalidationListener;
+	private ReBACPermissionCache cache;
+
+	@BeforeEach
+	public void setup() {
+		cache = newCache();
+	}
+
+	/** Creates an instance of the cache, sharing redis with the others, and listens for its invalidations */
+	@SuppressWarnings("unchecked")
+	private ReBACPermissionCache newCache() {
+		final RedissonClient redissonClient = mock(RedissonClient.class);
+
+		// runs the scripts of the cache against the hashes
+		final RScript script = mock(RScript.class);
+		when(
+			script.evalAsync(
+				anyString(),
+				any(RScript.Mode.class),
+				anyString(),
+				any(RScript.ReturnType.class),
+				anyList(),
+				any(Object[].class)
+			)
+		).thenAnswer(inv ->
+			new CompletableFutureWrapper<>(eval(inv.getArgument(2), inv.getArgument(4), (Object[]) inv.getRawArguments()[5]))
+		);
+		when(redissonClient.getScript(any(Codec.class))).thenReturn(script);
+
+		keys = mock(RKeys.class);
+		when(keys.deleteByPatternAsync(anyString())).thenAnswer(inv -> {
+			redis.clear();
+			return new CompletableFutureWrapper<>(0L);
+		});
+		when(redissonClient.getKeys()).thenReturn(keys);
+
+		final RAtomicLong generation = mock(RAtomicLong.class);
+		when(generation.incrementAndGetAsync()).thenAnswer(inv ->
+			new CompletableFutureWrapper<>(redisGeneration.incrementAndGet())
+		);
+		when(redissonClient.getAtomicLong(anyString())).thenReturn(generation);
+
+		zedTokenBucket = mock(RBucket.class);
+		when(zedTokenBucket.get()).thenReturn("shared-token");
+		when(redissonClient.<String>getBucket(anyString(), any(Codec.class))).thenReturn(zedTokenBucket);
+
+		topic = mock(RTopic.class);
+		when(topic.addListener(eq(String.class), any(MessageListener.class))).thenAnswer(inv -> {
+			invalidationListener = inv.getArgument(1);
+			return 1;
+		});
+		when(redissonClient.getTopic(anyString(), any(Codec.class))).thenReturn(topic);
+
+		final ReBACPermissionCache cache = new ReBACPermissionCache(redissonClient, meterRegistry);
+		ReflectionTestUtils.setField(cache, "LOCAL_MAX_ENTRIES", 100L);
+		ReflectionTestUtils.setField(cache, "LOCAL_TTL_SECONDS", 60L);
+		ReflectionTestUtils.setField(cache, "TTL_MINUTES", 5L);
+		cache.init();
+		return cache;
+	}
+
+	private Object eval(final String script, final List<Object> keys, final Object[] args) {
+		final Map<String, String> hash = redis.computeIfAbsent((String) keys.get(0), k -> new HashMap<>());
+		final String version = hash.getOrDefault("version", "0");
+		final String generation = Long.toString(redisGeneration.get());
+		if (ReBACPermissionCache.READ_SCRIPT.equals(script)) {
+			return List.of(hash.getOrDefault((String) args[0], ""), version, generation);
+		}
+		if (ReBACPermissionCache.WRITE_SCRIPT.equals(script)) {
+			if (!version.equals(args[2]) || !generation.equals(args[3])) {
+				return 0L;
+			}
+			hash.put((String) args[0], (String) args[1]);
+			return 1L;
+		}
+		if (ReBACPermissionCache.INVALIDATE_SCRIPT.equals(script)) {
+			final long next = Long.parseLong(version) + 1;
+			hash.clear();
+			hash.put("version", Long.toString(next));
+			return next;
+		}
+		throw new IllegalArgumentException("Unknown script " + script);
+	}
+
+	private boolean get(final SchemaObject what, final boolean result) {
+		return cache
+			.getAsync(USER, Schema.Permission.READ, what, () -> {
+				loads.incrementAndGet();
+				return CompletableFuture.completedFuture(result);
+			})
+			.join();
+	}
+
+	private double count(final String result, final String tier) {
+		return meterRegistry
+			.counter("terarium.rebac.permission.cache", "permission", "read", "result", result, "tier", tier)
+			.count();
+	}
+
+	private void clearLocal() {
+		ReflectionTestUtils.invokeMethod(cache, "evictLocal", "*");
+	}
+
+	@Test
+	public void testItCachesDecisionsLocallyAndInRedis() {
+		Assertions.assertTrue(get(PROJECT, true));
+		Assertions.assertTrue(get(PROJECT, false));
+		Assertions.assertEquals(1, loads.get());
+		Assertions.assertEquals("true", redis.get(PROJECT_KEY).get(FIELD));
+
+		// another instance, or this one once its local tier is empty, reads it from redis
+		clearLocal();
+		Assertions.assertTrue(get(PROJECT, false));
+		Assertions.assertEquals(1, loads.get());
+
+		Assertions.assertEquals(1, count("miss", "none"));
+		Assertions.assertEquals(1, count("hit", "local"));
+		Assertions.assertEquals(1, count("hit", "redis"));
+	}
+
+	@Test
+	public void testItDoesNotCacheFailedChecks() {
+		Assertions.assertFalse(
+			cache
+				.getAsync(USER, Schema.Permission.READ, PROJECT, () ->
+					CompletableFuture.failedFuture(new RuntimeException("SpiceDB unavailable"))
+				)
+				.join()
+		);
+		Assertions.assertTrue(get(PROJECT, true));
+		Assertions.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testItInvalidatesTheResourceOfAWrite() {
+		get(PROJECT, false);
+		get(OTHER_PROJECT, false);
+
+		cache.invalidate(USER, PROJECT, "write-token");
+
+		Assertions.assertTrue(get(PROJECT, true));
+		Assertions.assertFalse(get(OTHER_PROJECT, true));
+		Assertions.assertEquals(3, loads.get());
+
+		// and tells the other instances, with the token of the write
+		Assertions.assertEquals("write-token", cache.getZedToken());
+		verify(zedTokenBucket).setAsync("write-token");
+		final ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+		verify(topic).publishAsync(message.capture());
+		Assertions.assertTrue(
+			((String) message.getValue()).endsWith("|rebac-permission-cache:project:project-id|user-id|write-token")
+		);
+	}
+
+	@Test
+	public void testGroupWritesInvalidateEverything() {
+		get(PROJECT, false);
+		get(OTHER_PROJECT, false);
+
+		cache.invalidate(USER, GROUP, "write-token");
+
+		get(PROJECT, true);
+		get(OTHER_PROJECT, true);
+		Assertions.assertEquals(4, loads.get());
+		verify(keys).deleteByPatternAsync("rebac-permission-cache:*");
+	}
+
+	@Test
+	public void testItAppliesTheInvalidationsOfOtherInstances() {
+		final List<String> invalidatedSubjects = new ArrayList<>();
+		cache.addInvalidationListener(invalidatedSubjects::add);
+		Assertions.assertEquals("shared-token", cache.getZedToken());
+
+		get(PROJECT, false);
+		// another instance already removed it from redis
+		redis.clear();
+		invalidationListener.onMessage(
+			"rebac-permission-invalidations",
+			"other-instance|rebac-permission-cache:project:project-id|user-id|other-token"
+		);
+
+		Assertions.assertTrue(get(PROJECT, true));
+		Assertions.assertEquals(2, loads.get());
+		Assertions.assertEquals("other-token", cache.getZedToken());
+		Assertions.assertEquals(List.of("user-id"), invalidatedSubjects);
+	}
+
+	@Test
+	public void testItIgnoresItsOwnInvalidations() {
+		cache.invalidate(USER, PROJECT, "write-token");
+		final ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+		verify(topic).publishAsync(message.capture());
+
+		get(PROJECT, false);
+		invalidationListener.onMessage("rebac-permission-invalidations", (String) message.getValue());
+
+		get(PROJECT, true);
+		Assertions.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testItDoesNotCacheDecisionsLoadedAcrossAWrite() {
+		// the write lands while the check is in flight, so its result may be from before it
+		Assertions.assertFalse(
+			cache
+				.getAsync(USER, Schema.Permission.READ, PROJECT, () -> {
+					cache.invalidate(USER, PROJECT, "write-token");
+					return CompletableFuture.completedFuture(false);
+				})
+				.join()
+		);
+		Assertions.assertTrue(get(PROJECT, true));
+		Assertions.assertEquals(1, loads.get());
+		verify(keys, never()).deleteByPatternAsync(anyString());
+	}
+
+	@Test
+	public void testItDoesNotPutBackADecisionLoadedBeforeAnotherInstanceWrote() {
+		final ReBACPermissionCache other = newCache();
+		final MessageListener<String> otherListener = invalidationListener;
+
+		// the other instance loads a decision, this one writes while it is in flight and the other instance finishes
+		// the load before it hears of the write
+		final CompletableFuture<Boolean> loading = new CompletableFuture<>();
+		final CompletableFuture<Boolean> loaded = other.getAsync(USER, Schema.Permission.READ, PROJECT, () -> loading);
+		cache.invalidate(USER, PROJECT, "write-token");
+		loading.complete(true);
+		Assertions.assertTrue(loaded.join());
+
+		Assertions.assertNull(redis.get(PROJECT_KEY).get(FIELD));
+		Assertions.assertFalse(get(PROJECT, false));
+		Assertions.assertEquals(1, loads.get());
+
+		// once it hears of the write, the other instance loads it again too
+		otherListener.onMessage("rebac-permission-invalidations", "instance|" + PROJECT_KEY + "|user-id|write-token");
+		Assertions.assertFalse(
+			other.getAsync(USER, Schema.Permission.READ, PROJECT, () -> CompletableFuture.completedFuture(true)).join()
+		);
+	}
+
+	@Test
+	public void testItDoesNotPutBackADecisionLoadedBeforeAnotherInstanceWroteToAGroup() {
+		final ReBACPermissionCache other = newCache();
+
+		final CompletableFuture<Boolean> loading = new CompletableFuture<>();
+		final CompletableFuture<Boolean> loaded = other.getAsync(USER, Schema.Permission.READ, PROJECT, () -> loading);
+		cache.invalidate(USER, GROUP, "write-token");
+		loading.complete(true);
+		Assertions.assertTrue(loaded.join());
+
+		Assertions.assertNull(redis.getOrDefault(PROJECT_KEY, Map.of()).get(FIELD));
+		Assertions.assertFalse(get(PROJECT, false));
+		Assertions.assertEquals(1, loads.get());
+	}
+}
@@ -0,0 +1,67 @@
+package software.uncharted.terarium.hmiserver.utils.rebac.askem;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.uncharted.terarium.hmiserver.utils.rebac.ReBACService;
+import software.uncharted.terarium.hmiserver.utils.rebac.Schema;
+
+public class RebacUserTests {
+
+	private ReBACService reBACService;
+	private RebacUser user;
+	private RebacProject project;
+
+	@BeforeEach
+	public void setup() {
+		ReBACService.ASKEM_ADMIN_GROUP_ID = "admin-group-id";
+		reBACService = mock(ReBACService.class);
+		when(reBACService.isCreatorAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+		when(reBACService.isMemberOfAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+		when(reBACService.canAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+		user = new RebacUser("user-id", reBACService);
+		project = new RebacProject(UUID.randomUUID(), reBACService);
+	}
+
+	@AfterEach
+	public void teardown() {
+		ReBACService.ASKEM_ADMIN_GROUP_ID = null;
+	}
+
+	@Test
+	public void testItStopsAtTheFirstPermissionGranted() throws Exception {
+		when(reBACService.isCreatorAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(true));
+		Assertions.assertEquals("creator", user.getPermissionFor(project));
+		verify(reBACService, never()).isMemberOfAsync(any(), any());
+		verify(reBACService, never()).canAsync(any(), any(), any());
+
+		when(reBACService.isCreatorAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+		when(reBACService.canAsync(any(), eq(Schema.Permission.READ), any())).thenReturn(
+			CompletableFuture.completedFuture(true)
+		);
+		Assertions.assertEquals("reader", user.getPermissionFor(project));
+		verify(reBACService, times(1)).isMemberOfAsync(any(), any());
+		verify(reBACService, times(1)).canAsync(any(), eq(Schema.Permission.WRITE), any());
+		verify(reBACService, never()).canAsync(any(), eq(Schema.Permission.ADMINISTRATE), any());
+	}
+
+	@Test
+	public void testAnAdminIsCheckedOnceAndCanWrite() throws Exception {
+		when(reBACService.isMemberOfAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(true));
+
+		Assertions.assertEquals("writer", user.getPermissionFor(project));
+		verify(reBACService, times(1)).isMemberOfAsync(any(), any());
+		verify(reBACService, never()).canAsync(any(), any(), any());
+	}
+}
@@ -24,6 +24,14 @@ public class TaskRequest implements Serializable {
 	protected String routingKey;
 	protected boolean useCache = true;
 
+	// When the payloads of the request are sent by reference, the input is read from
+	// the input url instead of being inlined, and outputs larger than the threshold
+	// are written to the output url and returned as the output reference.
+	private String inputUrl;
+	private String outputUrl;
+	private String outputRef;
+	private long payloadThresholdBytes;
+
 	public TaskResponse createResponse(final TaskStatus status, final String stdout, final String stderr) {
 		return new TaskResponse()
 			.setId(id)
@@ -15,11 +15,16 @@ public class TaskResponse implements Serializable {
 	private String script;
 	private TaskStatus status;
 	private byte[] output;
+	private String outputRef;
 	private Object additionalProperties;
 	private UUID projectId;
 	protected String userId;
+	// Only the start and end of long stdout and stderr are sent, these are the full
+	// sizes of them in bytes
 	private String stdout;
 	private String stderr;
+	private long stdoutBytes;
+	private long stderrBytes;
 	private String requestSHA256;
 	private String routingKey;
 	private boolean useCache = true;
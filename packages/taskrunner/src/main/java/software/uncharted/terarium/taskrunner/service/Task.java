@@ -2,27 +2,43 @@ package software.uncharted.terarium.taskrunner.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import software.uncharted.terarium.taskrunner.models.task.TaskRequest;
 import software.uncharted.terarium.taskrunner.models.task.TaskResponse;
 import software.uncharted.terarium.taskrunner.models.task.TaskStatus;
+import software.uncharted.terarium.taskrunner.service.worker.PythonWorkerPool;
+import software.uncharted.terarium.taskrunner.util.NamedPipes;
+import software.uncharted.terarium.taskrunner.util.OutputCapture;
+import software.uncharted.terarium.taskrunner.util.PayloadTransport;
 import software.uncharted.terarium.taskrunner.util.ScopedLock;
 import software.uncharted.terarium.taskrunner.util.TimeFormatter;
 
@@ -30,6 +46,17 @@ import software.uncharted.terarium.taskrunner.util.TimeFormatter;
 @Slf4j
 public class Task {
 
+	// Shared by every task for blocking pipe and process io, threads are reused
+	// between tasks rather than started for each read and write.
+	private static final AtomicInteger ioThreadCount = new AtomicInteger();
+	private static final ExecutorService ioExecutor = Executors.newCachedThreadPool(runnable -> {
+		final Thread thread = new Thread(runnable, "task-io-" + ioThreadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final ObjectMapper sharedMapper = new ObjectMapper();
+
 	private TaskRequest req;
 	private ObjectMapper mapper;
 	private ProcessBuilder processBuilder;
@@ -40,19 +67,57 @@ public class Task {
 	private String outputPipeName;
 	private TaskStatus status = TaskStatus.QUEUED;
 	private ScopedLock lock = new ScopedLock();
-	private StringBuilder stdout = new StringBuilder();
-	private StringBuilder stderr = new StringBuilder();
+	private OutputCapture stdout = new OutputCapture(OUTPUT_HEAD_BYTES, OUTPUT_TAIL_BYTES);
+	private OutputCapture stderr = new OutputCapture(OUTPUT_HEAD_BYTES, OUTPUT_TAIL_BYTES);
+	private PythonWorkerPool workerPool;
+	private String script;
+	private List<String> args;
+	private boolean pooled = false;
+	private long startedAt;
+	private boolean startupRecorded = false;
+	private Thread shutdownHook;
+
+	// Pipes with a read or write in progress, so that cleanup can release any
+	// that are stuck waiting for the task to open the other end
+	private final Set<String> pendingPipes = ConcurrentHashMap.newKeySet();
+
+	// Progress messages are queued by a reader on the progress pipe as they arrive
+	private static final byte[] PROGRESS_DONE = new byte[0];
+	private final BlockingQueue<byte[]> progressMessages = new LinkedBlockingQueue<>();
+	private CompletableFuture<Void> progressReader;
+	private volatile boolean progressClosed = false;
+	private boolean progressDone = false;
 
 	private final String ECHO_SCRIPT_PATH = getClass().getResource("/echo.py").getPath();
 
 	private int PROCESS_KILL_TIMEOUT_SECONDS = 10;
 
-	private int BYTES_PER_READ = 1024 * 1024;
+	private int PIPE_DRAIN_TIMEOUT_SECONDS = 5;
+
+	private int PROGRESS_POLL_MILLIS = 100;
+
+	private int PROGRESS_UNBLOCK_ATTEMPTS = 10;
+
+	// Initial read buffer sizes, buffers are doubled as needed
+	private int OUTPUT_BUFFER_BYTES = 64 * 1024;
+	private int PROGRESS_BUFFER_BYTES = 4 * 1024;
+
+	// Default amount of stdout and stderr kept in memory, from the start and end of the output
+	public static final int OUTPUT_HEAD_BYTES = 16 * 1024;
+	public static final int OUTPUT_TAIL_BYTES = 256 * 1024;
 
 	public Task(final TaskRequest req) throws IOException, InterruptedException {
-		mapper = new ObjectMapper();
+		this(req, null);
+	}
+
+	/**
+	 * @param workerPool Pool of pre-warmed workers to start the task on if there is one for its script, may be null
+	 */
+	public Task(final TaskRequest req, final PythonWorkerPool workerPool) throws IOException, InterruptedException {
+		mapper = sharedMapper;
 
 		this.req = req;
+		this.workerPool = workerPool;
 		inputPipeName = "/tmp/input-" + req.getId();
 		progressPipeName = "/tmp/progress-" + req.getId();
 		outputPipeName = "/tmp/output-" + req.getId();
@@ -70,7 +135,34 @@ public class Task {
 	}
 
 	public TaskResponse createResponse(final TaskStatus status) {
-		return req.createResponse(status, stdout.toString(), stderr.toString());
+		return req
+			.createResponse(status, stdout.toString(), stderr.toString())
+			.setStdoutBytes(stdout.size())
+			.setStderrBytes(stderr.size());
+	}
+
+	/**
+	 * Set how much of the stdout and stderr of the task is kept, must be called before the task is started.
+	 *
+	 * @param spillDir Directory to write the full stdout and stderr of the task to, or null to only keep them in memory
+	 */
+	public void configureOutputCapture(final int headBytes, final int tailBytes, final Path spillDir) {
+		stdout = new OutputCapture(
+			headBytes,
+			tailBytes,
+			spillDir != null ? spillDir.resolve(req.getId() + ".stdout.log") : null
+		);
+		stderr = new OutputCapture(
+			headBytes,
+			tailBytes,
+			spillDir != null ? spillDir.resolve(req.getId() + ".stderr.log") : null
+		);
+	}
+
+	private static List<String> concat(final List<String> a, final List<String> b) {
+		final List<String> result = new ArrayList<>(a);
+		result.addAll(b);
+		return result;
 	}
 
 	private String getExtension(final String input) {
@@ -82,55 +174,37 @@ public class Task {
 	}
 
 	private void setup() throws IOException, InterruptedException {
+		args = List.of(
+			"--id",
+			req.getId().toString(),
+			"--input_pipe",
+			inputPipeName,
+			"--output_pipe",
+			outputPipeName,
+			"--progress_pipe",
+			progressPipeName
+		);
+
 		if (req.getScript().equals("echo.py")) {
 			// raw python file, execute it through the runtime
 			final boolean fileExists = Files.exists(Paths.get(ECHO_SCRIPT_PATH));
 			if (!fileExists) {
 				throw new FileNotFoundException("Script file: " + ECHO_SCRIPT_PATH + " not found");
 			}
-			processBuilder = new ProcessBuilder(
-				"python3",
-				ECHO_SCRIPT_PATH,
-				"--id",
-				req.getId().toString(),
-				"--input_pipe",
-				inputPipeName,
-				"--output_pipe",
-				outputPipeName,
-				"--progress_pipe",
-				progressPipeName
-			);
+			script = ECHO_SCRIPT_PATH;
+			processBuilder = new ProcessBuilder(concat(List.of("python3", ECHO_SCRIPT_PATH), args));
 		} else if (getExtension(req.getScript()).equals("py")) {
 			// raw python file, execute it through the runtime
 			final boolean fileExists = Files.exists(Paths.get(req.getScript()));
 			if (!fileExists) {
 				throw new FileNotFoundException("Script file: " + req.getScript() + " not found");
 			}
-			processBuilder = new ProcessBuilder(
-				"python3",
-				req.getScript(),
-				"--id",
-				req.getId().toString(),
-				"--input_pipe",
-				inputPipeName,
-				"--output_pipe",
-				outputPipeName,
-				"--progress_pipe",
-				progressPipeName
-			);
+			script = req.getScript();
+			processBuilder = new ProcessBuilder(concat(List.of("python3", req.getScript()), args));
 		} else {
 			// executable command, execute it directly
-			processBuilder = new ProcessBuilder(
-				req.getScript(),
-				"--id",
-				req.getId().toString(),
-				"--input_pipe",
-				inputPipeName,
-				"--output_pipe",
-				outputPipeName,
-				"--progress_pipe",
-				progressPipeName
-			);
+			script = req.getScript();
+			processBuilder = new ProcessBuilder(concat(List.of(req.getScript()), args));
 		}
 
 		log.info(
@@ -142,43 +216,79 @@ public class Task {
 		);
 
 		// Create the named pipes
-		final Process inputPipe = new ProcessBuilder("mkfifo", inputPipeName).start();
-		int exitCode = inputPipe.waitFor();
-		if (exitCode != 0) {
-			throw new RuntimeException("Error creating input pipe");
-		}
+		NamedPipes.create(Paths.get(inputPipeName), Paths.get(outputPipeName), Paths.get(progressPipeName));
+	}
 
-		final Process outputPipe = new ProcessBuilder("mkfifo", outputPipeName).start();
-		exitCode = outputPipe.waitFor();
-		if (exitCode != 0) {
-			throw new RuntimeException("Error creating input pipe");
-		}
+	private <T> CompletableFuture<T> runOnPipe(final String pipeName, final PipeOperation<T> operation) {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		pendingPipes.add(pipeName);
+		ioExecutor.execute(() -> {
+			try {
+				future.complete(operation.run(Paths.get(pipeName)));
+			} catch (final Exception e) {
+				future.completeExceptionally(e);
+			} finally {
+				pendingPipes.remove(pipeName);
+			}
+		});
+		return future;
+	}
 
-		final Process progressPipe = new ProcessBuilder("mkfifo", progressPipeName).start();
-		exitCode = progressPipe.waitFor();
-		if (exitCode != 0) {
-			throw new RuntimeException("Error creating input pipe");
-		}
+	@FunctionalInterface
+	private interface PipeOperation<T> {
+		T run(Path pipe) throws Exception;
 	}
 
 	public void writeInputWithTimeout(final byte[] bytes, final int timeoutMinutes)
 		throws IOException, InterruptedException, TimeoutException {
 		log.info("Dispatching write thread for input pipe: {} for task: {}", inputPipeName, req.getId());
 
-		final CompletableFuture<Void> future = new CompletableFuture<>();
-		new Thread(() -> {
-			try {
-				// Write to the named pipe in a separate thread
+		final CompletableFuture<Void> future = runOnPipe(inputPipeName, pipe -> {
+			// Write to the named pipe in a separate thread
+			log.info("Opening input pipe: {} for task: {}", inputPipeName, req.getId());
+			NamedPipes.write(pipe, bytes);
+			log.info("Wrote {} bytes to input pipe: {} for task: {}", bytes.length, inputPipeName, req.getId());
+			return null;
+		});
+
+		Object result;
+		try {
+			result = CompletableFuture.anyOf(future, processFuture).get(timeoutMinutes, TimeUnit.MINUTES);
+		} catch (ExecutionException | InterruptedException e) {
+			throw new RuntimeException("Error while writing to pipe", e);
+		} catch (final TimeoutException e) {
+			future.cancel(true);
+			throw new TimeoutException("Writing to pipe took too long for task " + req.getId());
+		}
+
+		if (result == null) {
+			// successful write
+			recordStartup();
+			return;
+		}
+		if (result instanceof Integer) {
+			// process has exited early
+			if (getStatus() == TaskStatus.CANCELLED) {
+				throw new InterruptedException("Process for task " + req.getId() + " has been cancelled");
+			}
+			throw new InterruptedException("Process for task " + req.getId() + " exited early with code " + result);
+		}
+		throw new RuntimeException("Unexpected result type: " + result.getClass());
+	}
+
+	public void writeInputFromUrlWithTimeout(final String url, final int timeoutMinutes)
+		throws IOException, InterruptedException, TimeoutException {
+		log.info("Dispatching write thread from input url to input pipe: {} for task: {}", inputPipeName, req.getId());
+
+		final CompletableFuture<Void> future = runOnPipe(inputPipeName, pipe -> {
+			// Stream the payload straight into the named pipe in a separate thread
+			try (InputStream is = PayloadTransport.openRead(url)) {
 				log.info("Opening input pipe: {} for task: {}", inputPipeName, req.getId());
-				try (FileOutputStream fos = new FileOutputStream(inputPipeName)) {
-					log.info("Writing to input pipe: {} for task: {}", inputPipeName, req.getId());
-					fos.write(bytes);
-				}
-				future.complete(null);
-			} catch (final IOException e) {
-				future.completeExceptionally(e);
+				NamedPipes.write(pipe, is);
+				log.info("Wrote input url to input pipe: {} for task: {}", inputPipeName, req.getId());
 			}
-		}).start();
+			return null;
+		});
 
 		Object result;
 		try {
@@ -192,6 +302,7 @@ public class Task {
 
 		if (result == null) {
 			// successful write
+			recordStartup();
 			return;
 		}
 		if (result instanceof Integer) {
@@ -208,23 +319,12 @@ public class Task {
 		throws IOException, InterruptedException, ExecutionException, TimeoutException {
 		log.info("Dispatching read thread for output pipe: {} for task: {}", outputPipeName, req.getId());
 
-		final CompletableFuture<byte[]> future = new CompletableFuture<>();
-		new Thread(() -> {
+		final CompletableFuture<byte[]> future = runOnPipe(outputPipeName, pipe -> {
 			log.info("Opening output pipe: {} for task: {}", outputPipeName, req.getId());
-			try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(outputPipeName))) {
-				log.info("Reading from output pipe: {} for task: {}", outputPipeName, req.getId());
-				final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-				final byte[] buffer = new byte[BYTES_PER_READ]; // buffer size
-				int bytesRead;
-				while ((bytesRead = bis.read(buffer)) != -1) {
-					log.info("Read {} bytes from output pipe: {} for task: {}", bytesRead, outputPipeName, req.getId());
-					bos.write(buffer, 0, bytesRead);
-				}
-				future.complete(bos.toByteArray());
-			} catch (final IOException e) {
-				future.completeExceptionally(e);
-			}
-		}).start();
+			final byte[] bytes = NamedPipes.readAll(pipe, OUTPUT_BUFFER_BYTES);
+			log.info("Read {} bytes from output pipe: {} for task: {}", bytes.length, outputPipeName, req.getId());
+			return bytes;
+		});
 
 		Object result;
 		try {
@@ -233,6 +333,7 @@ public class Task {
 			future.cancel(true);
 			throw new TimeoutException("Reading from pipe took too long for task " + req.getId());
 		}
+		result = awaitPipeAfterExit(future, result);
 
 		if (result == null) {
 			throw new RuntimeException("Unexpected null result for task " + req.getId());
@@ -253,27 +354,50 @@ public class Task {
 		throw new RuntimeException("Unexpected result type: " + result.getClass());
 	}
 
-	public byte[] readProgressWithTimeout(final int timeoutMinutes)
+	/**
+	 * Reads the output of the task, outputs larger than the threshold are spilled to a temporary file and written to
+	 * the output url rather than being held in memory.
+	 *
+	 * @return The output if it was no larger than the threshold, or empty if it was written to the output url
+	 */
+	public Optional<byte[]> readOutputToUrlWithTimeout(final String url, final long thresholdBytes, final int timeoutMinutes)
 		throws IOException, InterruptedException, ExecutionException, TimeoutException {
-		log.info("Dispatching read thread for progress pipe: {} for task: {}", progressPipeName, req.getId());
+		log.info("Dispatching read thread for output pipe: {} to output url for task: {}", outputPipeName, req.getId());
 
-		final CompletableFuture<byte[]> future = new CompletableFuture<>();
-		new Thread(() -> {
-			log.info("Opening progress pipe: {} for task: {}", progressPipeName, req.getId());
-			try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(progressPipeName))) {
-				log.info("Reading from progress pipe: {} for task: {}", progressPipeName, req.getId());
-				final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-				final byte[] buffer = new byte[BYTES_PER_READ]; // buffer size
-				int bytesRead;
-				while ((bytesRead = bis.read(buffer)) != -1) {
-					log.info("Read {} bytes from progress pipe: {} for task: {}", bytesRead, progressPipeName, req.getId());
-					bos.write(buffer, 0, bytesRead);
+		final CompletableFuture<Optional<byte[]>> future = runOnPipe(outputPipeName, pipe -> {
+			log.info("Opening output pipe: {} for task: {}", outputPipeName, req.getId());
+			Path spill = null;
+			try (FileChannel channel = FileChannel.open(pipe, StandardOpenOption.READ)) {
+				log.info("Reading from output pipe: {} for task: {}", outputPipeName, req.getId());
+				final ByteBuffer head = NamedPipes.readUpTo(channel, OUTPUT_BUFFER_BYTES, thresholdBytes);
+				if (head.remaining() <= thresholdBytes) {
+					final byte[] bytes = new byte[head.remaining()];
+					head.get(bytes);
+					return Optional.of(bytes);
+				}
+
+				// too large to send inline, spill the rest of the output to disk
+				spill = Files.createTempFile("output-" + req.getId(), ".bin");
+				try (FileChannel out = FileChannel.open(spill, StandardOpenOption.WRITE)) {
+					while (head.hasRemaining()) {
+						out.write(head);
+					}
+					Channels.newInputStream(channel).transferTo(Channels.newOutputStream(out));
+				}
+
+				log.info("Writing {} bytes of output to output url for task: {}", Files.size(spill), req.getId());
+				PayloadTransport.write(url, spill);
+				return Optional.empty();
+			} finally {
+				if (spill != null) {
+					try {
+						Files.deleteIfExists(spill);
+					} catch (final IOException e) {
+						log.warn("Exception occurred while cleaning up the spilled output:" + e);
+					}
 				}
-				future.complete(bos.toByteArray());
-			} catch (final IOException e) {
-				future.completeExceptionally(e);
 			}
-		}).start();
+		});
 
 		Object result;
 		try {
@@ -282,23 +406,15 @@ public class Task {
 			future.cancel(true);
 			throw new TimeoutException("Reading from pipe took too long for task " + req.getId());
 		}
+		result = awaitPipeAfterExit(future, result);
 
 		if (result == null) {
 			throw new RuntimeException("Unexpected null result for task " + req.getId());
 		}
 
-		if (result instanceof byte[]) {
+		if (result instanceof Optional) {
 			// we got our response
-			try {
-				final JsonNode progress = mapper.readTree((byte[]) result);
-				if (progress.has("done")) {
-					// finished reading progress
-					return null;
-				}
-			} catch (final Exception e) {
-				// do nothing
-			}
-			return (byte[]) result;
+			return future.get();
 		}
 		if (result instanceof Integer) {
 			// process has exited early
@@ -311,7 +427,189 @@ public class Task {
 		throw new RuntimeException("Unexpected result type: " + result.getClass());
 	}
 
+	/**
+	 * Reads the next progress message of the task. Messages are separated by newlines and are read as they are
+	 * written, a message that is written without a newline ends when the task closes the pipe.
+	 *
+	 * @return The next progress message, or null once the task has finished writing progress
+	 */
+	public byte[] readProgressWithTimeout(final int timeoutMinutes)
+		throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		return nextProgress(timeoutMinutes, false);
+	}
+
+	/**
+	 * Reads the most recent progress message of the task, skipping over any that have been superseded while the
+	 * caller was busy.
+	 *
+	 * @return The latest progress message, or null once the task has finished writing progress
+	 */
+	public byte[] readLatestProgressWithTimeout(final int timeoutMinutes)
+		throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		return nextProgress(timeoutMinutes, true);
+	}
+
+	private byte[] nextProgress(final int timeoutMinutes, final boolean latest)
+		throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		if (progressDone) {
+			return null;
+		}
+		if (progressReader == null) {
+			log.info("Dispatching read thread for progress pipe: {} for task: {}", progressPipeName, req.getId());
+			progressReader = runOnPipe(progressPipeName, pipe -> {
+				readProgressMessages(pipe);
+				return null;
+			});
+		}
+
+		byte[] message = pollProgress(timeoutMinutes);
+		while (latest && message != PROGRESS_DONE) {
+			final byte[] next = progressMessages.peek();
+			if (next == null || next == PROGRESS_DONE) {
+				break;
+			}
+			message = progressMessages.poll();
+		}
+
+		if (message == PROGRESS_DONE) {
+			// finished reading progress
+			progressDone = true;
+			return null;
+		}
+		return message;
+	}
+
+	private byte[] pollProgress(final int timeoutMinutes)
+		throws InterruptedException, ExecutionException, TimeoutException {
+		final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes);
+		while (System.currentTimeMillis() < deadline) {
+			final byte[] message = progressMessages.poll(PROGRESS_POLL_MILLIS, TimeUnit.MILLISECONDS);
+			if (message != null) {
+				return message;
+			}
+			if (progressReader.isCompletedExceptionally()) {
+				// rethrows the failure of the reader
+				progressReader.get();
+			}
+			if (processFuture.isDone()) {
+				final Integer exitCode = processFuture.get();
+				if (exitCode == 0) {
+					// the last messages may still be on their way
+					final byte[] last = progressMessages.poll(PIPE_DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+					if (last != null) {
+						return last;
+					}
+				}
+				// process has exited early
+				if (getStatus() == TaskStatus.CANCELLED) {
+					throw new InterruptedException("Process for task " + req.getId() + " has been cancelled");
+				}
+				throw new InterruptedException("Process for task " + req.getId() + " exited early with code " + exitCode);
+			}
+		}
+		throw new TimeoutException("Reading from pipe took too long for task " + req.getId());
+	}
+
+	private void readProgressMessages(final Path pipe) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(PROGRESS_BUFFER_BYTES);
+		final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+		int count = 0;
+
+		// scripts may open the pipe once for all of their progress or once per
+		// message, so keep reopening it until the task is done
+		while (!progressClosed) {
+			log.info("Opening progress pipe: {} for task: {}", progressPipeName, req.getId());
+			try (FileChannel channel = FileChannel.open(pipe, StandardOpenOption.READ)) {
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					final byte[] bytes = buffer.array();
+					int start = buffer.position();
+					for (int i = start; i < buffer.limit(); i++) {
+						if (bytes[i] == '\n') {
+							partial.write(bytes, start, i - start);
+							count++;
+							if (addProgress(partial)) {
+								logProgressCount(count);
+								return;
+							}
+							start = i + 1;
+						}
+					}
+					partial.write(bytes, start, buffer.limit() - start);
+					buffer.clear();
+				}
+			}
+
+			// the pipe was closed, anything left over is a whole message
+			if (partial.size() > 0) {
+				count++;
+				if (addProgress(partial)) {
+					logProgressCount(count);
+					return;
+				}
+			}
+		}
+	}
+
+	private void logProgressCount(final int count) {
+		log.info("Read {} progress messages from progress pipe: {} for task: {}", count, progressPipeName, req.getId());
+	}
+
+	private boolean addProgress(final ByteArrayOutputStream partial) {
+		final byte[] message = partial.toByteArray();
+		partial.reset();
+		if (message.length == 0) {
+			return false;
+		}
+		try {
+			final JsonNode progress = mapper.readTree(message);
+			if (progress != null && progress.has("done")) {
+				progressMessages.add(PROGRESS_DONE);
+				return true;
+			}
+		} catch (final Exception e) {
+			// not json, pass it along as is
+		}
+		progressMessages.add(message);
+		return false;
+	}
+
+	private Object awaitPipeAfterExit(final CompletableFuture<?> future, final Object result) {
+		// a process that exited successfully has already closed its end of the pipe,
+		// so give the read a moment to finish rather than racing the exit
+		if (result instanceof Integer && (Integer) result == 0) {
+			try {
+				return future.get(PIPE_DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (final Exception e) {
+				return result;
+			}
+		}
+		return result;
+	}
+
+	private void recordStartup() {
+		// the task has opened its input pipe, so it has finished starting up
+		if (workerPool != null && !startupRecorded) {
+			startupRecorded = true;
+			workerPool.recordStartup(pooled, System.currentTimeMillis() - startedAt);
+		}
+	}
+
 	public void cleanup() {
+		progressClosed = true;
+		for (final String pipeName : pendingPipes) {
+			// don't leave a thread waiting on a pipe that is about to be removed
+			NamedPipes.unblock(Paths.get(pipeName));
+		}
+		for (int i = 0; i < PROGRESS_UNBLOCK_ATTEMPTS && progressReader != null && !progressReader.isDone(); i++) {
+			// the progress reader may have been between reopening the pipe
+			try {
+				progressReader.get(10, TimeUnit.MILLISECONDS);
+			} catch (final Exception e) {
+				NamedPipes.unblock(Paths.get(progressPipeName));
+			}
+		}
+
 		try {
 			Files.deleteIfExists(Paths.get(inputPipeName));
 		} catch (final Exception e) {
@@ -351,26 +649,31 @@ public class Task {
 			}
 
 			log.info("Starting task {} executing {}", req.getId(), req.getScript());
-			process = processBuilder.start();
+			final Optional<Process> pooledProcess = workerPool != null
+				? workerPool.start(script, req.getId(), args)
+				: Optional.empty();
+			pooled = pooledProcess.isPresent();
+			process = pooled ? pooledProcess.get() : processBuilder.start();
+			startedAt = System.currentTimeMillis();
 
 			// flag as running if the process starts
 			status = TaskStatus.RUNNING;
 
 			// Add a shutdown hook to kill the process if the JVM exits
-			Runtime.getRuntime()
-				.addShutdownHook(
-					new Thread(() -> {
-						process.destroy();
-					})
-				);
+			final Process started = process;
+			shutdownHook = new Thread(() -> {
+				started.destroy();
+			});
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
 
 			// Create a future to signal when the process has exited
 			processFuture = new CompletableFuture<>();
-			new Thread(() -> {
+			ioExecutor.execute(() -> {
 				try {
 					log.info("Begin waiting for process to exit for task {}", req.getId());
 					final int exitCode = process.waitFor();
 					log.info("Process exited with code {} for task {}", exitCode, req.getId());
+					removeShutdownHook();
 					lock.lock(() -> {
 						if (exitCode != 0) {
 							if (status == TaskStatus.CANCELLING) {
@@ -391,34 +694,38 @@ public class Task {
 					});
 					processFuture.completeExceptionally(e);
 				}
-			}).start();
+			});
 
 			final InputStream inputStream = process.getInputStream();
 			final InputStream errorStream = process.getErrorStream();
 
-			new Thread(() -> {
+			ioExecutor.execute(() -> {
 				try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
 					String line;
 					while ((line = reader.readLine()) != null) {
 						log.info("[{}] stdout: {}", req.getId(), line);
-						stdout.append(line).append("\n");
+						stdout.appendLine(line);
 					}
 				} catch (final IOException e) {
 					log.warn("Error occured while logging stdout for task {}: {}", req.getId(), getStatus());
+				} finally {
+					stdout.close();
 				}
-			}).start();
+			});
 
-			new Thread(() -> {
+			ioExecutor.execute(() -> {
 				try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream))) {
 					String line;
 					while ((line = reader.readLine()) != null) {
 						log.warn("[{}] stderr: {}", req.getId(), line);
-						stderr.append(line).append("\n");
+						stderr.appendLine(line);
 					}
 				} catch (final IOException e) {
 					log.warn("Error occured while logging stderr for task {}: {}", req.getId(), getStatus());
+				} finally {
+					stderr.close();
 				}
-			}).start();
+			});
 		} catch (final Exception e) {
 			if (status != TaskStatus.CANCELLED) {
 				status = TaskStatus.FAILED;
@@ -429,6 +736,14 @@ public class Task {
 		}
 	}
 
+	private void removeShutdownHook() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (final IllegalStateException e) {
+			// the JVM is already shutting down
+		}
+	}
+
 	public void waitFor(final int timeoutMinutes) throws InterruptedException, TimeoutException, ExecutionException {
 		final boolean hasExited = process.waitFor((long) timeoutMinutes, TimeUnit.MINUTES);
 		if (hasExited) {
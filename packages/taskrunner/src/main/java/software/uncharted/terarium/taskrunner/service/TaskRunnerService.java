@@ -6,23 +6,35 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.Channel;
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.ExchangeTypes;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.uncharted.terarium.taskrunner.configuration.Config;
 import software.uncharted.terarium.taskrunner.models.task.TaskRequest;
 import software.uncharted.terarium.taskrunner.models.task.TaskResponse;
 import software.uncharted.terarium.taskrunner.models.task.TaskStatus;
+import software.uncharted.terarium.taskrunner.service.worker.PythonWorkerPool;
 
 @Service
 @Slf4j
@@ -33,6 +45,7 @@ public class TaskRunnerService {
 	private final RabbitTemplate rabbitTemplate;
 	private final RabbitAdmin rabbitAdmin;
 	private final Config config;
+	private final PythonWorkerPool workerPool;
 
 	@Value("${terarium.taskrunner.request-queue}-${terarium.taskrunner.request-type}")
 	public String TASK_RUNNER_REQUEST_QUEUE;
@@ -43,6 +56,29 @@ public class TaskRunnerService {
 	@Value("${terarium.taskrunner.cancellation-exchange}")
 	public String TASK_RUNNER_CANCELLATION_EXCHANGE;
 
+	// How long to remember a cancellation for a task that hasn't been dispatched to this instance
+	@Value("${terarium.taskrunner.cancelled-task-ttl-minutes:60}")
+	private long CANCELLED_TASK_TTL_MINUTES;
+
+	// Tasks running on this instance, and cancellations for tasks that haven't started on it
+	private final Map<UUID, Task> runningTasks = new ConcurrentHashMap<>();
+	private final Map<UUID, Long> cancelledTasks = new ConcurrentHashMap<>();
+	private final ExecutorService cancellationExecutor = Executors.newCachedThreadPool();
+
+	@Value("${terarium.taskrunner.progress-interval-millis:250}")
+	private long PROGRESS_INTERVAL_MILLIS;
+
+	// How much of the start and end of the stdout and stderr of each task to keep
+	// in memory and send back, and optionally where to write all of it
+	@Value("${terarium.taskrunner.output-capture.head-bytes:16384}")
+	private int OUTPUT_HEAD_BYTES;
+
+	@Value("${terarium.taskrunner.output-capture.tail-bytes:262144}")
+	private int OUTPUT_TAIL_BYTES;
+
+	@Value("${terarium.taskrunner.output-capture.spill-dir:}")
+	private String OUTPUT_SPILL_DIR;
+
 	public void declareAndBindTransientQueueWithRoutingKey(
 		final String exchangeName,
 		final String queueName,
@@ -96,27 +132,32 @@ public class TaskRunnerService {
 
 	private void dispatchSingleInputSingleOutputTask(final TaskRequest req) throws IOException, InterruptedException {
 		Task task;
-		DirectMessageListenerContainer cancellationConsumer;
 
 		try {
-			// ensure that the cancellation queue exists
-			declareCancellationQueue(req);
+			// create the task
+			task = new Task(req, workerPool);
+			task.configureOutputCapture(
+				OUTPUT_HEAD_BYTES,
+				OUTPUT_TAIL_BYTES,
+				OUTPUT_SPILL_DIR.isEmpty() ? null : Paths.get(OUTPUT_SPILL_DIR)
+			);
+
+			// register the task before checking for a cancellation, so that a
+			// cancellation received in between still finds it
+			runningTasks.put(req.getId(), task);
 
 			// lets see if the task has already been cancelled
-			final boolean wasCancelled = checkForCancellation(req);
-			if (wasCancelled) {
+			if (cancelledTasks.remove(req.getId()) != null) {
+				log.info("Request for task {} has already been cancelled", req.getId());
+				runningTasks.remove(req.getId());
+				task.cleanup();
+
 				// send cancellation response and return
 				final TaskResponse resp = req.createResponse(TaskStatus.CANCELLED, "", "");
 				final String cancelJson = mapper.writeValueAsString(resp);
 				rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, resp.getRoutingKey(), cancelJson);
 				return;
 			}
-
-			// create the task
-			task = new Task(req);
-
-			// create the cancellation consumer
-			cancellationConsumer = createCancellationQueueConsumer(task);
 		} catch (final Exception e) {
 			log.error("Unable to setup task", e);
 
@@ -130,9 +171,6 @@ public class TaskRunnerService {
 		}
 
 		try {
-			// start listening for cancellation requests
-			cancellationConsumer.start();
-
 			// start the task
 			task.start();
 
@@ -143,30 +181,51 @@ public class TaskRunnerService {
 			rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, runningResp.getRoutingKey(), runningJson);
 
 			// write the input to the task
-			task.writeInputWithTimeout(req.getInput(), req.getTimeoutMinutes());
+			if (req.getInputUrl() != null) {
+				task.writeInputFromUrlWithTimeout(req.getInputUrl(), req.getTimeoutMinutes());
+			} else {
+				task.writeInputWithTimeout(req.getInput(), req.getTimeoutMinutes());
+			}
 
+			long lastProgressAt = 0;
 			while (true) {
+				// send progress at most once per interval, anything written in between
+				// is superseded by the latest message
+				final long wait = lastProgressAt + PROGRESS_INTERVAL_MILLIS - System.currentTimeMillis();
+				if (wait > 0) {
+					Thread.sleep(wait);
+				}
+
 				// block and wait for progress from the task
-				final byte[] output = task.readProgressWithTimeout(req.getTimeoutMinutes());
+				final byte[] output = task.readLatestProgressWithTimeout(req.getTimeoutMinutes());
 				if (output == null) {
 					// no more progress
 					break;
 				}
 
-				final TaskResponse progressResp = task.createResponse(TaskStatus.RUNNING);
+				// progress responses only carry the progress, stdout and stderr are sent with the final response
+				final TaskResponse progressResp = req.createResponse(TaskStatus.RUNNING, "", "");
 				progressResp.setOutput(output);
 				final String progressJson = mapper.writeValueAsString(progressResp);
 				rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, progressResp.getRoutingKey(), progressJson);
+				lastProgressAt = System.currentTimeMillis();
 			}
 
-			// block and wait for output from the task
-			final byte[] output = task.readOutputWithTimeout(req.getTimeoutMinutes());
+			// block and wait for output from the task, large outputs are written to the
+			// output url and only their reference is sent back
+			final Optional<byte[]> output = req.getOutputUrl() != null
+				? task.readOutputToUrlWithTimeout(req.getOutputUrl(), req.getPayloadThresholdBytes(), req.getTimeoutMinutes())
+				: Optional.of(task.readOutputWithTimeout(req.getTimeoutMinutes()));
 
 			// wait for the process to finish
 			task.waitFor(req.getTimeoutMinutes());
 
 			final TaskResponse successResp = task.createResponse(TaskStatus.SUCCESS);
-			successResp.setOutput(output);
+			if (output.isPresent()) {
+				successResp.setOutput(output.get());
+			} else {
+				successResp.setOutputRef(req.getOutputRef());
+			}
 			final String successJson = mapper.writeValueAsString(successResp);
 			rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, successResp.getRoutingKey(), successJson);
 		} catch (final Exception e) {
@@ -186,54 +245,74 @@ public class TaskRunnerService {
 			final String failedJson = mapper.writeValueAsString(failedResp);
 			rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, failedResp.getRoutingKey(), failedJson);
 		} finally {
-			cancellationConsumer.stop();
+			runningTasks.remove(task.getId());
+			cancelledTasks.remove(task.getId());
 			task.cleanup();
 		}
 	}
 
-	private void declareCancellationQueue(final TaskRequest req) {
-		final String queueName = req.getId().toString();
-		final String routingKey = req.getId().toString();
+	// Cancellations are broadcast to every taskrunner, each one cancels the task if
+	// it is running it and otherwise remembers the cancellation in case the request
+	// is dispatched to it later.
+	@RabbitListener(
+		bindings = @QueueBinding(
+			value = @org.springframework.amqp.rabbit.annotation.Queue(autoDelete = "true", exclusive = "true"),
+			exchange = @Exchange(
+				value = "${terarium.taskrunner.cancellation-exchange}",
+				durable = "${terarium.durable-queues:false}",
+				autoDelete = "false",
+				type = ExchangeTypes.FANOUT
+			)
+		),
+		concurrency = "1"
+	)
+	void onTaskCancellation(final Message message) {
+		// the id of the task is the body of the message, or the routing key if it is empty
+		String id = new String(message.getBody(), StandardCharsets.UTF_8).trim();
+		if (id.isEmpty()) {
+			id = message.getMessageProperties().getReceivedRoutingKey();
+		}
 
-		declareAndBindTransientQueueWithRoutingKey(TASK_RUNNER_CANCELLATION_EXCHANGE, queueName, routingKey);
-	}
+		final UUID taskId;
+		try {
+			taskId = UUID.fromString(id);
+		} catch (final IllegalArgumentException e) {
+			log.error("Received cancellation for invalid task id: {}", id);
+			return;
+		}
 
-	private boolean checkForCancellation(final TaskRequest req) {
-		final String queueName = req.getId().toString();
+		expireCancelledTasks();
+		cancelledTasks.put(taskId, System.currentTimeMillis());
 
-		final Object message = rabbitTemplate.receiveAndConvert(queueName);
-		if (message != null) {
-			log.info("Request for task {} has already been cancelled", req.getId());
-			return true;
+		final Task task = runningTasks.get(taskId);
+		if (task == null) {
+			return;
 		}
-		return false;
-	}
-
-	private DirectMessageListenerContainer createCancellationQueueConsumer(final Task task) {
-		final String queueName = task.getId().toString();
 
-		final DirectMessageListenerContainer container = new DirectMessageListenerContainer(
-			rabbitTemplate.getConnectionFactory()
-		);
-		container.setPrefetchCount(1);
-		container.setQueueNames(queueName);
-		container.setMessageListener(message -> {
+		log.info("Received cancellation for task {}", task.getId());
+		if (task.flagAsCancelling()) {
 			try {
-				log.info("Received cancellation for task {}", task.getId());
-				if (task.flagAsCancelling()) {
-					// send that we are cancelling
-					final TaskResponse resp = task.createResponse(TaskStatus.CANCELLING);
-					final String cancelJson = mapper.writeValueAsString(resp);
-					rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, resp.getRoutingKey(), cancelJson);
-
-					// then cancel
-					task.cancel();
-				}
+				// send that we are cancelling
+				final TaskResponse resp = task.createResponse(TaskStatus.CANCELLING);
+				final String cancelJson = mapper.writeValueAsString(resp);
+				rabbitTemplate.convertAndSend(TASK_RUNNER_RESPONSE_EXCHANGE, resp.getRoutingKey(), cancelJson);
 			} catch (final JsonProcessingException e) {
 				log.error("Error responding after cancelling task {}", task.getId(), e);
 			}
-		});
-		return container;
+
+			// then cancel, this waits for the process to exit so don't hold up other cancellations
+			cancellationExecutor.execute(task::cancel);
+		}
+	}
+
+	/** Whether a cancellation has been received for a task that hasn't started on this instance yet. */
+	boolean hasCancellation(final UUID taskId) {
+		return cancelledTasks.containsKey(taskId);
+	}
+
+	private void expireCancelledTasks() {
+		final long expiry = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(CANCELLED_TASK_TTL_MINUTES);
+		cancelledTasks.values().removeIf(cancelledAt -> cancelledAt < expiry);
 	}
 
 	public static <T> T decodeMessage(final Message message, final Class<T> clazz) {
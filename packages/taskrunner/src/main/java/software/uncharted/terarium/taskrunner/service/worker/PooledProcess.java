@@ -0,0 +1,218 @@
+package software.uncharted.terarium.taskrunner.service.worker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A task process forked from a pre-warmed python worker. The process is not a child of the JVM, so its output is
+ * relayed by the worker and its exit code is reported by the worker once it has been reaped. It is created before the
+ * worker forks it, as it may write before its pid is known.
+ */
+@Slf4j
+public class PooledProcess extends Process {
+
+	private static final int KILL_TIMEOUT_SECONDS = 5;
+
+	private volatile long pid = -1;
+	private final LineInputStream stdout = new LineInputStream();
+	private final LineInputStream stderr = new LineInputStream();
+	private final CompletableFuture<Integer> exitFuture = new CompletableFuture<>();
+
+	void started(final long pid) {
+		this.pid = pid;
+	}
+
+	void appendStdout(final String line) {
+		stdout.append(line);
+	}
+
+	void appendStderr(final String line) {
+		stderr.append(line);
+	}
+
+	void closeStdout() {
+		stdout.close();
+	}
+
+	void closeStderr() {
+		stderr.close();
+	}
+
+	void exited(final int exitCode) {
+		// stdout and stderr are closed separately once the worker marks their end
+		exitFuture.complete(exitCode);
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		// tasks receive their input through the input pipe
+		return OutputStream.nullOutputStream();
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return stdout;
+	}
+
+	@Override
+	public InputStream getErrorStream() {
+		return stderr;
+	}
+
+	@Override
+	public int waitFor() throws InterruptedException {
+		try {
+			return exitFuture.get();
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public boolean waitFor(final long timeout, final TimeUnit unit) throws InterruptedException {
+		try {
+			exitFuture.get(timeout, unit);
+			return true;
+		} catch (final TimeoutException e) {
+			return false;
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Process> onExit() {
+		return exitFuture.thenApply(exitCode -> this);
+	}
+
+	@Override
+	public int exitValue() {
+		if (!exitFuture.isDone()) {
+			throw new IllegalThreadStateException("Process " + pid + " has not exited");
+		}
+		return exitFuture.join();
+	}
+
+	@Override
+	public long pid() {
+		return pid;
+	}
+
+	@Override
+	public boolean isAlive() {
+		return !exitFuture.isDone();
+	}
+
+	@Override
+	public void destroy() {
+		signalGroup("TERM", ProcessHandle::destroy);
+	}
+
+	@Override
+	public Process destroyForcibly() {
+		signalGroup("KILL", ProcessHandle::destroyForcibly);
+		return this;
+	}
+
+	/**
+	 * The task is the leader of a process group of its own, so anything it started is signalled along with it, even
+	 * once it is no longer a descendant of the task. Where the group can't be signalled the task and its descendants
+	 * are destroyed instead.
+	 */
+	private void signalGroup(final String signal, final Consumer<ProcessHandle> fallback) {
+		if (!isAlive() || pid <= 0) {
+			return;
+		}
+		try {
+			final Process kill = new ProcessBuilder("kill", "-" + signal, "--", "-" + pid)
+				.redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+				.start();
+			if (kill.waitFor(KILL_TIMEOUT_SECONDS, TimeUnit.SECONDS) && kill.exitValue() == 0) {
+				return;
+			}
+			kill.destroyForcibly();
+			log.warn("Unable to signal the process group of task process {}", pid);
+		} catch (final IOException e) {
+			log.warn("Unable to signal the process group of task process {}", pid, e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ProcessHandle.of(pid).ifPresent(task -> {
+			task.descendants().forEach(fallback);
+			fallback.accept(task);
+		});
+	}
+
+	/** Output relayed by the worker a line at a time. */
+	private static class LineInputStream extends InputStream {
+
+		private static final byte[] EOF = new byte[0];
+
+		private final BlockingQueue<byte[]> lines = new LinkedBlockingQueue<>();
+		private byte[] current = new byte[0];
+		private int position = 0;
+		private boolean closed = false;
+
+		void append(final String line) {
+			lines.add((line + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void close() {
+			lines.add(EOF);
+		}
+
+		private boolean fill() throws IOException {
+			if (closed) {
+				return false;
+			}
+			while (position >= current.length) {
+				try {
+					current = lines.take();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while reading process output", e);
+				}
+				position = 0;
+				if (current == EOF) {
+					closed = true;
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public synchronized int read() throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			return current[position++] & 0xff;
+		}
+
+		@Override
+		public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			final int n = Math.min(len, current.length - position);
+			System.arraycopy(current, position, b, off, n);
+			position += n;
+			return n;
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package software.uncharted.terarium.taskrunner.service.worker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import software.uncharted.terarium.taskrunner.util.NamedPipes;
+
+/**
+ * A long-lived python interpreter that has already imported a task script. Each task is forked from the interpreter,
+ * so it starts with the imports of the script already loaded without sharing any state with the tasks before it.
+ *
+ * The worker is fed one request at a time as a line of json on its stdin, and replies with lines of json on a named
+ * pipe of its own, so that its replies can't be mixed up with the output of the tasks. Its stdout and stderr are the
+ * output of the tasks, with a line prefixed by {@link #CONTROL_PREFIX} marking the end of the output of each task.
+ */
+@Slf4j
+class PythonWorker {
+
+	static final String CONTROL_PREFIX = "\u001eterarium-worker ";
+
+	private static final int DESTROY_TIMEOUT_SECONDS = 5;
+
+	private final String script;
+	private final ObjectMapper mapper;
+	private final Path controlDir;
+	private final Path controlPipe;
+	private final Process process;
+	private final OutputStream stdin;
+	private final long startedAt = System.currentTimeMillis();
+
+	private final CompletableFuture<Long> ready = new CompletableFuture<>();
+
+	private final Object lock = new Object();
+	private UUID currentId;
+	private CompletableFuture<PooledProcess> currentLaunch;
+	private PooledProcess current;
+	private Runnable onTaskExit;
+
+	// Tasks that may still write to stdout or stderr in the order they were
+	// started. The worker writes a marker to both after each task exits, so
+	// output belongs to the oldest task whose marker has not been seen yet.
+	private final Queue<PooledProcess> stdoutTargets = new ConcurrentLinkedQueue<>();
+	private final Queue<PooledProcess> stderrTargets = new ConcurrentLinkedQueue<>();
+
+	private int tasksRun = 0;
+	private long rssKb = 0;
+	private volatile boolean destroyed = false;
+
+	PythonWorker(final String python, final String workerScript, final String script, final ObjectMapper mapper)
+		throws IOException, InterruptedException {
+		this.script = script;
+		this.mapper = mapper;
+
+		controlDir = Files.createTempDirectory("taskrunner-worker");
+		controlPipe = controlDir.resolve("control");
+		try {
+			NamedPipes.create(controlPipe);
+			process = new ProcessBuilder(
+				python,
+				workerScript,
+				"--script",
+				script,
+				"--control",
+				controlPipe.toString()
+			).start();
+		} catch (final IOException | InterruptedException e) {
+			deleteControlPipe();
+			throw e;
+		}
+		stdin = process.getOutputStream();
+
+		final Thread controlThread = new Thread(this::readControl, "worker-control-" + process.pid());
+		controlThread.setDaemon(true);
+		controlThread.start();
+
+		final Thread stdoutThread = new Thread(this::readStdout, "worker-stdout-" + process.pid());
+		stdoutThread.setDaemon(true);
+		stdoutThread.start();
+
+		final Thread stderrThread = new Thread(this::readStderr, "worker-stderr-" + process.pid());
+		stderrThread.setDaemon(true);
+		stderrThread.start();
+	}
+
+	String getScript() {
+		return script;
+	}
+
+	/**
+	 * Wait for the worker to finish importing the script.
+	 *
+	 * @return The time it took for the worker to become ready in milliseconds
+	 */
+	long awaitReady(final long timeoutSeconds) throws InterruptedException, ExecutionException, TimeoutException {
+		return ready.get(timeoutSeconds, TimeUnit.SECONDS);
+	}
+
+	boolean isAlive() {
+		return !destroyed && process.isAlive();
+	}
+
+	int getTasksRun() {
+		synchronized (lock) {
+			return tasksRun;
+		}
+	}
+
+	long getRssKb() {
+		synchronized (lock) {
+			return rssKb;
+		}
+	}
+
+	/**
+	 * Fork a task from the worker.
+	 *
+	 * @param id The id of the task
+	 * @param args The arguments of the task
+	 * @param onTaskExit Called once the task has exited and the worker can accept another task
+	 * @return The forked process
+	 */
+	PooledProcess launch(final UUID id, final List<String> args, final Runnable onTaskExit, final long timeoutSeconds)
+		throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		final CompletableFuture<PooledProcess> launch = new CompletableFuture<>();
+		final PooledProcess task = new PooledProcess();
+		synchronized (lock) {
+			if (currentId != null) {
+				throw new IllegalStateException("Worker for " + script + " is already running task " + currentId);
+			}
+			currentId = id;
+			currentLaunch = launch;
+			current = task;
+			this.onTaskExit = onTaskExit;
+		}
+		// the task may write before its pid is known
+		stdoutTargets.add(task);
+		stderrTargets.add(task);
+
+		final ObjectNode request = mapper.createObjectNode();
+		request.put("id", id.toString());
+		request.set("argv", mapper.valueToTree(args));
+		try {
+			synchronized (stdin) {
+				stdin.write((mapper.writeValueAsString(request) + "\n").getBytes(StandardCharsets.UTF_8));
+				stdin.flush();
+			}
+			return launch.get(timeoutSeconds, TimeUnit.SECONDS);
+		} catch (final IOException | InterruptedException | ExecutionException | TimeoutException e) {
+			// the worker is in an unknown state, it will not be reused
+			destroy();
+			throw e;
+		}
+	}
+
+	void destroy() {
+		destroyed = true;
+		try {
+			stdin.close();
+		} catch (final IOException e) {
+			log.debug("Failed to close stdin of worker for {}", script, e);
+		}
+
+		// a task forked by the worker, and anything it started, would otherwise keep running and using the pipes of
+		// its task, which may be started again as a new process
+		process
+			.descendants()
+			.forEach(descendant -> {
+				descendant.destroyForcibly();
+				try {
+					descendant.onExit().get(DESTROY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (final ExecutionException | TimeoutException e) {
+					log.warn("Process {} of worker for {} did not exit in time", descendant.pid(), script);
+				}
+			});
+		process.destroy();
+	}
+
+	private void readControl() {
+		try (BufferedReader reader = Files.newBufferedReader(controlPipe, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				onControl(mapper.readTree(line));
+			}
+		} catch (final IOException e) {
+			if (!destroyed) {
+				log.warn("Error occured while reading the replies of worker for {}", script, e);
+			}
+		}
+		deleteControlPipe();
+
+		// the worker has exited, fail anything waiting on it
+		final int exitCode = waitForExit();
+		ready.completeExceptionally(new IOException("Worker for " + script + " exited with code " + exitCode));
+		taskExited(-1);
+	}
+
+	private void readStdout() {
+		readOutput(process.getInputStream(), stdoutTargets, PooledProcess::appendStdout, PooledProcess::closeStdout);
+
+		// the worker has exited, so has its end of the control pipe if it was ever opened
+		NamedPipes.unblock(controlPipe);
+	}
+
+	private void readStderr() {
+		readOutput(process.getErrorStream(), stderrTargets, PooledProcess::appendStderr, PooledProcess::closeStderr);
+	}
+
+	private void readOutput(
+		final InputStream stream,
+		final Queue<PooledProcess> targets,
+		final BiConsumer<PooledProcess, String> append,
+		final Consumer<PooledProcess> close
+	) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final PooledProcess task = targets.peek();
+				// the marker follows whatever the task wrote last, even if that didn't end with a newline
+				final int marker = line.indexOf(CONTROL_PREFIX);
+				final String output = marker < 0 ? line : line.substring(0, marker);
+				if (marker < 0 || !output.isEmpty()) {
+					if (task != null) {
+						append.accept(task, output);
+					} else {
+						log.info("[worker {}] {}", script, output);
+					}
+				}
+				if (marker >= 0 && task != null) {
+					close.accept(targets.poll());
+				}
+			}
+		} catch (final IOException e) {
+			if (!destroyed) {
+				log.warn("Error occured while reading the output of worker for {}", script, e);
+			}
+		}
+
+		PooledProcess task;
+		while ((task = targets.poll()) != null) {
+			close.accept(task);
+		}
+	}
+
+	private void deleteControlPipe() {
+		try {
+			Files.deleteIfExists(controlPipe);
+			Files.deleteIfExists(controlDir);
+		} catch (final IOException e) {
+			log.debug("Failed to delete the control pipe of worker for {}", script, e);
+		}
+	}
+
+	private void onControl(final JsonNode frame) {
+		if (frame.has("ready")) {
+			ready.complete(System.currentTimeMillis() - startedAt);
+		} else if (frame.has("error")) {
+			ready.completeExceptionally(new IOException(frame.get("error").asText()));
+		} else if (frame.has("pid")) {
+			final PooledProcess task;
+			final CompletableFuture<PooledProcess> launch;
+			synchronized (lock) {
+				task = current;
+				launch = currentLaunch;
+			}
+			if (task != null) {
+				task.started(frame.get("pid").asLong());
+				launch.complete(task);
+			}
+		} else if (frame.has("exit")) {
+			synchronized (lock) {
+				rssKb = frame.path("rss").asLong();
+			}
+			taskExited(frame.get("exit").asInt());
+		}
+	}
+
+	private void taskExited(final int exitCode) {
+		final PooledProcess task;
+		final CompletableFuture<PooledProcess> launch;
+		final Runnable callback;
+		synchronized (lock) {
+			if (currentId == null) {
+				return;
+			}
+			task = current;
+			launch = currentLaunch;
+			callback = onTaskExit;
+			tasksRun++;
+			currentId = null;
+			current = null;
+			currentLaunch = null;
+			onTaskExit = null;
+		}
+		if (!launch.isDone()) {
+			launch.completeExceptionally(new IOException("Worker for " + script + " exited before starting the task"));
+		}
+		task.exited(exitCode);
+		callback.run();
+	}
+
+	private int waitForExit() {
+		try {
+			return process.waitFor();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+	}
+}
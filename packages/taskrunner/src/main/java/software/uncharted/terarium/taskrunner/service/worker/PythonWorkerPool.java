@@ -0,0 +1,207 @@
+package software.uncharted.terarium.taskrunner.service.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.uncharted.terarium.taskrunner.util.LatencyStats;
+
+/**
+ * Keeps pre-warmed python interpreters for the configured scripts so that tasks do not pay for starting an
+ * interpreter and importing their dependencies. Tasks for scripts that are not pooled, or that arrive while every
+ * worker for their script is busy, are run as a new process as before.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PythonWorkerPool {
+
+	private final ObjectMapper mapper;
+
+	// Comma separated list of the python files or console scripts to keep
+	// workers for, empty disables the pool.
+	@Value("${terarium.taskrunner.worker-pool.scripts:}")
+	private String SCRIPTS;
+
+	@Value("${terarium.taskrunner.worker-pool.size:2}")
+	private int SIZE;
+
+	// Workers are replaced after running this many tasks...
+	@Value("${terarium.taskrunner.worker-pool.max-tasks:100}")
+	private int MAX_TASKS;
+
+	// ...or once their own resident memory grows above this, the memory of
+	// the tasks they fork is released when the task exits.
+	@Value("${terarium.taskrunner.worker-pool.max-rss-mb:2048}")
+	private long MAX_RSS_MB;
+
+	@Value("${terarium.taskrunner.worker-pool.python:python3}")
+	private String PYTHON;
+
+	private final int READY_TIMEOUT_SECONDS = 300;
+	private final int LAUNCH_TIMEOUT_SECONDS = 30;
+
+	private Path workerScript;
+	private final Map<String, BlockingQueue<PythonWorker>> idleWorkers = new ConcurrentHashMap<>();
+	private final Set<PythonWorker> workers = ConcurrentHashMap.newKeySet();
+	private final ExecutorService spawner = Executors.newCachedThreadPool();
+	private volatile boolean shuttingDown = false;
+
+	// Time from starting a task until it has read its input, for each way of starting it
+	@Getter
+	private final LatencyStats forkedStartup = new LatencyStats("forked task startup");
+
+	@Getter
+	private final LatencyStats pooledStartup = new LatencyStats("pooled task startup");
+
+	// Time for a worker to start and import its script
+	@Getter
+	private final LatencyStats workerStartup = new LatencyStats("worker startup");
+
+	@PostConstruct
+	void init() throws IOException {
+		final List<String> scripts = Arrays.stream(SCRIPTS.split(","))
+			.map(String::trim)
+			.filter(s -> !s.isEmpty())
+			.collect(Collectors.toList());
+		for (final String script : scripts) {
+			addScript(script);
+		}
+	}
+
+	/**
+	 * Start keeping workers for a script.
+	 *
+	 * @param script The python file or console script
+	 */
+	public void addScript(final String script) throws IOException {
+		if (workerScript == null) {
+			// the worker script has to be on disk for python to run it
+			workerScript = Files.createTempFile("taskrunner-worker", ".py");
+			workerScript.toFile().deleteOnExit();
+			try (InputStream is = getClass().getResourceAsStream("/worker.py")) {
+				Files.copy(is, workerScript, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		if (idleWorkers.putIfAbsent(script, new LinkedBlockingQueue<>()) != null) {
+			return;
+		}
+		log.info("Starting {} workers for {}", SIZE, script);
+		for (int i = 0; i < SIZE; i++) {
+			spawner.submit(() -> spawn(script));
+		}
+	}
+
+	public boolean isPooled(final String script) {
+		return idleWorkers.containsKey(script);
+	}
+
+	/**
+	 * Start a task on an idle worker for its script.
+	 *
+	 * @param script The python file or console script
+	 * @param id The id of the task
+	 * @param args The arguments of the task
+	 * @return The process of the task, or empty if there is no idle worker for the script
+	 */
+	public Optional<Process> start(final String script, final UUID id, final List<String> args) {
+		final BlockingQueue<PythonWorker> idle = idleWorkers.get(script);
+		if (idle == null) {
+			return Optional.empty();
+		}
+
+		final PythonWorker worker = idle.poll();
+		if (worker == null) {
+			log.info("No idle worker for {}, starting task {} as a new process", script, id);
+			return Optional.empty();
+		}
+
+		try {
+			return Optional.of(worker.launch(id, args, () -> release(worker), LAUNCH_TIMEOUT_SECONDS));
+		} catch (final Exception e) {
+			log.warn("Unable to start task {} on worker for {}, starting it as a new process", id, script, e);
+			return Optional.empty();
+		}
+	}
+
+	public void recordStartup(final boolean pooled, final long millis) {
+		(pooled ? pooledStartup : forkedStartup).record(millis);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		shuttingDown = true;
+		spawner.shutdownNow();
+		for (final PythonWorker worker : workers) {
+			worker.destroy();
+		}
+		if (!idleWorkers.isEmpty()) {
+			log.info("{}, {}, {}", workerStartup, forkedStartup, pooledStartup);
+		}
+	}
+
+	private void spawn(final String script) {
+		if (shuttingDown) {
+			return;
+		}
+		try {
+			final PythonWorker worker = new PythonWorker(PYTHON, workerScript.toString(), script, mapper);
+			workers.add(worker);
+			try {
+				workerStartup.record(worker.awaitReady(READY_TIMEOUT_SECONDS));
+			} catch (final Exception e) {
+				// don't keep trying to start workers for a script that can't be imported
+				log.error("Worker for {} failed to start, tasks for it will be started as new processes", script, e);
+				workers.remove(worker);
+				worker.destroy();
+				return;
+			}
+			idleWorkers.get(script).add(worker);
+		} catch (final IOException | InterruptedException e) {
+			log.error("Unable to start worker for {}", script, e);
+		}
+	}
+
+	private void release(final PythonWorker worker) {
+		if (shuttingDown) {
+			return;
+		}
+		if (!worker.isAlive() || worker.getTasksRun() >= MAX_TASKS || worker.getRssKb() > MAX_RSS_MB * 1024) {
+			log.info(
+				"Replacing worker for {} after {} tasks at {} MB, {}, {}, {}",
+				worker.getScript(),
+				worker.getTasksRun(),
+				worker.getRssKb() / 1024,
+				workerStartup,
+				forkedStartup,
+				pooledStartup
+			);
+			workers.remove(worker);
+			worker.destroy();
+			spawner.submit(() -> spawn(worker.getScript()));
+			return;
+		}
+		idleWorkers.get(worker.getScript()).add(worker);
+	}
+}
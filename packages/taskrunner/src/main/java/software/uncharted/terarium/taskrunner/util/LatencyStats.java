@@ -0,0 +1,41 @@
+package software.uncharted.terarium.taskrunner.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Count, mean and max of a latency in milliseconds. */
+public class LatencyStats {
+
+	private final String name;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public LatencyStats(final String name) {
+		this.name = name;
+	}
+
+	public void record(final long millis) {
+		count.increment();
+		total.add(millis);
+		max.accumulateAndGet(millis, Math::max);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		final long n = count.sum();
+		return n == 0 ? 0 : (double) total.sum() / n;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count %d, mean %.1fms, max %dms", name, getCount(), getMean(), getMax());
+	}
+}
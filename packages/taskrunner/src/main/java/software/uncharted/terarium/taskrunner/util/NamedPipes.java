@@ -0,0 +1,162 @@
+package software.uncharted.terarium.taskrunner.util;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates the named pipes used to talk to a task and moves bytes through them with file channels.
+ *
+ * Pipes are created with a direct call to mkfifo(3) so that setting up a task doesn't fork a process per pipe. If the C
+ * library can't be loaded the mkfifo command is run once for all of the pipes instead.
+ */
+@Slf4j
+public class NamedPipes {
+
+	private interface LibC extends Library {
+		int mkfifo(String path, int mode);
+	}
+
+	// rw for everyone before the umask, the same as the mkfifo command
+	private static final int FIFO_MODE = 0666;
+
+	private static final LibC libc = loadLibC();
+
+	// the largest array the JVM can allocate, which limits how much can be read from a pipe into a buffer
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private static LibC loadLibC() {
+		try {
+			return Native.load("c", LibC.class);
+		} catch (final Throwable e) {
+			log.warn("Unable to load libc, named pipes will be created with the mkfifo command: {}", e.toString());
+			return null;
+		}
+	}
+
+	public static boolean isNative() {
+		return libc != null;
+	}
+
+	public static void create(final Path... paths) throws IOException, InterruptedException {
+		if (libc == null) {
+			createWithCommand(paths);
+			return;
+		}
+		for (final Path path : paths) {
+			if (libc.mkfifo(path.toString(), FIFO_MODE) != 0) {
+				throw new IOException("Error creating pipe " + path + ", errno " + Native.getLastError());
+			}
+		}
+	}
+
+	public static void createWithCommand(final Path... paths) throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<>();
+		command.add("mkfifo");
+		for (final Path path : paths) {
+			command.add(path.toString());
+		}
+		final int exitCode = new ProcessBuilder(command).start().waitFor();
+		if (exitCode != 0) {
+			throw new IOException("Error creating pipes " + Arrays.toString(paths) + ", mkfifo exited with " + exitCode);
+		}
+	}
+
+	/**
+	 * Read everything written to the pipe until the writer closes it.
+	 *
+	 * @param initialCapacity The size of the buffer to start with, it is doubled as needed up to the largest array,
+	 *     and an IOException is thrown if the output doesn't fit. When the output fits exactly the buffer is returned
+	 *     without copying it.
+	 */
+	public static byte[] readAll(final Path path, final int initialCapacity) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(initialCapacity);
+			while (true) {
+				if (!buffer.hasRemaining()) {
+					buffer = grow(buffer);
+				}
+				if (channel.read(buffer) == -1) {
+					break;
+				}
+			}
+			if (buffer.position() == buffer.capacity()) {
+				return buffer.array();
+			}
+			return Arrays.copyOf(buffer.array(), buffer.position());
+		}
+	}
+
+	/**
+	 * Read from the pipe until the writer closes it or more than the limit has been read, whichever comes first.
+	 *
+	 * @return The bytes read, if there are more than the limit the pipe is still open and the rest can be read from
+	 *     the channel.
+	 */
+	public static ByteBuffer readUpTo(final FileChannel channel, final int initialCapacity, final long limit)
+		throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Math.min(initialCapacity, limit + 1), MAX_CAPACITY));
+		while (buffer.position() <= limit) {
+			if (!buffer.hasRemaining()) {
+				buffer = grow(buffer);
+			}
+			if (channel.read(buffer) == -1) {
+				break;
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	public static void write(final Path path, final byte[] bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	public static void write(final Path path, final InputStream is) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			final OutputStream os = Channels.newOutputStream(channel);
+			is.transferTo(os);
+		}
+	}
+
+	/**
+	 * Release a thread blocked opening the pipe because the other end was never opened. Opening a fifo for reading
+	 * and writing never blocks and satisfies the open on either side, after which the blocked reader sees the end of
+	 * the pipe and the blocked writer fails with a broken pipe.
+	 */
+	public static void unblock(final Path path) {
+		try {
+			// nothing to do but close it, opening it is enough
+			FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE).close();
+		} catch (final IOException e) {
+			log.debug("Unable to unblock pipe {}: {}", path, e.toString());
+		}
+	}
+
+	private static ByteBuffer grow(final ByteBuffer buffer) throws IOException {
+		if (buffer.capacity() >= MAX_CAPACITY) {
+			throw new IOException("Unable to read more than " + MAX_CAPACITY + " bytes from a pipe");
+		}
+		final int capacity = (int) Math.min(Math.max(buffer.capacity() * 2L, 1024), MAX_CAPACITY);
+		final ByteBuffer grown = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+}
@@ -0,0 +1,203 @@
+package software.uncharted.terarium.taskrunner.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Captures the output of a task in a fixed amount of memory. The first bytes of the output are kept as the head and the
+ * most recent bytes are kept in a ring buffer as the tail, anything in between is dropped from memory but can be kept
+ * in a spill file on disk.
+ *
+ * There is a single writer, the thread reading the output of the process, and any number of readers. Readers never
+ * block the writer, they copy the tail and then discard whatever the writer overwrote while they were copying it.
+ */
+@Slf4j
+public class OutputCapture implements Closeable {
+
+	private final byte[] head;
+	private volatile int headLength = 0;
+
+	// allocated once the head is full, so tasks with little output never pay for it
+	private final int tailCapacity;
+	private volatile byte[] ring;
+
+	// bytes written to the ring, and bytes the writer has started to write to it
+	private final AtomicLong position = new AtomicLong();
+	private final AtomicLong claimed = new AtomicLong();
+
+	private final Path spillPath;
+	private final Object spillLock = new Object();
+	private OutputStream spill;
+	private boolean spillClosed = false;
+
+	public OutputCapture(final int headBytes, final int tailBytes) {
+		this(headBytes, tailBytes, null);
+	}
+
+	/**
+	 * @param spillPath File to write the full output to, or null to only keep the head and tail
+	 */
+	public OutputCapture(final int headBytes, final int tailBytes, final Path spillPath) {
+		head = new byte[headBytes];
+		tailCapacity = Math.max(tailBytes, 1);
+		this.spillPath = spillPath;
+	}
+
+	public void appendLine(final String line) {
+		append((line + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void append(final byte[] bytes) {
+		writeSpill(bytes);
+
+		int offset = 0;
+		final int headLen = headLength;
+		if (headLen < head.length) {
+			final int n = Math.min(head.length - headLen, bytes.length);
+			System.arraycopy(bytes, 0, head, headLen, n);
+			headLength = headLen + n;
+			offset = n;
+		}
+		if (offset == bytes.length) {
+			return;
+		}
+
+		if (ring == null) {
+			ring = new byte[tailCapacity];
+		}
+
+		// only the last capacity bytes of a large write can survive it
+		int length = bytes.length - offset;
+		final long start = position.get() + Math.max(0, length - tailCapacity);
+		if (length > tailCapacity) {
+			offset += length - tailCapacity;
+			length = tailCapacity;
+		}
+
+		final long end = start + length;
+		claimed.set(end);
+		// the claim has to be visible before any of the bytes it covers are overwritten
+		VarHandle.storeStoreFence();
+
+		final int index = (int) (start % tailCapacity);
+		final int first = Math.min(length, tailCapacity - index);
+		System.arraycopy(bytes, offset, ring, index, first);
+		System.arraycopy(bytes, offset + first, ring, 0, length - first);
+
+		position.set(end);
+	}
+
+	/** Total number of bytes that have been written. */
+	public long size() {
+		return headLength + position.get();
+	}
+
+	/** Number of bytes that are no longer held in memory. */
+	public long omitted() {
+		return Math.max(0, position.get() - tailCapacity);
+	}
+
+	/** The most recent output, up to the tail size. */
+	public String getTail() {
+		return decode(copyTail());
+	}
+
+	/**
+	 * The head and tail of the output. If anything was dropped in between, a line noting how many bytes were omitted
+	 * separates them.
+	 */
+	@Override
+	public String toString() {
+		final String headString = new String(head, 0, headLength, StandardCharsets.UTF_8);
+		final byte[] tail = copyTail();
+		final long omitted = size() - headLength - tail.length;
+		if (omitted <= 0) {
+			return headString + decode(tail);
+		}
+		return headString + "\n[... " + omitted + " bytes omitted ...]\n" + decode(tail);
+	}
+
+	@Override
+	public void close() {
+		synchronized (spillLock) {
+			spillClosed = true;
+			if (spill != null) {
+				try {
+					spill.close();
+				} catch (final IOException e) {
+					log.warn("Unable to close output spill file {}: {}", spillPath, e.toString());
+				}
+				spill = null;
+			}
+		}
+	}
+
+	private byte[] copyTail() {
+		while (true) {
+			final long end = position.get();
+			final byte[] buffer = ring;
+			if (buffer == null || end == 0) {
+				return new byte[0];
+			}
+
+			final long start = Math.max(0, end - tailCapacity);
+			final byte[] copy = new byte[(int) (end - start)];
+			final int index = (int) (start % tailCapacity);
+			final int first = Math.min(copy.length, tailCapacity - index);
+			System.arraycopy(buffer, index, copy, 0, first);
+			System.arraycopy(buffer, 0, copy, first, copy.length - first);
+
+			// anything the writer has claimed since may have overwritten the start of the copy
+			VarHandle.acquireFence();
+			final long valid = Math.max(start, claimed.get() - tailCapacity);
+			if (valid >= end) {
+				// the writer lapped the whole copy, try again
+				continue;
+			}
+			if (valid == start) {
+				return copy;
+			}
+			final byte[] trimmed = new byte[(int) (end - valid)];
+			System.arraycopy(copy, (int) (valid - start), trimmed, 0, trimmed.length);
+			return trimmed;
+		}
+	}
+
+	private static String decode(final byte[] bytes) {
+		// the tail may start part way through a multi-byte character
+		int start = 0;
+		while (start < bytes.length && start < 3 && (bytes[start] & 0xC0) == 0x80) {
+			start++;
+		}
+		return new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+	}
+
+	private void writeSpill(final byte[] bytes) {
+		if (spillPath == null) {
+			return;
+		}
+		synchronized (spillLock) {
+			if (spillClosed) {
+				return;
+			}
+			try {
+				if (spill == null) {
+					Files.createDirectories(spillPath.getParent());
+					spill = new BufferedOutputStream(Files.newOutputStream(spillPath));
+				}
+				spill.write(bytes);
+			} catch (final IOException e) {
+				log.warn("Unable to write to output spill file {}: {}", spillPath, e.toString());
+				spillClosed = true;
+			}
+		}
+	}
+}
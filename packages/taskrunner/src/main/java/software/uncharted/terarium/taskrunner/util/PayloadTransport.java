@@ -0,0 +1,56 @@
+package software.uncharted.terarium.taskrunner.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads and writes task payloads that are sent by reference. Urls are either pre-signed http(s) urls or file urls
+ * when the payload store is on a filesystem shared with the hmi-server.
+ */
+public class PayloadTransport {
+
+	private static final HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+
+	public static InputStream openRead(final String url) throws IOException, InterruptedException {
+		final URI uri = URI.create(url);
+		if ("file".equals(uri.getScheme())) {
+			return Files.newInputStream(Paths.get(uri));
+		}
+
+		final HttpResponse<InputStream> response = client.send(
+			HttpRequest.newBuilder(uri).GET().build(),
+			HttpResponse.BodyHandlers.ofInputStream()
+		);
+		if (response.statusCode() / 100 != 2) {
+			response.body().close();
+			throw new IOException("Failed to read payload, received status " + response.statusCode());
+		}
+		return response.body();
+	}
+
+	public static void write(final String url, final Path file) throws IOException, InterruptedException {
+		final URI uri = URI.create(url);
+		if ("file".equals(uri.getScheme())) {
+			final Path dest = Paths.get(uri);
+			Files.createDirectories(dest.getParent());
+			Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
+
+		final HttpResponse<Void> response = client.send(
+			HttpRequest.newBuilder(uri).PUT(HttpRequest.BodyPublishers.ofFile(file)).build(),
+			HttpResponse.BodyHandlers.discarding()
+		);
+		if (response.statusCode() / 100 != 2) {
+			throw new IOException("Failed to write payload, received status " + response.statusCode());
+		}
+	}
+}
@@ -0,0 +1,57 @@
+import argparse
+import json
+import signal
+import sys
+
+
+READ_CHUNK_SIZE = 1024*1024
+
+
+def read_input(input_pipe: str):
+	chunks = []
+	with open(input_pipe, "rb") as f:
+		while True:
+			chunk = f.read(READ_CHUNK_SIZE)
+			if chunk == b"":
+				break
+			chunks.append(chunk)
+	return json.loads(b"".join(chunks).decode("utf-8"))
+
+def write_output(output_pipe: str, output: dict):
+	bs = json.dumps(output, separators=(',', ':')).encode()
+	with open(output_pipe, 'wb') as f_out:
+		f_out.write(bs)
+
+def signal_handler(sig, frame):
+	print('Process cancelled', flush=True)
+	sys.exit(1)
+
+def main():
+	signal.signal(signal.SIGINT, signal_handler)
+	signal.signal(signal.SIGTERM, signal_handler)
+
+	parser = argparse.ArgumentParser(description='Progress Task')
+	parser.add_argument('--id', type=str, required=True, help='The request id')
+	parser.add_argument('--input_pipe', type=str, required=True, help='The name of the input pipe')
+	parser.add_argument('--output_pipe', type=str, required=True, help='The name of the output pipe')
+	parser.add_argument('--progress_pipe', type=str, required=True, help='The name of the progress pipe')
+	args = parser.parse_args()
+
+	input = read_input(args.input_pipe)
+	num_updates = input.get("num_updates", 1000)
+
+	print("Task {} : writing {} progress updates to {}".format(args.id, num_updates, args.progress_pipe), flush=True)
+
+	# Tests use this to measure progress throughput, the pipe is kept open and
+	# each update is written as its own line as fast as possible
+	with open(args.progress_pipe, 'wb') as f_progress:
+		for i in range(num_updates):
+			f_progress.write(json.dumps({"progress": (i + 1) / num_updates, "step": i}, separators=(',', ':')).encode() + b"\n")
+			f_progress.flush()
+		f_progress.write(b'{"done":true}\n')
+
+	print("Task {} : attemping to write output to {}".format(args.id, args.output_pipe), flush=True)
+	write_output(args.output_pipe, {"num_updates": num_updates})
+
+if __name__ == "__main__":
+	main()
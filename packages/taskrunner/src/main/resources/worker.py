@@ -0,0 +1,154 @@
+import argparse
+import importlib.metadata
+import importlib.util
+import json
+import os
+import resource
+import signal
+import sys
+import traceback
+
+
+# The worker replies to the taskrunner on a pipe of its own, so its replies can't be mixed up with the output of the
+# tasks. The only lines it writes to stdout and stderr are the markers of the end of the output of each task, which
+# are prefixed so the taskrunner can find them even when they follow output that didn't end with a newline.
+CONTROL_PREFIX = "\x1eterarium-worker "
+
+control = None
+
+
+def send(frame: dict):
+	control.write(json.dumps(frame, separators=(',', ':')) + "\n")
+	control.flush()
+
+
+def mark(stream, frame: dict):
+	# a single write smaller than the size of a pipe buffer is never split by another writer
+	stream.write(CONTROL_PREFIX + json.dumps(frame, separators=(',', ':')) + "\n")
+	stream.flush()
+
+
+def load_main(script: str):
+	# raw python file, import it under a name other than __main__ so it doesn't run
+	if script.endswith(".py"):
+		spec = importlib.util.spec_from_file_location("terarium_task", script)
+		module = importlib.util.module_from_spec(spec)
+		spec.loader.exec_module(module)
+		return module.main
+
+	# otherwise it has to be a console script entry point, ex. `mira_task:simplify_model`
+	eps = importlib.metadata.entry_points()
+	if hasattr(eps, "select"):
+		matches = eps.select(group="console_scripts", name=script)
+	else:
+		matches = [ep for ep in eps.get("console_scripts", []) if ep.name == script]
+	for ep in matches:
+		return ep.load()
+	raise ValueError("{} is neither a python file nor a console script".format(script))
+
+
+def rss_kb() -> int:
+	# the current resident memory of the worker itself, which the tasks forked from it don't add to
+	try:
+		with open("/proc/self/status") as status:
+			for line in status:
+				if line.startswith("VmRSS:"):
+					return int(line.split()[1])
+	except OSError:
+		pass
+	# the peak instead where there is no procfs, in kilobytes on linux and bytes on macos
+	peak = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+	return peak // 1024 if sys.platform == "darwin" else peak
+
+
+def exit_code(status: int) -> int:
+	# match the exit codes the JVM reports for processes it started itself
+	if os.WIFSIGNALED(status):
+		return 128 + os.WTERMSIG(status)
+	return os.WEXITSTATUS(status)
+
+
+def run_task(main, script: str, argv: list):
+	# runs in the forked child, never returns
+	code = 0
+	try:
+		# in a process group of its own, so the taskrunner can kill it along with anything it started
+		os.setpgid(0, 0)
+		control.close()
+		signal.signal(signal.SIGINT, signal.SIG_DFL)
+		signal.signal(signal.SIGTERM, signal.SIG_DFL)
+		devnull = os.open(os.devnull, os.O_RDONLY)
+		os.dup2(devnull, 0)
+		sys.argv = [script] + argv
+		main()
+	except SystemExit as e:
+		if e.code is None:
+			code = 0
+		elif isinstance(e.code, int):
+			code = e.code
+		else:
+			print(e.code, file=sys.stderr)
+			code = 1
+	except BaseException:
+		traceback.print_exc()
+		code = 1
+	finally:
+		sys.stdout.flush()
+		sys.stderr.flush()
+		os._exit(code)
+
+
+def main():
+	parser = argparse.ArgumentParser(description='Pre-warmed taskrunner worker')
+	parser.add_argument('--script', type=str, required=True, help='The python file or console script to run')
+	parser.add_argument('--control', type=str, required=True, help='The pipe to reply to the taskrunner on')
+	args = parser.parse_args()
+
+	global control
+	control = open(args.control, "w")
+
+	# the worker itself only exits when the taskrunner closes its stdin
+	signal.signal(signal.SIGINT, signal.SIG_IGN)
+
+	try:
+		main_func = load_main(args.script)
+	except BaseException as e:
+		traceback.print_exc()
+		send({"error": str(e)})
+		sys.exit(1)
+
+	send({"ready": True, "pid": os.getpid()})
+
+	for line in sys.stdin:
+		if not line.strip():
+			continue
+		request = json.loads(line)
+
+		# anything still buffered would otherwise be written twice
+		sys.stdout.flush()
+		sys.stderr.flush()
+
+		pid = os.fork()
+		if pid == 0:
+			run_task(main_func, args.script, request["argv"])
+		try:
+			# also set by the task, whichever runs first
+			os.setpgid(pid, pid)
+		except OSError:
+			pass
+
+		send({"id": request["id"], "pid": pid})
+		_, status = os.waitpid(pid, 0)
+
+		# the task has exited, so everything it wrote precedes these markers
+		mark(sys.stdout, {"id": request["id"], "done": True})
+		mark(sys.stderr, {"id": request["id"], "done": True})
+		send({
+			"id": request["id"],
+			"exit": exit_code(status),
+			"rss": rss_kb(),
+		})
+
+
+if __name__ == "__main__":
+	main()
@@ -0,0 +1,166 @@
+package software.uncharted.terarium.taskrunner.service;
+
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import software.uncharted.terarium.taskrunner.TaskRunnerApplicationTests;
+import software.uncharted.terarium.taskrunner.models.task.TaskRequest;
+import software.uncharted.terarium.taskrunner.models.task.TaskStatus;
+import software.uncharted.terarium.taskrunner.service.worker.PythonWorkerPool;
+
+@Slf4j
+public class PythonWorkerPoolTests extends TaskRunnerApplicationTests {
+
+	private final String TEST_INPUT = "{\"document\":\"Test research paper\"}";
+	private final String TEST_INPUT_WITH_PROGRESS = "{\"document\":\"Test research paper\",\"include_progress\":true}";
+	private final String FAILURE_INPUT = "{\"should_fail\":true}";
+	private final String SCRIPT_PATH = getClass().getResource("/echo.py").getPath();
+
+	private final int ONE_MINUTE = 1;
+
+	@Autowired
+	private PythonWorkerPool workerPool;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		workerPool.addScript(SCRIPT_PATH);
+
+		// wait for the workers to be ready
+		final long start = System.currentTimeMillis();
+		while (workerPool.getWorkerStartup().getCount() < 1 && System.currentTimeMillis() - start < 30000) {
+			Thread.sleep(100);
+		}
+	}
+
+	private Task runTask(final String input) throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(SCRIPT_PATH);
+		req.setInput(input.getBytes());
+
+		final Task task = new Task(req, workerPool);
+		try {
+			task.start();
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+
+			if (input.contains("include_progress")) {
+				while (task.readProgressWithTimeout(ONE_MINUTE) != null) {
+					// drain the progress
+				}
+			}
+
+			final byte[] output = task.readOutputWithTimeout(ONE_MINUTE);
+			Assertions.assertArrayEquals(req.getInput(), output);
+
+			task.waitFor(ONE_MINUTE);
+		} finally {
+			task.cleanup();
+		}
+		return task;
+	}
+
+	@Test
+	public void testPooledTaskSuccess() throws Exception {
+		final Task task = runTask(TEST_INPUT_WITH_PROGRESS);
+
+		Assertions.assertTrue(task.isPooled());
+		Assertions.assertEquals(TaskStatus.SUCCESS, task.getStatus());
+		Assertions.assertTrue(task.createResponse(TaskStatus.SUCCESS).getStdout().contains("attemping to write output"));
+	}
+
+	@Test
+	public void testPooledTaskFailure() throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(SCRIPT_PATH);
+		req.setInput(FAILURE_INPUT.getBytes());
+
+		final Task task = new Task(req, workerPool);
+		try {
+			task.start();
+			Assertions.assertTrue(task.isPooled());
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+			task.readOutputWithTimeout(ONE_MINUTE);
+		} catch (final InterruptedException e) {
+			// this should happen
+		} finally {
+			task.cleanup();
+		}
+
+		Assertions.assertEquals(TaskStatus.FAILED, task.getStatus());
+
+		// the worker survives the failure of the task
+		Assertions.assertTrue(runTask(TEST_INPUT).isPooled());
+	}
+
+	@Test
+	public void testPooledTaskCancel() throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(SCRIPT_PATH);
+		req.setInput(TEST_INPUT.getBytes());
+
+		final Task task = new Task(req, workerPool);
+		try {
+			task.start();
+			Assertions.assertTrue(task.isPooled());
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+
+			new Thread(() -> {
+				try {
+					Thread.sleep(1000);
+					Assertions.assertTrue(task.cancel());
+				} catch (final Exception e) {
+					e.printStackTrace();
+				}
+			}).start();
+
+			task.readOutputWithTimeout(ONE_MINUTE);
+			task.waitFor(ONE_MINUTE);
+		} catch (final InterruptedException e) {
+			// this should happen
+		} finally {
+			task.cleanup();
+		}
+
+		Assertions.assertEquals(TaskStatus.CANCELLED, task.getStatus());
+	}
+
+	@Test
+	public void testPooledStartupBenchmark() throws Exception {
+		final int NUM_TASKS = 3;
+
+		for (int i = 0; i < NUM_TASKS; i++) {
+			Assertions.assertFalse(runTaskForked(TEST_INPUT).isPooled());
+			Assertions.assertTrue(runTask(TEST_INPUT).isPooled());
+		}
+
+		log.info("{}", workerPool.getWorkerStartup());
+		log.info("{}", workerPool.getForkedStartup());
+		log.info("{}", workerPool.getPooledStartup());
+	}
+
+	private Task runTaskForked(final String input) throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(SCRIPT_PATH);
+		req.setInput(input.getBytes());
+
+		// a task for a script without workers is started as a new process, but its
+		// startup is still recorded by the pool
+		final Task task = new Task(req, workerPool);
+		task.setScript(SCRIPT_PATH + ".forked");
+		try {
+			task.start();
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+			task.readOutputWithTimeout(ONE_MINUTE);
+			task.waitFor(ONE_MINUTE);
+		} finally {
+			task.cleanup();
+		}
+		return task;
+	}
+}
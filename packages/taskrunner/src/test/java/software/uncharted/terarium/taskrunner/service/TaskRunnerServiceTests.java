@@ -68,6 +68,16 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 		taskRunnerService.destroyQueues();
 	}
 
+	private void awaitCancellation(final UUID taskId) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+		while (!taskRunnerService.hasCancellation(taskId)) {
+			if (System.currentTimeMillis() > deadline) {
+				Assertions.fail("Cancellation of task " + taskId + " was not received");
+			}
+			Thread.sleep(10);
+		}
+	}
+
 	private List<TaskResponse> consumeAllResponses() throws InterruptedException {
 		final BlockingQueue<TaskResponse> queue = consumeForResponses();
 		final List<TaskResponse> responses = new ArrayList<>();
@@ -199,7 +209,7 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 			responses.add(resp);
 			if (resp.getStatus() == TaskStatus.RUNNING) {
 				// send the cancellation after we know the task has started
-				rabbitTemplate.convertAndSend(taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE, req.getId().toString(), "");
+				rabbitTemplate.convertAndSend(taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE, "", req.getId().toString());
 			}
 			if (resp.getStatus() == TaskStatus.CANCELLED) {
 				break;
@@ -221,20 +231,14 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 		req.setTimeoutMinutes(1);
 		req.setRoutingKey(responseRoutingKey);
 
-		// we have to create this queue before sending the cancellation to know that
-		// there is a queue to get the msg
-		final String cancelQueue = req.getId().toString();
-		final String routingKey = req.getId().toString();
-		taskRunnerService.declareAndBindTransientQueueWithRoutingKey(
-			taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE,
-			cancelQueue,
-			routingKey
-		);
-
 		// send the cancellation BEFORE we send the request, this simulates a taskrunner
 		// under
 		// contention that could receive a cancellation before it processes a request
-		rabbitTemplate.convertAndSend(taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE, req.getId().toString(), "");
+		rabbitTemplate.convertAndSend(taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE, "", req.getId().toString());
+
+		// the cancellation and the request are consumed independently, wait until the
+		// cancellation has been received
+		awaitCancellation(req.getId());
 
 		final String reqStr = mapper.writeValueAsString(req);
 		rabbitTemplate.convertAndSend(taskRunnerService.TASK_RUNNER_REQUEST_QUEUE, reqStr);
@@ -297,16 +301,6 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 					responsesPerReq.put(req.getId(), Collections.synchronizedList(new ArrayList<>()));
 					responseFutures.put(req.getId(), new CompletableFuture<>());
 
-					// we have to create this queue before sending the cancellation to know that
-					// there is a queue to get the msg
-					final String cancelQueue = req.getId().toString();
-					final String routingKey = req.getId().toString();
-					taskRunnerService.declareAndBindTransientQueueWithRoutingKey(
-						taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE,
-						cancelQueue,
-						routingKey
-					);
-
 					boolean shouldCancelBefore = false;
 					boolean shouldCancelAfter = false;
 
@@ -356,9 +350,10 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 						// send the cancellation before we send the request
 						rabbitTemplate.convertAndSend(
 							taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE,
-							req.getId().toString(),
-							""
+							"",
+							req.getId().toString()
 						);
+						awaitCancellation(req.getId());
 					}
 
 					// send the request
@@ -370,8 +365,8 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 						// send the cancellation
 						rabbitTemplate.convertAndSend(
 							taskRunnerService.TASK_RUNNER_CANCELLATION_EXCHANGE,
-							req.getId().toString(),
-							""
+							"",
+							req.getId().toString()
 						);
 					}
 				} catch (final Exception e) {
@@ -421,4 +416,43 @@ public class TaskRunnerServiceTests extends TaskRunnerApplicationTests {
 			Assertions.assertTrue(found);
 		}
 	}
+
+	@Test
+	public void testDispatchLatencyBenchmark() throws InterruptedException, JsonProcessingException {
+		final int NUM_TASKS = 50;
+
+		// time from sending a request until the task has started, this used to include
+		// declaring a cancellation queue and starting a consumer for it
+		long total = 0;
+		long max = 0;
+		for (int i = 0; i < NUM_TASKS; i++) {
+			final TaskRequest req = new TaskRequest();
+			req.setId(UUID.randomUUID());
+			req.setScript(SCRIPT_PATH);
+			req.setInput(TEST_INPUT.getBytes());
+			req.setTimeoutMinutes(1);
+			req.setRoutingKey(responseRoutingKey);
+
+			final BlockingQueue<TaskResponse> queue = consumeForResponses();
+
+			final long start = System.nanoTime();
+			rabbitTemplate.convertAndSend(taskRunnerService.TASK_RUNNER_REQUEST_QUEUE, mapper.writeValueAsString(req));
+
+			final TaskResponse running = queue.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			final long elapsed = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+			Assertions.assertEquals(TaskStatus.RUNNING, running.getStatus());
+			total += elapsed;
+			max = Math.max(max, elapsed);
+
+			// wait for the task to finish before starting the next one
+			while (true) {
+				final TaskResponse resp = queue.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				if (resp.getStatus() == TaskStatus.SUCCESS) {
+					break;
+				}
+			}
+		}
+
+		log.info("Dispatch latency over {} tasks: mean {}us, max {}us", NUM_TASKS, total / NUM_TASKS, max);
+	}
 }
@@ -1,9 +1,14 @@
 package software.uncharted.terarium.taskrunner.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,9 +22,11 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
 import software.uncharted.terarium.taskrunner.TaskRunnerApplicationTests;
 import software.uncharted.terarium.taskrunner.models.task.TaskRequest;
 import software.uncharted.terarium.taskrunner.models.task.TaskStatus;
+import software.uncharted.terarium.taskrunner.util.NamedPipes;
 
 @Slf4j
 public class TaskTests extends TaskRunnerApplicationTests {
@@ -28,6 +35,8 @@ public class TaskTests extends TaskRunnerApplicationTests {
 	private final String TEST_INPUT_WITH_PROGRESS = "{\"document\":\"Test research paper\",\"include_progress\":true}";
 	private final String FAILURE_INPUT = "{\"should_fail\":true}";
 	private final String SCRIPT_PATH = getClass().getResource("/echo.py").getPath();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final String PROGRESS_SCRIPT_PATH = getClass().getResource("/progress.py").getPath();
 
 	@Test
 	public void testTaskSuccess() throws Exception {
@@ -100,6 +109,86 @@ public class TaskTests extends TaskRunnerApplicationTests {
 		}
 	}
 
+	@Test
+	public void testTaskProgressThroughput() throws Exception {
+		final int NUM_UPDATES = 5000;
+
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(PROGRESS_SCRIPT_PATH);
+		req.setInput(("{\"num_updates\":" + NUM_UPDATES + "}").getBytes());
+
+		final int ONE_MINUTE = 1;
+
+		final Task task = new Task(req);
+		try {
+			task.start();
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+
+			// every update is read, in order, as its own message
+			final long start = System.currentTimeMillis();
+			int progressCount = 0;
+			while (true) {
+				final byte[] output = task.readProgressWithTimeout(ONE_MINUTE);
+				if (output == null) {
+					break;
+				}
+				Assertions.assertEquals(progressCount, mapper.readTree(output).get("step").asInt());
+				progressCount++;
+			}
+			final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+			log.info("Read {} progress updates in {}ms, {} per second", progressCount, elapsed, progressCount * 1000 / elapsed);
+
+			Assertions.assertEquals(NUM_UPDATES, progressCount);
+
+			task.readOutputWithTimeout(ONE_MINUTE);
+			task.waitFor(ONE_MINUTE);
+			Assertions.assertEquals(TaskStatus.SUCCESS, task.getStatus());
+		} finally {
+			task.cleanup();
+		}
+	}
+
+	@Test
+	public void testTaskProgressCoalesced() throws Exception {
+		final int NUM_UPDATES = 5000;
+
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(PROGRESS_SCRIPT_PATH);
+		req.setInput(("{\"num_updates\":" + NUM_UPDATES + "}").getBytes());
+
+		final int ONE_MINUTE = 1;
+
+		final Task task = new Task(req);
+		try {
+			task.start();
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+
+			// a slow reader only sees the latest of the updates written while it was busy
+			int progressCount = 0;
+			JsonNode last = null;
+			while (true) {
+				Thread.sleep(50);
+				final byte[] output = task.readLatestProgressWithTimeout(ONE_MINUTE);
+				if (output == null) {
+					break;
+				}
+				last = mapper.readTree(output);
+				progressCount++;
+			}
+
+			Assertions.assertTrue(progressCount < NUM_UPDATES);
+			Assertions.assertEquals(NUM_UPDATES - 1, last.get("step").asInt());
+
+			task.readOutputWithTimeout(ONE_MINUTE);
+			task.waitFor(ONE_MINUTE);
+			Assertions.assertEquals(TaskStatus.SUCCESS, task.getStatus());
+		} finally {
+			task.cleanup();
+		}
+	}
+
 	@Test
 	public void testTaskLargeInputOutput() throws Exception {
 		final ClassPathResource resource = new ClassPathResource("test_input.json");
@@ -134,6 +223,126 @@ public class TaskTests extends TaskRunnerApplicationTests {
 		}
 	}
 
+	@Test
+	public void testTaskInputOutputByReference() throws Exception {
+		final ClassPathResource resource = new ClassPathResource("test_input.json");
+		final byte[] input = FileCopyUtils.copyToByteArray(resource.getInputStream());
+
+		final Path dir = Files.createTempDirectory("task-payloads");
+		final Path inputPath = dir.resolve("input");
+		final Path outputPath = dir.resolve("output");
+		Files.write(inputPath, input);
+
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(SCRIPT_PATH);
+		req.setInputUrl(inputPath.toUri().toString());
+
+		final int ONE_MINUTE = 1;
+
+		final Task task = new Task(req);
+		try {
+			task.start();
+			task.writeInputFromUrlWithTimeout(req.getInputUrl(), ONE_MINUTE);
+
+			// the output is larger than the threshold so it should be written to the url
+			final Optional<byte[]> output = task.readOutputToUrlWithTimeout(outputPath.toUri().toString(), 16, ONE_MINUTE);
+			Assertions.assertTrue(output.isEmpty());
+			Assertions.assertArrayEquals(input, Files.readAllBytes(outputPath));
+
+			task.waitFor(ONE_MINUTE);
+			Assertions.assertEquals(TaskStatus.SUCCESS, task.getStatus());
+		} finally {
+			task.cleanup();
+			FileSystemUtils.deleteRecursively(dir);
+		}
+	}
+
+	@Test
+	public void testTaskOutputBelowThresholdIsInline() throws Exception {
+		final TaskRequest req = new TaskRequest();
+		req.setId(UUID.randomUUID());
+		req.setScript(SCRIPT_PATH);
+		req.setInput(TEST_INPUT.getBytes());
+
+		final Path outputPath = Files.createTempFile("output", ".bin");
+		Files.delete(outputPath);
+
+		final int ONE_MINUTE = 1;
+
+		final Task task = new Task(req);
+		try {
+			task.start();
+			task.writeInputWithTimeout(req.getInput(), ONE_MINUTE);
+
+			final Optional<byte[]> output = task.readOutputToUrlWithTimeout(
+				outputPath.toUri().toString(),
+				1024 * 1024,
+				ONE_MINUTE
+			);
+			Assertions.assertTrue(output.isPresent());
+			Assertions.assertArrayEquals(req.getInput(), output.get());
+			Assertions.assertFalse(Files.exists(outputPath));
+
+			task.waitFor(ONE_MINUTE);
+			Assertions.assertEquals(TaskStatus.SUCCESS, task.getStatus());
+		} finally {
+			task.cleanup();
+		}
+	}
+
+	@Test
+	public void testInterfaceWritesOutputWithoutAProgressPipe() throws Exception {
+		// a task using the python interface, with its progress printed to stdout and only an output pipe
+		final String script = String.join(
+			"\n",
+			"import sys",
+			"sys.path.insert(0, sys.argv.pop(1))",
+			"from taskrunner import TaskRunnerInterface",
+			"interface = TaskRunnerInterface('test')",
+			"interface.write_progress_dict_with_timeout({'progress': 1}, 5)",
+			"interface.write_output_str_with_timeout(interface.read_input_str_with_timeout())",
+			"interface.shutdown()"
+		);
+		final Path dir = Files.createTempDirectory("interface");
+		final Path outputPipe = dir.resolve("output");
+		NamedPipes.create(outputPipe);
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		Process process = null;
+		try {
+			final Future<byte[]> output = executor.submit(() -> NamedPipes.readAll(outputPipe, 1024));
+			process = new ProcessBuilder(
+				"python3",
+				"-c",
+				script,
+				Path.of("taskrunner.py").toAbsolutePath().getParent().toString(),
+				"--id",
+				"test",
+				"--input",
+				TEST_INPUT,
+				"--output_pipe",
+				outputPipe.toString()
+			)
+				.redirectErrorStream(true)
+				.start();
+
+			Assertions.assertArrayEquals(TEST_INPUT.getBytes(), output.get(1, TimeUnit.MINUTES));
+			Assertions.assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+			final String stdout = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+			Assertions.assertEquals(0, process.exitValue(), stdout);
+			Assertions.assertTrue(stdout.contains("{\"progress\": 1}"), stdout);
+		} finally {
+			// a task that failed is kept alive by its self destruct thread
+			if (process != null) {
+				process.destroyForcibly();
+			}
+			executor.shutdownNow();
+			NamedPipes.unblock(outputPipe);
+			FileSystemUtils.deleteRecursively(dir);
+		}
+	}
+
 	@Test
 	public void testTaskFailure() throws Exception {
 		final TaskRequest req = new TaskRequest();
@@ -415,4 +624,53 @@ public class TaskTests extends TaskRunnerApplicationTests {
 			Assertions.assertEquals(expected, response.getValue());
 		}
 	}
+
+	private double timeTaskSetupMicros(final int numTasks) throws Exception {
+		final long start = System.nanoTime();
+		for (int i = 0; i < numTasks; i++) {
+			final TaskRequest req = new TaskRequest();
+			req.setId(UUID.randomUUID());
+			req.setScript(SCRIPT_PATH);
+			final Task task = new Task(req);
+			Assertions.assertTrue(Files.exists(Path.of(task.getInputPipeName())));
+			task.cleanup();
+		}
+		return (System.nanoTime() - start) / 1000.0 / numTasks;
+	}
+
+	private double timeMkfifoCommandMicros(final int numTasks) throws Exception {
+		final long start = System.nanoTime();
+		for (int i = 0; i < numTasks; i++) {
+			final UUID id = UUID.randomUUID();
+			final Path input = Path.of("/tmp/input-" + id);
+			final Path output = Path.of("/tmp/output-" + id);
+			final Path progress = Path.of("/tmp/progress-" + id);
+			NamedPipes.createWithCommand(input, output, progress);
+			Files.delete(input);
+			Files.delete(output);
+			Files.delete(progress);
+		}
+		return (System.nanoTime() - start) / 1000.0 / numTasks;
+	}
+
+	@Test
+	public void testTaskSetupBenchmark() throws Exception {
+		final int NUM_WARMUP = 50;
+		final int NUM_TASKS = 200;
+
+		timeTaskSetupMicros(NUM_WARMUP);
+		timeMkfifoCommandMicros(NUM_WARMUP);
+
+		// per task setup, creating the pipes and cleaning them up, compared to
+		// creating the same pipes with the mkfifo command
+		final double taskMicros = timeTaskSetupMicros(NUM_TASKS);
+		final double commandMicros = timeMkfifoCommandMicros(NUM_TASKS);
+
+		log.info(
+			"Task setup: {}us per task with {} pipes, {}us per task with the mkfifo command",
+			String.format("%.1f", taskMicros),
+			NamedPipes.isNative() ? "native" : "command",
+			String.format("%.1f", commandMicros)
+		);
+	}
 }
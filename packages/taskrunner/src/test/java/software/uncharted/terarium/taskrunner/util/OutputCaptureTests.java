@@ -0,0 +1,134 @@
+package software.uncharted.terarium.taskrunner.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class OutputCaptureTests {
+
+	private final int HEAD_BYTES = 1024;
+	private final int TAIL_BYTES = 64 * 1024;
+
+	@Test
+	public void testSmallOutputIsKept() {
+		final OutputCapture capture = new OutputCapture(HEAD_BYTES, TAIL_BYTES);
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			capture.appendLine("line " + i);
+			expected.append("line ").append(i).append("\n");
+		}
+
+		Assertions.assertEquals(expected.toString(), capture.toString());
+		Assertions.assertEquals(expected.length(), capture.size());
+		Assertions.assertEquals(0, capture.omitted());
+	}
+
+	@Test
+	public void testHeadAndTailAreKept() {
+		final OutputCapture capture = new OutputCapture(HEAD_BYTES, TAIL_BYTES);
+		for (int i = 0; i < 100000; i++) {
+			capture.appendLine(String.format("line %08d", i));
+		}
+
+		final String output = capture.toString();
+		Assertions.assertTrue(output.startsWith("line 00000000\nline 00000001\n"));
+		Assertions.assertTrue(output.endsWith("line 00099998\nline 00099999\n"));
+		Assertions.assertTrue(output.contains(" bytes omitted ...]"));
+		Assertions.assertTrue(output.length() < HEAD_BYTES + TAIL_BYTES + 100);
+		Assertions.assertEquals(100000L * 14, capture.size());
+	}
+
+	@Test
+	public void testMemoryStaysFlatForGigabytesOfOutput() {
+		final long ONE_GIGABYTE = 1024L * 1024 * 1024;
+
+		final byte[] line = new byte[8 * 1024];
+		Arrays.fill(line, (byte) 'x');
+		line[line.length - 1] = '\n';
+
+		final OutputCapture capture = new OutputCapture(HEAD_BYTES, TAIL_BYTES);
+		final long before = usedMemory();
+		for (long written = 0; written < ONE_GIGABYTE; written += line.length) {
+			capture.append(line);
+		}
+		final long after = usedMemory();
+
+		log.info("Captured {} bytes, heap grew by {} bytes", capture.size(), after - before);
+		Assertions.assertEquals(ONE_GIGABYTE, capture.size());
+		Assertions.assertEquals(ONE_GIGABYTE - HEAD_BYTES - TAIL_BYTES, capture.omitted());
+		Assertions.assertTrue(capture.toString().length() < HEAD_BYTES + TAIL_BYTES + 100);
+		Assertions.assertTrue(after - before < 16 * 1024 * 1024);
+	}
+
+	@Test
+	public void testReadsWhileWriting() throws Exception {
+		final int NUM_LINES = 2000000;
+
+		final OutputCapture capture = new OutputCapture(0, TAIL_BYTES);
+		final AtomicBoolean done = new AtomicBoolean(false);
+
+		final CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+			for (int i = 0; i < NUM_LINES; i++) {
+				capture.appendLine(String.format("line %08d", i));
+			}
+			done.set(true);
+		});
+
+		// every tail has to be a run of consecutive lines, except for the first
+		// line which may have been cut off
+		int reads = 0;
+		while (!done.get()) {
+			final String[] lines = capture.getTail().split("\n");
+			int previous = -1;
+			for (int i = 1; i < lines.length; i++) {
+				Assertions.assertTrue(lines[i].startsWith("line "), lines[i]);
+				final int n = Integer.parseInt(lines[i].substring(5));
+				if (previous >= 0) {
+					Assertions.assertEquals(previous + 1, n);
+				}
+				previous = n;
+			}
+			reads++;
+		}
+		writer.get();
+
+		log.info("Read the tail {} times while it was written", reads);
+		Assertions.assertTrue(capture.getTail().endsWith(String.format("line %08d\n", NUM_LINES - 1)));
+	}
+
+	@Test
+	public void testSpillKeepsFullOutput() throws Exception {
+		final Path dir = Files.createTempDirectory("output-capture");
+		final Path spill = dir.resolve("task.stdout.log");
+		try {
+			final OutputCapture capture = new OutputCapture(HEAD_BYTES, TAIL_BYTES, spill);
+			final StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < 100000; i++) {
+				capture.appendLine("line " + i);
+				expected.append("line ").append(i).append("\n");
+			}
+			capture.close();
+
+			Assertions.assertTrue(capture.omitted() > 0);
+			Assertions.assertEquals(expected.toString(), Files.readString(spill, StandardCharsets.UTF_8));
+		} finally {
+			Files.deleteIfExists(spill);
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	private long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -71,6 +71,7 @@ class TaskRunnerInterface:
         self.input_pipe = args.input_pipe
         self.output_pipe = args.output_pipe
         self.progress_pipe = args.progress_pipe
+        self.progress_file = None
         self.has_written_output = False
 
         if self.input is None and self.input_pipe is None:
@@ -100,7 +101,7 @@ class TaskRunnerInterface:
 
         if self.input is not None:
             self.log("Reading input from input argument")
-            return self.input
+            return self.input.encode("utf-8")
 
         with concurrent.futures.ThreadPoolExecutor(max_workers=1) as executor:
             future = executor.submit(read_input)
@@ -117,10 +118,13 @@ class TaskRunnerInterface:
 
     def write_progress_str_with_timeout(self, progress: str, timeout_seconds: int = 30):
         def write_progress(progress_pipe: str, progress: str):
-            bs = progress.encode("utf-8")
-            with open(progress_pipe, 'wb') as f_out:
-                f_out.write(bs)
-                return
+            # progress messages are newline delimited, so the pipe is opened once and
+            # kept open for every message rather than reopened for each of them
+            if self.progress_file is None:
+                self.progress_file = open(progress_pipe, 'wb')
+            bs = progress.replace("\n", " ").encode("utf-8") + b"\n"
+            self.progress_file.write(bs)
+            self.progress_file.flush()
 
         # if no progress pipe is specified, just print the progress to stdout
         if self.progress_pipe is None:
@@ -161,6 +165,10 @@ class TaskRunnerInterface:
 
         # signal to the taskrunner that it should stop consuming progress
         self.write_progress_dict_with_timeout({'done':True}, timeout_seconds)
+        # progress printed to stdout has no file to close
+        if self.progress_file is not None:
+            self.progress_file.close()
+            self.progress_file = None
 
         # otherwise use the output pipe
         with concurrent.futures.ThreadPoolExecutor(max_workers=1) as executor: